@@ -1,7 +1,19 @@
 package io.jenkins.plugins.explain_error;
 
+import hudson.model.Run;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
+import org.apache.commons.lang3.StringUtils;
 
 /**
  * Service class for communicating with AI APIs.
@@ -11,26 +23,232 @@ public class AIService {
 
     private static final Logger LOGGER = Logger.getLogger(AIService.class.getName());
     
+    private final GlobalConfigurationImpl config;
     private final BaseAIService delegate;
+    private final boolean useCache;
 
     public AIService(GlobalConfigurationImpl config) {
+        this(config, true);
+    }
+
+    /**
+     * @param config the configuration to use
+     * @param useCache whether explanations may be answered from and stored in the {@link ExplanationCache}
+     */
+    public AIService(GlobalConfigurationImpl config, boolean useCache) {
+        this.config = config;
         this.delegate = createServiceForProvider(config);
+        this.useCache = useCache;
     }
     
     /**
      * Create the appropriate AI service implementation based on the provider.
      */
     private BaseAIService createServiceForProvider(GlobalConfigurationImpl config) {
-        AIProvider provider = config.getProvider();
+        return createServiceForProvider(config, null);
+    }
+
+    /**
+     * Create the AI service implementation for an endpoint.
+     * @param profile the endpoint, or {@code null} for the one of the global configuration
+     */
+    private static BaseAIService createServiceForProvider(GlobalConfigurationImpl config, ProviderProfile profile) {
+        AIProvider provider = profile != null ? profile.getProvider() : config.getProvider();
         
         switch (provider) {
             case OPENAI:
-                return new OpenAIService(config);
+                return new OpenAIService(config, profile);
             case GEMINI:
-                return new GeminiService(config);
+                return new GeminiService(config, profile);
             default:
                 LOGGER.warning("Unknown AI provider: " + provider + ". Defaulting to OpenAI.");
-                return new OpenAIService(config);
+                return new OpenAIService(config, profile);
+        }
+    }
+
+    /**
+     * Create the service calling the endpoint of a configuration directly, without the explanation
+     * cache, the {@link ExplanationBulkhead} or failover, and outside the {@link ProviderHealth} and
+     * {@link ProviderCircuitBreaker} of the live endpoint, e.g. to test a configuration from the form
+     * before it is saved.
+     */
+    static BaseAIService createUntrackedService(GlobalConfigurationImpl config) {
+        return createServiceForProvider(config, null).untracked();
+    }
+
+    /**
+     * Get the {@link ProviderFailover} across the configured endpoint and its fallbacks.
+     * Built for each call, so configuration changes apply to the next call.
+     * @param first the name of the endpoint to try first, or {@code null} for the configured order
+     */
+    private ProviderFailover failover(String first) {
+        List<BaseAIService> services = new ArrayList<>();
+        services.add(delegate);
+        Set<String> names = new HashSet<>();
+        names.add(ProviderProfile.PRIMARY);
+        for (ProviderProfile fallback : config.getFallbackProviders()) {
+            // Checked when saved from the form, but not when set as code
+            if (!names.add(fallback.getName())) {
+                LOGGER.warning("Ignoring fallback provider " + fallback.getName() + ": its name is used twice");
+                continue;
+            }
+            if (fallback.resolveApiKey(config) == null) {
+                LOGGER.warning("Ignoring fallback provider " + fallback.getName() + ": it needs its own API key");
+                continue;
+            }
+            BaseAIService service = createServiceForProvider(config, fallback);
+            if (service.getEndpointName().equals(first)) {
+                services.add(0, service);
+            } else {
+                services.add(service);
+            }
+        }
+        if (first != null && !services.get(0).getEndpointName().equals(first)
+                && !ProviderProfile.PRIMARY.equals(first)) {
+            LOGGER.warning("Model route endpoint " + first + " is not configured, using the configured endpoints");
+        }
+        return new ProviderFailover(services, ProviderHealth.get(), config.isHedgeRequests());
+    }
+
+    /**
+     * Request an explanation on its {@link ModelRoute} from the first endpoint that answers.
+     * The configured endpoint gets the prompt prepared for it; fallbacks build their own for their model.
+     */
+    private CompletableFuture<Answer> requestExplanation(String errorLogs, Routing routing) {
+        BaseAIService.Prompt primary = routing.prompt != null ? routing.prompt : delegate.preparePrompt(errorLogs);
+        long start = System.nanoTime();
+        AtomicReference<BaseAIService> answered = new AtomicReference<>();
+        CompletableFuture<String> call = failover(routing.endpoint)
+                .call(service -> service == delegate ? service.requestExplanationAsync(primary)
+                        : service.requestExplanationAsync(errorLogs), answered::set);
+        return answer(recordRoute(routing, primary.tokens, call, start), answered);
+    }
+
+    /**
+     * Request a streamed explanation, failing over to the next endpoint only while no text was streamed.
+     */
+    private CompletableFuture<Answer> requestExplanationStreaming(String errorLogs, Routing routing,
+                                                                  Consumer<String> onText) {
+        BaseAIService.Prompt primary = routing.prompt != null ? routing.prompt : delegate.preparePrompt(errorLogs);
+        long start = System.nanoTime();
+        AtomicBoolean streamed = new AtomicBoolean();
+        Consumer<String> sink = text -> {
+            streamed.set(true);
+            onText.accept(text);
+        };
+        AtomicReference<BaseAIService> answered = new AtomicReference<>();
+        CompletableFuture<String> call = failover(routing.endpoint)
+                .callOnce(service -> service == delegate ? service.requestExplanationStreaming(primary, sink)
+                        : service.requestExplanationStreaming(errorLogs, sink), streamed::get, answered::set);
+        return answer(recordRoute(routing, primary.tokens, call, start), answered);
+    }
+
+    /**
+     * Pair the answer of a call with the endpoint that gave it.
+     */
+    private static CompletableFuture<Answer> answer(CompletableFuture<String> call,
+                                                    AtomicReference<BaseAIService> answered) {
+        return Futures.cancelling(call.thenApply(text -> {
+            BaseAIService service = answered.get();
+            return new Answer(text, service.getProvider(), service.getModel());
+        }), call);
+    }
+
+    /**
+     * Pick the {@link ModelRoute} of an explanation.
+     * The prompt for the configured endpoint is prepared here if a route needs its tokens.
+     * @param errorLogs the error logs
+     * @param prompt the prompt prepared for the configured endpoint, or {@code null}
+     * @param run the build the explanation is for, or {@code null}
+     * @return the routing, without a name if no routes are configured
+     */
+    private Routing route(String errorLogs, BaseAIService.Prompt prompt, Run<?, ?> run) {
+        List<ModelRoute> routes = config.getModelRoutes();
+        if (routes.isEmpty()) {
+            return new Routing(null, null, prompt);
+        }
+        BaseAIService.Prompt primary = prompt != null ? prompt : delegate.preparePrompt(errorLogs);
+        String job = run != null ? run.getParent().getFullName() : null;
+        ModelRoute route = ModelRoute.select(routes, primary.tokens, job, errorLogs);
+        if (route == null) {
+            return new Routing(ModelRoute.DEFAULT, null, primary);
+        }
+        LOGGER.fine(() -> "Explaining " + primary.tokens + " tokens of error logs on route " + route.getName());
+        return new Routing(route.getName(), route.getEndpoint(), primary);
+    }
+
+    /**
+     * Record the latency and tokens of a routed explanation in the {@link ExplanationMetrics} once it completes.
+     */
+    private CompletableFuture<String> recordRoute(Routing routing, int inputTokens, CompletableFuture<String> call,
+                                                  long start) {
+        if (routing.name != null) {
+            call.whenComplete((text, failure) -> ExplanationMetrics.get().recordRoute(routing.name,
+                    ExplanationMetrics.outcome(failure), System.nanoTime() - start, inputTokens,
+                    text != null ? delegate.getTokenEstimator().estimate(text) : 0));
+        }
+        return call;
+    }
+
+    /**
+     * Get the fallback endpoint the endpoints are tried from, as {@link #failover(String)} picks it.
+     * @param name the name of the endpoint, or {@code null} for the configured endpoint
+     * @return the fallback, or {@code null} if the configured endpoint is tried first
+     */
+    private ProviderProfile fallback(String name) {
+        if (name == null || ProviderProfile.PRIMARY.equals(name)) {
+            return null;
+        }
+        for (ProviderProfile fallback : config.getFallbackProviders()) {
+            if (fallback.getName().equals(name)) {
+                return fallback.resolveApiKey(config) != null ? fallback : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Build the cache key of an explanation by the endpoint a route selects, so explanations of
+     * different models are kept apart.
+     */
+    private String cacheKey(Routing routing, String errorLogs) {
+        ProviderProfile fallback = fallback(routing.endpoint);
+        return fallback != null ? ExplanationCache.keyFor(fallback.getProvider(), fallback.getModel(), errorLogs)
+                : ExplanationCache.keyFor(config.getProvider(), config.getModel(), errorLogs);
+    }
+
+    /**
+     * The route picked for one explanation.
+     */
+    private static final class Routing {
+        /** The name of the route in metrics, {@code null} if no routes are configured. */
+        final String name;
+        /** The name of the endpoint tried first, {@code null} for the configured order. */
+        final String endpoint;
+        /** The prompt for the configured endpoint, {@code null} until a request needs it. */
+        final BaseAIService.Prompt prompt;
+
+        Routing(String name, String endpoint, BaseAIService.Prompt prompt) {
+            this.name = name;
+            this.endpoint = endpoint;
+            this.prompt = prompt;
+        }
+    }
+
+    /**
+     * An explanation and the endpoint that answered it.
+     */
+    static final class Answer {
+        final String text;
+        /** The provider that answered, {@code null} if none did, e.g. for a known failure or a failure message. */
+        final AIProvider provider;
+        /** The model that answered, {@code null} if none did. */
+        final String model;
+
+        Answer(String text, AIProvider provider, String model) {
+            this.text = text;
+            this.provider = provider;
+            this.model = model;
         }
     }
 
@@ -41,6 +259,235 @@ public class AIService {
      * @throws IOException if there's a communication error
      */
     public String explainError(String errorLogs) throws IOException {
-        return delegate.explainError(errorLogs);
+        CompletableFuture<String> explanation = explainErrorAsync(errorLogs);
+        try {
+            return explanation.get();
+        } catch (InterruptedException e) {
+            explanation.cancel(true);
+            Thread.currentThread().interrupt();
+            LOGGER.severe("AI API request was interrupted: " + e.getMessage());
+            return "Request was interrupted: " + e.getMessage();
+        } catch (ExecutionException e) {
+            return delegate.failureMessage(e.getCause());
+        }
+    }
+
+    /**
+     * Explain error logs using the configured AI provider without blocking the calling thread.
+     * Known failures are answered from the {@link KnowledgeBase} and repeated failures with the same
+     * fingerprint from the {@link ExplanationCache}, and concurrent requests for the same fingerprint share one provider call.
+     * @param errorLogs the error logs to explain
+     * @return a future completed with the AI explanation, or with a failure message
+     */
+    public CompletableFuture<String> explainErrorAsync(String errorLogs) {
+        return explainErrorAsync(errorLogs, null);
+    }
+
+    /**
+     * Explain error logs for a build without blocking the calling thread.
+     * Provider calls wait for a slot in the {@link ExplanationBulkhead}, queued fairly per job, go
+     * to the endpoint of the first matching {@link ModelRoute}, and fail over to the other
+     * configured endpoints through the {@link ProviderFailover}.
+     * @param errorLogs the error logs to explain
+     * @param run the build the explanation is for, or {@code null}
+     * @return a future completed with the AI explanation, or with a failure message
+     */
+    public CompletableFuture<String> explainErrorAsync(String errorLogs, Run<?, ?> run) {
+        return text(answerAsync(errorLogs, null, run));
+    }
+
+    /**
+     * Explain error logs for a build without blocking the calling thread.
+     * Cached explanations are looked up by the provider and model of the endpoint the route selects,
+     * and stored by those of the endpoint that answered.
+     * @param prompt the prompt prepared for the error logs by {@link #preparePrompt(String)}, or
+     *               {@code null} to prepare it when a provider is asked
+     * @return a future completed with the explanation and the endpoint that answered, or with a failure message
+     */
+    CompletableFuture<Answer> answerAsync(String errorLogs, BaseAIService.Prompt prompt, Run<?, ?> run) {
+        if (StringUtils.isBlank(errorLogs)) {
+            return delegate.explainErrorAsync(errorLogs).thenApply(text -> new Answer(text, null, null));
+        }
+        String known = knownExplanation(errorLogs);
+        if (known != null) {
+            return CompletableFuture.completedFuture(new Answer(known, null, null));
+        }
+        Routing routing = route(errorLogs, prompt, run);
+        if (!isCacheEnabled(errorLogs)) {
+            CompletableFuture<Answer> call = limited(run, () -> requestExplanation(errorLogs, routing));
+            return Futures.cancelling(call.exceptionally(this::failureAnswer), call);
+        }
+        ExplanationCache cache = ExplanationCache.get();
+        String key = cacheKey(routing, errorLogs);
+        Answer cached = cachedAnswer(cache, key, routing);
+        if (cached != null) {
+            LOGGER.fine("Explanation served from cache");
+            return CompletableFuture.completedFuture(cached);
+        }
+        // Identical failures explained concurrently, e.g. by parallel branches, share one provider call
+        return InFlightExplanations.get().join(key, sink -> {
+            CompletableFuture<Answer> call = limited(run, () -> requestExplanation(errorLogs, routing));
+            return Futures.cancelling(call.thenApply(answer -> cacheExplanation(cache, errorLogs, answer))
+                    .exceptionally(this::failureAnswer), call);
+        }, null);
+    }
+
+    /**
+     * Explain error logs using the provider's streaming endpoint.
+     * A known or cached explanation is delivered as a single piece of text.
+     * @param errorLogs the error logs to explain
+     * @param onText receives each piece of text as it is generated
+     * @return a future completed with the complete explanation, or with a failure message
+     */
+    public CompletableFuture<String> explainErrorStreaming(String errorLogs, Consumer<String> onText) {
+        return explainErrorStreaming(errorLogs, null, onText);
+    }
+
+    /**
+     * Explain error logs for a build using the provider's streaming endpoint.
+     * @param errorLogs the error logs to explain
+     * @param run the build the explanation is for, or {@code null}
+     * @param onText receives each piece of text as it is generated
+     * @return a future completed with the complete explanation, or with a failure message
+     */
+    public CompletableFuture<String> explainErrorStreaming(String errorLogs, Run<?, ?> run, Consumer<String> onText) {
+        return text(answerStreaming(errorLogs, null, run, onText));
+    }
+
+    /**
+     * Explain error logs for a build using the provider's streaming endpoint.
+     * @param prompt the prompt prepared for the error logs by {@link #preparePrompt(String)}, or
+     *               {@code null} to prepare it when a provider is asked
+     * @return a future completed with the explanation and the endpoint that answered, or with a failure message
+     */
+    CompletableFuture<Answer> answerStreaming(String errorLogs, BaseAIService.Prompt prompt, Run<?, ?> run,
+                                              Consumer<String> onText) {
+        if (StringUtils.isBlank(errorLogs)) {
+            return delegate.explainErrorStreaming(errorLogs, onText).thenApply(text -> new Answer(text, null, null));
+        }
+        String known = knownExplanation(errorLogs);
+        if (known != null) {
+            onText.accept(known);
+            return CompletableFuture.completedFuture(new Answer(known, null, null));
+        }
+        Routing routing = route(errorLogs, prompt, run);
+        if (!isCacheEnabled(errorLogs)) {
+            CompletableFuture<Answer> call =
+                    limited(run, () -> requestExplanationStreaming(errorLogs, routing, onText));
+            return Futures.cancelling(call.exceptionally(this::failureAnswer), call);
+        }
+        ExplanationCache cache = ExplanationCache.get();
+        String key = cacheKey(routing, errorLogs);
+        Answer cached = cachedAnswer(cache, key, routing);
+        if (cached != null) {
+            onText.accept(cached.text);
+            return CompletableFuture.completedFuture(cached);
+        }
+        return InFlightExplanations.get().join(key, sink -> {
+            CompletableFuture<Answer> call =
+                    limited(run, () -> requestExplanationStreaming(errorLogs, routing, sink));
+            return Futures.cancelling(call.thenApply(answer -> cacheExplanation(cache, errorLogs, answer))
+                    .exceptionally(this::failureAnswer), call);
+        }, onText);
+    }
+
+    /**
+     * Get the text of an answer.
+     */
+    private static CompletableFuture<String> text(CompletableFuture<Answer> answer) {
+        return Futures.cancelling(answer.thenApply(result -> result.text), answer);
+    }
+
+    /**
+     * Look up a cached explanation, which was answered by the endpoint named in its key.
+     */
+    private Answer cachedAnswer(ExplanationCache cache, String key, Routing routing) {
+        String cached = cache.get(key);
+        if (cached == null) {
+            return null;
+        }
+        ProviderProfile fallback = fallback(routing.endpoint);
+        return fallback != null ? new Answer(cached, fallback.getProvider(), fallback.getModel())
+                : new Answer(cached, config.getProvider(), config.getModel());
+    }
+
+    private Answer failureAnswer(Throwable failure) {
+        return new Answer(delegate.failureMessage(failure), null, null);
+    }
+
+    /**
+     * Get the explanation of a known failure from the {@link KnowledgeBase}.
+     * Requests for a new explanation bypass it, like the cache.
+     * @param errorLogs the error logs
+     * @return the configured explanation, or {@code null} if the failure is not known
+     */
+    String knownExplanation(String errorLogs) {
+        return useCache ? KnowledgeBase.get().explain(errorLogs) : null;
+    }
+
+    /**
+     * Send a prompt to the provider as is, through the {@link ExplanationBulkhead} but without
+     * the explanation cache.
+     * @param prompt the complete prompt
+     * @param run the build the call is made for, or {@code null}
+     * @return a future completed with the answer, or failed if there is none
+     */
+    CompletableFuture<String> completeAsync(String prompt, Run<?, ?> run) {
+        return completeAsync(prompt, run, provider -> { });
+    }
+
+    /**
+     * Send a prompt to the provider as is.
+     * @param answered receives the provider that answered, before the returned future completes
+     */
+    CompletableFuture<String> completeAsync(String prompt, Run<?, ?> run, Consumer<AIProvider> answered) {
+        return limited(run, () -> failover(null).call(service -> service.requestCompletionAsync(prompt),
+                service -> answered.accept(service.getProvider())));
+    }
+
+    /**
+     * Turn a failed call into the message shown to the user in place of an explanation.
+     */
+    String failureMessage(Throwable failure) {
+        return delegate.failureMessage(failure);
+    }
+
+    /**
+     * Get the estimator of the configured model's tokens.
+     */
+    TokenEstimator getTokenEstimator() {
+        return delegate.getTokenEstimator();
+    }
+
+    /**
+     * Build the prompt sent to the configured model for error logs and estimate its input tokens,
+     * so it is prepared once for both the request and the tokens reported with the explanation.
+     * @param errorLogs the error logs
+     * @return the prompt
+     */
+    BaseAIService.Prompt preparePrompt(String errorLogs) {
+        return delegate.preparePrompt(errorLogs);
+    }
+
+    /**
+     * Run a provider call through the {@link ExplanationBulkhead}.
+     */
+    private static <T> CompletableFuture<T> limited(Run<?, ?> run, Supplier<CompletableFuture<T>> call) {
+        String job = run != null ? run.getParent().getFullName() : null;
+        String id = run != null ? run.getExternalizableId() : null;
+        return ExplanationBulkhead.get().submit(job, id, call);
+    }
+
+    private boolean isCacheEnabled(String errorLogs) {
+        return useCache && config.getCacheMaxEntries() > 0 && StringUtils.isNotBlank(errorLogs);
+    }
+
+    private static Answer cacheExplanation(ExplanationCache cache, String errorLogs, Answer answer) {
+        // Failed calls never get here, they are turned into a message after caching
+        if (StringUtils.isNotBlank(answer.text)) {
+            // Kept apart from explanations of the routed endpoint if another endpoint answered
+            cache.put(ExplanationCache.keyFor(answer.provider, answer.model, errorLogs), answer.text);
+        }
+        return answer;
     }
-}
\ No newline at end of file
+}
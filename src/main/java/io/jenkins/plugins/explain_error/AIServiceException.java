@@ -0,0 +1,31 @@
+package io.jenkins.plugins.explain_error;
+
+import java.io.IOException;
+
+/**
+ * Signals that an AI provider call did not produce an explanation.
+ * Carries the HTTP status code when the provider answered with an error response.
+ */
+public class AIServiceException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public AIServiceException(String message) {
+        this(message, 0);
+    }
+
+    public AIServiceException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Get the HTTP status code returned by the provider.
+     * @return the status code, or 0 if the request failed before a response was received
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,136 @@
+package io.jenkins.plugins.explain_error;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Aho-Corasick automaton finding any number of ASCII literals in one left-to-right pass,
+ * ignoring ASCII case.
+ * The automaton is compiled into a dense transition table, so each input character costs a
+ * single array lookup whatever the number of literals. Characters outside ASCII cannot be part
+ * of a literal and send the automaton back to its start state.
+ */
+final class AhoCorasick {
+
+    private static final int ALPHABET = 128;
+    private static final int SHIFT = 7;
+
+    /** Transitions indexed by {@code (state << SHIFT) + c}, holding the next state already shifted. */
+    private final int[] transitions;
+    /** Literal ids ending at each state, including those reached through failure links, or {@code null}. */
+    private final int[][] outputs;
+
+    /**
+     * @param literals the literals to find; the index of a literal is its id
+     * @throws IllegalArgumentException if a literal is empty or not ASCII
+     */
+    AhoCorasick(List<String> literals) {
+        int capacity = 1;
+        for (String literal : literals) {
+            capacity += literal.length();
+        }
+        int[] next = new int[capacity * ALPHABET];
+        Arrays.fill(next, -1);
+        List<List<Integer>> found = new ArrayList<>(capacity);
+        found.add(new ArrayList<>());
+        int states = 1;
+
+        // Build the trie of the lower-cased literals
+        for (int id = 0; id < literals.size(); id++) {
+            String literal = literals.get(id);
+            if (literal.isEmpty()) {
+                throw new IllegalArgumentException("Empty literal");
+            }
+            int state = 0;
+            for (int i = 0; i < literal.length(); i++) {
+                int c = fold(literal.charAt(i));
+                if (c >= ALPHABET) {
+                    throw new IllegalArgumentException("Literal is not ASCII: " + literal);
+                }
+                int index = state * ALPHABET + c;
+                if (next[index] < 0) {
+                    next[index] = states++;
+                    found.add(new ArrayList<>());
+                }
+                state = next[index];
+            }
+            found.get(state).add(id);
+        }
+
+        // Breadth first, point missing transitions at the failure state's transition
+        int[] failure = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            if (next[c] < 0) {
+                next[c] = 0;
+            } else {
+                queue.add(next[c]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.removeFirst();
+            found.get(state).addAll(found.get(failure[state]));
+            for (int c = 0; c < ALPHABET; c++) {
+                int index = state * ALPHABET + c;
+                int fallback = next[failure[state] * ALPHABET + c];
+                if (next[index] < 0) {
+                    next[index] = fallback;
+                } else {
+                    failure[next[index]] = fallback;
+                    queue.add(next[index]);
+                }
+            }
+        }
+
+        transitions = new int[states * ALPHABET];
+        outputs = new int[states][];
+        for (int state = 0; state < states; state++) {
+            for (int c = 0; c < ALPHABET; c++) {
+                transitions[(state << SHIFT) + c] = next[state * ALPHABET + fold((char) c)] << SHIFT;
+            }
+            List<Integer> ids = found.get(state);
+            if (!ids.isEmpty()) {
+                outputs[state] = ids.stream().mapToInt(Integer::intValue).distinct().toArray();
+            }
+        }
+    }
+
+    /**
+     * Scan text for the literals.
+     * @param text the text to scan
+     * @param onMatch called with the id of each literal found, in order of the end of the
+     *        occurrence; returning {@code true} stops the scan
+     * @return {@code true} if the scan was stopped by {@code onMatch}
+     */
+    boolean scan(CharSequence text, IntPredicate onMatch) {
+        int[] transitions = this.transitions;
+        int state = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            state = c < ALPHABET ? transitions[state + c] : 0;
+            int[] ids = outputs[state >>> SHIFT];
+            if (ids != null) {
+                for (int id : ids) {
+                    if (onMatch.test(id)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of states of the automaton.
+     */
+    int size() {
+        return outputs.length;
+    }
+
+    private static int fold(char c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+}
@@ -0,0 +1,17 @@
+package io.jenkins.plugins.explain_error;
+
+/**
+ * Signals that the provider answered with an error payload instead of an explanation, e.g. an
+ * invalid API key or an unknown model. The message is shown to the user as is.
+ */
+public class ApiErrorException extends AIServiceException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param errorMessage the error message of the payload
+     */
+    public ApiErrorException(String errorMessage) {
+        super("AI API Error: " + errorMessage);
+    }
+}
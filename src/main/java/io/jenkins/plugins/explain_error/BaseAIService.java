@@ -2,12 +2,21 @@ package io.jenkins.plugins.explain_error;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import hudson.ProxyConfiguration;
+import hudson.util.Secret;
 import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 import org.apache.commons.lang3.StringUtils;
 
@@ -19,65 +28,475 @@ public abstract class BaseAIService {
     
     protected static final Logger LOGGER = Logger.getLogger(BaseAIService.class.getName());
     protected static final ObjectMapper MAPPER = new ObjectMapper();
+    /** Upper bound on the length of generated explanations, in tokens. */
+    protected static final int MAX_OUTPUT_TOKENS = 1000;
+    /** Upper bound on the size of a response body; larger responses are rejected. */
+    protected static final int MAX_RESPONSE_BYTES = 1024 * 1024;
+    /** Time a provider may take to answer one request. */
+    protected static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
     
     protected final GlobalConfigurationImpl config;
+    /** The endpoint called, or {@code null} for the one of the global configuration. */
+    private final ProviderProfile profile;
+    /** Whether calls count towards the {@link ProviderHealth} and {@link ProviderCircuitBreaker} of the endpoint. */
+    private boolean tracked = true;
     
     public BaseAIService(GlobalConfigurationImpl config) {
+        this(config, null);
+    }
+
+    /**
+     * @param config the global configuration
+     * @param profile the endpoint to call, or {@code null} for the one of the global configuration
+     */
+    protected BaseAIService(GlobalConfigurationImpl config, ProviderProfile profile) {
         this.config = config;
+        this.profile = profile;
+    }
+
+    /**
+     * Keep the calls of this service out of the {@link ProviderHealth} and the {@link ProviderCircuitBreaker}
+     * of its endpoint, so they neither count towards them nor are refused while the circuit is open,
+     * e.g. to test a configuration that is not saved yet.
+     * @return this service
+     */
+    BaseAIService untracked() {
+        tracked = false;
+        return this;
+    }
+
+    /**
+     * Get the name of the endpoint called, identifying it in logs, metrics and the {@link ProviderHealth}.
+     */
+    public String getEndpointName() {
+        return profile != null ? profile.getName() : ProviderProfile.PRIMARY;
+    }
+
+    /**
+     * Get the provider of the endpoint called.
+     */
+    protected AIProvider getProvider() {
+        return profile != null ? profile.getProvider() : config.getProvider();
+    }
+
+    /**
+     * Get the model of the endpoint called.
+     */
+    protected String getModel() {
+        return profile != null ? profile.getModel() : config.getModel();
+    }
+
+    /**
+     * Get the API key of the endpoint called.
+     */
+    protected Secret getApiKey() {
+        return profile != null ? profile.resolveApiKey(config) : config.getApiKey();
     }
     
     /**
      * Explain error logs using the configured AI provider.
+     * Thin blocking wrapper around {@link #explainErrorAsync(String)}.
      * @param errorLogs the error logs to explain
      * @return the AI explanation
      * @throws IOException if there's a communication error
      */
     public String explainError(String errorLogs) throws IOException {
+        CompletableFuture<String> explanation = explainErrorAsync(errorLogs);
+        try {
+            return explanation.get();
+        } catch (InterruptedException e) {
+            explanation.cancel(true);
+            Thread.currentThread().interrupt();
+            LOGGER.severe("AI API request was interrupted: " + e.getMessage());
+            return "Request was interrupted: " + e.getMessage();
+        } catch (ExecutionException e) {
+            return failureMessage(e.getCause());
+        }
+    }
+
+    /**
+     * Explain error logs using the configured AI provider without blocking the calling thread.
+     * Failures are reported as an explanation message, like {@link #explainError(String)} does.
+     * @param errorLogs the error logs to explain
+     * @return a future completed with the AI explanation
+     */
+    public CompletableFuture<String> explainErrorAsync(String errorLogs) {
         if (StringUtils.isBlank(errorLogs)) {
-            return "No error logs provided for explanation.";
+            return CompletableFuture.completedFuture("No error logs provided for explanation.");
         }
+        CompletableFuture<String> request = requestExplanationAsync(errorLogs);
+        return Futures.cancelling(request.exceptionally(this::failureMessage), request);
+    }
 
-        String prompt = buildPrompt(errorLogs);
-        String requestBody = buildRequestBody(prompt);
-        
+    /**
+     * Send the explanation request to the provider.
+     * Unlike {@link #explainErrorAsync(String)}, the returned future completes exceptionally
+     * with an {@link AIServiceException} when the provider does not return an explanation.
+     */
+    protected CompletableFuture<String> requestExplanationAsync(String errorLogs) {
+        Prompt prompt;
         try {
+            prompt = preparePrompt(errorLogs);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return requestExplanationAsync(prompt);
+    }
+
+    /**
+     * Send an explanation request for a prompt prepared by {@link #preparePrompt(String)}.
+     */
+    CompletableFuture<String> requestExplanationAsync(Prompt prompt) {
+        return requestCompletionAsync(prompt.text, prompt.tokens, System.nanoTime() - prompt.nanos);
+    }
+
+    /**
+     * Send a prompt to the provider as is, e.g. one step of a {@link MapReduceExplainer}.
+     * The returned future completes exceptionally with an {@link AIServiceException} when the
+     * provider does not return an answer.
+     * @param prompt the complete prompt
+     */
+    protected CompletableFuture<String> requestCompletionAsync(String prompt) {
+        long start = System.nanoTime();
+        int promptTokens;
+        try {
+            promptTokens = getTokenEstimator().estimate(prompt);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return requestCompletionAsync(prompt, promptTokens, start);
+    }
+
+    /**
+     * @param promptTokens the estimated tokens of the prompt
+     * @param start when preparing the prompt started, in {@link System#nanoTime()}
+     */
+    private CompletableFuture<String> requestCompletionAsync(String prompt, int promptTokens, long start) {
+        ExplanationMetrics metrics = ExplanationMetrics.get();
+        HttpRequest request;
+        // Counted against the tokens-per-minute limit: the prompt plus the maximum length of the answer
+        long tokens = (long) promptTokens + MAX_OUTPUT_TOKENS;
+        try {
+            String requestBody = buildRequestBody(prompt);
             URI apiUri = URI.create(getApiUrl());
-            
+
             // Use Jenkins' ProxyConfiguration.newHttpRequestBuilder() to get a properly 
             // configured HttpRequest that respects Jenkins proxy settings
             HttpRequest.Builder requestBuilder = ProxyConfiguration.newHttpRequestBuilder(apiUri);
-            
+
             // Build the HTTP request with proper proxy configuration
-            HttpRequest request = buildHttpRequest(requestBuilder, requestBody);
+            request = buildHttpRequest(requestBuilder, requestBody);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        long sent = System.nanoTime();
+        metrics.recordStage(ExplanationMetrics.Stage.PROMPT, sent - start);
 
-            // Create HttpClient with timeout configuration
-            HttpClient client = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(30))
-                .build();
+        // Execute the request on the shared, pooled client for this endpoint
+        AtomicLong latency = new AtomicLong();
+        CompletableFuture<HttpResponse<ResponseBody>> exchange =
+            sendWithRetry(request, () -> ResponseBody.handler(MAX_RESPONSE_BYTES), tokens, latency);
+        CompletableFuture<String> result = Futures.cancelling(exchange.thenApply(response -> {
+            long received = System.nanoTime();
+            metrics.recordStage(ExplanationMetrics.Stage.PROVIDER, received - sent);
+            try {
+                return handleResponse(response);
+            } finally {
+                metrics.recordStage(ExplanationMetrics.Stage.PARSE, System.nanoTime() - received);
+            }
+        }), exchange);
+        recordRequest(metrics, result, sent, tokens - MAX_OUTPUT_TOKENS, latency);
+        return result;
+    }
 
-            // Execute the request
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-            String responseBody = response.body();
+    /**
+     * Record the outcome, duration and tokens of a provider request when it completes.
+     * @param latency the time the endpoint took to start answering, see {@link #sendWithRetry}
+     */
+    private void recordRequest(ExplanationMetrics metrics, CompletableFuture<String> result, long sent,
+                               long inputTokens, AtomicLong latency) {
+        AIProvider provider = getProvider();
+        String model = getModel();
+        String endpoint = getEndpointName();
+        result.whenComplete((text, failure) -> {
+            String outcome = ExplanationMetrics.outcome(failure);
+            long nanos = System.nanoTime() - sent;
+            metrics.recordRequest(provider, model, outcome, nanos, inputTokens,
+                text != null ? getTokenEstimator().estimate(text) : 0);
+            if (tracked) {
+                ProviderHealth.get().record(endpoint, outcome, nanos);
+                // Waiting for the rate limiter or a retry, or streaming a long answer, is not the endpoint being slow
+                ProviderCircuitBreaker.get().record(endpoint, outcome, latency.get());
+            }
+        });
+    }
 
-            LOGGER.fine("Response body length: " + responseBody.length());
-            LOGGER.fine("Response body preview: " + responseBody.substring(0, Math.min(500, responseBody.length())));
+    /**
+     * Send a request once the {@link ProviderRateLimiter} allows it, retrying rate limited and
+     * temporarily unavailable responses with jittered exponential backoff.
+     * The last response is returned whatever its status; cancelling the returned future cancels
+     * the pending wait or exchange. While the {@link ProviderCircuitBreaker} of the endpoint is
+     * open, the returned future fails at once with a {@link CircuitOpenException}.
+     * @param request the request to send
+     * @param handler creates the body handler for each attempt
+     * @param tokens the estimated number of tokens the call consumes
+     */
+    protected <T> CompletableFuture<HttpResponse<T>> sendWithRetry(HttpRequest request,
+                                                                 Supplier<HttpResponse.BodyHandler<T>> handler,
+                                                                 long tokens) {
+        return sendWithRetry(request, handler, tokens, new AtomicLong());
+    }
 
-            if (response.statusCode() != 200) {
-                LOGGER.severe("AI API request failed with status " + response.statusCode() + ": " + responseBody);
-                return "Failed to get explanation from AI service. Status: " + response.statusCode() 
-                    + ". Please check your API configuration and key.";
+    /**
+     * Send a request like {@link #sendWithRetry(HttpRequest, Supplier, long)}, measuring how long
+     * the endpoint takes to start answering.
+     * @param latency set to the time from sending the last attempt to receiving its response
+     *        headers, in nanoseconds; rate limiter waits and retry backoff are not included
+     */
+    protected <T> CompletableFuture<HttpResponse<T>> sendWithRetry(HttpRequest request,
+                                                                 Supplier<HttpResponse.BodyHandler<T>> handler,
+                                                                 long tokens, AtomicLong latency) {
+        if (tracked) {
+            try {
+                ProviderCircuitBreaker.get().acquire(getEndpointName());
+            } catch (CircuitOpenException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<?>> current = new AtomicReference<>();
+        result.whenComplete((response, failure) -> {
+            CompletableFuture<?> pending = current.get();
+            if (result.isCancelled() && pending != null) {
+                pending.cancel(true);
             }
+        });
+        sendAttempt(request, handler, tokens, 0, result, current, latency);
+        return result;
+    }
+
+    private <T> void sendAttempt(HttpRequest request, Supplier<HttpResponse.BodyHandler<T>> handler, long tokens,
+                                 int attempt, CompletableFuture<HttpResponse<T>> result,
+                                 AtomicReference<CompletableFuture<?>> current, AtomicLong latency) {
+        AIProvider provider = getProvider();
+        ProviderRateLimiter limiter = ProviderRateLimiter.get();
+        CompletableFuture<Void> permit = limiter.acquire(provider, tokens);
+        current.set(permit);
+        permit.thenCompose(ignored -> {
+            HttpResponse.BodyHandler<T> body = handler.get();
+            long exchangeStart = System.nanoTime();
+            CompletableFuture<HttpResponse<T>> exchange =
+                HttpClientRegistry.get().sendAsync(provider, request, info -> {
+                    latency.set(System.nanoTime() - exchangeStart);
+                    return body.apply(info);
+                });
+            current.set(exchange);
+            if (result.isDone()) {
+                exchange.cancel(true);
+            }
+            return exchange;
+        }).whenComplete((response, failure) -> {
+            if (failure != null) {
+                result.completeExceptionally(failure);
+                return;
+            }
+            limiter.update(provider, response.statusCode(), response.headers());
+            long delay = limiter.retryDelay(response.statusCode(), response.headers(), attempt, config.getMaxRetries());
+            if (delay < 0 || result.isDone()) {
+                result.complete(response);
+                return;
+            }
+            LOGGER.info("AI API request returned status " + response.statusCode() + ", retrying in " + delay
+                + "ms (retry " + (attempt + 1) + " of " + config.getMaxRetries() + ")");
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                .execute(() -> sendAttempt(request, handler, tokens, attempt + 1, result, current, latency));
+        });
+    }
 
+    /**
+     * Get the estimator of the configured model's tokens.
+     */
+    protected TokenEstimator getTokenEstimator() {
+        return TokenEstimator.forModel(getProvider(), getModel());
+    }
+
+    /**
+     * Cut error logs down to the configured prompt token budget with a {@link LogTruncator}.
+     * @param errorLogs the error logs
+     * @return the error logs, or their most relevant lines if they are over the budget
+     */
+    protected String fitToBudget(String errorLogs) {
+        String fitted = new LogTruncator(getTokenEstimator(), config.getMaxPromptTokens()).truncate(errorLogs);
+        if (fitted != null && fitted.length() < errorLogs.length()) {
+            LOGGER.fine("Truncated error logs from " + errorLogs.length() + " to " + fitted.length()
+                    + " characters to fit " + config.getMaxPromptTokens() + " tokens");
+        }
+        return fitted;
+    }
+
+    /**
+     * Build the prompt for error logs, after truncation to the budget, and estimate its tokens.
+     * @param errorLogs the error logs
+     * @return the prompt
+     */
+    Prompt preparePrompt(String errorLogs) {
+        long start = System.nanoTime();
+        String text = buildPrompt(fitToBudget(errorLogs));
+        return new Prompt(text, getTokenEstimator().estimate(text), System.nanoTime() - start);
+    }
+
+    /**
+     * A prompt built for this service's model, and its estimated input tokens.
+     */
+    static final class Prompt {
+        final String text;
+        final int tokens;
+        /** Time taken to build the prompt, reported as part of the prompt stage of the request. */
+        final long nanos;
+
+        Prompt(String text, int tokens, long nanos) {
+            this.text = text;
+            this.tokens = tokens;
+            this.nanos = nanos;
+        }
+    }
+
+    private String handleResponse(HttpResponse<ResponseBody> response) {
+        ResponseBody responseBody = response.body();
+
+        LOGGER.fine("Response body length: " + responseBody.size());
+
+        if (response.statusCode() != 200) {
+            LOGGER.severe("AI API request failed with status " + response.statusCode() + ": "
+                + responseBody.preview());
+            throw new CompletionException(new AIServiceException(
+                "AI API request failed with status " + response.statusCode(), response.statusCode()));
+        }
+        if (responseBody.isTruncated()) {
+            throw new CompletionException(new IOException(
+                "AI response exceeds the maximum size of " + MAX_RESPONSE_BYTES + " bytes"));
+        }
+
+        try {
             return parseResponse(responseBody);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
 
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            LOGGER.severe("AI API request was interrupted: " + e.getMessage());
-            return "Request was interrupted: " + e.getMessage();
+    /**
+     * Explain error logs using the provider's streaming endpoint.
+     * Partial text is handed to {@code onText} as soon as it arrives; the returned future is
+     * completed with the full explanation, or with a failure message, once the stream ends.
+     * @param errorLogs the error logs to explain
+     * @param onText receives each piece of text as it is generated
+     * @return a future completed with the complete AI explanation
+     */
+    public CompletableFuture<String> explainErrorStreaming(String errorLogs, Consumer<String> onText) {
+        if (StringUtils.isBlank(errorLogs)) {
+            return CompletableFuture.completedFuture("No error logs provided for explanation.");
+        }
+        CompletableFuture<String> request = requestExplanationStreaming(errorLogs, onText);
+        return Futures.cancelling(request.exceptionally(this::failureMessage), request);
+    }
+
+    /**
+     * Send the explanation request to the provider's streaming endpoint.
+     * Falls back to a regular request, delivered as a single piece of text, when the
+     * configured endpoint has no streaming variant.
+     */
+    protected CompletableFuture<String> requestExplanationStreaming(String errorLogs, Consumer<String> onText) {
+        Prompt prompt;
+        try {
+            prompt = preparePrompt(errorLogs);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return requestExplanationStreaming(prompt, onText);
+    }
+
+    /**
+     * Send a streaming explanation request for a prompt prepared by {@link #preparePrompt(String)}.
+     */
+    CompletableFuture<String> requestExplanationStreaming(Prompt prompt, Consumer<String> onText) {
+        long start = System.nanoTime() - prompt.nanos;
+        String streamingUrl;
+        HttpRequest request;
+        // Counted against the tokens-per-minute limit: the prompt plus the maximum length of the answer
+        long tokens = (long) prompt.tokens + MAX_OUTPUT_TOKENS;
+        try {
+            streamingUrl = getStreamingApiUrl();
+            if (streamingUrl == null) {
+                CompletableFuture<String> fallback = requestExplanationAsync(prompt);
+                return Futures.cancelling(fallback.thenApply(explanation -> {
+                    onText.accept(explanation);
+                    return explanation;
+                }), fallback);
+            }
+            String requestBody = buildStreamingRequestBody(prompt.text);
+            request = buildStreamingHttpRequest(streamingUrl, requestBody);
         } catch (Exception e) {
-            LOGGER.severe("AI API request failed: " + e.getMessage());
-            return "Failed to communicate with AI service: " + e.getMessage();
+            return CompletableFuture.failedFuture(e);
+        }
+        ExplanationMetrics metrics = ExplanationMetrics.get();
+        long sent = System.nanoTime();
+        metrics.recordStage(ExplanationMetrics.Stage.PROMPT, sent - start);
+
+        // Each attempt gets a fresh subscriber; rate limited attempts carry no stream events
+        AtomicLong latency = new AtomicLong();
+        CompletableFuture<HttpResponse<StreamingResponseSubscriber>> exchange = sendWithRetry(request,
+            () -> HttpResponse.BodyHandlers.fromLineSubscriber(
+                new StreamingResponseSubscriber(this::parseStreamChunk, onText, MAX_RESPONSE_BYTES), s -> s, null),
+            tokens, latency);
+        CompletableFuture<String> result = Futures.cancelling(exchange.thenApply(response -> {
+                // Text is parsed as it arrives, so the stream as a whole is the provider stage
+                metrics.recordStage(ExplanationMetrics.Stage.PROVIDER, System.nanoTime() - sent);
+                StreamingResponseSubscriber subscriber = response.body();
+                if (response.statusCode() != 200) {
+                    LOGGER.severe("AI API streaming request failed with status " + response.statusCode() + ": "
+                        + subscriber.getRaw());
+                    throw new CompletionException(new AIServiceException(
+                        "AI API request failed with status " + response.statusCode(), response.statusCode()));
+                }
+                if (subscriber.isTruncated()) {
+                    throw new CompletionException(new IOException(
+                        "AI response exceeds the maximum size of " + MAX_RESPONSE_BYTES + " bytes"));
+                }
+                String text = subscriber.getText().trim();
+                if (text.isEmpty()) {
+                    throw new CompletionException(new ResponseParseException(
+                        "Unable to parse AI response. Response: " + subscriber.getRaw()));
+                }
+                return text;
+            }), exchange);
+        recordRequest(metrics, result, sent, tokens - MAX_OUTPUT_TOKENS, latency);
+        return result;
+    }
+
+    /**
+     * Turn a failed request into the message shown to the user in place of an explanation.
+     */
+    protected String failureMessage(Throwable failure) {
+        Throwable cause = failure;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RejectedExecutionException || cause instanceof CircuitOpenException) {
+            // Too many explanations are waiting for a provider slot, or the endpoint is failing
+            return cause.getMessage();
+        }
+        if (cause instanceof ApiErrorException || cause instanceof ResponseParseException) {
+            return cause.getMessage();
+        }
+        if (cause instanceof AIServiceException && ((AIServiceException) cause).getStatusCode() == 429) {
+            return "The AI service rate limit was exceeded and retries did not succeed. Please try again later.";
+        }
+        if (cause instanceof AIServiceException && ((AIServiceException) cause).getStatusCode() > 0) {
+            return "Failed to get explanation from AI service. Status: " + ((AIServiceException) cause).getStatusCode()
+                + ". Please check your API configuration and key.";
         }
+        LOGGER.severe("AI API request failed: " + cause.getMessage());
+        return "Failed to communicate with AI service: " + cause.getMessage();
     }
     
     /**
@@ -100,13 +519,41 @@ public abstract class BaseAIService {
      * Get the API URL, potentially with model substitution for providers that need it.
      */
     protected String getApiUrl() {
-        String url = config.getApiUrl();
+        String url = profile != null ? profile.getApiUrl() : config.getApiUrl();
         if (url.contains("{model}")) {
-            url = url.replace("{model}", config.getModel());
+            url = url.replace("{model}", getModel());
         }
         return url;
     }
     
+    /**
+     * Get the URL of the provider's streaming endpoint.
+     * @return the streaming URL, or {@code null} if the configured endpoint cannot stream
+     */
+    protected String getStreamingApiUrl() {
+        return getApiUrl();
+    }
+
+    /**
+     * Build the HTTP request for the provider's streaming endpoint.
+     */
+    protected HttpRequest buildStreamingHttpRequest(String streamingUrl, String requestBody) {
+        return buildHttpRequest(ProxyConfiguration.newHttpRequestBuilder(URI.create(streamingUrl)), requestBody);
+    }
+
+    /**
+     * Build the request body for the provider's streaming endpoint.
+     */
+    protected String buildStreamingRequestBody(String prompt) throws IOException {
+        return buildRequestBody(prompt);
+    }
+
+    /**
+     * Extract the text delta from the JSON payload of one streamed event.
+     * @return the text, or {@code null} if the event carries none
+     */
+    protected abstract String parseStreamChunk(String data) throws IOException;
+
     /**
      * Build the HTTP request for the specific AI provider.
      */
@@ -117,8 +564,20 @@ public abstract class BaseAIService {
      */
     protected abstract String buildRequestBody(String prompt) throws IOException;
     
+    /**
+     * Parse a response of the specific AI provider given as text.
+     */
+    protected String parseResponse(String responseBody) throws IOException {
+        return parseResponse(ResponseBody.of(responseBody));
+    }
+
     /**
      * Parse the response from the specific AI provider.
+     * Implementations read the fields they need with a streaming {@link com.fasterxml.jackson.core.JsonParser}
+     * rather than building a tree of the whole response.
+     * @return the explanation
+     * @throws ApiErrorException if the response is an error payload
+     * @throws ResponseParseException if the response holds no explanation
      */
-    protected abstract String parseResponse(String responseBody) throws IOException;
+    protected abstract String parseResponse(ResponseBody responseBody) throws IOException;
 }
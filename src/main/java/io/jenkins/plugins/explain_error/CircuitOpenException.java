@@ -0,0 +1,14 @@
+package io.jenkins.plugins.explain_error;
+
+/**
+ * Signals that a call was not sent because the {@link ProviderCircuitBreaker} of its endpoint is open.
+ * The message explains why and for how long calls are paused, and is shown to the user as is.
+ */
+public class CircuitOpenException extends AIServiceException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
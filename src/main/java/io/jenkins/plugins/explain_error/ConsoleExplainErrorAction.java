@@ -5,6 +5,12 @@ import hudson.model.Action;
 import hudson.model.Run;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import javax.servlet.ServletException;
 import org.kohsuke.stapler.StaplerRequest2;
@@ -19,6 +25,9 @@ public class ConsoleExplainErrorAction implements Action {
 
     private static final Logger LOGGER = Logger.getLogger(ConsoleExplainErrorAction.class.getName());
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long STREAM_POLL_MILLIS = 250;
+
     private final Run<?, ?> run;
 
     public ConsoleExplainErrorAction(Run<?, ?> run) {
@@ -46,6 +55,7 @@ public class ConsoleExplainErrorAction implements Action {
      */
     @RequirePOST
     public void doExplainConsoleError(StaplerRequest2 req, StaplerResponse2 rsp) throws ServletException, IOException {
+        ExplanationMetrics metrics = ExplanationMetrics.get();
         try {
             run.checkPermission(hudson.model.Item.READ);
 
@@ -57,39 +67,140 @@ public class ConsoleExplainErrorAction implements Action {
             if (!forceNew && existingAction != null && existingAction.hasValidExplanation()) {
                 // Return existing explanation with a flag indicating it's cached
                 writeJsonResponse(rsp, createCachedResponse(existingAction.getExplanation()));
+                metrics.recordConsoleRequest("explain", "existing");
                 return;
             }
 
-            // Optionally allow maxLines as a parameter, default to 200
-            int maxLines = 200;
-            String maxLinesParam = req.getParameter("maxLines");
-            if (maxLinesParam != null) {
-                try { maxLines = Integer.parseInt(maxLinesParam); } catch (NumberFormatException ignore) {}
-            }
-
             // Fetch the last N lines of the log
-            java.util.List<String> logLines = run.getLog(maxLines);
-            String errorText = String.join("\n", logLines);
+            String errorText = tail(req);
 
+            // Concurrent clicks on the same build share one provider call and one save
             ErrorExplainer explainer = new ErrorExplainer();
-            String explanation = explainer.explainErrorText(errorText, run);
+            String explanation = InFlightExplanations.get().join(inFlightKey(), sink ->
+                    explainer.explainErrorTextAsync(errorText, run, forceNew)
+                            .thenApply(result -> saveExplanation(result, errorText)),
+                    null).get();
 
             if (explanation != null && !explanation.trim().isEmpty()) {
-                // Save the explanation as a build action (like the sidebar functionality)
-                ErrorExplanationAction action = new ErrorExplanationAction(explanation, errorText);
-                run.addOrReplaceAction(action);
-                
                 writeJsonResponse(rsp, explanation);
+                metrics.recordConsoleRequest("explain", "explained");
             } else {
                 writeJsonResponse(rsp, "Error: Could not generate explanation. Please check your AI API configuration.");
+                metrics.recordConsoleRequest("explain", "error");
             }
         } catch (Exception e) {
+            metrics.recordConsoleRequest("explain", "error");
             LOGGER.severe("=== EXPLAIN ERROR REQUEST FAILED ===");
             LOGGER.severe("Error explaining console error: " + e.getMessage());
             writeJsonResponse(rsp, "Error: " + e.getMessage());
         }
     }
 
+    /**
+     * Streaming variant of {@link #doExplainConsoleError}.
+     * Sends the explanation as Server-Sent Events: {@code chunk} events carry partial text as the
+     * provider generates it, and a final {@code done} event carries the complete explanation.
+     */
+    @RequirePOST
+    public void doExplainConsoleErrorStream(StaplerRequest2 req, StaplerResponse2 rsp) throws ServletException, IOException {
+        run.checkPermission(hudson.model.Item.READ);
+
+        rsp.setContentType("text/event-stream");
+        rsp.setCharacterEncoding("UTF-8");
+        rsp.setHeader("Cache-Control", "no-cache");
+        // Ask reverse proxies not to buffer the stream
+        rsp.setHeader("X-Accel-Buffering", "no");
+        PrintWriter writer = rsp.getWriter();
+
+        ExplanationMetrics metrics = ExplanationMetrics.get();
+        try {
+            boolean forceNew = "true".equals(req.getParameter("forceNew"));
+
+            ErrorExplanationAction existingAction = run.getAction(ErrorExplanationAction.class);
+            if (!forceNew && existingAction != null && existingAction.hasValidExplanation()) {
+                writeEvent(writer, "done", createCachedResponse(existingAction.getExplanation()));
+                metrics.recordConsoleRequest("stream", "existing");
+                return;
+            }
+
+            String errorText = tail(req);
+
+            BlockingQueue<String> chunks = new LinkedBlockingQueue<>();
+            ErrorExplainer explainer = new ErrorExplainer();
+            CompletableFuture<String> explanation = InFlightExplanations.get().join(inFlightKey(), sink ->
+                    explainer.explainErrorTextStreaming(errorText, run, forceNew, sink)
+                            .thenApply(result -> saveExplanation(result, errorText)),
+                    chunks::add);
+
+            // Relay chunks from the HTTP client threads on this request thread
+            int lastPosition = 0;
+            while (!explanation.isDone() || !chunks.isEmpty()) {
+                String chunk = chunks.poll(STREAM_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (chunk != null) {
+                    writeEvent(writer, "chunk", chunk);
+                }
+                int position = getQueuePosition();
+                if (position != lastPosition) {
+                    writeEvent(writer, "status", position > 0 ? "Queued, position " + position : "Analyzing error logs...");
+                    lastPosition = position;
+                }
+                if (writer.checkError()) {
+                    // The browser went away, stop generating text nobody will read
+                    explanation.cancel(true);
+                    metrics.recordConsoleRequest("stream", "cancelled");
+                    LOGGER.fine("Console explanation stream closed by client");
+                    return;
+                }
+            }
+
+            String result = explanation.get();
+            if (result != null && !result.trim().isEmpty()) {
+                writeEvent(writer, "done", result);
+                metrics.recordConsoleRequest("stream", "explained");
+            } else {
+                writeEvent(writer, "done", "Error: Could not generate explanation. Please check your AI API configuration.");
+                metrics.recordConsoleRequest("stream", "error");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            metrics.recordConsoleRequest("stream", "error");
+            writeEvent(writer, "done", "Error: " + e.getMessage());
+        } catch (Exception e) {
+            metrics.recordConsoleRequest("stream", "error");
+            LOGGER.severe("Error streaming console error explanation: " + e.getMessage());
+            writeEvent(writer, "done", "Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * AJAX endpoint reporting whether an explanation for this build is being generated.
+     * Returns JSON with pending boolean, and queued boolean and position while the request
+     * waits for a free provider slot.
+     */
+    @RequirePOST
+    public void doExplanationStatus(StaplerRequest2 req, StaplerResponse2 rsp) throws ServletException, IOException {
+        try {
+            run.checkPermission(hudson.model.Item.READ);
+
+            int position = getQueuePosition();
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("pending", InFlightExplanations.get().isPending(inFlightKey()));
+            status.put("queued", position > 0);
+            if (position > 0) {
+                status.put("position", position);
+            }
+
+            rsp.setContentType("application/json");
+            rsp.setCharacterEncoding("UTF-8");
+            PrintWriter writer = rsp.getWriter();
+            writer.write(MAPPER.writeValueAsString(status));
+            writer.flush();
+        } catch (Exception e) {
+            LOGGER.severe("Error checking explanation status: " + e.getMessage());
+            rsp.setStatus(500);
+        }
+    }
+
     /**
      * AJAX endpoint to check if an explanation already exists.
      * Returns JSON with hasExplanation boolean and timestamp if it exists.
@@ -123,20 +234,88 @@ public class ConsoleExplainErrorAction implements Action {
         }
     }
 
+    /**
+     * Key under which explanation requests for this build are coalesced.
+     */
+    private String inFlightKey() {
+        return inFlightKey(run);
+    }
+
+    /**
+     * Key under which explanation requests for a build are coalesced, shared with
+     * {@link FailedBuildExplainer} so a click during a background explanation joins it.
+     */
+    static String inFlightKey(Run<?, ?> run) {
+        return "run:" + run.getExternalizableId();
+    }
+
+    /**
+     * Position of this build's explanation request in the {@link ExplanationBulkhead} queue.
+     * @return the 1-based position, or 0 if it is not waiting
+     */
+    private int getQueuePosition() {
+        return ExplanationBulkhead.get().getQueuePosition(run.getExternalizableId());
+    }
+
+    /**
+     * Save the explanation as a build action (like the sidebar functionality).
+     * Runs once per provider call, however many requests joined it.
+     */
+    private String saveExplanation(ErrorExplainer.Explanation explanation, String errorText) {
+        String text = explanation.getText();
+        if (text != null && !text.trim().isEmpty()) {
+            run.addOrReplaceAction(new ErrorExplanationAction(text, errorText, explanation.getProvider(),
+                    explanation.getEstimatedTokens()));
+        }
+        return text;
+    }
+
+    /**
+     * Read the last lines of the console log, as many as the request asks for.
+     */
+    private String tail(StaplerRequest2 req) throws IOException {
+        long start = System.nanoTime();
+        String errorText = String.join("\n", LogTailReader.tail(run, getMaxLines(req)));
+        ExplanationMetrics.get().recordStage(ExplanationMetrics.Stage.EXTRACT, System.nanoTime() - start);
+        return errorText;
+    }
+
+    /**
+     * Optionally allow maxLines as a parameter, default to 200.
+     */
+    private int getMaxLines(StaplerRequest2 req) {
+        int maxLines = 200;
+        String maxLinesParam = req.getParameter("maxLines");
+        if (maxLinesParam != null) {
+            try { maxLines = Integer.parseInt(maxLinesParam); } catch (NumberFormatException ignore) {}
+        }
+        return maxLines;
+    }
+
+    private void writeEvent(PrintWriter writer, String event, String data) throws IOException {
+        writer.write("event: " + event + "\n");
+        writer.write("data: " + MAPPER.writeValueAsString(data) + "\n\n");
+        writer.flush();
+    }
+
     private void writeJsonResponse(StaplerResponse2 rsp, String message) throws IOException {
         rsp.setContentType("application/json");
         rsp.setCharacterEncoding("UTF-8");
         PrintWriter writer = rsp.getWriter();
+        writer.write(toJson(message));
+        writer.flush();
+    }
 
+    /**
+     * Encode a message as a JSON string, with the shared mapper.
+     */
+    static String toJson(String message) {
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            String jsonResponse = mapper.writeValueAsString(message);
-            writer.write(jsonResponse);
+            return MAPPER.writeValueAsString(message);
         } catch (Exception e) {
             // Fallback to simple JSON string
-            writer.write("\"" + message.replace("\"", "\\\"") + "\"");
+            return "\"" + message.replace("\"", "\\\"") + "\"";
         }
-        writer.flush();
     }
 
     /**
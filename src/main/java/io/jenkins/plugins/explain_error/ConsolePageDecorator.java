@@ -33,4 +33,11 @@ public class ConsolePageDecorator extends PageDecorator {
         // If API URL is set to a non-empty value, that's also valid
         return true;
     }
+
+    /**
+     * Whether the console page should render explanations as the provider streams them.
+     */
+    public boolean isStreamingEnabled() {
+        return GlobalConfigurationImpl.get().isEnableStreaming();
+    }
 }
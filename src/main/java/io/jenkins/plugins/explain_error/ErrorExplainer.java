@@ -3,7 +3,10 @@ package io.jenkins.plugins.explain_error;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import java.io.IOException;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 import org.apache.commons.lang3.StringUtils;
@@ -16,62 +19,181 @@ public class ErrorExplainer {
     private static final Logger LOGGER = Logger.getLogger(ErrorExplainer.class.getName());
 
     public void explainError(Run<?, ?> run, TaskListener listener, String logPattern, int maxLines) {
+        explainError(run, listener, logPattern, maxLines, 0);
+    }
+
+    /**
+     * @param contextLines lines kept before and after each line matching {@code logPattern}
+     */
+    public void explainError(Run<?, ?> run, TaskListener listener, String logPattern, int maxLines, int contextLines) {
+        explainError(run, listener, logPattern, maxLines, contextLines, false);
+    }
+
+    /**
+     * @param contextLines lines kept before and after each matching line
+     * @param errorSignatures whether lines matching the built-in {@link ErrorSignatures} are selected too
+     */
+    public void explainError(Run<?, ?> run, TaskListener listener, String logPattern, int maxLines, int contextLines,
+                             boolean errorSignatures) {
+        try {
+            explainErrorAsync(run, listener, logPattern, maxLines, contextLines, errorSignatures).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            listener.getLogger().println("Failed to explain error: interrupted");
+        } catch (ExecutionException e) {
+            LOGGER.severe("Failed to explain error: " + e.getCause().getMessage());
+            listener.getLogger().println("Failed to explain error: " + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Explains the errors of a build without blocking while the AI provider answers.
+     * The explanation is stored on the run as an {@link ErrorExplanationAction} when the future completes.
+     */
+    public CompletableFuture<Void> explainErrorAsync(Run<?, ?> run, TaskListener listener, String logPattern, int maxLines) {
+        return explainErrorAsync(run, listener, logPattern, maxLines, 0);
+    }
+
+    /**
+     * Explains the errors of a build without blocking while the AI provider answers.
+     * @param contextLines lines kept before and after each line matching {@code logPattern}
+     */
+    public CompletableFuture<Void> explainErrorAsync(Run<?, ?> run, TaskListener listener, String logPattern,
+                                                    int maxLines, int contextLines) {
+        return explainErrorAsync(run, listener, logPattern, maxLines, contextLines, false);
+    }
+
+    /**
+     * Explains the errors of a build without blocking while the AI provider answers.
+     * With a {@code logPattern} or {@code errorSignatures}, the whole log is searched and up to
+     * {@code maxLines} matching lines and their context are sent; otherwise the last
+     * {@code maxLines} lines are sent.
+     * @param contextLines lines kept before and after each matching line
+     * @param errorSignatures whether lines matching the built-in {@link ErrorSignatures} are selected too
+     */
+    public CompletableFuture<Void> explainErrorAsync(Run<?, ?> run, TaskListener listener, String logPattern,
+                                                    int maxLines, int contextLines, boolean errorSignatures) {
         try {
             GlobalConfigurationImpl config = GlobalConfigurationImpl.get();
 
             if (!config.isEnableExplanation()) {
                 listener.getLogger().println("AI error explanation is disabled in global configuration.");
-                return;
+                return CompletableFuture.completedFuture(null);
             }
 
             if (config.getApiKey() == null || StringUtils.isBlank(config.getApiKey().getPlainText())) {
                 listener.getLogger()
                         .println("ERROR: API key is not configured. Please configure it in Jenkins global settings.");
-                return;
+                return CompletableFuture.completedFuture(null);
             }
 
             // Extract error logs
-            String errorLogs = extractErrorLogs(run, logPattern, maxLines);
+            long start = System.nanoTime();
+            String errorLogs = extractErrorLogs(run, logPattern, maxLines, contextLines, errorSignatures);
+            ExplanationMetrics.get().recordStage(ExplanationMetrics.Stage.EXTRACT, System.nanoTime() - start);
 
             if (StringUtils.isBlank(errorLogs)) {
                 listener.getLogger().println("No error logs found to explain.");
-                return;
+                return CompletableFuture.completedFuture(null);
             }
 
             // Get AI explanation
             AIService aiService = new AIService(config);
-            String explanation = aiService.explainError(errorLogs);
-
-            // Store explanation in build action
-            ErrorExplanationAction action = new ErrorExplanationAction(explanation, errorLogs);
-            run.addOrReplaceAction(action);
+            CompletableFuture<Explanation> explanation =
+                    explain(config, aiService, prepare(config, listener, errorLogs), run, listener);
+            return Futures.cancelling(explanation.thenAccept(result -> {
+                // Store explanation in build action
+                ErrorExplanationAction action = new ErrorExplanationAction(result.getText(), errorLogs,
+                        result.getProvider(), result.getEstimatedTokens());
+                run.addOrReplaceAction(action);
 
-            // Explanation is now available on the job page, no need to clutter console output
+                // Explanation is now available on the job page, no need to clutter console output
+            }), explanation);
 
         } catch (Exception e) {
             LOGGER.severe("Failed to explain error: " + e.getMessage());
             listener.getLogger().println("Failed to explain error: " + e.getMessage());
+            return CompletableFuture.completedFuture(null);
         }
     }
 
-    private String extractErrorLogs(Run<?, ?> run, String logPattern, int maxLines) throws IOException {
-        List<String> logLines = run.getLog(maxLines);
-
-        if (StringUtils.isBlank(logPattern)) {
+    private String extractErrorLogs(Run<?, ?> run, String logPattern, int maxLines, int contextLines,
+                                    boolean errorSignatures) throws IOException {
+        if (StringUtils.isBlank(logPattern) && !errorSignatures) {
             // Return last few lines if no pattern specified
-            return String.join("\n", logLines);
+            return String.join("\n", LogTailReader.tail(run, maxLines));
         }
 
-        Pattern pattern = Pattern.compile(logPattern, Pattern.CASE_INSENSITIVE);
-        StringBuilder errorLogs = new StringBuilder();
+        // Search the whole log once, so errors long before the end are found too
+        Pattern pattern = StringUtils.isBlank(logPattern) ? null
+                : ErrorSignatures.compile(logPattern, Pattern.CASE_INSENSITIVE);
+        return new LogPatternExtractor(pattern, errorSignatures ? ErrorSignatures.builtIn() : null,
+                contextLines, maxLines).extract(run);
+    }
 
-        for (String line : logLines) {
-            if (pattern.matcher(line).find()) {
-                errorLogs.append(line).append("\n");
+    /**
+     * Compact error text with {@link LogCompactor} if enabled in the global configuration.
+     * @param listener where to report how much the text shrank, or {@code null}
+     */
+    private String prepare(GlobalConfigurationImpl config, TaskListener listener, String errorText) {
+        String text = errorText;
+        if (config.isCompactErrorLogs()) {
+            long start = System.nanoTime();
+            LogCompactor.Result compacted = new LogCompactor().compact(errorText);
+            ExplanationMetrics.get().recordStage(ExplanationMetrics.Stage.COMPACT, System.nanoTime() - start);
+            String message = String.format("Compacted error logs from %,d to %,d characters (%.1fx smaller)",
+                    compacted.getOriginalLength(), compacted.getText().length(), compacted.getRatio());
+            LOGGER.fine(message);
+            if (listener != null && compacted.getRatio() >= 1.1) {
+                listener.getLogger().println(message);
             }
+            text = compacted.getText();
         }
+        return text;
+    }
 
-        return errorLogs.toString();
+    /**
+     * Explain prepared error text, in parts with a {@link MapReduceExplainer} if it is over the
+     * prompt budget and map-reduce is enabled.
+     * @param listener where to report the latency of each stage, or {@code null}
+     */
+    private CompletableFuture<Explanation> explain(GlobalConfigurationImpl config, AIService aiService, String text,
+                                                   Run<?, ?> run, TaskListener listener) {
+        if (!isMapReduce(config, aiService, text)) {
+            BaseAIService.Prompt prompt = aiService.preparePrompt(text);
+            CompletableFuture<AIService.Answer> explanation = aiService.answerAsync(text, prompt, run);
+            return Futures.cancelling(explanation.thenApply(result -> new Explanation(result, prompt.tokens)),
+                    explanation);
+        }
+        String known = aiService.knownExplanation(text);
+        if (known != null) {
+            return CompletableFuture.completedFuture(new Explanation(known, 0));
+        }
+        // The reduce call answers last, so its provider is the one recorded
+        AtomicReference<AIProvider> provider = new AtomicReference<>();
+        MapReduceExplainer mapReduce = new MapReduceExplainer(
+                prompt -> aiService.completeAsync(prompt, run, provider::set), aiService::failureMessage,
+                aiService.getTokenEstimator(), config.getMapReduceChunkTokens(), config.getMapReduceMaxChunks(),
+                config.getMaxPromptTokens(), System::currentTimeMillis);
+        CompletableFuture<String> explanation = mapReduce.explain(text);
+        return Futures.cancelling(explanation.thenApply(result -> {
+            if (listener != null) {
+                listener.getLogger().println(mapReduce.describe());
+            }
+            return new Explanation(result, (int) Math.min(Integer.MAX_VALUE, mapReduce.getInputTokens()),
+                    provider.get());
+        }), explanation);
+    }
+
+    /**
+     * Whether text is explained in parts: it does not fit one prompt, or one chunk if prompts are unlimited.
+     */
+    private static boolean isMapReduce(GlobalConfigurationImpl config, AIService aiService, String text) {
+        if (config.getMapReduceMaxChunks() < 2) {
+            return false;
+        }
+        int limit = config.getMaxPromptTokens() > 0 ? config.getMaxPromptTokens() : config.getMapReduceChunkTokens();
+        return aiService.getTokenEstimator().estimate(text) > limit;
     }
 
     /**
@@ -79,37 +201,155 @@ public class ErrorExplainer {
      * Used for console output error explanation.
      */
     public String explainErrorText(String errorText, Run<?, ?> run) {
-        
         try {
-            GlobalConfigurationImpl config = GlobalConfigurationImpl.get();
+            return explainErrorTextAsync(errorText, run).get().getText();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Failed to explain error: interrupted";
+        } catch (ExecutionException e) {
+            LOGGER.severe("Failed to explain error text: " + e.getCause().getMessage());
+            return "Failed to explain error: " + e.getCause().getMessage();
+        }
+    }
 
-            if (!config.isEnableExplanation()) {
-                LOGGER.warning("AI error explanation is disabled in global configuration");
-                return "AI error explanation is disabled in global configuration.";
-            }
+    /**
+     * Explains error text directly without blocking while the AI provider answers.
+     * @return a future completed with the explanation or with a message describing why there is none
+     */
+    public CompletableFuture<Explanation> explainErrorTextAsync(String errorText, Run<?, ?> run) {
+        return explainErrorTextAsync(errorText, run, false);
+    }
 
-            if (config.getApiKey() == null || StringUtils.isBlank(config.getApiKey().getPlainText())) {
-                LOGGER.warning("API key is not configured");
-                return "ERROR: API key is not configured. Please configure it in Jenkins global settings.";
-            }
+    /**
+     * Explains error text directly without blocking while the AI provider answers.
+     * @param forceNew whether to ask the provider even if the explanation cache has an answer
+     * @return a future completed with the explanation or with a message describing why there is none
+     */
+    public CompletableFuture<Explanation> explainErrorTextAsync(String errorText, Run<?, ?> run, boolean forceNew) {
+        
+        try {
+            GlobalConfigurationImpl config = GlobalConfigurationImpl.get();
 
-            if (StringUtils.isBlank(errorText)) {
-                LOGGER.warning("No error text provided");
-                return "No error text provided to explain.";
+            String problem = checkExplainable(config, errorText);
+            if (problem != null) {
+                return CompletableFuture.completedFuture(new Explanation(problem, 0));
             }
             
             // Get AI explanation
-            AIService aiService = new AIService(config);
-            String explanation = aiService.explainError(errorText);
+            AIService aiService = new AIService(config, !forceNew);
+            return explain(config, aiService, prepare(config, null, errorText), run, null)
+                    .thenApply(explanation -> {
+                String text = explanation.getText();
+                LOGGER.fine("Explanation length: " + (text != null ? text.length() : 0));
+                return explanation;
+            });
+
+        } catch (Exception e) {
+            LOGGER.severe("Failed to explain error text: " + e.getMessage());
+            e.printStackTrace();
+            return CompletableFuture.completedFuture(new Explanation("Failed to explain error: " + e.getMessage(), 0));
+        }
+    }
+
+    /**
+     * Explains error text directly, handing partial text to {@code onText} as the provider streams it.
+     * Messages explaining why no request was made are returned through the future only.
+     * @param forceNew whether to ask the provider even if the explanation cache has an answer
+     * @return a future completed with the full explanation or with a message describing why there is none
+     */
+    public CompletableFuture<Explanation> explainErrorTextStreaming(String errorText, Run<?, ?> run,
+                                                                    boolean forceNew, Consumer<String> onText) {
+        try {
+            GlobalConfigurationImpl config = GlobalConfigurationImpl.get();
 
-            LOGGER.fine("Explanation length: " + (explanation != null ? explanation.length() : 0));
+            String problem = checkExplainable(config, errorText);
+            if (problem != null) {
+                return CompletableFuture.completedFuture(new Explanation(problem, 0));
+            }
 
-            return explanation;
+            AIService aiService = new AIService(config, !forceNew);
+            String text = prepare(config, null, errorText);
+            if (isMapReduce(config, aiService, text)) {
+                // Parts are merged at the end, so there is nothing to stream before the full answer
+                CompletableFuture<Explanation> explanation = explain(config, aiService, text, run, null);
+                return Futures.cancelling(explanation.thenApply(result -> {
+                    onText.accept(result.getText());
+                    return result;
+                }), explanation);
+            }
+            BaseAIService.Prompt prompt = aiService.preparePrompt(text);
+            CompletableFuture<AIService.Answer> explanation = aiService.answerStreaming(text, prompt, run, onText);
+            return Futures.cancelling(explanation.thenApply(result -> new Explanation(result, prompt.tokens)),
+                    explanation);
 
         } catch (Exception e) {
             LOGGER.severe("Failed to explain error text: " + e.getMessage());
-            e.printStackTrace();
-            return "Failed to explain error: " + e.getMessage();
+            return CompletableFuture.completedFuture(new Explanation("Failed to explain error: " + e.getMessage(), 0));
+        }
+    }
+
+    /**
+     * Check whether error text can be sent for explanation.
+     * @return a message describing the problem, or {@code null} if the text can be explained
+     */
+    private String checkExplainable(GlobalConfigurationImpl config, String errorText) {
+        if (!config.isEnableExplanation()) {
+            LOGGER.warning("AI error explanation is disabled in global configuration");
+            return "AI error explanation is disabled in global configuration.";
+        }
+
+        if (config.getApiKey() == null || StringUtils.isBlank(config.getApiKey().getPlainText())) {
+            LOGGER.warning("API key is not configured");
+            return "ERROR: API key is not configured. Please configure it in Jenkins global settings.";
+        }
+
+        if (StringUtils.isBlank(errorText)) {
+            LOGGER.warning("No error text provided");
+            return "No error text provided to explain.";
+        }
+        return null;
+    }
+
+    /**
+     * An explanation, or a message describing why there is none, the estimated input tokens
+     * of the requests made for it and the provider that answered.
+     */
+    public static final class Explanation {
+        private final String text;
+        private final int estimatedTokens;
+        private final AIProvider provider;
+
+        Explanation(String text, int estimatedTokens) {
+            this(text, estimatedTokens, null);
+        }
+
+        Explanation(AIService.Answer answer, int estimatedTokens) {
+            this(answer.text, estimatedTokens, answer.provider);
+        }
+
+        Explanation(String text, int estimatedTokens, AIProvider provider) {
+            this.text = text;
+            this.estimatedTokens = estimatedTokens;
+            this.provider = provider;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return the number of tokens, {@code 0} if no request was prepared
+         */
+        public int getEstimatedTokens() {
+            return estimatedTokens;
+        }
+
+        /**
+         * @return the provider that answered, possibly a fallback of the configured one, or
+         *         {@code null} if none did
+         */
+        public AIProvider getProvider() {
+            return provider;
         }
     }
 }
@@ -1,22 +1,84 @@
 package io.jenkins.plugins.explain_error;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import hudson.model.Run;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import jenkins.model.RunAction2;
+import jenkins.util.Timer;
 
 /**
  * Build action to store and display error explanations.
+ * The explanation and the error logs it was made from are kept in a compressed side file in
+ * the build directory rather than in {@code build.xml}, so loading a build only reads a small
+ * header. The text is read when it is first needed and held through a soft reference.
  */
 public class ErrorExplanationAction implements RunAction2 {
 
-    private final String explanation;
-    private final String originalErrorLogs;
+    private static final Logger LOGGER = Logger.getLogger(ErrorExplanationAction.class.getName());
+
+    static final String FILE_NAME = "explain-error.json.gz";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** Stored in build.xml by older versions, or if the side file could not be written. */
+    private String explanation;
+    private String originalErrorLogs;
     private final long timestamp;
+    /** Length of the explanation, {@code -1} if there is none. */
+    private int explanationLength;
+    /** Length of the error logs, {@code -1} if there are none. */
+    private int originalErrorLogsLength;
+    private boolean validExplanation;
+    /** SHA-256 of the side file content, {@code null} if there is no side file. */
+    private String sha256;
+    private String provider;
+    /** Estimated input tokens of the request, {@code 0} if unknown. */
+    private int estimatedTokens;
     private transient Run<?, ?> run;
+    /** The text until it has been written to the side file. */
+    private transient Payload unsaved;
+    private transient volatile SoftReference<Payload> loaded;
 
     public ErrorExplanationAction(String explanation, String originalErrorLogs) {
-        this.explanation = explanation;
-        this.originalErrorLogs = originalErrorLogs;
+        this(explanation, originalErrorLogs, null);
+    }
+
+    /**
+     * @param explanation the explanation
+     * @param originalErrorLogs the error logs the explanation was made from
+     * @param provider the AI provider that made the explanation, or {@code null} if unknown
+     */
+    public ErrorExplanationAction(String explanation, String originalErrorLogs, AIProvider provider) {
+        this(explanation, originalErrorLogs, provider, 0);
+    }
+
+    /**
+     * @param explanation the explanation
+     * @param originalErrorLogs the error logs the explanation was made from
+     * @param provider the AI provider that made the explanation, or {@code null} if unknown
+     * @param estimatedTokens the estimated input tokens of the request, {@code 0} if unknown
+     */
+    public ErrorExplanationAction(String explanation, String originalErrorLogs, AIProvider provider,
+                                  int estimatedTokens) {
         this.timestamp = System.currentTimeMillis();
+        this.provider = provider != null ? provider.name() : null;
+        this.estimatedTokens = Math.max(0, estimatedTokens);
+        setPayload(new Payload(explanation, originalErrorLogs));
     }
 
     @Override
@@ -35,11 +97,11 @@ public class ErrorExplanationAction implements RunAction2 {
     }
 
     public String getExplanation() {
-        return explanation;
+        return explanationLength < 0 ? null : payload().explanation;
     }
 
     public String getOriginalErrorLogs() {
-        return originalErrorLogs;
+        return originalErrorLogsLength < 0 ? null : payload().originalErrorLogs;
     }
 
     public long getTimestamp() {
@@ -50,14 +112,71 @@ public class ErrorExplanationAction implements RunAction2 {
         return new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new java.util.Date(timestamp));
     }
 
+    /**
+     * Get the length of the explanation without reading it.
+     * @return the number of characters, {@code -1} if there is no explanation
+     */
+    public int getExplanationLength() {
+        return explanationLength;
+    }
+
+    /**
+     * Get the length of the error logs without reading them.
+     * @return the number of characters, {@code -1} if there are no error logs
+     */
+    public int getOriginalErrorLogsLength() {
+        return originalErrorLogsLength;
+    }
+
+    /**
+     * Get the name of the AI provider that made the explanation.
+     * @return the provider name, or {@code null} if unknown
+     */
+    public String getProvider() {
+        return provider;
+    }
+
+    /**
+     * Get the estimated input tokens of the request made for the explanation.
+     * @return the number of tokens, {@code 0} if unknown
+     */
+    public int getEstimatedTokens() {
+        return estimatedTokens;
+    }
+
     @Override
     public void onAttached(Run<?, ?> r) {
         this.run = r;
+        store();
     }
 
     @Override
     public void onLoad(Run<?, ?> r) {
         this.run = r;
+        synchronized (this) {
+            if (explanation == null && originalErrorLogs == null) {
+                return;
+            }
+            // Saved inline by an older version, or migrated before without saving the build
+            Payload payload = new Payload(explanation, originalErrorLogs);
+            setPayload(payload);
+            if (!adopt(payload)) {
+                store();
+            }
+            if (unsaved != null) {
+                // The side file could not be written, the text stays in build.xml
+                return;
+            }
+        }
+        // Drop the text from build.xml once; saving while the build is being loaded could deadlock
+        Timer.get().execute(() -> {
+            try {
+                r.save();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to save " + r + " after moving its error explanation to "
+                        + FILE_NAME, e);
+            }
+        });
     }
 
     /**
@@ -73,6 +192,153 @@ public class ErrorExplanationAction implements RunAction2 {
      * @return true if explanation is not null, not empty, and not just whitespace
      */
     public boolean hasValidExplanation() {
-        return explanation != null && !explanation.trim().isEmpty();
+        return validExplanation;
+    }
+
+    private synchronized void setPayload(Payload payload) {
+        explanationLength = payload.explanation != null ? payload.explanation.length() : -1;
+        originalErrorLogsLength = payload.originalErrorLogs != null ? payload.originalErrorLogs.length() : -1;
+        validExplanation = payload.explanation != null && !payload.explanation.trim().isEmpty();
+        unsaved = payload;
+    }
+
+    /**
+     * Write the text to the side file of the run; if that fails it stays inline in build.xml.
+     */
+    private synchronized void store() {
+        Payload payload = unsaved;
+        if (payload == null || run == null) {
+            return;
+        }
+        Path file = getFile();
+        long start = System.nanoTime();
+        try {
+            sha256 = write(file, payload);
+            ExplanationMetrics.get().recordStage(ExplanationMetrics.Stage.PERSIST, System.nanoTime() - start);
+            explanation = null;
+            originalErrorLogs = null;
+            unsaved = null;
+            loaded = new SoftReference<>(payload);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to write error explanation to " + file + ", keeping it in build.xml", e);
+            explanation = payload.explanation;
+            originalErrorLogs = payload.originalErrorLogs;
+        }
+    }
+
+    /**
+     * Use the side file instead of writing it again if it already holds the text.
+     * @return whether the side file holds the text
+     */
+    private synchronized boolean adopt(Payload payload) {
+        Path file = getFile();
+        if (!Files.exists(file)) {
+            return false;
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            String hash = LogFingerprint.sha256(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            if (!hash.equals(LogFingerprint.sha256(new String(toJson(payload), StandardCharsets.UTF_8)))) {
+                return false;
+            }
+            sha256 = hash;
+        } catch (IOException e) {
+            return false;
+        }
+        explanation = null;
+        originalErrorLogs = null;
+        unsaved = null;
+        loaded = new SoftReference<>(payload);
+        return true;
+    }
+
+    private Payload payload() {
+        SoftReference<Payload> reference = loaded;
+        Payload payload = reference != null ? reference.get() : null;
+        if (payload != null) {
+            return payload;
+        }
+        synchronized (this) {
+            if (unsaved != null) {
+                return unsaved;
+            }
+            if (sha256 == null || run == null) {
+                return new Payload(explanation, originalErrorLogs);
+            }
+            reference = loaded;
+            payload = reference != null ? reference.get() : null;
+            if (payload == null) {
+                payload = read(getFile(), sha256);
+                loaded = new SoftReference<>(payload);
+            }
+            return payload;
+        }
+    }
+
+    private Path getFile() {
+        return run.getRootDir().toPath().resolve(FILE_NAME);
+    }
+
+    private static byte[] toJson(Payload payload) throws IOException {
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("explanation", payload.explanation);
+        node.put("originalErrorLogs", payload.originalErrorLogs);
+        return MAPPER.writeValueAsBytes(node);
+    }
+
+    private static String write(Path file, Payload payload) throws IOException {
+        byte[] json = toJson(payload);
+
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), FILE_NAME, ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                out.write(json);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return LogFingerprint.sha256(new String(json, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read the side file; a missing, unreadable or modified file yields no text rather than an error
+     * on the build page.
+     */
+    private static Payload read(Path file, String expectedSha256) {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            byte[] json = in.readAllBytes();
+            if (!LogFingerprint.sha256(new String(json, StandardCharsets.UTF_8)).equals(expectedSha256)) {
+                LOGGER.warning("Error explanation in " + file + " does not match this build, ignoring it");
+                return new Payload(null, null);
+            }
+            JsonNode node = MAPPER.readTree(json);
+            return new Payload(text(node, "explanation"), text(node, "originalErrorLogs"));
+        } catch (NoSuchFileException e) {
+            LOGGER.warning("Error explanation file " + file + " is missing");
+            return new Payload(null, null);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to read error explanation from " + file, e);
+            return new Payload(null, null);
+        }
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value != null && !value.isNull() ? value.asText() : null;
+    }
+
+    private static final class Payload {
+        private final String explanation;
+        private final String originalErrorLogs;
+
+        private Payload(String explanation, String originalErrorLogs) {
+            this.explanation = explanation;
+            this.originalErrorLogs = originalErrorLogs;
+        }
     }
 }
@@ -0,0 +1,218 @@
+package io.jenkins.plugins.explain_error;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Library of common error signatures, such as compiler errors, out of memory errors, test
+ * failures and package manager errors, matched against a log line in a single pass.
+ * The literals of all signatures are found with one {@link AhoCorasick} automaton; a signature's
+ * regular expression, if it has one, only runs on lines containing one of its literals, so the
+ * cost of a line that matches nothing does not grow with the number of signatures.
+ */
+public final class ErrorSignatures {
+
+    private static final int PATTERN_CACHE_SIZE = 64;
+
+    private static final Map<String, Pattern> PATTERNS = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+            return size() > PATTERN_CACHE_SIZE;
+        }
+    };
+
+    private static final ErrorSignatures BUILT_IN = new ErrorSignatures(List.of(
+            // Build tools
+            new Signature("maven-error", null, "[error]"),
+            new Signature("build-failure", null, "build failure", "build failed"),
+            new Signature("gradle-failure", null, "what went wrong:", "execution failed for task"),
+            new Signature("jenkins-error", "^(?:\\[[^\\]]*\\]\\s*)?ERROR:", "error:"),
+            new Signature("exit-code", "(?i)(?:exit code|exit status|exited with code|exited with) [1-9]",
+                    "exit code", "exit status", "exited with"),
+            new Signature("make-error", "make(?:\\[\\d+\\])?: \\*\\*\\*", "make: ***", "make["),
+            // Compilers
+            new Signature("compiler-error",
+                    "(?i)\\.(?:java|kt|scala|groovy|c|cc|cpp|cxx|h|hpp|m|cs|go|rs|swift|ts|tsx)"
+                            + ":\\[?\\d+(?:[:,]\\d+)?\\]?:?\\s*(?:fatal )?error:",
+                    "error:"),
+            new Signature("compiler-error-code", "(?:error\\[E\\d{4}\\]|error TS\\d+|error CS\\d{4}|error C\\d{4})",
+                    "error[e", "error ts", "error cs", "error c"),
+            new Signature("kotlin-error", "^e: .*\\.kts?:\\d+", "e: "),
+            new Signature("javac-summary", "^\\d+ errors?$", " error"),
+            new Signature("linker-error", null, "undefined reference to", "ld returned", "linker command failed",
+                    "unresolved external symbol"),
+            new Signature("cannot-find-symbol", null, "cannot find symbol", "unresolved reference",
+                    "package does not exist", "cannot resolve symbol"),
+            // Runtime failures
+            new Signature("exception",
+                    "(?:^|[\\s:(])(?:[a-zA-Z_$][\\w$]*\\.)+[A-Z][\\w$]*(?:Exception|Error)\\b",
+                    "exception", "error:"),
+            new Signature("caused-by", null, "caused by:"),
+            new Signature("out-of-memory", null, "outofmemoryerror", "java heap space", "gc overhead limit exceeded",
+                    "out of memory", "cannot allocate memory", "killed process", "oomkilled"),
+            new Signature("stack-overflow", null, "stackoverflowerror"),
+            new Signature("crash", null, "segmentation fault", "core dumped", "sigsegv", "sigabrt", "sigkill",
+                    "fatal error", "panic:"),
+            new Signature("python-traceback", null, "traceback (most recent call last)", "modulenotfounderror",
+                    "importerror"),
+            // Tests
+            new Signature("test-failure", null, "<<< failure!", "<<< error!", "--- fail:", "tests in error:",
+                    "failed tests:"),
+            new Signature("test-failure-count", "(?:Failures|Errors): [1-9]", "failures: ", "errors: "),
+            new Signature("test-failed", "(?i)(?:\\b[1-9]\\d* (?:tests? )?failed|\\btests? failed|^FAILED\\b)",
+                    "failed"),
+            new Signature("assertion-failure", null, "assertionerror", "assertion failed", "comparisonfailure",
+                    "but was:"),
+            // Package managers and containers
+            new Signature("npm-error", null, "npm err!", "npm error", "error command failed", "err_pnpm_"),
+            new Signature("dependency-resolution", null, "could not resolve dependencies", "could not find artifact",
+                    "failed to collect dependencies", "could not resolve all", "unable to resolve dependency",
+                    "no matching distribution found", "could not find a version that satisfies"),
+            new Signature("docker-error", null, "error response from daemon", "failed to solve",
+                    "pull access denied", "manifest unknown"),
+            // Environment
+            new Signature("command-not-found", null, "command not found", "is not recognized as an internal",
+                    "no such file or directory", "permission denied"),
+            new Signature("network-error", null, "connection refused", "connection timed out", "connection reset",
+                    "could not resolve host", "name or service not known", "temporary failure in name resolution",
+                    "ssl handshake", "handshake_failure"),
+            new Signature("disk-full", null, "no space left on device", "disk quota exceeded"),
+            new Signature("timeout", null, "timed out", "timeout has been exceeded", "deadline exceeded"),
+            new Signature("git-error", "^\\s*fatal: ", "fatal: ")));
+
+    private final List<Signature> signatures;
+    private final AhoCorasick automaton;
+    /** Signatures to confirm for each literal id. */
+    private final Signature[][] candidates;
+
+    ErrorSignatures(List<Signature> signatures) {
+        this.signatures = Collections.unmodifiableList(new ArrayList<>(signatures));
+        Map<String, List<Signature>> byLiteral = new LinkedHashMap<>();
+        for (Signature signature : signatures) {
+            for (String literal : signature.literals) {
+                byLiteral.computeIfAbsent(literal.toLowerCase(Locale.ROOT), l -> new ArrayList<>())
+                        .add(signature);
+            }
+        }
+        this.automaton = new AhoCorasick(new ArrayList<>(byLiteral.keySet()));
+        this.candidates = new Signature[byLiteral.size()][];
+        int id = 0;
+        for (List<Signature> matching : byLiteral.values()) {
+            candidates[id++] = matching.toArray(new Signature[0]);
+        }
+    }
+
+    /**
+     * Get the built-in error signatures.
+     * @return the shared ErrorSignatures instance
+     */
+    public static ErrorSignatures builtIn() {
+        return BUILT_IN;
+    }
+
+    /**
+     * Find the first signature matching a line.
+     * @param line the log line
+     * @return the matching signature, or {@code null} if none matches
+     */
+    public Signature match(CharSequence line) {
+        Signature[] matched = new Signature[1];
+        automaton.scan(line, id -> {
+            for (Signature signature : candidates[id]) {
+                if (signature.confirm(line)) {
+                    matched[0] = signature;
+                    return true;
+                }
+            }
+            return false;
+        });
+        return matched[0];
+    }
+
+    /**
+     * Check whether any signature matches a line.
+     */
+    public boolean matches(CharSequence line) {
+        return automaton.scan(line, id -> {
+            for (Signature signature : candidates[id]) {
+                if (signature.confirm(line)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    public List<Signature> getSignatures() {
+        return signatures;
+    }
+
+    /**
+     * Compile a regular expression, reusing the compiled pattern for recently used expressions.
+     * @param regex the regular expression
+     * @param flags the match flags, as for {@link Pattern#compile(String, int)}
+     * @return the compiled pattern
+     * @throws java.util.regex.PatternSyntaxException if the expression is invalid
+     */
+    public static Pattern compile(String regex, int flags) {
+        String key = flags + ":" + regex;
+        synchronized (PATTERNS) {
+            Pattern pattern = PATTERNS.get(key);
+            if (pattern != null) {
+                return pattern;
+            }
+        }
+        Pattern pattern = Pattern.compile(regex, flags);
+        synchronized (PATTERNS) {
+            PATTERNS.put(key, pattern);
+        }
+        return pattern;
+    }
+
+    /**
+     * An error signature: literals that must occur in a matching line, case insensitive, and an
+     * optional regular expression confirming the match.
+     */
+    public static final class Signature {
+        private final String name;
+        private final Pattern pattern;
+        private final List<String> literals;
+
+        /**
+         * @param name the name of the signature
+         * @param regex the regular expression a line containing a literal must also match, or
+         *        {@code null} if a literal is enough
+         * @param literals the literals, at least one of which occurs in every matching line
+         */
+        public Signature(String name, String regex, String... literals) {
+            if (literals.length == 0) {
+                throw new IllegalArgumentException("Signature " + name + " has no literals");
+            }
+            this.name = name;
+            this.pattern = regex != null ? Pattern.compile(regex) : null;
+            this.literals = List.of(literals);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<String> getLiterals() {
+            return literals;
+        }
+
+        private boolean confirm(CharSequence line) {
+            return pattern == null || pattern.matcher(line).find();
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package io.jenkins.plugins.explain_error;
+
+import hudson.Extension;
+import hudson.model.RootAction;
+import java.io.IOException;
+import java.io.PrintWriter;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+import org.kohsuke.stapler.verb.GET;
+
+/**
+ * Root action of the plugin, serving endpoints that are not tied to a build, such as the
+ * Prometheus metrics at {@code /explain-error/metrics}.
+ */
+@Extension
+public class ExplainErrorRootAction implements RootAction {
+
+    @Override
+    public String getIconFileName() {
+        return null; // Not shown in the sidebar
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Explain Error";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "explain-error";
+    }
+
+    /**
+     * Serve the {@link ExplanationMetrics} in the Prometheus text exposition format.
+     * Scraping requires the Administer permission, e.g. with an API token.
+     */
+    @GET
+    public void doMetrics(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+
+        rsp.setContentType("text/plain; version=0.0.4; charset=utf-8");
+        rsp.setHeader("Cache-Control", "no-cache");
+        PrintWriter writer = rsp.getWriter();
+        writer.write(ExplanationMetrics.get().scrape());
+        writer.flush();
+    }
+}
@@ -3,12 +3,22 @@ package io.jenkins.plugins.explain_error;
 import hudson.Extension;
 import hudson.model.Run;
 import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.IOException;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
 import org.jenkinsci.plugins.workflow.steps.Step;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
 import org.jenkinsci.plugins.workflow.steps.StepExecution;
-import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 
@@ -17,8 +27,18 @@ import org.kohsuke.stapler.DataBoundSetter;
  */
 public class ExplainErrorStep extends Step {
 
+    private static final Logger LOGGER = Logger.getLogger(ExplainErrorStep.class.getName());
+
+    /** Threads reading build logs for running steps; provider calls do not hold them. */
+    static final int LOG_READER_THREADS = 4;
+
+    private static final ExecutorService LOG_READERS = createLogReaders();
+
     private String logPattern;
     private int maxLines;
+    private int contextLines;
+    private boolean errorSignatures;
+    private int timeout;
 
     @DataBoundConstructor
     public ExplainErrorStep() {
@@ -44,11 +64,50 @@ public class ExplainErrorStep extends Step {
         this.maxLines = maxLines > 0 ? maxLines : 100;
     }
 
+    public int getContextLines() {
+        return contextLines;
+    }
+
+    @DataBoundSetter
+    public void setContextLines(int contextLines) {
+        this.contextLines = Math.max(0, contextLines);
+    }
+
+    public boolean isErrorSignatures() {
+        return errorSignatures;
+    }
+
+    @DataBoundSetter
+    public void setErrorSignatures(boolean errorSignatures) {
+        this.errorSignatures = errorSignatures;
+    }
+
+    /**
+     * Get how long the step waits for an explanation.
+     * @return the timeout in seconds, 0 waits as long as the provider takes
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+
+    @DataBoundSetter
+    public void setTimeout(int timeout) {
+        this.timeout = Math.max(0, timeout);
+    }
+
     @Override
     public StepExecution start(StepContext context) throws Exception {
         return new ExplainErrorStepExecution(context, this);
     }
 
+    private static ExecutorService createLogReaders() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(LOG_READER_THREADS, LOG_READER_THREADS,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "Explain Error log reader"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     @Extension
     public static class DescriptorImpl extends StepDescriptor {
 
@@ -68,10 +127,20 @@ public class ExplainErrorStep extends Step {
         }
     }
 
-    private static class ExplainErrorStepExecution extends SynchronousNonBlockingStepExecution<Void> {
+    /**
+     * Runs the explanation without holding a thread while the AI provider answers. The log is
+     * read on a small shared pool, the provider call is asynchronous, and the step context is
+     * completed from the call's callback.
+     */
+    private static class ExplainErrorStepExecution extends StepExecution {
 
         private static final long serialVersionUID = 1L;
+
         private final transient ExplainErrorStep step;
+        /** Completed when the explanation is stored, or failed on timeout. */
+        private transient volatile CompletableFuture<Void> explanation;
+        /** The explanation call, cancelled when the step is stopped or times out. */
+        private transient volatile CompletableFuture<Void> call;
 
         ExplainErrorStepExecution(StepContext context, ExplainErrorStep step) {
             super(context);
@@ -79,19 +148,107 @@ public class ExplainErrorStep extends Step {
         }
 
         @Override
-        protected Void run() throws Exception {
+        public boolean start() throws Exception {
             Run<?, ?> run = getContext().get(Run.class);
             TaskListener listener = getContext().get(TaskListener.class);
 
-            // Add console explain error action to build (if not already present)
-            if (run.getAction(ConsoleExplainErrorAction.class) == null) {
-                run.addOrReplaceAction(new ConsoleExplainErrorAction(run));
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            explanation = result;
+            if (step.getTimeout() > 0) {
+                result.orTimeout(step.getTimeout(), TimeUnit.SECONDS);
+            }
+            result.whenComplete((ignored, failure) -> finish(listener, failure));
+
+            // Reading a large log takes a while; keep it off the pipeline's thread
+            LOG_READERS.execute(() -> {
+                if (result.isDone()) {
+                    // Stopped or timed out before the log was read
+                    return;
+                }
+                try {
+                    // Add console explain error action to build (if not already present)
+                    if (run.getAction(ConsoleExplainErrorAction.class) == null) {
+                        run.addOrReplaceAction(new ConsoleExplainErrorAction(run));
+                    }
+
+                    ErrorExplainer explainer = new ErrorExplainer();
+                    CompletableFuture<Void> pending = explainer.explainErrorAsync(run, listener,
+                            step.getLogPattern(), step.getMaxLines(), step.getContextLines(),
+                            step.isErrorSignatures());
+                    call = pending;
+                    if (result.isDone()) {
+                        pending.cancel(true);
+                        return;
+                    }
+                    pending.whenComplete((ignored, failure) -> {
+                        if (failure != null) {
+                            result.completeExceptionally(failure);
+                        } else {
+                            result.complete(null);
+                        }
+                    });
+                } catch (Throwable t) {
+                    // Otherwise the step would wait forever, or until its timeout
+                    result.completeExceptionally(t);
+                }
+            });
+            return false;
+        }
+
+        private void finish(TaskListener listener, Throwable failure) {
+            if (failure == null) {
+                getContext().onSuccess(null);
+                return;
+            }
+            CompletableFuture<Void> pending = call;
+            if (pending != null) {
+                pending.cancel(true);
+            }
+            if (explanation.isCancelled()) {
+                // Stopped, the context has already been failed with the cause
+                return;
+            }
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause() : failure;
+            if (cause instanceof TimeoutException) {
+                listener.getLogger().println("Failed to explain error: no answer within " + step.getTimeout()
+                        + " seconds");
+            } else {
+                LOGGER.warning("Failed to explain error: " + cause.getMessage());
+                listener.getLogger().println("Failed to explain error: " + cause.getMessage());
+            }
+            // Like other explanation failures, this does not fail the build
+            getContext().onSuccess(null);
+        }
+
+        @Override
+        public void stop(Throwable cause) throws Exception {
+            CompletableFuture<Void> pending = explanation;
+            if (pending != null) {
+                pending.cancel(true);
             }
+            getContext().onFailure(cause);
+        }
 
-            ErrorExplainer explainer = new ErrorExplainer();
-            explainer.explainError(run, listener, step.getLogPattern(), step.getMaxLines());
+        @Override
+        public void onResume() {
+            // The provider call did not survive the restart; the explanation can be requested from the console page
+            try {
+                getContext().get(TaskListener.class).getLogger()
+                        .println("Failed to explain error: interrupted by a restart of Jenkins");
+            } catch (IOException | InterruptedException e) {
+                LOGGER.fine("Could not report interrupted explanation: " + e.getMessage());
+            }
+            getContext().onSuccess(null);
+        }
 
-            return null;
+        @Override
+        public String getStatus() {
+            CompletableFuture<Void> pending = explanation;
+            if (pending == null) {
+                return "starting";
+            }
+            return call == null ? "reading the build log" : "waiting for the AI provider";
         }
     }
 }
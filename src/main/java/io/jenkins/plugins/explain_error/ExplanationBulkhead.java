@@ -0,0 +1,351 @@
+package io.jenkins.plugins.explain_error;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Limits how many AI provider calls run at the same time.
+ * Calls beyond the limit wait in a bounded queue and are rejected once the queue is full. With
+ * fair queueing, waiting calls are dispatched round robin across jobs, so a mass failure in one
+ * job cannot starve explanations requested for other jobs.
+ */
+@Extension
+public class ExplanationBulkhead {
+
+    private static final Logger LOGGER = Logger.getLogger(ExplanationBulkhead.class.getName());
+
+    /** Queue used for calls that are not associated with a job. */
+    static final String GLOBAL_QUEUE = "";
+
+    private final IntSupplier maxConcurrent;
+    private final IntSupplier maxQueued;
+    private final BooleanSupplier fair;
+    private final LongSupplier clock;
+
+    /** Waiting calls per job, in arrival order. */
+    private final Map<String, ArrayDeque<Call<?>>> queues = new HashMap<>();
+    /** Jobs with waiting calls, in dispatch order. */
+    private final ArrayDeque<String> rotation = new ArrayDeque<>();
+    private int running;
+    private int queued;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong waited = new AtomicLong();
+    private final AtomicLong totalWaitMillis = new AtomicLong();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+    /** Time each started call waited for a slot, including calls that started at once. */
+    private final ExplanationMetrics.Histogram waits = new ExplanationMetrics.Histogram();
+
+    public ExplanationBulkhead() {
+        this(() -> GlobalConfigurationImpl.get().getMaxConcurrentExplanations(),
+                () -> GlobalConfigurationImpl.get().getMaxQueuedExplanations(),
+                () -> GlobalConfigurationImpl.get().isFairQueueing(),
+                System::currentTimeMillis);
+    }
+
+    ExplanationBulkhead(IntSupplier maxConcurrent, IntSupplier maxQueued, BooleanSupplier fair, LongSupplier clock) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.fair = fair;
+        this.clock = clock;
+    }
+
+    /**
+     * Get the singleton instance of ExplanationBulkhead.
+     * @return the ExplanationBulkhead instance
+     */
+    public static ExplanationBulkhead get() {
+        return ExtensionList.lookupSingleton(ExplanationBulkhead.class);
+    }
+
+    /**
+     * Run a provider call as soon as a slot is free.
+     * @param job the full name of the job the call is made for, or {@code null}
+     * @param id identifies the call for {@link #getQueuePosition}, may be {@code null}
+     * @param call starts the provider call
+     * @return a future completed with the result of the call, or failed with a
+     *         {@link RejectedExecutionException} if the queue is full. Cancelling it while the call
+     *         is waiting removes it from the queue.
+     */
+    public <T> CompletableFuture<T> submit(String job, String id, Supplier<CompletableFuture<T>> call) {
+        Call<T> entry = new Call<>(fair.getAsBoolean() && job != null ? job : GLOBAL_QUEUE, id, call, clock.getAsLong());
+        boolean start;
+        int waiting;
+        synchronized (this) {
+            int limit = Math.max(1, maxConcurrent.getAsInt());
+            start = running < limit && queued == 0;
+            if (start) {
+                running++;
+            } else if (queued >= maxQueued.getAsInt()) {
+                rejected.incrementAndGet();
+                LOGGER.warning("Rejecting explanation request, " + queued + " requests are already queued");
+                return CompletableFuture.failedFuture(new RejectedExecutionException(
+                        "Too many explanation requests are waiting (" + queued + "). Please try again later."));
+            } else {
+                enqueue(entry);
+            }
+            waiting = queued;
+        }
+        accepted.incrementAndGet();
+        entry.result.whenComplete((result, failure) -> {
+            if (entry.result.isCancelled()) {
+                cancel(entry);
+            }
+        });
+        if (start) {
+            if (run(entry)) {
+                release();
+            }
+        } else {
+            LOGGER.fine("Queued explanation request for " + entry.queue + ", " + waiting + " waiting");
+        }
+        return entry.result;
+    }
+
+    /**
+     * Get the position of a waiting call in dispatch order.
+     * @param id the id the call was submitted with
+     * @return the 1-based position, or 0 if no call with this id is waiting
+     */
+    public synchronized int getQueuePosition(String id) {
+        if (id == null) {
+            return 0;
+        }
+        for (String queue : rotation) {
+            int index = 0;
+            for (Call<?> call : queues.get(queue)) {
+                if (id.equals(call.id)) {
+                    return positionOf(queue, index);
+                }
+                index++;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Calls are dispatched in rounds, one per job in rotation order; the call at {@code index}
+     * in its job's queue goes out in round {@code index}.
+     */
+    private int positionOf(String queue, int index) {
+        int ahead = 0;
+        boolean before = true;
+        for (String other : rotation) {
+            if (other.equals(queue)) {
+                before = false;
+            }
+            int size = queues.get(other).size();
+            ahead += Math.min(size, before ? index + 1 : index);
+        }
+        return ahead + 1;
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    public long getAccepted() {
+        return accepted.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Get the average time calls waited in the queue, counting only calls that had to wait.
+     */
+    public long getAverageWaitMillis() {
+        long count = waited.get();
+        return count == 0 ? 0 : totalWaitMillis.get() / count;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis.get();
+    }
+
+    /**
+     * Get the histogram of the time started calls waited for a slot, for metrics.
+     */
+    ExplanationMetrics.Histogram getWaits() {
+        return waits;
+    }
+
+    /**
+     * Describe how long calls waited for a free slot, for the configuration page.
+     */
+    public String getSummary() {
+        long count = waits.getCount();
+        if (count == 0) {
+            return "No requests since the last restart";
+        }
+        return String.format("%,d running and %,d waiting; %,d of %,d requests waited, %,d ms on average and "
+                + "%,d ms at most", getRunning(), getQueued(), waited.get(), count, getAverageWaitMillis(),
+                getMaxWaitMillis());
+    }
+
+    private void enqueue(Call<?> call) {
+        ArrayDeque<Call<?>> queue = queues.computeIfAbsent(call.queue, k -> new ArrayDeque<>());
+        if (queue.isEmpty()) {
+            rotation.addLast(call.queue);
+        }
+        queue.addLast(call);
+        queued++;
+    }
+
+    private Call<?> dequeue() {
+        String next = rotation.pollFirst();
+        if (next == null) {
+            return null;
+        }
+        ArrayDeque<Call<?>> queue = queues.get(next);
+        Call<?> call = queue.pollFirst();
+        if (queue.isEmpty()) {
+            queues.remove(next);
+        } else {
+            rotation.addLast(next);
+        }
+        queued--;
+        return call;
+    }
+
+    private void cancel(Call<?> call) {
+        synchronized (this) {
+            ArrayDeque<Call<?>> queue = queues.get(call.queue);
+            if (queue == null || !queue.remove(call)) {
+                // Already running, the running call is cancelled through its upstream future
+                return;
+            }
+            queued--;
+            if (queue.isEmpty()) {
+                queues.remove(call.queue);
+                rotation.remove(call.queue);
+            }
+        }
+        LOGGER.fine("Cancelled queued explanation request for " + call.queue);
+    }
+
+    /**
+     * Start a call in a slot that was taken for it.
+     * The slot is released by the call's completion if it finishes later, but calls that finished
+     * before this returns leave it to the caller, so a chain of calls that complete synchronously is
+     * handed slots in a loop instead of recursing.
+     * @return {@code true} if the call already finished and the caller must release its slot
+     */
+    private <T> boolean run(Call<T> call) {
+        if (call.result.isDone()) {
+            // Cancelled while it was being dispatched
+            return true;
+        }
+        long wait = clock.getAsLong() - call.submitted;
+        waits.observe(TimeUnit.MILLISECONDS.toNanos(Math.max(0, wait)));
+        if (wait > 0) {
+            waited.incrementAndGet();
+            totalWaitMillis.addAndGet(wait);
+            maxWaitMillis.accumulateAndGet(wait, Math::max);
+        }
+        CompletableFuture<T> upstream;
+        try {
+            upstream = call.call.get();
+        } catch (RuntimeException e) {
+            upstream = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> started = upstream;
+        call.result.whenComplete((result, failure) -> {
+            if (call.result.isCancelled()) {
+                started.cancel(true);
+            }
+        });
+        // Set by whichever comes first of the call finishing and this method returning
+        AtomicBoolean first = new AtomicBoolean();
+        started.whenComplete((result, failure) -> {
+            if (failure != null) {
+                call.result.completeExceptionally(failure);
+            } else {
+                call.result.complete(result);
+            }
+            if (!first.compareAndSet(false, true)) {
+                release();
+            }
+        });
+        return !first.compareAndSet(false, true);
+    }
+
+    private void release() {
+        // The finished call's slot is handed straight to the next waiting call
+        Call<?> next = handOver();
+        while (next != null && run(next)) {
+            next = handOver();
+        }
+    }
+
+    /**
+     * Take the next waiting call for a slot that was freed, or give the slot up if none is waiting.
+     */
+    private synchronized Call<?> handOver() {
+        Call<?> next = null;
+        // Do not hand the slot over if the limit was lowered in the meantime
+        if (running <= Math.max(1, maxConcurrent.getAsInt())) {
+            next = dequeue();
+        }
+        if (next == null) {
+            running--;
+        }
+        return next;
+    }
+
+    /**
+     * Drain calls that can start now, e.g. after the concurrency limit was raised.
+     */
+    void dispatch() {
+        while (true) {
+            Call<?> next;
+            synchronized (this) {
+                if (running >= Math.max(1, maxConcurrent.getAsInt())) {
+                    return;
+                }
+                next = dequeue();
+                if (next == null) {
+                    return;
+                }
+                running++;
+            }
+            if (run(next)) {
+                release();
+            }
+        }
+    }
+
+    private static final class Call<T> {
+        private final String queue;
+        private final String id;
+        private final Supplier<CompletableFuture<T>> call;
+        private final long submitted;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Call(String queue, String id, Supplier<CompletableFuture<T>> call, long submitted) {
+            this.queue = queue;
+            this.id = id;
+            this.call = call;
+            this.submitted = submitted;
+        }
+    }
+}
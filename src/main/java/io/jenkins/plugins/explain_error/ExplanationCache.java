@@ -0,0 +1,206 @@
+package io.jenkins.plugins.explain_error;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import jenkins.model.Jenkins;
+
+/**
+ * In-memory cache of AI explanations keyed by provider, model and the fingerprint of the
+ * error text, so the same failure seen across builds and branches is only paid for once.
+ * Entries are evicted in least-recently-used order once the configured size is reached and
+ * expire after the configured time to live.
+ * Entries are also written to a {@link PersistentExplanationStore}, which answers lookups that
+ * miss in memory, so explanations survive controller restarts.
+ */
+@Extension
+public class ExplanationCache {
+
+    private final IntSupplier maxEntries;
+    private final LongSupplier ttlMillis;
+    private final LongSupplier clock;
+    private final PersistentExplanationStore store;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public ExplanationCache() {
+        this(() -> GlobalConfigurationImpl.get().getCacheMaxEntries(),
+                ExplanationCache::configuredTtlMillis,
+                System::currentTimeMillis,
+                new PersistentExplanationStore(
+                        Jenkins.get().getRootDir().toPath().resolve("explain-error").resolve("cache"),
+                        () -> GlobalConfigurationImpl.get().getPersistentCacheMaxMegabytes() * 1024L * 1024L,
+                        ExplanationCache::configuredTtlMillis,
+                        System::currentTimeMillis));
+    }
+
+    ExplanationCache(IntSupplier maxEntries, LongSupplier ttlMillis, LongSupplier clock) {
+        this(maxEntries, ttlMillis, clock, null);
+    }
+
+    ExplanationCache(IntSupplier maxEntries, LongSupplier ttlMillis, LongSupplier clock,
+                     PersistentExplanationStore store) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.store = store;
+    }
+
+    private static long configuredTtlMillis() {
+        return TimeUnit.MINUTES.toMillis(GlobalConfigurationImpl.get().getCacheTtlMinutes());
+    }
+
+    /**
+     * Get the singleton instance of ExplanationCache.
+     * @return the ExplanationCache instance
+     */
+    public static ExplanationCache get() {
+        return ExtensionList.lookupSingleton(ExplanationCache.class);
+    }
+
+    /**
+     * Build the cache key for an explanation request.
+     * @param provider the AI provider answering the request
+     * @param model the model answering the request
+     * @param errorText the error text to explain
+     * @return the cache key
+     */
+    public static String keyFor(AIProvider provider, String model, String errorText) {
+        return provider.name() + "/" + model + "/" + LogFingerprint.of(errorText);
+    }
+
+    /**
+     * Look up a cached explanation, falling back to the persistent store on a memory miss.
+     * The store is read outside the lock of the in-memory cache.
+     * @return the explanation, or {@code null} if there is no live entry for the key
+     */
+    public String get(String key) {
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && isExpired(entry)) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+                entry = null;
+            }
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry.explanation;
+            }
+        }
+        if (store != null && maxEntries.getAsInt() > 0) {
+            PersistentExplanationStore.Record record = store.get(key);
+            if (record != null) {
+                synchronized (this) {
+                    // A newer explanation may have been put while the store was read
+                    if (!entries.containsKey(key)) {
+                        putInMemory(key, new Entry(record.explanation, record.created));
+                    }
+                }
+                diskHits.incrementAndGet();
+                hits.incrementAndGet();
+                return record.explanation;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Store an explanation, evicting the least recently used entries if the cache is full.
+     * The explanation is written to the persistent store outside the lock of the in-memory cache.
+     */
+    public void put(String key, String explanation) {
+        if (maxEntries.getAsInt() <= 0) {
+            return;
+        }
+        synchronized (this) {
+            putInMemory(key, new Entry(explanation, clock.getAsLong()));
+        }
+        if (store != null) {
+            store.put(key, explanation);
+        }
+    }
+
+    private void putInMemory(String key, Entry entry) {
+        int limit = maxEntries.getAsInt();
+        entries.put(key, entry);
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (entries.size() > limit && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Remove all in-memory entries. The persistent store and statistics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of hits answered from the persistent store after a memory miss.
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    /**
+     * Get the fraction of lookups answered from the cache.
+     * @return the hit rate between 0 and 1, or 0 if there were no lookups yet
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    private boolean isExpired(Entry entry) {
+        long ttl = ttlMillis.getAsLong();
+        return ttl > 0 && clock.getAsLong() - entry.created > ttl;
+    }
+
+    private static final class Entry {
+        private final String explanation;
+        private final long created;
+
+        private Entry(String explanation, long created) {
+            this.explanation = explanation;
+            this.created = created;
+        }
+    }
+}
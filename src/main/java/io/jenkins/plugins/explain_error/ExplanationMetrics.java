@@ -0,0 +1,477 @@
+package io.jenkins.plugins.explain_error;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Metrics of explanations in the Prometheus text exposition format, served by
+ * {@link ExplainErrorRootAction}: the latency of each stage of an explanation, provider
+ * requests by provider, model and outcome, estimated tokens, and the state of the cache,
+ * knowledge base, queue and rate limiter.
+ * Recording a sample only updates counters, so instrumented code paths do not contend on a lock.
+ */
+@Extension
+public class ExplanationMetrics {
+
+    /** Bucket upper bounds of latency histograms, in seconds. */
+    private static final double[] BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120};
+
+    /**
+     * Stages of an explanation.
+     */
+    public enum Stage {
+        /** Reading the error lines from the build log. */
+        EXTRACT,
+        /** Compacting the error lines with {@link LogCompactor}. */
+        COMPACT,
+        /** Fitting the logs to the budget and building the prompt and request body. */
+        PROMPT,
+        /** Waiting for the provider, including rate limit waits and retries. */
+        PROVIDER,
+        /** Reading the explanation from the response. */
+        PARSE,
+        /** Writing the explanation to the build. */
+        PERSIST;
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final Histogram[] stages = new Histogram[Stage.values().length];
+    private final Map<Labels, LongAdder> requests = new ConcurrentHashMap<>();
+    private final Map<Labels, Histogram> requestDurations = new ConcurrentHashMap<>();
+    private final Map<Labels, LongAdder> inputTokens = new ConcurrentHashMap<>();
+    private final Map<Labels, LongAdder> outputTokens = new ConcurrentHashMap<>();
+    private final Map<Labels, LongAdder> consoleRequests = new ConcurrentHashMap<>();
+    private final Map<Labels, LongAdder> routeRequests = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> routeDurations = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> routeInputTokens = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> routeOutputTokens = new ConcurrentHashMap<>();
+    private final Consumer<Exposition> components;
+
+    public ExplanationMetrics() {
+        this(ExplanationMetrics::writeComponents);
+    }
+
+    /**
+     * @param components writes the metrics read from other components when scraped
+     */
+    ExplanationMetrics(Consumer<Exposition> components) {
+        this.components = components;
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Get the singleton instance of ExplanationMetrics.
+     * @return the ExplanationMetrics instance
+     */
+    public static ExplanationMetrics get() {
+        return ExtensionList.lookupSingleton(ExplanationMetrics.class);
+    }
+
+    /**
+     * Record the time spent in a stage.
+     * @param stage the stage
+     * @param nanos the duration in nanoseconds
+     */
+    public void recordStage(Stage stage, long nanos) {
+        stages[stage.ordinal()].observe(nanos);
+    }
+
+    /**
+     * Record a finished provider request.
+     * @param provider the provider
+     * @param model the model, may be {@code null}
+     * @param outcome the outcome, see {@link #outcome(Throwable)}
+     * @param nanos the duration of the request in nanoseconds
+     * @param input the estimated input tokens
+     * @param output the estimated output tokens, {@code 0} if there is no answer
+     */
+    public void recordRequest(AIProvider provider, String model, String outcome, long nanos, long input, long output) {
+        Labels labels = new Labels("provider", provider.name(), "model", model != null ? model : "");
+        requests.computeIfAbsent(labels.with("outcome", outcome), k -> new LongAdder()).increment();
+        requestDurations.computeIfAbsent(labels, k -> new Histogram()).observe(nanos);
+        inputTokens.computeIfAbsent(labels, k -> new LongAdder()).add(input);
+        if (output > 0) {
+            outputTokens.computeIfAbsent(labels, k -> new LongAdder()).add(output);
+        }
+    }
+
+    /**
+     * Record a finished explanation sent on a {@link ModelRoute}, including any failover.
+     * @param route the name of the route, {@code default} if no route matched
+     * @param outcome the outcome, see {@link #outcome(Throwable)}
+     * @param nanos the duration of the explanation in nanoseconds
+     * @param input the estimated input tokens
+     * @param output the estimated output tokens, {@code 0} if there is no answer
+     */
+    public void recordRoute(String route, String outcome, long nanos, long input, long output) {
+        routeRequests.computeIfAbsent(new Labels("route", route, "outcome", outcome), k -> new LongAdder())
+                .increment();
+        routeInputTokens.computeIfAbsent(route, k -> new LongAdder()).add(input);
+        routeOutputTokens.computeIfAbsent(route, k -> new LongAdder()).add(output);
+        // Last, so a route in the summary always has its tokens
+        routeDurations.computeIfAbsent(route, k -> new Histogram()).observe(nanos);
+    }
+
+    /**
+     * Describe the explanations of each route, for the configuration page.
+     */
+    public String getRouteSummary() {
+        if (routeDurations.isEmpty()) {
+            return "No routed explanations since the last restart";
+        }
+        StringJoiner summary = new StringJoiner("; ");
+        new TreeMap<>(routeDurations).forEach((route, histogram) -> {
+            long count = histogram.count.sum();
+            double seconds = count > 0 ? histogram.sumNanos.sum() / (double) count / TimeUnit.SECONDS.toNanos(1) : 0;
+            summary.add(String.format("%s: %,d explanations, %.1fs on average, %,d input and %,d output tokens",
+                    route, count, seconds, routeInputTokens.get(route).sum(), routeOutputTokens.get(route).sum()));
+        });
+        return summary.toString();
+    }
+
+    /**
+     * Record a request to an endpoint of the console page.
+     * @param endpoint the endpoint, e.g. {@code explain} or {@code stream}
+     * @param result {@code existing} if an existing explanation was returned, {@code explained} if
+     *        one was generated, {@code cancelled} if the client went away, {@code error} if the
+     *        request failed
+     */
+    public void recordConsoleRequest(String endpoint, String result) {
+        consoleRequests.computeIfAbsent(new Labels("endpoint", endpoint, "result", result), k -> new LongAdder())
+                .increment();
+    }
+
+    /**
+     * Classify the outcome of a provider request.
+     * @param failure the failure, or {@code null} if the request completed
+     * @return {@code success}, {@code api_error}, {@code parse_error}, {@code rate_limited},
+     *         {@code http_error}, {@code cancelled}, {@code circuit_open} or {@code error}
+     */
+    static String outcome(Throwable failure) {
+        if (failure == null) {
+            return "success";
+        }
+        Throwable cause = failure;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof CancellationException) {
+            return "cancelled";
+        }
+        if (cause instanceof CircuitOpenException) {
+            return "circuit_open";
+        }
+        if (cause instanceof ApiErrorException) {
+            return "api_error";
+        }
+        if (cause instanceof ResponseParseException) {
+            return "parse_error";
+        }
+        if (cause instanceof AIServiceException && ((AIServiceException) cause).getStatusCode() == 429) {
+            return "rate_limited";
+        }
+        if (cause instanceof AIServiceException && ((AIServiceException) cause).getStatusCode() > 0) {
+            return "http_error";
+        }
+        return "error";
+    }
+
+    /**
+     * Write all metrics in the Prometheus text exposition format.
+     */
+    public String scrape() {
+        Exposition out = new Exposition();
+
+        out.header("explain_error_stage_duration_seconds", "histogram",
+                "Time spent in each stage of an explanation.");
+        for (Stage stage : Stage.values()) {
+            stages[stage.ordinal()].write(out, "explain_error_stage_duration_seconds",
+                    new Labels("stage", stage.label()));
+        }
+
+        out.header("explain_error_requests_total", "counter", "Provider requests by provider, model and outcome.");
+        new TreeMap<>(requests).forEach((labels, count) -> out.sample("explain_error_requests_total", labels,
+                count.sum()));
+
+        out.header("explain_error_request_duration_seconds", "histogram",
+                "Duration of provider requests, including rate limit waits and retries.");
+        new TreeMap<>(requestDurations).forEach((labels, histogram) ->
+                histogram.write(out, "explain_error_request_duration_seconds", labels));
+
+        out.header("explain_error_input_tokens_total", "counter", "Estimated tokens sent to the provider.");
+        new TreeMap<>(inputTokens).forEach((labels, count) -> out.sample("explain_error_input_tokens_total", labels,
+                count.sum()));
+
+        out.header("explain_error_output_tokens_total", "counter", "Estimated tokens received from the provider.");
+        new TreeMap<>(outputTokens).forEach((labels, count) -> out.sample("explain_error_output_tokens_total",
+                labels, count.sum()));
+
+        out.header("explain_error_console_requests_total", "counter",
+                "Explanation requests from the console page by endpoint and result.");
+        new TreeMap<>(consoleRequests).forEach((labels, count) -> out.sample("explain_error_console_requests_total",
+                labels, count.sum()));
+
+        out.header("explain_error_route_requests_total", "counter", "Explanations by model route and outcome.");
+        new TreeMap<>(routeRequests).forEach((labels, count) -> out.sample("explain_error_route_requests_total",
+                labels, count.sum()));
+
+        out.header("explain_error_route_duration_seconds", "histogram",
+                "Duration of routed explanations, including failover to other endpoints.");
+        new TreeMap<>(routeDurations).forEach((route, histogram) ->
+                histogram.write(out, "explain_error_route_duration_seconds", new Labels("route", route)));
+
+        out.header("explain_error_route_input_tokens_total", "counter", "Estimated tokens sent on each route.");
+        new TreeMap<>(routeInputTokens).forEach((route, count) -> out.sample("explain_error_route_input_tokens_total",
+                new Labels("route", route), count.sum()));
+
+        out.header("explain_error_route_output_tokens_total", "counter", "Estimated tokens received on each route.");
+        new TreeMap<>(routeOutputTokens).forEach((route, count) -> out.sample(
+                "explain_error_route_output_tokens_total", new Labels("route", route), count.sum()));
+
+        components.accept(out);
+        return out.toString();
+    }
+
+    /**
+     * Write the metrics kept by the cache, knowledge base, queue, HTTP clients and rate limiter.
+     */
+    private static void writeComponents(Exposition out) {
+        ExplanationCache cache = ExplanationCache.get();
+        out.gauge("explain_error_cache_entries", "Explanations in the in-memory cache.", cache.size());
+        out.counter("explain_error_cache_hits_total", "Explanations answered from the cache.", cache.getHits());
+        out.counter("explain_error_cache_disk_hits_total", "Cache hits answered from the persistent store.",
+                cache.getDiskHits());
+        out.counter("explain_error_cache_misses_total", "Cache lookups without an explanation.", cache.getMisses());
+
+        KnowledgeBase knowledgeBase = KnowledgeBase.get();
+        out.counter("explain_error_known_error_lookups_total", "Error logs checked against the known errors.",
+                knowledgeBase.getLookups());
+        out.counter("explain_error_known_error_hits_total", "Explanations answered from the known errors.",
+                knowledgeBase.getHits());
+
+        InFlightExplanations inFlight = InFlightExplanations.get();
+        out.counter("explain_error_coalesced_total", "Requests that joined an identical request in progress.",
+                inFlight.getCoalesced());
+
+        ExplanationBulkhead bulkhead = ExplanationBulkhead.get();
+        out.gauge("explain_error_queue_running", "Provider calls running.", bulkhead.getRunning());
+        out.gauge("explain_error_queue_waiting", "Provider calls waiting for a free slot.", bulkhead.getQueued());
+        out.counter("explain_error_queue_rejected_total", "Provider calls rejected because the queue was full.",
+                bulkhead.getRejected());
+        out.header("explain_error_queue_wait_seconds", "histogram", "Time provider calls waited for a free slot.");
+        bulkhead.getWaits().write(out, "explain_error_queue_wait_seconds", new Labels());
+
+        FailedBuildExplainer background = FailedBuildExplainer.get();
+        out.gauge("explain_error_background_pending", "Finished builds waiting for a background explanation.",
+                background.getPending());
+        out.counter("explain_error_background_skipped_total", "Finished builds skipped because the queue was full.",
+                background.getSkipped());
+
+        HttpClientRegistry http = HttpClientRegistry.get();
+        out.counter("explain_error_http_clients_created_total", "Shared HTTP clients created for provider endpoints.",
+                http.getClientsCreated());
+        out.gauge("explain_error_http_clients_active", "Shared HTTP clients kept for provider endpoints.",
+                http.getActiveClients());
+        Map<Labels, HttpClientRegistry.EndpointStats> clients = new TreeMap<>();
+        http.getStats().values().forEach(stats -> clients.put(
+                new Labels("provider", stats.getProvider().name(), "url", stats.getOrigin()), stats));
+        out.header("explain_error_http_requests_total", "counter",
+                "Requests sent through the shared HTTP client of each endpoint since it was created.");
+        clients.forEach((labels, stats) -> out.sample("explain_error_http_requests_total", labels,
+                stats.getRequestsTotal()));
+        out.header("explain_error_http_failures_total", "counter",
+                "Requests through the shared HTTP client of each endpoint that got no response.");
+        clients.forEach((labels, stats) -> out.sample("explain_error_http_failures_total", labels,
+                stats.getFailures()));
+        out.header("explain_error_http_in_flight", "gauge",
+                "Requests waiting for a response from the shared HTTP client of each endpoint.");
+        clients.forEach((labels, stats) -> out.sample("explain_error_http_in_flight", labels, stats.getInFlight()));
+
+        ProviderRateLimiter limiter = ProviderRateLimiter.get();
+        out.counter("explain_error_rate_limited_total", "Responses rejected by the provider's rate limit.",
+                limiter.getRateLimited());
+        out.counter("explain_error_retries_total", "Provider requests retried.", limiter.getRetries());
+        out.counter("explain_error_throttled_total", "Provider requests delayed by the client-side rate limit.",
+                limiter.getThrottled());
+
+        ProviderHealth health = ProviderHealth.get();
+        out.header("explain_error_endpoint_healthy", "gauge",
+                "Whether a provider endpoint is tried first rather than cooling down after failures.");
+        health.getEndpoints().forEach((endpoint, healthy) -> out.sample("explain_error_endpoint_healthy",
+                new Labels("endpoint", endpoint), healthy ? 1 : 0));
+        out.counter("explain_error_failovers_total", "Provider requests sent to another endpoint after a failure.",
+                health.getFailovers());
+        out.counter("explain_error_hedged_total", "Provider requests also sent to another endpoint for being slow.",
+                health.getHedged());
+        out.counter("explain_error_hedge_wins_total", "Hedged requests answered before the request they hedged.",
+                health.getHedgeWins());
+
+        ProviderCircuitBreaker breaker = ProviderCircuitBreaker.get();
+        out.header("explain_error_circuit_state", "gauge", "State of the circuit breaker of each provider endpoint.");
+        breaker.getStates().forEach((endpoint, current) -> {
+            for (ProviderCircuitBreaker.State state : ProviderCircuitBreaker.State.values()) {
+                out.sample("explain_error_circuit_state", new Labels("endpoint", endpoint, "state", state.label()),
+                        state == current ? 1 : 0);
+            }
+        });
+        out.counter("explain_error_circuit_opened_total", "Times a provider endpoint's circuit breaker opened.",
+                breaker.getOpened());
+        out.counter("explain_error_circuit_rejected_total", "Provider requests failed at once by an open circuit.",
+                breaker.getRejected());
+    }
+
+    /**
+     * Histogram of durations with fixed buckets.
+     */
+    static final class Histogram {
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void observe(long nanos) {
+            double seconds = nanos / (double) TimeUnit.SECONDS.toNanos(1);
+            for (int i = 0; i < BUCKETS.length; i++) {
+                if (seconds <= BUCKETS[i]) {
+                    buckets[i].increment();
+                    break;
+                }
+            }
+            count.increment();
+            sumNanos.add(nanos);
+        }
+
+        long getCount() {
+            return count.sum();
+        }
+
+        void write(Exposition out, String name, Labels labels) {
+            // Read the count first, so no bucket exceeds it while samples are being recorded
+            long total = count.sum();
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulative += buckets[i].sum();
+                out.sample(name + "_bucket", labels.with("le", Double.toString(BUCKETS[i])),
+                        Math.min(cumulative, total));
+            }
+            out.sample(name + "_bucket", labels.with("le", "+Inf"), total);
+            out.sample(name + "_sum", labels, sumNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1));
+            out.sample(name + "_count", labels, total);
+        }
+    }
+
+    /**
+     * Label names and values of a sample, compared by their rendered form.
+     */
+    static final class Labels implements Comparable<Labels> {
+        private final String text;
+
+        Labels(String... namesAndValues) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < namesAndValues.length; i += 2) {
+                append(text, namesAndValues[i], namesAndValues[i + 1]);
+            }
+            this.text = text.toString();
+        }
+
+        private Labels(StringBuilder text) {
+            this.text = text.toString();
+        }
+
+        Labels with(String name, String value) {
+            return new Labels(append(new StringBuilder(text), name, value));
+        }
+
+        private static StringBuilder append(StringBuilder text, String name, String value) {
+            if (text.length() > 0) {
+                text.append(',');
+            }
+            return text.append(name).append("=\"").append(escape(value)).append('"');
+        }
+
+        private static String escape(String value) {
+            return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        }
+
+        @Override
+        public int compareTo(Labels other) {
+            return text.compareTo(other.text);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Labels && ((Labels) o).text.equals(text);
+        }
+
+        @Override
+        public int hashCode() {
+            return text.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    /**
+     * Builder of a text exposition.
+     */
+    static final class Exposition {
+        private final StringBuilder text = new StringBuilder(4096);
+
+        void header(String name, String type, String help) {
+            text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        }
+
+        void sample(String name, Labels labels, double value) {
+            text.append(name);
+            if (!labels.text.isEmpty()) {
+                text.append('{').append(labels.text).append('}');
+            }
+            text.append(' ');
+            if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+                text.append((long) value);
+            } else {
+                text.append(value);
+            }
+            text.append('\n');
+        }
+
+        void gauge(String name, String help, double value) {
+            header(name, "gauge", help);
+            sample(name, new Labels(), value);
+        }
+
+        void counter(String name, String help, double value) {
+            header(name, "counter", help);
+            sample(name, new Labels(), value);
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package io.jenkins.plugins.explain_error;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.listeners.RunListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.PatternSyntaxException;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Explains failed builds in the background as soon as they finish, when enabled in the global
+ * configuration, so the explanation is ready before anyone opens the build.
+ * Builds are handed to a small pool of workers through a bounded queue. When many builds fail at
+ * once, builds arriving while the queue is full are skipped instead of piling up on the
+ * controller; they can still be explained from the console page. Each worker waits for its
+ * provider call, so background explanations never hold more than {@link #WORKERS} slots of the
+ * {@link ExplanationBulkhead} and requests made on the console page keep getting through. A worker
+ * gives up on a call that takes longer than the provider timeouts allow, see {@link #waitSeconds}.
+ */
+@Extension
+public class FailedBuildExplainer extends RunListener<Run<?, ?>> {
+
+    private static final Logger LOGGER = Logger.getLogger(FailedBuildExplainer.class.getName());
+
+    static final int WORKERS = 2;
+    /** Lines from the end of the log that are explained, the same as the console button sends. */
+    static final int MAX_LINES = 200;
+
+    private final IntSupplier maxQueued;
+    private final int workers;
+    private final ThreadPoolExecutor executor;
+
+    /** Ids of the builds queued or being explained. */
+    private final Set<String> pending = new HashSet<>();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public FailedBuildExplainer() {
+        this(() -> GlobalConfigurationImpl.get().getAutoExplainQueueSize(), WORKERS);
+    }
+
+    FailedBuildExplainer(IntSupplier maxQueued, int workers) {
+        this.maxQueued = maxQueued;
+        this.workers = workers;
+        this.executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "Explain Error background"));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Get the singleton instance of FailedBuildExplainer.
+     * @return the FailedBuildExplainer instance
+     */
+    public static FailedBuildExplainer get() {
+        return ExtensionList.lookupSingleton(FailedBuildExplainer.class);
+    }
+
+    @Override
+    public void onFinalized(Run<?, ?> run) {
+        GlobalConfigurationImpl config = GlobalConfigurationImpl.get();
+        if (!config.isAutoExplainFailures() || !config.isEnableExplanation()
+                || config.getApiKey() == null || StringUtils.isBlank(config.getApiKey().getPlainText())) {
+            return;
+        }
+        if (!shouldExplain(run.getParent().getFullName(), run.getResult(), config.getAutoExplainJobPattern(),
+                config.isAutoExplainUnstable())) {
+            return;
+        }
+        if (run.getAction(ErrorExplanationAction.class) != null) {
+            // Already explained, for example by the explainError step
+            return;
+        }
+        submit(run.getExternalizableId(), () -> explain(run));
+    }
+
+    /**
+     * Check whether a finished build is selected for a background explanation.
+     * @param jobName the full name of the job
+     * @param result the result of the build
+     * @param jobPattern the regular expression the job name must match, blank for all jobs
+     * @param unstable whether unstable builds are selected too
+     */
+    static boolean shouldExplain(String jobName, Result result, String jobPattern, boolean unstable) {
+        if (result != Result.FAILURE && !(unstable && result == Result.UNSTABLE)) {
+            return false;
+        }
+        if (StringUtils.isBlank(jobPattern)) {
+            return true;
+        }
+        try {
+            return ErrorSignatures.compile(jobPattern, 0).matcher(jobName).matches();
+        } catch (PatternSyntaxException e) {
+            LOGGER.warning("Invalid job pattern for background explanations: " + jobPattern);
+            return false;
+        }
+    }
+
+    /**
+     * Queue background work for a build, unless it is already queued or the queue is full.
+     * @param id the id of the build
+     * @param work the work to run on a worker thread
+     * @return whether the work was queued
+     */
+    boolean submit(String id, Runnable work) {
+        synchronized (pending) {
+            if (pending.contains(id)) {
+                return false;
+            }
+            if (pending.size() >= workers + Math.max(0, maxQueued.getAsInt())) {
+                skipped.incrementAndGet();
+                LOGGER.warning("Skipping background explanation of " + id + ", "
+                        + pending.size() + " builds are already waiting");
+                return false;
+            }
+            pending.add(id);
+        }
+        submitted.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                work.run();
+            } finally {
+                synchronized (pending) {
+                    pending.remove(id);
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Check whether a build is queued or being explained in the background.
+     */
+    public boolean isPending(String id) {
+        synchronized (pending) {
+            return pending.contains(id);
+        }
+    }
+
+    private void explain(Run<?, ?> run) {
+        if (run.getAction(ErrorExplanationAction.class) != null) {
+            // Explained from the console page while waiting
+            return;
+        }
+        long wait = waitSeconds(GlobalConfigurationImpl.get());
+        CompletableFuture<String> call = null;
+        try {
+            String errorText = String.join("\n", LogTailReader.tail(run, MAX_LINES));
+            ErrorExplainer explainer = new ErrorExplainer();
+            // Shares the call with requests from the console page for the same build
+            call = InFlightExplanations.get().join(ConsoleExplainErrorAction.inFlightKey(run), sink ->
+                    explainer.explainErrorTextAsync(errorText, run)
+                            .thenApply(explanation -> saveExplanation(run, explanation, errorText)), null);
+            call.get(wait, TimeUnit.SECONDS);
+            completed.incrementAndGet();
+            LOGGER.fine("Explained " + run + " in the background");
+        } catch (InterruptedException e) {
+            call.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            // Frees the worker; a console request sharing the call keeps it running
+            call.cancel(true);
+            failed.incrementAndGet();
+            LOGGER.warning("Gave up explaining " + run + " in the background, no answer within " + wait + "s");
+        } catch (ExecutionException | IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            LOGGER.log(Level.WARNING, "Failed to explain " + run + " in the background", e);
+        }
+    }
+
+    /**
+     * Get how long a worker waits for an explanation: the provider timeout for every attempt on
+     * every configured endpoint, and once more for the wait for a slot in the {@link ExplanationBulkhead}.
+     * @param config the global configuration
+     * @return the time in seconds
+     */
+    static long waitSeconds(GlobalConfigurationImpl config) {
+        long attempts = (config.getMaxRetries() + 1L) * (1 + config.getFallbackProviders().size());
+        return BaseAIService.REQUEST_TIMEOUT.getSeconds() * (attempts + 1);
+    }
+
+    private static String saveExplanation(Run<?, ?> run, ErrorExplainer.Explanation explanation,
+                                          String errorText) {
+        String text = explanation.getText();
+        if (text != null && !text.trim().isEmpty()) {
+            run.addOrReplaceAction(new ErrorExplanationAction(text, errorText, explanation.getProvider(),
+                    explanation.getEstimatedTokens()));
+            // The build was written to disk before it was finalized, so the action must be saved explicitly
+            try {
+                run.save();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to save the explanation of " + run, e);
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Get the number of builds queued for a background explanation.
+     */
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    /**
+     * Get the number of builds skipped because the queue was full.
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Get the number of builds queued or being explained.
+     */
+    public int getPending() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+}
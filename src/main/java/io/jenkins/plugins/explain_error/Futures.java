@@ -0,0 +1,29 @@
+package io.jenkins.plugins.explain_error;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Helpers for chains of {@link CompletableFuture}s.
+ */
+final class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * Make cancelling a dependent stage cancel the stage it was derived from.
+     * {@link CompletableFuture#cancel} only completes the future it is called on, so without this
+     * a cancelled {@code thenApply} stage would leave the HTTP exchange behind it running.
+     * @param dependent the stage derived from {@code source}
+     * @param source the stage to cancel along with {@code dependent}
+     * @return {@code dependent}
+     */
+    static <T> CompletableFuture<T> cancelling(CompletableFuture<T> dependent, CompletableFuture<?> source) {
+        dependent.whenComplete((result, failure) -> {
+            if (dependent.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return dependent;
+    }
+}
@@ -1,24 +1,58 @@
 package io.jenkins.plugins.explain_error;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.io.IOException;
 import java.net.http.HttpRequest;
+import java.util.Map;
 
 /**
  * Google Gemini-specific implementation of the AI service.
  */
 public class GeminiService extends BaseAIService {
 
+    private static final String TEXT = "/candidates/0/content/parts/0/text";
+    private static final String ERROR_MESSAGE = "/error/message";
+    private static final String ERROR_STATUS = "/error/status";
+
     public GeminiService(GlobalConfigurationImpl config) {
         super(config);
     }
 
+    /**
+     * @param config the global configuration
+     * @param profile the endpoint to call, or {@code null} for the one of the global configuration
+     */
+    public GeminiService(GlobalConfigurationImpl config, ProviderProfile profile) {
+        super(config, profile);
+    }
+
     @Override
     protected HttpRequest buildHttpRequest(HttpRequest.Builder requestBuilder, String requestBody) {
-        String apiKey = config.getApiKey().getPlainText();
+        return buildRequest(getApiUrl(), requestBody);
+    }
+
+    @Override
+    protected HttpRequest buildStreamingHttpRequest(String streamingUrl, String requestBody) {
+        return buildRequest(streamingUrl, requestBody);
+    }
+
+    /**
+     * Use the streamGenerateContent variant of the configured endpoint with SSE framing.
+     */
+    @Override
+    protected String getStreamingApiUrl() {
         String url = getApiUrl();
+        if (!url.contains(":generateContent")) {
+            return null;
+        }
+        url = url.replace(":generateContent", ":streamGenerateContent");
+        return url + (url.contains("?") ? "&" : "?") + "alt=sse";
+    }
+
+    private HttpRequest buildRequest(String url, String requestBody) {
+        String apiKey = getApiKey().getPlainText();
         
         // Add API key as query parameter for Gemini
         if (!url.contains("key=")) {
@@ -26,7 +60,7 @@ public class GeminiService extends BaseAIService {
         }
         
         return HttpRequest.newBuilder(java.net.URI.create(url))
-            .timeout(java.time.Duration.ofSeconds(60))
+            .timeout(REQUEST_TIMEOUT)
             .header("Content-Type", "application/json")
             .POST(HttpRequest.BodyPublishers.ofString(requestBody))
             .build();
@@ -54,49 +88,45 @@ public class GeminiService extends BaseAIService {
         // Add generation config
         ObjectNode generationConfig = MAPPER.createObjectNode();
         generationConfig.put("temperature", 0.3);
-        generationConfig.put("maxOutputTokens", 1000);
+        generationConfig.put("maxOutputTokens", MAX_OUTPUT_TOKENS);
         requestJson.set("generationConfig", generationConfig);
 
         return MAPPER.writeValueAsString(requestJson);
     }
 
     @Override
-    protected String parseResponse(String responseBody) throws IOException {
-        try {
-            JsonNode jsonNode = MAPPER.readTree(responseBody);
-            
+    protected String parseStreamChunk(String data) throws IOException {
+        try (JsonParser parser = MAPPER.getFactory().createParser(data)) {
+            return JsonFields.read(parser, TEXT).get(TEXT);
+        }
+    }
+
+    @Override
+    protected String parseResponse(ResponseBody responseBody) throws IOException {
+        try (JsonParser parser = responseBody.createParser(MAPPER.getFactory())) {
+            Map<String, String> fields = JsonFields.read(parser, TEXT, ERROR_MESSAGE, ERROR_STATUS);
+
             // Check for error first
-            JsonNode error = jsonNode.get("error");
-            if (error != null) {
-                JsonNode errorMessage = error.get("message");
-                if (errorMessage != null) {
-                    return "AI API Error: " + errorMessage.asText();
-                }
-                return "AI API Error: " + error.toString();
+            String errorMessage = fields.get(ERROR_MESSAGE);
+            if (errorMessage == null) {
+                errorMessage = fields.get(ERROR_STATUS);
             }
-            
-            // Parse candidates array
-            JsonNode candidates = jsonNode.get("candidates");
-            if (candidates != null && candidates.isArray() && candidates.size() > 0) {
-                JsonNode firstCandidate = candidates.get(0);
-                JsonNode content = firstCandidate.get("content");
-                if (content != null) {
-                    JsonNode parts = content.get("parts");
-                    if (parts != null && parts.isArray() && parts.size() > 0) {
-                        JsonNode firstPart = parts.get(0);
-                        JsonNode text = firstPart.get("text");
-                        if (text != null && !text.isNull()) {
-                            return text.asText().trim();
-                        }
-                    }
-                }
+            if (errorMessage != null) {
+                throw new ApiErrorException(errorMessage);
+            }
+
+            String text = fields.get(TEXT);
+            if (text != null) {
+                return text.trim();
             }
 
-            return "Unable to parse Gemini response. Response: " + responseBody;
+            throw new ResponseParseException("Unable to parse Gemini response. Response: " + responseBody.preview());
 
+        } catch (AIServiceException e) {
+            throw e;
         } catch (Exception e) {
             LOGGER.severe("Failed to parse Gemini response: " + e.getMessage());
-            return "Failed to parse Gemini response: " + e.getMessage();
+            throw new ResponseParseException("Failed to parse Gemini response: " + e.getMessage(), e);
         }
     }
 }
@@ -14,7 +14,11 @@ import org.kohsuke.stapler.StaplerRequest2;
 import org.kohsuke.stapler.interceptor.RequirePOST;
 import org.jenkinsci.Symbol;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Level;
+import java.util.regex.PatternSyntaxException;
 import java.util.logging.Logger;
 
 
@@ -30,6 +34,31 @@ public class GlobalConfigurationImpl extends GlobalConfiguration {
     private String apiUrl;
     private String model;
     private boolean enableExplanation = true;
+    private boolean enableStreaming = true;
+    private int cacheMaxEntries = 500;
+    private int cacheTtlMinutes = 1440;
+    private int persistentCacheMaxMegabytes = 64;
+    private int maxConcurrentExplanations = 4;
+    private int maxQueuedExplanations = 100;
+    private boolean fairQueueing = true;
+    private int rateLimitRequestsPerMinute;
+    private int rateLimitTokensPerMinute;
+    private int maxRetries = 3;
+    private boolean autoExplainFailures;
+    private String autoExplainJobPattern;
+    private boolean autoExplainUnstable;
+    private int autoExplainQueueSize = 50;
+    private boolean compactErrorLogs = true;
+    private int maxPromptTokens = 8000;
+    private int mapReduceMaxChunks;
+    private int mapReduceChunkTokens = 4000;
+    private List<KnownError> knownErrors = KnownError.defaults();
+    private List<ProviderProfile> fallbackProviders = new ArrayList<>();
+    private boolean hedgeRequests;
+    private int circuitBreakerFailureRate = 50;
+    private int circuitBreakerSlowCallSeconds = 30;
+    private int circuitBreakerOpenSeconds = 30;
+    private List<ModelRoute> modelRoutes = new ArrayList<>();
 
     public GlobalConfigurationImpl() {
         load();
@@ -51,6 +80,10 @@ public class GlobalConfigurationImpl extends GlobalConfiguration {
                 this.enableExplanation = json.getBoolean("enableExplanation");
             }
             
+            if (json.has("enableStreaming")) {
+                this.enableStreaming = json.getBoolean("enableStreaming");
+            }
+            
             if (json.has("provider")) {
                 String providerStr = json.getString("provider");
                 try {
@@ -73,8 +106,120 @@ public class GlobalConfigurationImpl extends GlobalConfiguration {
                 this.model = json.getString("model");
             }
             
+            if (json.has("cacheMaxEntries")) {
+                this.cacheMaxEntries = Math.max(0, json.getInt("cacheMaxEntries"));
+            }
+
+            if (json.has("cacheTtlMinutes")) {
+                this.cacheTtlMinutes = Math.max(0, json.getInt("cacheTtlMinutes"));
+            }
+
+            if (json.has("persistentCacheMaxMegabytes")) {
+                this.persistentCacheMaxMegabytes = Math.max(0, json.getInt("persistentCacheMaxMegabytes"));
+            }
+
+            if (json.has("maxConcurrentExplanations")) {
+                this.maxConcurrentExplanations = Math.max(1, json.getInt("maxConcurrentExplanations"));
+            }
+
+            if (json.has("maxQueuedExplanations")) {
+                this.maxQueuedExplanations = Math.max(0, json.getInt("maxQueuedExplanations"));
+            }
+
+            if (json.has("fairQueueing")) {
+                this.fairQueueing = json.getBoolean("fairQueueing");
+            }
+
+            if (json.has("rateLimitRequestsPerMinute")) {
+                this.rateLimitRequestsPerMinute = Math.max(0, json.getInt("rateLimitRequestsPerMinute"));
+            }
+
+            if (json.has("rateLimitTokensPerMinute")) {
+                this.rateLimitTokensPerMinute = Math.max(0, json.getInt("rateLimitTokensPerMinute"));
+            }
+
+            if (json.has("maxRetries")) {
+                this.maxRetries = Math.max(0, json.getInt("maxRetries"));
+            }
+
+            if (json.has("autoExplainFailures")) {
+                this.autoExplainFailures = json.getBoolean("autoExplainFailures");
+            }
+
+            if (json.has("autoExplainJobPattern")) {
+                String pattern = json.getString("autoExplainJobPattern");
+                if (!isValidPattern(pattern)) {
+                    throw new Descriptor.FormException("Invalid job pattern: " + pattern, "autoExplainJobPattern");
+                }
+                this.autoExplainJobPattern = pattern;
+            }
+
+            if (json.has("autoExplainUnstable")) {
+                this.autoExplainUnstable = json.getBoolean("autoExplainUnstable");
+            }
+
+            if (json.has("autoExplainQueueSize")) {
+                this.autoExplainQueueSize = Math.max(0, json.getInt("autoExplainQueueSize"));
+            }
+
+            if (json.has("compactErrorLogs")) {
+                this.compactErrorLogs = json.getBoolean("compactErrorLogs");
+            }
+
+            if (json.has("maxPromptTokens")) {
+                this.maxPromptTokens = Math.max(0, json.getInt("maxPromptTokens"));
+            }
+
+            if (json.has("mapReduceMaxChunks")) {
+                this.mapReduceMaxChunks = Math.max(0, json.getInt("mapReduceMaxChunks"));
+            }
+
+            if (json.has("mapReduceChunkTokens")) {
+                this.mapReduceChunkTokens = Math.max(100, json.getInt("mapReduceChunkTokens"));
+            }
+
+            // An empty repeatable list is left out of the form submission
+            this.knownErrors = json.has("knownErrors")
+                    ? new ArrayList<>(req.bindJSONToList(KnownError.class, json.get("knownErrors")))
+                    : new ArrayList<>();
+
+            List<ProviderProfile> fallbacks = json.has("fallbackProviders")
+                    ? new ArrayList<>(req.bindJSONToList(ProviderProfile.class, json.get("fallbackProviders")))
+                    : new ArrayList<>();
+            String invalidFallback = ProviderProfile.validate(fallbacks, this);
+            if (invalidFallback != null) {
+                throw new Descriptor.FormException(invalidFallback, "fallbackProviders");
+            }
+            this.fallbackProviders = fallbacks;
+
+            if (json.has("hedgeRequests")) {
+                this.hedgeRequests = json.getBoolean("hedgeRequests");
+            }
+
+            this.modelRoutes = json.has("modelRoutes")
+                    ? new ArrayList<>(req.bindJSONToList(ModelRoute.class, json.get("modelRoutes")))
+                    : new ArrayList<>();
+
+            if (json.has("circuitBreakerFailureRate")) {
+                this.circuitBreakerFailureRate = Math.min(100, Math.max(0, json.getInt("circuitBreakerFailureRate")));
+            }
+
+            if (json.has("circuitBreakerSlowCallSeconds")) {
+                this.circuitBreakerSlowCallSeconds = Math.max(0, json.getInt("circuitBreakerSlowCallSeconds"));
+            }
+
+            if (json.has("circuitBreakerOpenSeconds")) {
+                this.circuitBreakerOpenSeconds = Math.max(1, json.getInt("circuitBreakerOpenSeconds"));
+            }
+            
             save();
+            // Endpoint or proxy settings may have changed, rebuild pooled clients lazily
+            HttpClientRegistry.get().invalidateAll();
+            // Start queued explanations if the concurrency limit was raised
+            ExplanationBulkhead.get().dispatch();
             return true;
+        } catch (Descriptor.FormException e) {
+            throw e;
         } catch (Exception e) {
             Logger.getLogger(GlobalConfigurationImpl.class.getName()).log(Level.SEVERE, "Configuration failed", e);
             throw new Descriptor.FormException("Configuration failed: " + e.getMessage(), e, "");
@@ -141,6 +286,353 @@ public class GlobalConfigurationImpl extends GlobalConfiguration {
         this.enableExplanation = enableExplanation;
     }
 
+    public boolean isEnableStreaming() {
+        return enableStreaming;
+    }
+
+    @DataBoundSetter
+    public void setEnableStreaming(boolean enableStreaming) {
+        this.enableStreaming = enableStreaming;
+    }
+
+    /**
+     * Get the maximum number of explanations kept in the explanation cache.
+     * @return the maximum number of entries, 0 disables caching
+     */
+    public int getCacheMaxEntries() {
+        return cacheMaxEntries;
+    }
+
+    @DataBoundSetter
+    public void setCacheMaxEntries(int cacheMaxEntries) {
+        this.cacheMaxEntries = Math.max(0, cacheMaxEntries);
+    }
+
+    /**
+     * Get how long cached explanations are reused.
+     * @return the time to live in minutes, 0 keeps entries until they are evicted
+     */
+    public int getCacheTtlMinutes() {
+        return cacheTtlMinutes;
+    }
+
+    @DataBoundSetter
+    public void setCacheTtlMinutes(int cacheTtlMinutes) {
+        this.cacheTtlMinutes = Math.max(0, cacheTtlMinutes);
+    }
+
+    /**
+     * Get the disk space available to explanations kept across restarts.
+     * @return the size limit in megabytes, 0 disables the persistent cache
+     */
+    public int getPersistentCacheMaxMegabytes() {
+        return persistentCacheMaxMegabytes;
+    }
+
+    @DataBoundSetter
+    public void setPersistentCacheMaxMegabytes(int persistentCacheMaxMegabytes) {
+        this.persistentCacheMaxMegabytes = Math.max(0, persistentCacheMaxMegabytes);
+    }
+
+    /**
+     * Get how many AI provider calls may run at the same time.
+     * @return the concurrency limit, at least 1
+     */
+    public int getMaxConcurrentExplanations() {
+        return maxConcurrentExplanations;
+    }
+
+    @DataBoundSetter
+    public void setMaxConcurrentExplanations(int maxConcurrentExplanations) {
+        this.maxConcurrentExplanations = Math.max(1, maxConcurrentExplanations);
+    }
+
+    /**
+     * Get how many explanation requests may wait for a free slot before new ones are rejected.
+     * @return the queue limit, 0 rejects requests as soon as all slots are busy
+     */
+    public int getMaxQueuedExplanations() {
+        return maxQueuedExplanations;
+    }
+
+    @DataBoundSetter
+    public void setMaxQueuedExplanations(int maxQueuedExplanations) {
+        this.maxQueuedExplanations = Math.max(0, maxQueuedExplanations);
+    }
+
+    /**
+     * Whether waiting explanation requests are dispatched round robin across jobs.
+     */
+    public boolean isFairQueueing() {
+        return fairQueueing;
+    }
+
+    @DataBoundSetter
+    public void setFairQueueing(boolean fairQueueing) {
+        this.fairQueueing = fairQueueing;
+    }
+
+    /**
+     * Get the client-side limit of provider calls per minute.
+     * @return the limit, 0 to follow the limits reported by the provider
+     */
+    public int getRateLimitRequestsPerMinute() {
+        return rateLimitRequestsPerMinute;
+    }
+
+    @DataBoundSetter
+    public void setRateLimitRequestsPerMinute(int rateLimitRequestsPerMinute) {
+        this.rateLimitRequestsPerMinute = Math.max(0, rateLimitRequestsPerMinute);
+    }
+
+    /**
+     * Get the client-side limit of estimated tokens sent per minute.
+     * @return the limit, 0 to follow the limits reported by the provider
+     */
+    public int getRateLimitTokensPerMinute() {
+        return rateLimitTokensPerMinute;
+    }
+
+    @DataBoundSetter
+    public void setRateLimitTokensPerMinute(int rateLimitTokensPerMinute) {
+        this.rateLimitTokensPerMinute = Math.max(0, rateLimitTokensPerMinute);
+    }
+
+    /**
+     * Get how often rate limited or temporarily unavailable calls are retried.
+     * @return the number of retries, 0 disables retries
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    @DataBoundSetter
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = Math.max(0, maxRetries);
+    }
+
+    /**
+     * Whether failed builds are explained in the background as soon as they finish.
+     */
+    public boolean isAutoExplainFailures() {
+        return autoExplainFailures;
+    }
+
+    @DataBoundSetter
+    public void setAutoExplainFailures(boolean autoExplainFailures) {
+        this.autoExplainFailures = autoExplainFailures;
+    }
+
+    /**
+     * Get the regular expression selecting the jobs whose failures are explained in the background.
+     * @return the pattern matched against the full name of the job, empty or {@code null} for all jobs
+     */
+    public String getAutoExplainJobPattern() {
+        return autoExplainJobPattern;
+    }
+
+    @DataBoundSetter
+    public void setAutoExplainJobPattern(String autoExplainJobPattern) {
+        this.autoExplainJobPattern = autoExplainJobPattern;
+    }
+
+    /**
+     * Whether unstable builds are explained in the background too, not only failed ones.
+     */
+    public boolean isAutoExplainUnstable() {
+        return autoExplainUnstable;
+    }
+
+    @DataBoundSetter
+    public void setAutoExplainUnstable(boolean autoExplainUnstable) {
+        this.autoExplainUnstable = autoExplainUnstable;
+    }
+
+    /**
+     * Get how many finished builds may wait for a background explanation before new ones are skipped.
+     * @return the queue limit
+     */
+    public int getAutoExplainQueueSize() {
+        return autoExplainQueueSize;
+    }
+
+    @DataBoundSetter
+    public void setAutoExplainQueueSize(int autoExplainQueueSize) {
+        this.autoExplainQueueSize = Math.max(0, autoExplainQueueSize);
+    }
+
+    /**
+     * Whether error logs are compacted with {@link LogCompactor} before they are sent to the AI provider.
+     */
+    public boolean isCompactErrorLogs() {
+        return compactErrorLogs;
+    }
+
+    @DataBoundSetter
+    public void setCompactErrorLogs(boolean compactErrorLogs) {
+        this.compactErrorLogs = compactErrorLogs;
+    }
+
+    /**
+     * Get the budget of estimated tokens for the error logs sent to the AI provider.
+     * @return the number of tokens, 0 for no limit
+     */
+    public int getMaxPromptTokens() {
+        return maxPromptTokens;
+    }
+
+    @DataBoundSetter
+    public void setMaxPromptTokens(int maxPromptTokens) {
+        this.maxPromptTokens = Math.max(0, maxPromptTokens);
+    }
+
+    /**
+     * Get the most parts error logs over the prompt budget are split into, each explained by its
+     * own call before a final call merges the findings.
+     * @return the number of parts, 0 or 1 to truncate the logs instead
+     */
+    public int getMapReduceMaxChunks() {
+        return mapReduceMaxChunks;
+    }
+
+    @DataBoundSetter
+    public void setMapReduceMaxChunks(int mapReduceMaxChunks) {
+        this.mapReduceMaxChunks = Math.max(0, mapReduceMaxChunks);
+    }
+
+    /**
+     * Get the preferred size of each part of error logs explained in parts.
+     * @return the number of estimated tokens
+     */
+    public int getMapReduceChunkTokens() {
+        return mapReduceChunkTokens;
+    }
+
+    @DataBoundSetter
+    public void setMapReduceChunkTokens(int mapReduceChunkTokens) {
+        this.mapReduceChunkTokens = Math.max(100, mapReduceChunkTokens);
+    }
+
+    /**
+     * Get the known failures answered by the {@link KnowledgeBase} without asking the AI provider.
+     * @return the entries, checked in order
+     */
+    public List<KnownError> getKnownErrors() {
+        return knownErrors != null ? Collections.unmodifiableList(knownErrors) : List.of();
+    }
+
+    @DataBoundSetter
+    public void setKnownErrors(List<KnownError> knownErrors) {
+        this.knownErrors = knownErrors != null ? new ArrayList<>(knownErrors) : new ArrayList<>();
+    }
+
+    /**
+     * Get the endpoints tried, in order, when the configured endpoint fails.
+     * @return the fallback endpoints
+     */
+    public List<ProviderProfile> getFallbackProviders() {
+        return fallbackProviders != null ? Collections.unmodifiableList(fallbackProviders) : List.of();
+    }
+
+    @DataBoundSetter
+    public void setFallbackProviders(List<ProviderProfile> fallbackProviders) {
+        this.fallbackProviders = fallbackProviders != null ? new ArrayList<>(fallbackProviders) : new ArrayList<>();
+    }
+
+    /**
+     * Get whether a request that takes longer than the usual latency of its endpoint is also sent
+     * to the next endpoint, using whichever answers first.
+     */
+    public boolean isHedgeRequests() {
+        return hedgeRequests;
+    }
+
+    @DataBoundSetter
+    public void setHedgeRequests(boolean hedgeRequests) {
+        this.hedgeRequests = hedgeRequests;
+    }
+
+    /**
+     * Get the rules sending explanations to another endpoint than the configured one.
+     * @return the routes, checked in order; explanations matching none use the configured endpoint
+     */
+    public List<ModelRoute> getModelRoutes() {
+        return modelRoutes != null ? Collections.unmodifiableList(modelRoutes) : List.of();
+    }
+
+    @DataBoundSetter
+    public void setModelRoutes(List<ModelRoute> modelRoutes) {
+        this.modelRoutes = modelRoutes != null ? new ArrayList<>(modelRoutes) : new ArrayList<>();
+    }
+
+    /**
+     * Describe the latency and tokens of each route, for the configuration page.
+     */
+    public String getModelRoutesSummary() {
+        return ExplanationMetrics.get().getRouteSummary();
+    }
+
+    /**
+     * Get the percentage of failed or slow requests among the recent requests of an endpoint that
+     * opens its {@link ProviderCircuitBreaker}.
+     * @return the percentage, 0 to disable the circuit breaker
+     */
+    public int getCircuitBreakerFailureRate() {
+        return circuitBreakerFailureRate;
+    }
+
+    @DataBoundSetter
+    public void setCircuitBreakerFailureRate(int circuitBreakerFailureRate) {
+        this.circuitBreakerFailureRate = Math.min(100, Math.max(0, circuitBreakerFailureRate));
+    }
+
+    /**
+     * Get the duration from which a request counts as slow for the circuit breaker.
+     * @return the number of seconds, 0 to only count failed requests
+     */
+    public int getCircuitBreakerSlowCallSeconds() {
+        return circuitBreakerSlowCallSeconds;
+    }
+
+    @DataBoundSetter
+    public void setCircuitBreakerSlowCallSeconds(int circuitBreakerSlowCallSeconds) {
+        this.circuitBreakerSlowCallSeconds = Math.max(0, circuitBreakerSlowCallSeconds);
+    }
+
+    /**
+     * Get how long an open circuit fails requests at once before probe requests are sent.
+     * @return the number of seconds
+     */
+    public int getCircuitBreakerOpenSeconds() {
+        return circuitBreakerOpenSeconds;
+    }
+
+    @DataBoundSetter
+    public void setCircuitBreakerOpenSeconds(int circuitBreakerOpenSeconds) {
+        this.circuitBreakerOpenSeconds = Math.max(1, circuitBreakerOpenSeconds);
+    }
+
+    /**
+     * Describe the circuit breaker state of each endpoint, for the configuration page.
+     */
+    public String getCircuitBreakerSummary() {
+        return ProviderCircuitBreaker.get().getSummary();
+    }
+
+    /**
+     * Describe how long provider calls waited for a free slot, for the configuration page.
+     */
+    public String getQueueSummary() {
+        return ExplanationBulkhead.get().getSummary();
+    }
+
+    /**
+     * Describe how many explanations the knowledge base answered, for the configuration page.
+     */
+    public String getKnownErrorsSummary() {
+        return KnowledgeBase.get().getSummary();
+    }
+
     @Override
     public String getDisplayName() {
         return "Explain Error Plugin Configuration";
@@ -174,6 +666,27 @@ public class GlobalConfigurationImpl extends GlobalConfiguration {
         return model;
 }
 
+    /**
+     * Validate the job pattern of background explanations.
+     */
+    @RequirePOST
+    public FormValidation doCheckAutoExplainJobPattern(@QueryParameter String value) {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        return isValidPattern(value) ? FormValidation.ok() : FormValidation.error("Invalid regular expression");
+    }
+
+    private static boolean isValidPattern(String pattern) {
+        if (pattern == null || pattern.isBlank()) {
+            return true;
+        }
+        try {
+            ErrorSignatures.compile(pattern, 0);
+            return true;
+        } catch (PatternSyntaxException e) {
+            return false;
+        }
+    }
+
     /**
      * Method to test the AI API configuration.
      * This is called when the "Test Configuration" button is clicked.
@@ -207,7 +720,9 @@ public class GlobalConfigurationImpl extends GlobalConfiguration {
             tempConfig.setApiUrl(testApiUrl);
             tempConfig.setModel(testModel);
 
-            AIService aiService = new AIService(tempConfig);
+            // Call the endpoint in the form directly, not the cache, the queue, the fallbacks or routes
+            // behind it, and without touching the health and circuit breaker of the live endpoint
+            BaseAIService aiService = AIService.createUntrackedService(tempConfig);
             String testResponse = aiService.explainError("Test configuration call - please respond with 'Configuration test successful'");
 
             if (testResponse != null && testResponse.contains("Configuration test successful")) {
@@ -0,0 +1,261 @@
+package io.jenkins.plugins.explain_error;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.ProxyConfiguration;
+import hudson.init.Terminator;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+
+/**
+ * Plugin-wide registry of shared {@link HttpClient} instances used for AI provider calls.
+ * One keep-alive, HTTP/2-capable client is kept per provider endpoint and proxy configuration,
+ * so consecutive explanations reuse pooled connections instead of paying a new TCP and TLS
+ * handshake each time. Clients are dropped when the global configuration changes and the
+ * shared executor is shut down when Jenkins stops.
+ */
+@Extension
+public class HttpClientRegistry {
+
+    private static final Logger LOGGER = Logger.getLogger(HttpClientRegistry.class.getName());
+
+    static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(30);
+
+    private final Map<String, ClientEntry> clients = new ConcurrentHashMap<>();
+    private final AtomicLong clientsCreated = new AtomicLong();
+    private final AtomicLong clientsEvicted = new AtomicLong();
+    private volatile ExecutorService executor;
+
+    /**
+     * Get the singleton instance of HttpClientRegistry.
+     * @return the HttpClientRegistry instance
+     */
+    public static HttpClientRegistry get() {
+        return ExtensionList.lookupSingleton(HttpClientRegistry.class);
+    }
+
+    /**
+     * Get the shared client for the given provider endpoint, creating it on first use.
+     * @param provider the AI provider the endpoint belongs to
+     * @param endpoint the API endpoint that will be called
+     * @return a client that keeps connections to the endpoint alive between calls
+     */
+    public HttpClient clientFor(AIProvider provider, URI endpoint) {
+        return entryFor(provider, endpoint).client;
+    }
+
+    /**
+     * Send a request asynchronously through the shared client of its endpoint,
+     * recording pool statistics when the exchange completes.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(AIProvider provider, HttpRequest request,
+                                                           HttpResponse.BodyHandler<T> handler) {
+        ClientEntry entry = entryFor(provider, request.uri());
+        entry.requestsTotal.incrementAndGet();
+        entry.inFlight.incrementAndGet();
+        entry.lastUsed = System.currentTimeMillis();
+        CompletableFuture<HttpResponse<T>> exchange = entry.client.sendAsync(request, handler);
+        // Return the exchange itself rather than a dependent stage, so callers can cancel it
+        exchange.whenComplete((response, failure) -> {
+            entry.inFlight.decrementAndGet();
+            if (failure != null) {
+                entry.failures.incrementAndGet();
+            }
+        });
+        return exchange;
+    }
+
+    /**
+     * Drop all cached clients. Called when the plugin configuration changes so the next
+     * request builds a client with the current endpoint and proxy settings.
+     */
+    public void invalidateAll() {
+        int size = clients.size();
+        clients.clear();
+        clientsEvicted.addAndGet(size);
+        if (size > 0) {
+            LOGGER.fine("Invalidated " + size + " cached AI provider HTTP client(s)");
+        }
+    }
+
+    /**
+     * Get a snapshot of the connection pool statistics, keyed by endpoint.
+     * The JDK client does not expose its internal connection pool, so the counts are
+     * tracked per shared client as requests pass through the registry; whether a request
+     * reused a pooled connection or opened a new one is not known.
+     */
+    public Map<String, EndpointStats> getStats() {
+        Map<String, EndpointStats> stats = new LinkedHashMap<>();
+        clients.forEach((key, entry) -> stats.put(key, new EndpointStats(entry)));
+        return Collections.unmodifiableMap(stats);
+    }
+
+    public long getClientsCreated() {
+        return clientsCreated.get();
+    }
+
+    public long getClientsEvicted() {
+        return clientsEvicted.get();
+    }
+
+    public int getActiveClients() {
+        return clients.size();
+    }
+
+    @Terminator
+    public static void shutdownAll() {
+        for (HttpClientRegistry registry : ExtensionList.lookup(HttpClientRegistry.class)) {
+            registry.shutdown();
+        }
+    }
+
+    void shutdown() {
+        invalidateAll();
+        ExecutorService current = executor;
+        executor = null;
+        if (current != null) {
+            current.shutdownNow();
+        }
+    }
+
+    private ClientEntry entryFor(AIProvider provider, URI endpoint) {
+        String proxyKey = proxyKey();
+        String origin = endpoint.getScheme() + "://" + endpoint.getAuthority();
+        String key = provider.name() + " " + origin + proxyKey;
+        ClientEntry entry = clients.computeIfAbsent(key,
+                k -> new ClientEntry(buildClient(), provider, origin, proxyKey));
+        if (clients.size() > 1) {
+            // Proxy settings are global, so clients built for an older proxy can never be reused
+            clients.entrySet().removeIf(e -> {
+                boolean stale = !e.getValue().proxyKey.equals(proxyKey);
+                if (stale) {
+                    clientsEvicted.incrementAndGet();
+                }
+                return stale;
+            });
+        }
+        return entry;
+    }
+
+    private HttpClient buildClient() {
+        clientsCreated.incrementAndGet();
+        // Jenkins' builder applies the configured proxy and proxy authentication
+        return ProxyConfiguration.newHttpClientBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .executor(executor())
+                .build();
+    }
+
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(
+                    new NamingThreadFactory(new DaemonThreadFactory(), "Explain Error HTTP client"));
+        }
+        return executor;
+    }
+
+    private static String proxyKey() {
+        ProxyConfiguration proxy = Jenkins.get().proxy;
+        if (proxy == null) {
+            return "";
+        }
+        return " via " + proxy.getName() + ":" + proxy.getPort() + " user=" + proxy.getUserName()
+                + " noProxy=" + proxy.getNoProxyHost();
+    }
+
+    private static final class ClientEntry {
+        private final HttpClient client;
+        private final AIProvider provider;
+        private final String origin;
+        private final String proxyKey;
+        private final long created = System.currentTimeMillis();
+        private final AtomicLong requestsTotal = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile long lastUsed;
+
+        private ClientEntry(HttpClient client, AIProvider provider, String origin, String proxyKey) {
+            this.client = client;
+            this.provider = provider;
+            this.origin = origin;
+            this.proxyKey = proxyKey;
+        }
+    }
+
+    /**
+     * Point-in-time statistics for one pooled client.
+     */
+    public static final class EndpointStats {
+        private final AIProvider provider;
+        private final String origin;
+        private final String httpVersion;
+        private final long created;
+        private final long lastUsed;
+        private final long requestsTotal;
+        private final long failures;
+        private final int inFlight;
+
+        private EndpointStats(ClientEntry entry) {
+            this.provider = entry.provider;
+            this.origin = entry.origin;
+            this.httpVersion = entry.client.version().name();
+            this.created = entry.created;
+            this.lastUsed = entry.lastUsed;
+            this.requestsTotal = entry.requestsTotal.get();
+            this.failures = entry.failures.get();
+            this.inFlight = entry.inFlight.get();
+        }
+
+        public AIProvider getProvider() {
+            return provider;
+        }
+
+        /**
+         * Get the scheme, host and port of the endpoint, without the proxy it is reached through.
+         */
+        public String getOrigin() {
+            return origin;
+        }
+
+        public String getHttpVersion() {
+            return httpVersion;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        public long getLastUsed() {
+            return lastUsed;
+        }
+
+        public long getRequestsTotal() {
+            return requestsTotal;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package io.jenkins.plugins.explain_error;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Coalesces concurrent explanation requests for the same key, e.g. the same build or the same
+ * error fingerprint, so that only the first caller talks to the AI provider and later callers
+ * attach to its pending result.
+ * Callers that join a streaming request late first receive the text generated so far.
+ * Cancelling the future returned to one caller only detaches that caller; the underlying request
+ * is cancelled once every caller has gone away.
+ */
+@Extension
+public class InFlightExplanations {
+
+    private static final Logger LOGGER = Logger.getLogger(InFlightExplanations.class.getName());
+
+    private final Map<String, Pending<?>> pending = new HashMap<>();
+
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Get the singleton instance of InFlightExplanations.
+     * @return the InFlightExplanations instance
+     */
+    public static InFlightExplanations get() {
+        return ExtensionList.lookupSingleton(InFlightExplanations.class);
+    }
+
+    /**
+     * Join the pending request for {@code key}, or start it if there is none.
+     * @param key identifies requests that produce the same explanation
+     * @param request starts the request; it receives a sink for streamed text and is only called
+     *                when no request for the key is pending
+     * @param onText receives streamed text, may be {@code null}
+     * @param <T> the type of the result, the same for every request made for a key
+     * @return a future completed with the shared result
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> join(String key, Function<Consumer<String>, CompletableFuture<T>> request,
+                                         Consumer<String> onText) {
+        Pending<T> entry;
+        boolean first;
+        synchronized (this) {
+            entry = (Pending<T>) pending.get(key);
+            first = entry == null;
+            if (first) {
+                entry = new Pending<>();
+                pending.put(key, entry);
+            }
+        }
+        CompletableFuture<T> view = entry.attach(onText);
+        if (view == null) {
+            // The pending request completed while we were attaching, start over
+            synchronized (this) {
+                pending.remove(key, entry);
+            }
+            return join(key, request, onText);
+        }
+
+        if (first) {
+            started.incrementAndGet();
+            Pending<T> owner = entry;
+            owner.result.whenComplete((explanation, failure) -> {
+                synchronized (this) {
+                    pending.remove(key, owner);
+                }
+            });
+            try {
+                owner.start(request.apply(owner::broadcast));
+            } catch (RuntimeException e) {
+                owner.result.completeExceptionally(e);
+            }
+        } else {
+            coalesced.incrementAndGet();
+            LOGGER.fine("Joined pending explanation request " + key);
+        }
+        return view;
+    }
+
+    /**
+     * Check whether a request for {@code key} is pending.
+     */
+    public synchronized boolean isPending(String key) {
+        return pending.containsKey(key);
+    }
+
+    /**
+     * Get the number of requests that were sent to the provider.
+     */
+    public long getStarted() {
+        return started.get();
+    }
+
+    /**
+     * Get the number of callers that attached to an already pending request.
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    private static final class Pending<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final StringBuilder text = new StringBuilder();
+        private final List<Consumer<String>> listeners = new ArrayList<>();
+        private CompletableFuture<T> upstream;
+        private int callers;
+        private boolean closed;
+
+        /**
+         * @return the caller's view of the result, or {@code null} if the request already completed
+         */
+        private CompletableFuture<T> attach(Consumer<String> onText) {
+            synchronized (this) {
+                if (closed || result.isDone()) {
+                    return null;
+                }
+                callers++;
+                if (onText != null) {
+                    if (text.length() > 0) {
+                        deliver(onText, text.toString());
+                    }
+                    listeners.add(onText);
+                }
+            }
+            CompletableFuture<T> view = new CompletableFuture<>();
+            result.whenComplete((explanation, failure) -> {
+                if (failure != null) {
+                    view.completeExceptionally(failure);
+                } else {
+                    view.complete(explanation);
+                }
+            });
+            view.whenComplete((explanation, failure) -> {
+                if (view.isCancelled()) {
+                    detach(onText);
+                }
+            });
+            return view;
+        }
+
+        private void detach(Consumer<String> onText) {
+            CompletableFuture<T> toCancel;
+            synchronized (this) {
+                if (onText != null) {
+                    listeners.remove(onText);
+                }
+                if (--callers > 0 || result.isDone()) {
+                    return;
+                }
+                closed = true;
+                toCancel = upstream;
+            }
+            // Nobody is waiting for the result anymore
+            if (toCancel != null) {
+                toCancel.cancel(true);
+            }
+            result.cancel(false);
+        }
+
+        private void start(CompletableFuture<T> request) {
+            boolean cancel;
+            synchronized (this) {
+                upstream = request;
+                cancel = closed;
+            }
+            if (cancel) {
+                request.cancel(true);
+                return;
+            }
+            request.whenComplete((explanation, failure) -> {
+                synchronized (this) {
+                    closed = true;
+                }
+                if (failure != null) {
+                    result.completeExceptionally(failure);
+                } else {
+                    result.complete(explanation);
+                }
+            });
+        }
+
+        private synchronized void broadcast(String chunk) {
+            text.append(chunk);
+            for (Consumer<String> listener : listeners) {
+                deliver(listener, chunk);
+            }
+        }
+
+        private static void deliver(Consumer<String> listener, String chunk) {
+            try {
+                listener.accept(chunk);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Explanation listener failed", e);
+            }
+        }
+    }
+}
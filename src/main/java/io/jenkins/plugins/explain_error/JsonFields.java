@@ -0,0 +1,81 @@
+package io.jenkins.plugins.explain_error;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Extracts a few scalar fields from a JSON document in one streaming pass, without building a
+ * tree of the whole document. Objects and arrays that cannot contain a wanted field are skipped
+ * token by token, and reading stops as soon as every wanted field has been found.
+ */
+final class JsonFields {
+
+    private JsonFields() {
+    }
+
+    /**
+     * Read fields from a JSON document.
+     * @param parser the parser, positioned before the document
+     * @param pointers the fields to read, as JSON pointers such as {@code /choices/0/message/content};
+     *        field names containing {@code /} or {@code ~} are not supported
+     * @return the text of each field found with a scalar value; {@code null} values, objects and
+     *         arrays are left out
+     * @throws IOException if the document is not valid JSON up to the last field read
+     */
+    static Map<String, String> read(JsonParser parser, String... pointers) throws IOException {
+        Set<String> wanted = Set.of(pointers);
+        Set<String> prefixes = new HashSet<>();
+        for (String pointer : pointers) {
+            for (int i = pointer.indexOf('/'); i >= 0; i = pointer.indexOf('/', i + 1)) {
+                prefixes.add(pointer.substring(0, i));
+            }
+        }
+        Map<String, String> values = new HashMap<>();
+        if (parser.nextToken() != null) {
+            read(parser, "", wanted, prefixes, values);
+        }
+        return values;
+    }
+
+    /**
+     * Read the value the parser is positioned at.
+     * @return whether all wanted fields have been found
+     */
+    private static boolean read(JsonParser parser, String path, Set<String> wanted, Set<String> prefixes,
+                                Map<String, String> values) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            if (!prefixes.contains(path)) {
+                parser.skipChildren();
+                return false;
+            }
+            boolean object = token == JsonToken.START_OBJECT;
+            int index = 0;
+            while ((token = parser.nextToken()) != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new IOException("Unexpected end of JSON document");
+                }
+                String child;
+                if (object) {
+                    child = path + "/" + parser.currentName();
+                    parser.nextToken();
+                } else {
+                    child = path + "/" + index++;
+                }
+                if (read(parser, child, wanted, prefixes, values)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (token != JsonToken.VALUE_NULL && wanted.contains(path)) {
+            values.put(path, parser.getText());
+        }
+        return values.size() == wanted.size();
+    }
+}
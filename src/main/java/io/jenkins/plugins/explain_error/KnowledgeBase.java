@@ -0,0 +1,221 @@
+package io.jenkins.plugins.explain_error;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Answers known failures, such as a disconnected agent or a full disk, with the explanation
+ * configured for them instead of asking the AI provider.
+ * The {@link KnownError entries} are compiled into one {@link ErrorSignatures} matcher, so
+ * checking error text costs a single pass over it whatever the number of entries. Only the lines
+ * where the build failed are checked: the lines after the last line matching a built-in
+ * {@link ErrorSignatures error signature}, and the {@link #FAILURE_WINDOW} lines before it. The
+ * matching line closest to the end decides the explanation, so an unrelated match earlier in the
+ * log, such as a test expecting a 401, does not replace the explanation.
+ */
+@Extension
+public class KnowledgeBase {
+
+    private static final Logger LOGGER = Logger.getLogger(KnowledgeBase.class.getName());
+
+    /** Lines before the last error line that are checked. */
+    static final int FAILURE_WINDOW = 20;
+
+    private final Supplier<List<KnownError>> entries;
+
+    /** The entries the matcher was compiled from; saving the configuration creates new entries. */
+    private List<KnownError> compiledFrom;
+    private Compiled compiled;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final Map<String, AtomicLong> hitsByName = new ConcurrentHashMap<>();
+
+    public KnowledgeBase() {
+        this(() -> GlobalConfigurationImpl.get().getKnownErrors());
+    }
+
+    /**
+     * @param entries supplies the configured entries
+     */
+    KnowledgeBase(Supplier<List<KnownError>> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Get the singleton instance of KnowledgeBase.
+     * @return the KnowledgeBase instance
+     */
+    public static KnowledgeBase get() {
+        return ExtensionList.lookupSingleton(KnowledgeBase.class);
+    }
+
+    /**
+     * Find the entry matching the lines where the build failed.
+     * @param errorText the error text
+     * @return the entry of the matching line closest to the end, or {@code null} if no entry matches
+     */
+    public KnownError match(String errorText) {
+        Compiled current = compiled();
+        if (current.signatures == null || StringUtils.isBlank(errorText)) {
+            return null;
+        }
+        lookups.incrementAndGet();
+        List<CharSequence> lines = lines(errorText);
+        int anchor = lastError(lines);
+        for (int i = lines.size() - 1; i >= Math.max(0, anchor - FAILURE_WINDOW); i--) {
+            ErrorSignatures.Signature signature = current.signatures.match(lines.get(i));
+            if (signature != null) {
+                KnownError entry = current.byId.get(signature.getName());
+                hits.incrementAndGet();
+                hitsByName.computeIfAbsent(entry.getName(), n -> new AtomicLong()).incrementAndGet();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the last line matching a built-in error signature.
+     * @return its index, or the index of the last line if no line matches
+     */
+    private static int lastError(List<CharSequence> lines) {
+        ErrorSignatures errors = ErrorSignatures.builtIn();
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            if (errors.matches(lines.get(i))) {
+                return i;
+            }
+        }
+        return lines.size() - 1;
+    }
+
+    private static List<CharSequence> lines(String text) {
+        List<CharSequence> lines = new ArrayList<>();
+        int start = 0;
+        int length = text.length();
+        while (start < length) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = length;
+            }
+            lines.add(text.subSequence(start, end));
+            start = end + 1;
+        }
+        return lines;
+    }
+
+    /**
+     * Explain error text if it is a known failure.
+     * @param errorText the error text
+     * @return the configured explanation, or {@code null} if no entry matches
+     */
+    public String explain(String errorText) {
+        KnownError entry = match(errorText);
+        if (entry == null) {
+            return null;
+        }
+        LOGGER.fine(() -> "Explanation served from the knowledge base: " + entry.getName());
+        return "Known issue: " + entry.getName() + "\n\n" + entry.getExplanation();
+    }
+
+    private synchronized Compiled compiled() {
+        List<KnownError> current = entries.get();
+        if (compiled == null || !current.equals(compiledFrom)) {
+            compiled = compile(current);
+            compiledFrom = current;
+        }
+        return compiled;
+    }
+
+    /**
+     * Compile entries into one matcher, skipping entries that cannot be matched.
+     */
+    private static Compiled compile(List<KnownError> entries) {
+        List<ErrorSignatures.Signature> signatures = new ArrayList<>();
+        Map<String, KnownError> byId = new LinkedHashMap<>();
+        for (KnownError entry : entries != null ? entries : List.<KnownError>of()) {
+            List<String> keywords = entry.getKeywordList();
+            if (keywords.isEmpty()) {
+                LOGGER.warning("Ignoring known error '" + entry.getName() + "': it has no keywords");
+                continue;
+            }
+            if (!keywords.stream().allMatch(StringUtils::isAsciiPrintable)) {
+                LOGGER.warning("Ignoring known error '" + entry.getName() + "': keywords must be ASCII");
+                continue;
+            }
+            // Names are not required to be unique, the position identifies the entry
+            String id = Integer.toString(byId.size());
+            try {
+                signatures.add(new ErrorSignatures.Signature(id, entry.getPattern(),
+                        keywords.toArray(new String[0])));
+            } catch (IllegalArgumentException e) {
+                LOGGER.warning("Ignoring known error '" + entry.getName() + "': " + e.getMessage());
+                continue;
+            }
+            byId.put(id, entry);
+        }
+        return new Compiled(signatures.isEmpty() ? null : new ErrorSignatures(signatures), byId);
+    }
+
+    /**
+     * Get the number of error texts checked against the knowledge base.
+     */
+    public long getLookups() {
+        return lookups.get();
+    }
+
+    /**
+     * Get the number of error texts answered by the knowledge base, each saving a provider call.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the fraction of lookups answered by the knowledge base.
+     * @return the hit rate between 0 and 1, or 0 if there were no lookups yet
+     */
+    public double getHitRate() {
+        long total = lookups.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    /**
+     * Get the number of hits of each entry.
+     * @return the hits by entry name, for entries hit at least once
+     */
+    public Map<String, Long> getHitsByName() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        hitsByName.forEach((name, count) -> result.put(name, count.get()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Describe the hit rate for the configuration page.
+     */
+    public String getSummary() {
+        return String.format("%,d of %,d explanations answered from known errors (%.0f%%) since the last restart",
+                hits.get(), lookups.get(), getHitRate() * 100);
+    }
+
+    private static final class Compiled {
+        /** The matcher, {@code null} if there is no usable entry. */
+        private final ErrorSignatures signatures;
+        private final Map<String, KnownError> byId;
+
+        private Compiled(ErrorSignatures signatures, Map<String, KnownError> byId) {
+            this.signatures = signatures;
+            this.byId = byId;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package io.jenkins.plugins.explain_error;
+
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang3.StringUtils;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+/**
+ * An entry of the {@link KnowledgeBase}: a failure recognized by its signature and the
+ * explanation given for it without asking the AI provider.
+ */
+public class KnownError extends AbstractDescribableImpl<KnownError> {
+
+    private final String name;
+    private final String keywords;
+    private final String explanation;
+    private String pattern;
+
+    /**
+     * @param name the name of the failure
+     * @param keywords the literals identifying the failure, one per line; a line containing any of them,
+     *        ignoring case, matches
+     * @param explanation the explanation given for the failure
+     */
+    @DataBoundConstructor
+    public KnownError(String name, String keywords, String explanation) {
+        this.name = StringUtils.trimToEmpty(name);
+        this.keywords = StringUtils.trimToEmpty(keywords);
+        this.explanation = StringUtils.trimToEmpty(explanation);
+    }
+
+    KnownError(String name, String keywords, String pattern, String explanation) {
+        this(name, keywords, explanation);
+        setPattern(pattern);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getKeywords() {
+        return keywords;
+    }
+
+    /**
+     * Get the regular expression a line containing a keyword must also match.
+     * @return the pattern, or {@code null} if a keyword is enough
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    @DataBoundSetter
+    public void setPattern(String pattern) {
+        this.pattern = StringUtils.trimToNull(pattern);
+    }
+
+    public String getExplanation() {
+        return explanation;
+    }
+
+    /**
+     * Get the keywords as a list.
+     * @return the non-blank lines of the keywords, trimmed
+     */
+    public List<String> getKeywordList() {
+        List<String> list = new ArrayList<>();
+        for (String line : keywords.split("\\R")) {
+            if (!line.isBlank()) {
+                list.add(line.trim());
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Lines of test assertions and expectations, which mention errors without having them, e.g.
+     * {@code expected status: 401}.
+     */
+    private static final String NOT_AN_ASSERTION = "^(?!.*\\b(?:expected|assert\\w*|should)\\b)";
+
+    /**
+     * Get the built-in entries, covering failures caused by the build environment rather than the code.
+     * Every entry has a pattern confirming that the line reports the failure of the build itself.
+     */
+    public static List<KnownError> defaults() {
+        return new ArrayList<>(List.of(
+                new KnownError("Agent disconnected",
+                        "agent went offline\nchannelclosedexception\nconnection was broken\n"
+                                + "remote call on\nbackend connection is closed\nunexpected termination of the channel",
+                        "(?i)agent went offline|ChannelClosedException|connection was broken"
+                                + "|Remote call on .* failed|backend connection is closed|unexpected termination",
+                        "The build agent lost its connection to the controller while the build was running, so "
+                                + "the step was aborted. This is an infrastructure problem, not a problem with the "
+                                + "code.\n\n"
+                                + "1. Check the agent log and the system log of the agent machine for a crash, a "
+                                + "restart or the out of memory killer.\n"
+                                + "2. For cloud agents, check whether the instance was terminated or preempted.\n"
+                                + "3. Check the network between the agent and the controller, including proxies and "
+                                + "load balancers closing idle connections.\n"
+                                + "4. Run the build again once the agent is back online."),
+                new KnownError("Disk full",
+                        "no space left on device\ndisk quota exceeded\nnot enough space on the disk",
+                        "(?i)" + NOT_AN_ASSERTION + ".*(?:(?:^|[:\\]])\\s*(?:no space left on device"
+                                + "|disk quota exceeded)|there is not enough space on the disk)",
+                        "A disk on the build machine is full, so files could not be written.\n\n"
+                                + "1. Free space on the agent: delete old workspaces, build caches and unused "
+                                + "container images (for example with docker system prune).\n"
+                                + "2. Discard old builds and artifacts of the job.\n"
+                                + "3. Monitor free disk space on agents so they go offline before they fill up.\n"
+                                + "4. Run the build again."),
+                new KnownError("Artifact repository unavailable",
+                        "503\nservice unavailable",
+                        "(?i)(?:\\b503\\b|service unavailable).*(?:nexus|artifactory|repository|repo\\b|maven|npm|"
+                                + "registry|transfer|download)|(?:nexus|artifactory|repository|repo\\b|maven|npm|"
+                                + "registry|transfer|download).*(?:\\b503\\b|service unavailable)",
+                        "The artifact repository (such as Nexus or Artifactory) answered 503 Service Unavailable, "
+                                + "so dependencies could not be downloaded or artifacts could not be published. The "
+                                + "repository was down, restarting or overloaded; the build itself is most likely "
+                                + "fine.\n\n"
+                                + "1. Check the status of the repository server.\n"
+                                + "2. Run the build again once it is available.\n"
+                                + "3. If this happens often, enable retries in the build tool (for example "
+                                + "-Dmaven.wagon.http.retryHandler.count=3 for Maven) and consider a local mirror."),
+                new KnownError("Expired or invalid credentials",
+                        "401 unauthorized\nstatus code: 401\nreturn code is: 401\nreturned 401\ncode e401\n"
+                                + "authentication failed\nbad credentials\ninvalid username or password\n"
+                                + "token has expired\ncredentials have expired\nexpiredtoken",
+                        "(?i)" + NOT_AN_ASSERTION + ".*(?:\\b(?:fatal|error|denied|failed|failure|could not"
+                                + "|unable to|return code is)\\b|err!|remote:|response from daemon)",
+                        "The build was refused access because its credentials are expired, revoked or wrong.\n\n"
+                                + "1. Find the credentials used by the failing step in the build configuration.\n"
+                                + "2. Renew the token or password with the service that rejected it and update the "
+                                + "Jenkins credentials.\n"
+                                + "3. Check that the account still has access to the repository or service.\n"
+                                + "4. Prefer tokens with a known expiry date and renew them before it.")));
+    }
+
+    @Extension
+    @Symbol("knownError")
+    public static class DescriptorImpl extends Descriptor<KnownError> {
+
+        @Override
+        public String getDisplayName() {
+            return "Known Error";
+        }
+
+        @RequirePOST
+        public FormValidation doCheckKeywords(@QueryParameter String value) {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            if (StringUtils.isBlank(value)) {
+                return FormValidation.error("At least one keyword is required");
+            }
+            for (char c : value.toCharArray()) {
+                if (c >= 128) {
+                    return FormValidation.error("Keywords must be ASCII, use the pattern to match other characters");
+                }
+            }
+            return FormValidation.ok();
+        }
+
+        @RequirePOST
+        public FormValidation doCheckPattern(@QueryParameter String value) {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            if (StringUtils.isBlank(value)) {
+                return FormValidation.ok();
+            }
+            try {
+                ErrorSignatures.compile(value, 0);
+                return FormValidation.ok();
+            } catch (PatternSyntaxException e) {
+                return FormValidation.error("Invalid regular expression: " + e.getDescription());
+            }
+        }
+    }
+}
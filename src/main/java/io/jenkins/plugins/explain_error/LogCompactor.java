@@ -0,0 +1,250 @@
+package io.jenkins.plugins.explain_error;
+
+import hudson.console.ConsoleNote;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Shrinks extracted error text before it is sent to the AI provider, without losing what the
+ * provider needs to explain the failure.
+ * <ul>
+ *     <li>ANSI escape sequences and console notes are removed.</li>
+ *     <li>Java and Groovy stack traces are folded to their top frames; exception messages and
+ *     the {@code Caused by:} chain are kept.</li>
+ *     <li>Runs of identical lines are collapsed into their first line followed by {@code (×N)}.
+ *     Runs of near-identical lines, differing only in numbers such as timestamps, counters or
+ *     test counts, are collapsed into their first and last lines around a count of the lines
+ *     in between, so the final numbers are never lost. Repeated groups of lines, such as the
+ *     few lines logged by each attempt of a retry loop, are collapsed the same way.</li>
+ * </ul>
+ */
+public final class LogCompactor {
+
+    /** Frames kept at the top of each stack trace, and of each {@code Caused by:} trace. */
+    static final int DEFAULT_MAX_FRAMES = 5;
+    /** Longest group of lines recognized as repeating. */
+    static final int MAX_GROUP_LINES = 8;
+    /** Fewest near-identical groups summarized; shorter runs are kept as they are. */
+    static final int MIN_SIMILAR_REPEATS = 4;
+
+    private static final Pattern ANSI = Pattern.compile("\u001B\\[[0-?]*[ -/]*[@-~]");
+    private static final Pattern FRAME = Pattern.compile("^\\s+at [\\w$.<>/@:-]+\\(.*\\)\\s*$");
+    private static final Pattern MORE_FRAMES = Pattern.compile("^\\s+\\.\\.\\. \\d+ (?:more|common frames omitted)\\s*$");
+
+    private final int maxFrames;
+
+    public LogCompactor() {
+        this(DEFAULT_MAX_FRAMES);
+    }
+
+    /**
+     * @param maxFrames the number of frames kept at the top of each stack trace
+     */
+    public LogCompactor(int maxFrames) {
+        this.maxFrames = Math.max(1, maxFrames);
+    }
+
+    /**
+     * Compact error text.
+     * @param text the error text, may be {@code null}
+     * @return the compacted text and how much it shrank
+     */
+    public Result compact(String text) {
+        if (text == null || text.isEmpty()) {
+            return new Result(text == null ? "" : text, 0);
+        }
+        List<String> lines = foldStackTraces(clean(text));
+        StringBuilder out = new StringBuilder(text.length() / 2);
+        collapseRepeats(lines, out);
+        if (!text.endsWith("\n") && out.length() > 0) {
+            out.setLength(out.length() - 1);
+        }
+        return new Result(out.toString(), text.length());
+    }
+
+    private static List<String> clean(String text) {
+        String[] raw = text.split("\r?\n", -1);
+        int count = raw.length;
+        if (count > 0 && raw[count - 1].isEmpty()) {
+            // A trailing newline does not start another line
+            count--;
+        }
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String line = raw[i];
+            if (line.indexOf(ConsoleNote.PREAMBLE_STR.charAt(0)) >= 0) {
+                line = ConsoleNote.removeNotes(line);
+            }
+            if (line.indexOf('\u001B') >= 0) {
+                line = ANSI.matcher(line).replaceAll("");
+            }
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    private List<String> foldStackTraces(List<String> lines) {
+        List<String> folded = new ArrayList<>(lines.size());
+        int i = 0;
+        while (i < lines.size()) {
+            String line = lines.get(i);
+            if (!FRAME.matcher(line).matches()) {
+                folded.add(line);
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < lines.size() && FRAME.matcher(lines.get(i)).matches()) {
+                i++;
+            }
+            int frames = i - start;
+            int kept = Math.min(frames, maxFrames);
+            folded.addAll(lines.subList(start, start + kept));
+            int omitted = frames - kept;
+            if (i < lines.size() && MORE_FRAMES.matcher(lines.get(i)).matches()) {
+                // Merge the trace's own "... N more" into the count
+                omitted += Integer.parseInt(lines.get(i).replaceAll("\\D+", " ").trim().split(" ")[0]);
+                i++;
+            }
+            if (omitted > 0) {
+                folded.add(indentation(line) + "... " + omitted + " more");
+            }
+        }
+        return folded;
+    }
+
+    private static void collapseRepeats(List<String> lines, StringBuilder out) {
+        String[] keys = new String[lines.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(lines.get(i));
+        }
+        int i = 0;
+        while (i < keys.length) {
+            // Pick the group length that covers the most repeated lines starting here
+            int bestLength = 1;
+            int bestRepeats = 1;
+            for (int length = 1; length <= MAX_GROUP_LINES && i + 2 * length <= keys.length; length++) {
+                int repeats = 1;
+                while (i + (repeats + 1) * length <= keys.length && sameGroup(keys, i, i + repeats * length, length)) {
+                    repeats++;
+                }
+                if (repeats > 1 && length * repeats > bestLength * bestRepeats) {
+                    bestLength = length;
+                    bestRepeats = repeats;
+                }
+            }
+            int end = i + bestLength * bestRepeats;
+            if (bestRepeats == 1) {
+                out.append(lines.get(i)).append('\n');
+            } else if (identical(lines, i, end, bestLength)) {
+                if (bestLength == 1) {
+                    out.append(lines.get(i)).append(" (×").append(bestRepeats).append(")\n");
+                } else {
+                    append(lines, i, i + bestLength, out);
+                    out.append("(previous ").append(bestLength).append(" lines ×").append(bestRepeats)
+                            .append(")\n");
+                }
+            } else if (bestRepeats < MIN_SIMILAR_REPEATS) {
+                append(lines, i, end, out);
+            } else {
+                // The numbers of the first and last lines differ, e.g. test counts or exit codes
+                append(lines, i, i + bestLength, out);
+                int similar = bestRepeats - 2;
+                out.append('(').append(similar);
+                if (bestLength == 1) {
+                    out.append(similar == 1 ? " similar line)\n" : " similar lines)\n");
+                } else {
+                    out.append(" similar groups of ").append(bestLength).append(" lines)\n");
+                }
+                append(lines, end - bestLength, end, out);
+            }
+            i = end;
+        }
+    }
+
+    private static boolean identical(List<String> lines, int start, int end, int length) {
+        for (int j = start + length; j < end; j++) {
+            if (!lines.get(j).equals(lines.get(j - length))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void append(List<String> lines, int start, int end, StringBuilder out) {
+        for (int j = start; j < end; j++) {
+            out.append(lines.get(j)).append('\n');
+        }
+    }
+
+    private static boolean sameGroup(String[] keys, int first, int second, int length) {
+        for (int j = 0; j < length; j++) {
+            if (!keys[first + j].equals(keys[second + j])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Key under which near-identical lines are equal: runs of digits are replaced by a single
+     * {@code #} and surrounding whitespace is ignored.
+     */
+    static String key(String line) {
+        StringBuilder key = null;
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (key == null) {
+                    key = new StringBuilder(length);
+                    key.append(line, 0, i);
+                }
+                if (key.length() == 0 || key.charAt(key.length() - 1) != '#') {
+                    key.append('#');
+                }
+            } else if (key != null) {
+                key.append(c);
+            }
+        }
+        return (key != null ? key.toString() : line).trim();
+    }
+
+    private static String indentation(String line) {
+        int i = 0;
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return line.substring(0, i);
+    }
+
+    /**
+     * Compacted text and the size of the text it was made from.
+     */
+    public static final class Result {
+        private final String text;
+        private final int originalLength;
+
+        Result(String text, int originalLength) {
+            this.text = text;
+            this.originalLength = originalLength;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public int getOriginalLength() {
+            return originalLength;
+        }
+
+        /**
+         * Get how many times smaller the compacted text is.
+         * @return the original length divided by the compacted length, {@code 1} for empty text
+         */
+        public double getRatio() {
+            return text.isEmpty() ? 1 : (double) originalLength / text.length();
+        }
+    }
+}
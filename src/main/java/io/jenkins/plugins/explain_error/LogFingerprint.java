@@ -0,0 +1,77 @@
+package io.jenkins.plugins.explain_error;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Pattern;
+
+/**
+ * Computes a stable fingerprint of error text, so the same failure seen in different builds,
+ * branches or workspaces maps to the same value.
+ * Volatile details such as timestamps, build numbers, workspace paths and hex ids are replaced
+ * by placeholders before hashing.
+ */
+public final class LogFingerprint {
+
+    private static final Pattern TIMESTAMP = Pattern.compile(
+            "\\d{4}-\\d{2}-\\d{2}[T ]\\d{2}:\\d{2}:\\d{2}(?:[.,]\\d+)?(?:Z|[+-]\\d{2}:?\\d{2})?");
+    private static final Pattern TIME_OF_DAY = Pattern.compile("\\b\\d{1,2}:\\d{2}:\\d{2}(?:[.,]\\d+)?\\b");
+    private static final Pattern UNIX_WORKSPACE = Pattern.compile("(?:/[^\\s/:'\"]+)*/workspace(?:/[^\\s/:'\"]+)?");
+    private static final Pattern WINDOWS_WORKSPACE = Pattern.compile(
+            "[A-Za-z]:(?:\\\\[^\\s\\\\:'\"]+)*\\\\workspace(?:\\\\[^\\s\\\\:'\"]+)?");
+    private static final Pattern UUID = Pattern.compile(
+            "\\b[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}\\b");
+    private static final Pattern HEX_ID = Pattern.compile("\\b(?=[0-9a-fA-F]*\\d)[0-9a-fA-F]{7,}\\b");
+    private static final Pattern BUILD_NUMBER = Pattern.compile("(#|\\bbuild(?:s)?[ /]|/job/[^/\\s]+/)\\d+\\b",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern DURATION = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\s*(?:ms|s|sec|seconds|min|minutes)\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("[ \\t]+");
+
+    private LogFingerprint() {
+    }
+
+    /**
+     * Normalize error text by replacing volatile details with placeholders.
+     * @param errorText the error text, may be {@code null}
+     * @return the normalized text
+     */
+    public static String normalize(String errorText) {
+        if (errorText == null) {
+            return "";
+        }
+        String text = errorText.replace("\r\n", "\n");
+        text = TIMESTAMP.matcher(text).replaceAll("<timestamp>");
+        text = TIME_OF_DAY.matcher(text).replaceAll("<time>");
+        text = WINDOWS_WORKSPACE.matcher(text).replaceAll("<workspace>");
+        text = UNIX_WORKSPACE.matcher(text).replaceAll("<workspace>");
+        text = UUID.matcher(text).replaceAll("<uuid>");
+        text = HEX_ID.matcher(text).replaceAll("<hex>");
+        text = BUILD_NUMBER.matcher(text).replaceAll("$1<n>");
+        text = DURATION.matcher(text).replaceAll("<duration>");
+        text = WHITESPACE.matcher(text).replaceAll(" ");
+        return text.trim();
+    }
+
+    /**
+     * Compute the fingerprint of error text.
+     * @param errorText the error text, may be {@code null}
+     * @return the hex encoded SHA-256 hash of the normalized text
+     */
+    public static String of(String errorText) {
+        return sha256(normalize(errorText));
+    }
+
+    static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
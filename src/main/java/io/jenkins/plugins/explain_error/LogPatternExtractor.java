@@ -0,0 +1,139 @@
+package io.jenkins.plugins.explain_error;
+
+import hudson.console.ConsoleNote;
+import hudson.model.Run;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts the lines matching a pattern or one of a set of {@link ErrorSignatures} from a whole
+ * build log in a single streaming pass.
+ * Each match is surrounded by up to {@code contextLines} lines before and after it; overlapping
+ * windows are merged and separate windows are divided by a {@code ...} line. Scanning stops once
+ * the output limits are reached, so the earliest errors are kept and memory stays bounded by the
+ * context window and the output, whatever the size of the log.
+ */
+public class LogPatternExtractor {
+
+    /** Upper bound on the characters returned. */
+    static final int MAX_OUTPUT_CHARS = 64 * 1024;
+    /** Lines longer than this are cut, so a single minified line cannot fill the output. */
+    static final int MAX_LINE_CHARS = 4096;
+    static final String GAP = "...";
+
+    private final Pattern pattern;
+    private final ErrorSignatures signatures;
+    private final int contextLines;
+    private final int maxLines;
+    private final int maxChars;
+
+    /**
+     * @param pattern the precompiled pattern matched against each line
+     * @param contextLines the number of lines to keep before and after each match
+     * @param maxLines the maximum number of lines returned, context and gap lines included
+     */
+    public LogPatternExtractor(Pattern pattern, int contextLines, int maxLines) {
+        this(pattern, null, contextLines, maxLines);
+    }
+
+    /**
+     * @param pattern the precompiled pattern matched against each line, or {@code null}
+     * @param signatures the error signatures matched against each line, or {@code null}
+     * @param contextLines the number of lines to keep before and after each match
+     * @param maxLines the maximum number of lines returned, context and gap lines included
+     */
+    public LogPatternExtractor(Pattern pattern, ErrorSignatures signatures, int contextLines, int maxLines) {
+        this(pattern, signatures, contextLines, maxLines, MAX_OUTPUT_CHARS);
+    }
+
+    LogPatternExtractor(Pattern pattern, ErrorSignatures signatures, int contextLines, int maxLines, int maxChars) {
+        this.pattern = pattern;
+        this.signatures = signatures;
+        this.contextLines = Math.max(0, contextLines);
+        this.maxLines = maxLines > 0 ? maxLines : Integer.MAX_VALUE;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * Extract the matching lines of a build's log, with console notes removed.
+     */
+    public String extract(Run<?, ?> run) throws IOException {
+        try (Reader reader = run.getLogReader()) {
+            return extract(reader, true);
+        }
+    }
+
+    /**
+     * Extract the matching lines of a log.
+     */
+    public String extract(Reader log) throws IOException {
+        return extract(log, false);
+    }
+
+    private String extract(Reader log, boolean removeNotes) throws IOException {
+        Output output = new Output();
+        Matcher matcher = pattern != null ? pattern.matcher("") : null;
+        // Lines seen since the last emitted one, at most contextLines of them
+        ArrayDeque<String> before = new ArrayDeque<>(Math.min(contextLines, 1024) + 1);
+        int after = 0;
+        long lineNumber = 0;
+        long lastEmitted = 0;
+
+        BufferedReader reader = log instanceof BufferedReader ? (BufferedReader) log : new BufferedReader(log, 64 * 1024);
+        String line;
+        while ((line = reader.readLine()) != null && !output.full) {
+            lineNumber++;
+            if (removeNotes && line.indexOf(ConsoleNote.PREAMBLE_STR.charAt(0)) >= 0) {
+                line = ConsoleNote.removeNotes(line);
+            }
+            if (line.length() > MAX_LINE_CHARS) {
+                line = line.substring(0, MAX_LINE_CHARS) + "…";
+            }
+
+            if ((matcher != null && matcher.reset(line).find()) || (signatures != null && signatures.matches(line))) {
+                long first = lineNumber - before.size();
+                if (contextLines > 0 && lastEmitted > 0 && first > lastEmitted + 1) {
+                    output.add(GAP);
+                }
+                while (!before.isEmpty()) {
+                    output.add(before.removeFirst());
+                }
+                output.add(line);
+                lastEmitted = lineNumber;
+                after = contextLines;
+            } else if (after > 0) {
+                output.add(line);
+                lastEmitted = lineNumber;
+                after--;
+            } else if (contextLines > 0) {
+                if (before.size() == contextLines) {
+                    before.removeFirst();
+                }
+                before.addLast(line);
+            }
+        }
+        return output.text.toString();
+    }
+
+    private final class Output {
+        private final StringBuilder text = new StringBuilder();
+        private int lines;
+        private boolean full;
+
+        private void add(String line) {
+            if (full) {
+                return;
+            }
+            if (lines >= maxLines || text.length() + line.length() + 1 > maxChars) {
+                full = true;
+                return;
+            }
+            text.append(line).append('\n');
+            lines++;
+        }
+    }
+}
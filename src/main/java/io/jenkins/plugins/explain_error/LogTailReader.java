@@ -0,0 +1,197 @@
+package io.jenkins.plugins.explain_error;
+
+import hudson.console.ConsoleNote;
+import hudson.model.AbstractBuild;
+import hudson.model.Run;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the last lines of a build log without loading the whole log.
+ * Plain log files of freestyle builds, and of Pipelines using the default file log storage, are
+ * scanned backwards from the end in fixed-size blocks, so time and memory depend on the size of
+ * the tail rather than the size of the log. Gzip-compressed logs, and logs kept in other log
+ * storages, cannot be read backwards and are streamed once, keeping only the last lines.
+ */
+public final class LogTailReader {
+
+    /** Size of the blocks read while scanning backwards for line breaks. */
+    static final int BLOCK_SIZE = 64 * 1024;
+    /** Upper bound on the bytes returned, protecting against logs with enormous lines. */
+    static final int MAX_TAIL_BYTES = 8 * 1024 * 1024;
+    /** Upper bound on the characters kept of one line when a log is streamed. */
+    static final int MAX_LINE_CHARS = 64 * 1024;
+
+    private LogTailReader() {
+    }
+
+    /**
+     * Get the last lines of a build log, with console notes removed.
+     * @param run the build whose log to read
+     * @param maxLines the maximum number of lines to return
+     * @return the lines, oldest first
+     */
+    public static List<String> tail(Run<?, ?> run, int maxLines) throws IOException {
+        if (maxLines <= 0) {
+            return Collections.emptyList();
+        }
+        Charset charset = run.getCharset() != null ? run.getCharset() : StandardCharsets.UTF_8;
+        File log = run instanceof AbstractBuild ? logFile((AbstractBuild<?, ?>) run)
+                : new File(run.getRootDir(), "log");
+        List<String> lines;
+        if (log != null && log.isFile() && !log.getName().endsWith(".gz")) {
+            lines = tail(log.toPath(), charset, maxLines);
+        } else {
+            // Decompresses gzip-compressed logs and reads other log storages without a temporary copy
+            try (InputStream in = run.getLogInputStream()) {
+                lines = tail(in, charset, maxLines);
+            }
+        }
+        List<String> plain = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            plain.add(ConsoleNote.removeNotes(line));
+        }
+        return plain;
+    }
+
+    /**
+     * Get the log file of a freestyle build, which is always stored on the controller's disk.
+     * Other runs may keep their log elsewhere and copy it to a temporary file when asked for one,
+     * so for them only a {@code log} file that already exists in the build directory is read,
+     * as the default file log storage of Pipelines writes it.
+     */
+    @SuppressWarnings("deprecation")
+    private static File logFile(AbstractBuild<?, ?> build) {
+        return build.getLogFile();
+    }
+
+    /**
+     * Get the last lines of an uncompressed file by scanning it backwards.
+     */
+    static List<String> tail(Path file, Charset charset, int maxLines) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = findTailStart(channel, size, maxLines);
+            int length = (int) (size - start);
+            ByteBuffer tail = ByteBuffer.allocate(length);
+            while (tail.hasRemaining()) {
+                if (channel.read(tail, start + tail.position()) < 0) {
+                    break;
+                }
+            }
+            return splitLines(new String(tail.array(), 0, tail.position(), charset));
+        }
+    }
+
+    /**
+     * Find the offset of the first byte of the last {@code maxLines} lines.
+     * A line break at the very end of the file does not start another line. When the lines do
+     * not fit in {@link #MAX_TAIL_BYTES}, the tail starts at the first whole line that does, so it
+     * never starts in the middle of a line or of a multi-byte character.
+     */
+    private static long findTailStart(FileChannel channel, long size, int maxLines) throws IOException {
+        long limit = Math.max(0, size - MAX_TAIL_BYTES);
+        // The byte before the limit tells whether the limit starts a whole line
+        long scanFrom = Math.max(0, limit - 1);
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+        long position = size;
+        int breaks = 0;
+        long firstLineStart = size;
+        while (position > scanFrom) {
+            int length = (int) Math.min(BLOCK_SIZE, position - scanFrom);
+            position -= length;
+            block.clear().limit(length);
+            while (block.hasRemaining()) {
+                if (channel.read(block, position + block.position()) < 0) {
+                    throw new IOException("Log file shrank while reading");
+                }
+            }
+            for (int i = length - 1; i >= 0; i--) {
+                if (block.get(i) == '\n' && position + i != size - 1) {
+                    firstLineStart = position + i + 1;
+                    if (++breaks == maxLines) {
+                        return firstLineStart;
+                    }
+                }
+            }
+        }
+        return limit == 0 ? 0 : firstLineStart;
+    }
+
+    /**
+     * Get the last lines of a stream, reading it once and keeping only the last lines in memory.
+     * Lines are cut to {@link #MAX_LINE_CHARS}, so a log with an enormous line cannot exhaust memory.
+     */
+    static List<String> tail(InputStream in, Charset charset, int maxLines) throws IOException {
+        ArrayDeque<String> lines = new ArrayDeque<>(Math.min(maxLines, 1024));
+        try (Reader reader = new BufferedReader(new InputStreamReader(in, charset), BLOCK_SIZE)) {
+            char[] buffer = new char[BLOCK_SIZE];
+            StringBuilder line = new StringBuilder();
+            boolean started = false;
+            int read;
+            while ((read = reader.read(buffer)) >= 0) {
+                for (int i = 0; i < read; i++) {
+                    char c = buffer[i];
+                    if (c == '\n') {
+                        keep(lines, line, maxLines);
+                        started = false;
+                    } else {
+                        started = true;
+                        if (line.length() < MAX_LINE_CHARS) {
+                            line.append(c);
+                        }
+                    }
+                }
+            }
+            if (started) {
+                keep(lines, line, maxLines);
+            }
+        }
+        return new ArrayList<>(lines);
+    }
+
+    private static void keep(ArrayDeque<String> lines, StringBuilder line, int maxLines) {
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r') {
+            length--;
+        }
+        if (lines.size() == maxLines) {
+            lines.removeFirst();
+        }
+        lines.addLast(line.substring(0, length));
+        line.setLength(0);
+    }
+
+    private static List<String> splitLines(String text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        int length = text.length();
+        if (length > 0 && text.charAt(length - 1) == '\n') {
+            length--;
+        }
+        while (start <= length) {
+            int end = text.indexOf('\n', start);
+            if (end < 0 || end > length) {
+                end = length;
+            }
+            String line = text.substring(start, end);
+            lines.add(line.endsWith("\r") ? line.substring(0, line.length() - 1) : line);
+            start = end + 1;
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,138 @@
+package io.jenkins.plugins.explain_error;
+
+/**
+ * Cuts error text down to a token budget, keeping the parts that explain a failure: the first
+ * lines, the first line matching an {@link ErrorSignatures error signature} with the lines around
+ * it, and as much of the end of the log as still fits. Left out lines are replaced by a
+ * {@code ... [N lines omitted] ...} line.
+ */
+public final class LogTruncator {
+
+    /** Tokens kept free for the omission markers. */
+    private static final int MARKER_TOKENS = 30;
+    /** Characters per token assumed when a single line has to be cut. */
+    private static final int CHARS_PER_TOKEN = 3;
+
+    private final TokenEstimator estimator;
+    private final int maxTokens;
+
+    /**
+     * @param estimator the estimator of the provider's tokens
+     * @param maxTokens the token budget, {@code 0} or less for no limit
+     */
+    public LogTruncator(TokenEstimator estimator, int maxTokens) {
+        this.estimator = estimator;
+        this.maxTokens = maxTokens;
+    }
+
+    /**
+     * Truncate text to the token budget.
+     * @param text the text, may be {@code null}
+     * @return the text itself if it fits, otherwise its most relevant lines
+     */
+    public String truncate(String text) {
+        if (text == null || maxTokens <= 0 || estimator.estimate(text) <= maxTokens) {
+            return text;
+        }
+        // A trailing line break does not start another line
+        String[] lines = (text.endsWith("\n") ? text.substring(0, text.length() - 1) : text).split("\n", -1);
+        int[] tokens = new int[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            tokens[i] = estimator.estimate(lines[i]) + 1;
+        }
+        int available = Math.max(0, maxTokens - MARKER_TOKENS);
+        int anchor = findAnchor(lines);
+        boolean[] keep = new boolean[lines.length];
+
+        // A tenth for the head, four tenths around the first error, the rest for the tail
+        int used = keepForward(keep, tokens, 0, available / 10);
+        if (anchor >= 0) {
+            used += keepAround(keep, tokens, anchor, available * 4 / 10);
+        }
+        used += keepBackward(keep, tokens, lines.length - 1, available - used);
+
+        StringBuilder out = new StringBuilder(Math.min(text.length(), maxTokens * 4));
+        int omitted = 0;
+        boolean any = false;
+        for (int i = 0; i < lines.length; i++) {
+            if (!keep[i]) {
+                omitted++;
+                continue;
+            }
+            if (omitted > 0) {
+                out.append("... [").append(omitted).append(" lines omitted] ...\n");
+                omitted = 0;
+            }
+            out.append(lines[i]).append('\n');
+            any = true;
+        }
+        if (!any) {
+            // A single line is over the budget, keep its end
+            int chars = available * CHARS_PER_TOKEN;
+            return "..." + text.substring(Math.max(0, text.length() - chars));
+        }
+        if (omitted > 0) {
+            out.append("... [").append(omitted).append(" lines omitted] ...\n");
+        }
+        if (!text.endsWith("\n") && out.charAt(out.length() - 1) == '\n') {
+            out.setLength(out.length() - 1);
+        }
+        return out.toString();
+    }
+
+    private static int findAnchor(String[] lines) {
+        ErrorSignatures signatures = ErrorSignatures.builtIn();
+        for (int i = 0; i < lines.length; i++) {
+            if (signatures.matches(lines[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int keepForward(boolean[] keep, int[] tokens, int from, int budget) {
+        int used = 0;
+        for (int i = from; i < tokens.length && !keep[i] && used + tokens[i] <= budget; i++) {
+            keep[i] = true;
+            used += tokens[i];
+        }
+        return used;
+    }
+
+    private static int keepBackward(boolean[] keep, int[] tokens, int from, int budget) {
+        int used = 0;
+        for (int i = from; i >= 0 && !keep[i] && used + tokens[i] <= budget; i--) {
+            keep[i] = true;
+            used += tokens[i];
+        }
+        return used;
+    }
+
+    /**
+     * Keep a line and, alternately, the lines before and after it while the budget allows.
+     */
+    private static int keepAround(boolean[] keep, int[] tokens, int anchor, int budget) {
+        if (keep[anchor] || tokens[anchor] > budget) {
+            return 0;
+        }
+        keep[anchor] = true;
+        int used = tokens[anchor];
+        int before = anchor - 1;
+        int after = anchor + 1;
+        boolean grow = true;
+        while (grow) {
+            grow = false;
+            if (before >= 0 && !keep[before] && used + tokens[before] <= budget) {
+                keep[before] = true;
+                used += tokens[before--];
+                grow = true;
+            }
+            if (after < tokens.length && !keep[after] && used + tokens[after] <= budget) {
+                keep[after] = true;
+                used += tokens[after++];
+                grow = true;
+            }
+        }
+        return used;
+    }
+}
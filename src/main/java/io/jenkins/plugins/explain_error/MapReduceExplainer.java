@@ -0,0 +1,277 @@
+package io.jenkins.plugins.explain_error;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Explains error logs too large for one request without truncating them.
+ * The logs are split into chunks at line boundaries; each chunk is summarized by its own
+ * provider call, the calls running in parallel as far as the {@link ExplanationBulkhead} allows,
+ * and a final call merges the partial findings into one explanation.
+ *
+ * <p>An instance explains one text and records the latency of each stage.
+ */
+class MapReduceExplainer {
+
+    private static final Logger LOGGER = Logger.getLogger(MapReduceExplainer.class.getName());
+
+    private final Function<String, CompletableFuture<String>> call;
+    private final Function<Throwable, String> failureMessage;
+    private final TokenEstimator estimator;
+    private final int chunkTokens;
+    private final int maxChunks;
+    private final int maxPromptTokens;
+    private final LongSupplier clock;
+
+    private volatile int chunks;
+    private volatile int failedChunks;
+    private volatile long inputTokens;
+    private volatile long splitMillis;
+    private volatile long mapMillis;
+    private final AtomicLong slowestChunkMillis = new AtomicLong();
+    private volatile long reduceMillis;
+
+    /**
+     * @param call sends a prompt to the provider, failing if there is no answer
+     * @param failureMessage turns a failed call into the message shown in place of an explanation
+     * @param estimator the estimator of the provider's tokens
+     * @param chunkTokens the preferred size of a chunk
+     * @param maxChunks the most chunks the logs are split into; chunks grow beyond
+     *        {@code chunkTokens} rather than exceed it
+     * @param maxPromptTokens the budget of each prompt, {@code 0} for no limit; chunks and partial
+     *        findings are cut to fit it together with their instructions
+     */
+    MapReduceExplainer(Function<String, CompletableFuture<String>> call, Function<Throwable, String> failureMessage,
+                       TokenEstimator estimator, int chunkTokens, int maxChunks, int maxPromptTokens,
+                       LongSupplier clock) {
+        this.call = call;
+        this.failureMessage = failureMessage;
+        this.estimator = estimator;
+        this.chunkTokens = Math.max(1, chunkTokens);
+        this.maxChunks = Math.max(1, maxChunks);
+        this.maxPromptTokens = maxPromptTokens;
+        this.clock = clock;
+    }
+
+    /**
+     * Explain error logs.
+     * @param errorLogs the error logs
+     * @return a future completed with the merged explanation, or with a failure message if no
+     *         chunk could be summarized or the merge failed. Cancelling it cancels the pending calls.
+     */
+    CompletableFuture<String> explain(String errorLogs) {
+        long start = clock.getAsLong();
+        List<String> parts = split(errorLogs);
+        splitMillis = clock.getAsLong() - start;
+        chunks = parts.size();
+
+        long mapStart = clock.getAsLong();
+        List<CompletableFuture<String>> maps = new ArrayList<>(parts.size());
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        String[] notes = new String[parts.size()];
+        Throwable[] failures = new Throwable[parts.size()];
+        long tokens = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            int index = i;
+            String prompt = mapPrompt(i + 1, parts.size(), parts.get(i));
+            tokens += estimator.estimate(prompt);
+            CompletableFuture<String> map = call.apply(prompt);
+            pending.add(map);
+            maps.add(map.whenComplete((text, failure) -> {
+                slowestChunkMillis.accumulateAndGet(clock.getAsLong() - mapStart, Math::max);
+                if (failure != null) {
+                    failures[index] = failure;
+                } else {
+                    notes[index] = text;
+                }
+            }));
+        }
+        inputTokens = tokens;
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        result.whenComplete((text, failure) -> {
+            if (result.isCancelled()) {
+                synchronized (pending) {
+                    pending.forEach(f -> f.cancel(true));
+                }
+            }
+        });
+        CompletableFuture.allOf(maps.toArray(new CompletableFuture<?>[0])).handle((ignored, failure) -> {
+            mapMillis = clock.getAsLong() - mapStart;
+            int failed = 0;
+            Throwable first = null;
+            for (Throwable t : failures) {
+                if (t != null) {
+                    failed++;
+                    first = first != null ? first : t;
+                }
+            }
+            failedChunks = failed;
+            if (result.isDone()) {
+                return null;
+            }
+            if (failed == parts.size()) {
+                result.complete(failureMessage.apply(first));
+                return null;
+            }
+            String prompt = reducePrompt(fit(notes));
+            inputTokens += estimator.estimate(prompt);
+            long reduceStart = clock.getAsLong();
+            CompletableFuture<String> reduce = call.apply(prompt);
+            synchronized (pending) {
+                pending.add(reduce);
+            }
+            reduce.whenComplete((text, reduceFailure) -> {
+                reduceMillis = clock.getAsLong() - reduceStart;
+                if (reduceFailure != null) {
+                    result.complete(failureMessage.apply(reduceFailure));
+                } else {
+                    result.complete(text);
+                }
+                LOGGER.fine(describe());
+            });
+            if (result.isCancelled()) {
+                reduce.cancel(true);
+            }
+            return null;
+        });
+        return result;
+    }
+
+    /**
+     * Split text into chunks of whole lines, each within the chunk size where possible.
+     */
+    List<String> split(String text) {
+        // A trailing line break does not start another line
+        String[] lines = (text.endsWith("\n") ? text.substring(0, text.length() - 1) : text).split("\n", -1);
+        int[] tokens = new int[lines.length];
+        long total = 0;
+        for (int i = 0; i < lines.length; i++) {
+            tokens[i] = estimator.estimate(lines[i]) + 1;
+            total += tokens[i];
+        }
+        long size = Math.max(chunkTokens, (total + maxChunks - 1) / maxChunks);
+        // Part numbers are at most maxChunks, so no map prompt has longer instructions than this one
+        LogTruncator truncator = new LogTruncator(estimator, budget(mapPrompt(maxChunks, maxChunks, "")));
+
+        List<String> parts = new ArrayList<>();
+        StringBuilder chunk = new StringBuilder();
+        long chunkSize = 0;
+        for (int i = 0; i < lines.length; i++) {
+            if (chunkSize > 0 && chunkSize + tokens[i] > size && parts.size() < maxChunks - 1) {
+                parts.add(truncator.truncate(chunk.toString()));
+                chunk.setLength(0);
+                chunkSize = 0;
+            }
+            chunk.append(lines[i]).append('\n');
+            chunkSize += tokens[i];
+        }
+        if (chunk.toString().trim().length() > 0 || parts.isEmpty()) {
+            parts.add(truncator.truncate(chunk.toString()));
+        }
+        return parts;
+    }
+
+    /**
+     * Cut the partial findings so that the reduce prompt fits the prompt budget, sharing it equally.
+     */
+    String[] fit(String[] notes) {
+        int budget = budget(reducePrompt(new String[notes.length]));
+        if (budget <= 0) {
+            return notes;
+        }
+        LogTruncator truncator = new LogTruncator(estimator, Math.max(1, budget / notes.length));
+        String[] fitted = new String[notes.length];
+        for (int i = 0; i < notes.length; i++) {
+            fitted[i] = truncator.truncate(notes[i]);
+        }
+        return fitted;
+    }
+
+    /**
+     * Get the tokens left for text in a prompt with the given instructions.
+     * @return the tokens left, at least 1, or {@code 0} if prompts are unlimited
+     */
+    private int budget(String instructions) {
+        if (maxPromptTokens <= 0) {
+            return 0;
+        }
+        return Math.max(1, maxPromptTokens - estimator.estimate(instructions));
+    }
+
+    static String mapPrompt(int part, int parts, String chunk) {
+        return "You are an expert Jenkins administrator and software engineer. "
+                + "The error logs of a failed Jenkins build were split into " + parts + " parts; "
+                + "this is part " + part + ". List the distinct errors in this part, their likely causes and "
+                + "the files, tests, modules or commands involved. Be brief and factual: another step merges "
+                + "your notes with those of the other parts.\n\n"
+                + "ERROR LOGS (PART " + part + " OF " + parts + "):\n"
+                + chunk;
+    }
+
+    static String reducePrompt(String[] notes) {
+        StringBuilder prompt = new StringBuilder()
+                .append("You are an expert Jenkins administrator and software engineer. ")
+                .append("The error logs of a failed Jenkins build were split into ").append(notes.length)
+                .append(" parts and each part was analyzed separately. Merge the notes below into one clear, ")
+                .append("actionable explanation of what went wrong and how to fix it, combining repeated ")
+                .append("findings and putting the root cause first.\n\n");
+        for (int i = 0; i < notes.length; i++) {
+            prompt.append("NOTES ON PART ").append(i + 1).append(":\n")
+                    .append(notes[i] != null ? notes[i].trim() : "(not available)").append("\n\n");
+        }
+        return prompt.append("Please provide:\n")
+                .append("1. A summary of what caused the error\n")
+                .append("2. Specific steps to resolve the issue\n")
+                .append("3. Any relevant best practices to prevent similar issues\n\n")
+                .append("Keep your response concise and focused on actionable solutions. ")
+                .append("Use plain text formatting only - no markdown, bold text, italic text, "
+                        + "or special symbols for formatting.")
+                .toString();
+    }
+
+    /**
+     * Describe the chunks and the latency of each stage.
+     */
+    String describe() {
+        return String.format("Explained error logs in %d parts%s: split %,d ms, map %,d ms (slowest part %,d ms), "
+                        + "reduce %,d ms", chunks, failedChunks > 0 ? " (" + failedChunks + " failed)" : "",
+                splitMillis, mapMillis, slowestChunkMillis.get(), reduceMillis);
+    }
+
+    int getChunks() {
+        return chunks;
+    }
+
+    int getFailedChunks() {
+        return failedChunks;
+    }
+
+    /**
+     * Get the estimated input tokens of all calls made.
+     */
+    long getInputTokens() {
+        return inputTokens;
+    }
+
+    long getSplitMillis() {
+        return splitMillis;
+    }
+
+    long getMapMillis() {
+        return mapMillis;
+    }
+
+    long getSlowestChunkMillis() {
+        return slowestChunkMillis.get();
+    }
+
+    long getReduceMillis() {
+        return reduceMillis;
+    }
+}
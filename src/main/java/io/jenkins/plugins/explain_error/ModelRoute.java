@@ -0,0 +1,229 @@
+package io.jenkins.plugins.explain_error;
+
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.util.ComboBoxModel;
+import hudson.util.FormValidation;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.PatternSyntaxException;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang3.StringUtils;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+/**
+ * A rule sending some explanations to another provider endpoint than the one of the global
+ * configuration, e.g. small failures to a small, fast model. A route matches when all of its
+ * conditions do; conditions left empty match anything.
+ */
+public class ModelRoute extends AbstractDescribableImpl<ModelRoute> {
+
+    /** Name reported for explanations no route matched. */
+    static final String DEFAULT = "default";
+
+    private final String name;
+    private final String endpoint;
+    private int maxInputTokens;
+    private String jobPattern;
+    private String errorCategories;
+
+    /**
+     * @param name the name of the route in metrics
+     * @param endpoint the name of the endpoint explanations are sent to first: {@code primary} or a fallback provider
+     */
+    @DataBoundConstructor
+    public ModelRoute(String name, String endpoint) {
+        this.endpoint = StringUtils.isNotBlank(endpoint) ? endpoint.trim() : ProviderProfile.PRIMARY;
+        this.name = StringUtils.isNotBlank(name) ? name.trim() : this.endpoint;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Get the largest estimated prompt, in tokens, the route matches.
+     * @return the number of tokens, 0 for any size
+     */
+    public int getMaxInputTokens() {
+        return maxInputTokens;
+    }
+
+    @DataBoundSetter
+    public void setMaxInputTokens(int maxInputTokens) {
+        this.maxInputTokens = Math.max(0, maxInputTokens);
+    }
+
+    /**
+     * Get the regular expression the full name of the job must match.
+     * @return the pattern, or {@code null} for any job
+     */
+    public String getJobPattern() {
+        return jobPattern;
+    }
+
+    @DataBoundSetter
+    public void setJobPattern(String jobPattern) {
+        this.jobPattern = StringUtils.trimToNull(jobPattern);
+    }
+
+    /**
+     * Get the names of the built-in {@link ErrorSignatures} of which the error logs must match one.
+     * @return the names, separated by commas or whitespace, or {@code null} for any failure
+     */
+    public String getErrorCategories() {
+        return errorCategories;
+    }
+
+    @DataBoundSetter
+    public void setErrorCategories(String errorCategories) {
+        this.errorCategories = StringUtils.trimToNull(errorCategories);
+    }
+
+    /**
+     * Get the error categories as a list.
+     */
+    public List<String> getErrorCategoryList() {
+        List<String> list = new ArrayList<>();
+        if (errorCategories != null) {
+            for (String category : errorCategories.split("[,\\s]+")) {
+                if (!category.isEmpty()) {
+                    list.add(category);
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Check whether the route applies to an explanation.
+     * @param inputTokens the estimated tokens of the prompt
+     * @param job the full name of the job, or {@code null} if the explanation is not for a build
+     * @param categories the error categories found in the error logs, see {@link #categories}
+     */
+    boolean matches(int inputTokens, String job, Set<String> categories) {
+        if (maxInputTokens > 0 && inputTokens > maxInputTokens) {
+            return false;
+        }
+        if (jobPattern != null) {
+            try {
+                if (job == null || !ErrorSignatures.compile(jobPattern, 0).matcher(job).matches()) {
+                    return false;
+                }
+            } catch (PatternSyntaxException e) {
+                return false;
+            }
+        }
+        List<String> wanted = getErrorCategoryList();
+        return wanted.isEmpty() || wanted.stream().anyMatch(categories::contains);
+    }
+
+    /**
+     * Find the error categories of error logs: the names of the built-in error signatures their lines match.
+     * @param errorLogs the error logs
+     * @return the names, in order of first match
+     */
+    static Set<String> categories(String errorLogs) {
+        Set<String> categories = new LinkedHashSet<>();
+        ErrorSignatures signatures = ErrorSignatures.builtIn();
+        int start = 0;
+        int length = errorLogs.length();
+        while (start < length) {
+            int end = errorLogs.indexOf('\n', start);
+            if (end < 0) {
+                end = length;
+            }
+            ErrorSignatures.Signature signature = signatures.match(errorLogs.subSequence(start, end));
+            if (signature != null) {
+                categories.add(signature.getName());
+            }
+            start = end + 1;
+        }
+        return categories;
+    }
+
+    /**
+     * Pick the route of an explanation.
+     * @param routes the routes, checked in order
+     * @param inputTokens the estimated tokens of the prompt
+     * @param job the full name of the job, or {@code null}
+     * @param errorLogs the error logs, scanned for error categories only if a route needs them
+     * @return the first matching route, or {@code null} if none matches
+     */
+    static ModelRoute select(List<ModelRoute> routes, int inputTokens, String job, String errorLogs) {
+        Set<String> categories = routes.stream().anyMatch(route -> route.errorCategories != null)
+                ? categories(errorLogs)
+                : Set.of();
+        for (ModelRoute route : routes) {
+            if (route.matches(inputTokens, job, categories)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    @Extension
+    @Symbol("modelRoute")
+    public static class DescriptorImpl extends Descriptor<ModelRoute> {
+
+        @Override
+        public String getDisplayName() {
+            return "Model Route";
+        }
+
+        @RequirePOST
+        public ComboBoxModel doFillEndpointItems() {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            ComboBoxModel items = new ComboBoxModel();
+            items.add(ProviderProfile.PRIMARY);
+            for (ProviderProfile profile : GlobalConfigurationImpl.get().getFallbackProviders()) {
+                items.add(profile.getName());
+            }
+            return items;
+        }
+
+        @RequirePOST
+        public FormValidation doCheckJobPattern(@QueryParameter String value) {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            if (StringUtils.isBlank(value)) {
+                return FormValidation.ok();
+            }
+            try {
+                ErrorSignatures.compile(value, 0);
+                return FormValidation.ok();
+            } catch (PatternSyntaxException e) {
+                return FormValidation.error("Invalid regular expression: " + e.getDescription());
+            }
+        }
+
+        @RequirePOST
+        public FormValidation doCheckErrorCategories(@QueryParameter String value) {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            Set<String> known = new TreeSet<>();
+            for (ErrorSignatures.Signature signature : ErrorSignatures.builtIn().getSignatures()) {
+                known.add(signature.getName());
+            }
+            ModelRoute route = new ModelRoute(null, null);
+            route.setErrorCategories(value);
+            for (String category : route.getErrorCategoryList()) {
+                if (!known.contains(category)) {
+                    return FormValidation.warning("Unknown error category " + category + ", known categories: "
+                            + String.join(", ", known));
+                }
+            }
+            return FormValidation.ok();
+        }
+    }
+}
@@ -1,35 +1,59 @@
 package io.jenkins.plugins.explain_error;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.io.IOException;
 import java.net.http.HttpRequest;
+import java.util.Map;
 
 /**
  * OpenAI-specific implementation of the AI service.
  */
 public class OpenAIService extends BaseAIService {
 
+    private static final String CONTENT = "/choices/0/message/content";
+    private static final String DELTA_CONTENT = "/choices/0/delta/content";
+    private static final String ERROR_MESSAGE = "/error/message";
+
     public OpenAIService(GlobalConfigurationImpl config) {
         super(config);
     }
 
+    /**
+     * @param config the global configuration
+     * @param profile the endpoint to call, or {@code null} for the one of the global configuration
+     */
+    public OpenAIService(GlobalConfigurationImpl config, ProviderProfile profile) {
+        super(config, profile);
+    }
+
     @Override
     protected HttpRequest buildHttpRequest(HttpRequest.Builder requestBuilder, String requestBody) {
         return requestBuilder
-            .timeout(java.time.Duration.ofSeconds(60))
+            .timeout(REQUEST_TIMEOUT)
             .header("Content-Type", "application/json")
-            .header("Authorization", "Bearer " + config.getApiKey().getPlainText())
+            .header("Authorization", "Bearer " + getApiKey().getPlainText())
             .POST(HttpRequest.BodyPublishers.ofString(requestBody))
             .build();
     }
 
     @Override
     protected String buildRequestBody(String prompt) throws IOException {
+        return MAPPER.writeValueAsString(createRequestJson(prompt));
+    }
+
+    @Override
+    protected String buildStreamingRequestBody(String prompt) throws IOException {
+        ObjectNode requestJson = createRequestJson(prompt);
+        requestJson.put("stream", true);
+        return MAPPER.writeValueAsString(requestJson);
+    }
+
+    private ObjectNode createRequestJson(String prompt) {
         ObjectNode requestJson = MAPPER.createObjectNode();
-        requestJson.put("model", config.getModel());
-        requestJson.put("max_tokens", 1000);
+        requestJson.put("model", getModel());
+        requestJson.put("max_tokens", MAX_OUTPUT_TOKENS);
         requestJson.put("temperature", 0.3);
 
         ArrayNode messages = MAPPER.createArrayNode();
@@ -40,40 +64,39 @@ public class OpenAIService extends BaseAIService {
 
         requestJson.set("messages", messages);
 
-        return MAPPER.writeValueAsString(requestJson);
+        return requestJson;
     }
 
     @Override
-    protected String parseResponse(String responseBody) throws IOException {
-        try {
-            JsonNode jsonNode = MAPPER.readTree(responseBody);
-            JsonNode choices = jsonNode.get("choices");
-
-            if (choices != null && choices.isArray() && choices.size() > 0) {
-                JsonNode firstChoice = choices.get(0);
-                JsonNode message = firstChoice.get("message");
-                if (message != null) {
-                    JsonNode content = message.get("content");
-                    if (content != null && !content.isNull()) {
-                        return content.asText().trim();
-                    }
-                }
+    protected String parseStreamChunk(String data) throws IOException {
+        try (JsonParser parser = MAPPER.getFactory().createParser(data)) {
+            return JsonFields.read(parser, DELTA_CONTENT).get(DELTA_CONTENT);
+        }
+    }
+
+    @Override
+    protected String parseResponse(ResponseBody responseBody) throws IOException {
+        try (JsonParser parser = responseBody.createParser(MAPPER.getFactory())) {
+            Map<String, String> fields = JsonFields.read(parser, CONTENT, ERROR_MESSAGE);
+
+            String content = fields.get(CONTENT);
+            if (content != null) {
+                return content.trim();
             }
 
             // Check for error in response
-            JsonNode error = jsonNode.get("error");
-            if (error != null) {
-                JsonNode errorMessage = error.get("message");
-                if (errorMessage != null) {
-                    return "AI API Error: " + errorMessage.asText();
-                }
+            String errorMessage = fields.get(ERROR_MESSAGE);
+            if (errorMessage != null) {
+                throw new ApiErrorException(errorMessage);
             }
 
-            return "Unable to parse AI response. Response: " + responseBody;
+            throw new ResponseParseException("Unable to parse AI response. Response: " + responseBody.preview());
 
+        } catch (AIServiceException e) {
+            throw e;
         } catch (Exception e) {
             LOGGER.severe("Failed to parse AI response: " + e.getMessage());
-            return "Failed to parse AI response: " + e.getMessage();
+            throw new ResponseParseException("Failed to parse AI response: " + e.getMessage(), e);
         }
     }
 }
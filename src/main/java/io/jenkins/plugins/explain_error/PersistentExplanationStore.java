@@ -0,0 +1,368 @@
+package io.jenkins.plugins.explain_error;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Disk-backed explanation store that survives controller restarts.
+ * Explanations are appended to segment files; an in-memory index maps each key to the latest
+ * record. The index is built lazily on first access, so startup is not slowed down. When the
+ * files grow beyond the configured size, or most of their content has been superseded, the live
+ * records are compacted into fresh segments, newest first.
+ *
+ * <p>Each record is {@code [int length][int crc32][long created][utf key][utf-8 explanation]}.
+ * A truncated or corrupted tail, e.g. after a crash, is cut off when the segment is loaded.
+ */
+class PersistentExplanationStore {
+
+    private static final Logger LOGGER = Logger.getLogger(PersistentExplanationStore.class.getName());
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final int HEADER_BYTES = 8;
+    static final long MAX_SEGMENT_BYTES = 8L * 1024 * 1024;
+
+    private final Path directory;
+    private final LongSupplier maxBytes;
+    private final LongSupplier ttlMillis;
+    private final LongSupplier clock;
+
+    private final Map<String, Location> index = new HashMap<>();
+    private final TreeMap<Integer, Long> segments = new TreeMap<>();
+    private boolean loaded;
+    private long liveBytes;
+    private long compactions;
+
+    PersistentExplanationStore(Path directory, LongSupplier maxBytes, LongSupplier ttlMillis, LongSupplier clock) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Look up a stored explanation.
+     * @return the record, or {@code null} if there is no live record for the key
+     */
+    synchronized Record get(String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        load();
+        Location location = index.get(key);
+        if (location == null || isExpired(location)) {
+            return null;
+        }
+        try {
+            return decode(readRecord(location));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to read cached explanation from " + directory, e);
+            return null;
+        }
+    }
+
+    /**
+     * Append an explanation, compacting the segments if they exceed the size limit.
+     */
+    synchronized void put(String key, String explanation) {
+        if (!isEnabled()) {
+            return;
+        }
+        load();
+        try {
+            ByteBuffer record = encode(key, explanation, clock.getAsLong());
+            Location location = append(segments, segments.isEmpty() ? 1 : segments.lastKey(), record);
+            track(key, location);
+            if (getTotalBytes() > maxBytes.getAsLong() || (segments.size() > 1 && liveBytes < getTotalBytes() / 2)) {
+                compact();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to store explanation in " + directory, e);
+        }
+    }
+
+    /**
+     * Rewrite the live, unexpired records into new segments, newest first, keeping the total
+     * below three quarters of the size limit, and delete the old segments. The index only moves to
+     * the new segments once they are all written; if writing fails, the new files are removed and
+     * the old segments stay in use.
+     */
+    synchronized void compact() throws IOException {
+        load();
+        if (segments.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<String, Location>> live = new ArrayList<>(index.entrySet());
+        live.removeIf(e -> isExpired(e.getValue()));
+        live.sort(Comparator.comparingLong((Map.Entry<String, Location> e) -> e.getValue().created).reversed());
+
+        Map<String, Location> newIndex = new HashMap<>();
+        TreeMap<Integer, Long> newSegments = new TreeMap<>();
+        long newLiveBytes = 0;
+        long budget = maxBytes.getAsLong() * 3 / 4;
+        int segment = segments.lastKey() + 1;
+        try {
+            for (Map.Entry<String, Location> entry : live) {
+                Location old = entry.getValue();
+                if (newLiveBytes + old.size() > budget) {
+                    break;
+                }
+                ByteBuffer record = ByteBuffer.wrap(readRecord(old, true));
+                Location location = append(newSegments, segment, record);
+                segment = location.segment;
+                newIndex.put(entry.getKey(), location);
+                newLiveBytes += location.size();
+            }
+        } catch (IOException e) {
+            for (Integer written : newSegments.keySet()) {
+                Files.deleteIfExists(segmentPath(written));
+            }
+            throw e;
+        }
+
+        TreeMap<Integer, Long> oldSegments = new TreeMap<>(segments);
+        index.clear();
+        index.putAll(newIndex);
+        segments.clear();
+        segments.putAll(newSegments);
+        liveBytes = newLiveBytes;
+        compactions++;
+
+        for (Integer old : oldSegments.keySet()) {
+            try {
+                Files.deleteIfExists(segmentPath(old));
+            } catch (IOException e) {
+                // The records were copied, a leftover segment is loaded before the new ones and superseded
+                LOGGER.log(Level.WARNING, "Failed to delete compacted segment " + segmentPath(old), e);
+            }
+        }
+        LOGGER.fine("Compacted explanation store to " + index.size() + " entries, " + liveBytes + " bytes");
+    }
+
+    synchronized int size() {
+        load();
+        return index.size();
+    }
+
+    synchronized long getTotalBytes() {
+        long total = 0;
+        for (long size : segments.values()) {
+            total += size;
+        }
+        return total;
+    }
+
+    synchronized long getCompactions() {
+        return compactions;
+    }
+
+    private boolean isEnabled() {
+        return maxBytes.getAsLong() > 0;
+    }
+
+    private boolean isExpired(Location location) {
+        long ttl = ttlMillis.getAsLong();
+        return ttl > 0 && clock.getAsLong() - location.created > ttl;
+    }
+
+    private void track(String key, Location location) {
+        Location previous = index.put(key, location);
+        if (previous != null) {
+            liveBytes -= previous.size();
+        }
+        liveBytes += location.size();
+    }
+
+    private Location append(TreeMap<Integer, Long> segmentSizes, int segment, ByteBuffer record) throws IOException {
+        long created = record.getLong(record.position() + HEADER_BYTES);
+        int length = record.remaining() - HEADER_BYTES;
+        long segmentSize = segmentSizes.getOrDefault(segment, 0L);
+        if (segmentSize > 0 && segmentSize + record.remaining() > MAX_SEGMENT_BYTES) {
+            segment++;
+        }
+        Files.createDirectories(directory);
+        try (FileChannel channel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long offset = channel.size();
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            segmentSizes.put(segment, offset + HEADER_BYTES + length);
+            return new Location(segment, offset, length, created);
+        }
+    }
+
+    private byte[] readRecord(Location location) throws IOException {
+        return readRecord(location, false);
+    }
+
+    private byte[] readRecord(Location location, boolean withHeader) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + location.length);
+        try (FileChannel channel = FileChannel.open(segmentPath(location.segment), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, location.offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of segment " + location.segment);
+                }
+            }
+        }
+        byte[] record = buffer.array();
+        CRC32 crc = new CRC32();
+        crc.update(record, HEADER_BYTES, location.length);
+        if ((int) crc.getValue() != ByteBuffer.wrap(record, 4, 4).getInt()) {
+            throw new IOException("Checksum mismatch in segment " + location.segment + " at " + location.offset);
+        }
+        if (withHeader) {
+            return record;
+        }
+        byte[] payload = new byte[location.length];
+        System.arraycopy(record, HEADER_BYTES, payload, 0, location.length);
+        return payload;
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<Integer> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    ids.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    LOGGER.fine("Ignoring unexpected file in explanation store: " + name);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to list explanation store " + directory, e);
+            return;
+        }
+        ids.sort(null);
+        for (int id : ids) {
+            loadSegment(id);
+        }
+        LOGGER.fine("Loaded explanation store index with " + index.size() + " entries from " + ids.size() + " segments");
+    }
+
+    private void loadSegment(int id) {
+        Path file = segmentPath(id);
+        long offset = 0;
+        try (InputStream stream = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            long fileSize = Files.size(file);
+            while (fileSize - offset >= HEADER_BYTES) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < 0 || offset + HEADER_BYTES + length > fileSize) {
+                    break;
+                }
+                byte[] payload = in.readNBytes(length);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                DataInputStream header = new DataInputStream(new ByteArrayInputStream(payload));
+                long created = header.readLong();
+                String key = header.readUTF();
+                track(key, new Location(id, offset, length, created));
+                offset += HEADER_BYTES + length;
+            }
+            if (offset < fileSize) {
+                LOGGER.warning("Discarding " + (fileSize - offset) + " unreadable bytes at the end of " + file);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(offset);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to load explanation store segment " + file, e);
+        }
+        segments.put(id, offset);
+    }
+
+    private Path segmentPath(int id) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private static ByteBuffer encode(String key, String explanation, long created) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(explanation.length() + key.length() + 16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(created);
+        out.writeUTF(key);
+        out.write(explanation.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        byte[] payload = bytes.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        record.flip();
+        return record;
+    }
+
+    private static Record decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        long created = in.readLong();
+        in.readUTF();
+        String explanation = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        return new Record(explanation, created);
+    }
+
+    /**
+     * A stored explanation and the time it was created.
+     */
+    static final class Record {
+        final String explanation;
+        final long created;
+
+        Record(String explanation, long created) {
+            this.explanation = explanation;
+            this.created = created;
+        }
+    }
+
+    private static final class Location {
+        private final int segment;
+        private final long offset;
+        private final int length;
+        private final long created;
+
+        private Location(int segment, long offset, int length, long created) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.created = created;
+        }
+
+        private long size() {
+            return HEADER_BYTES + length;
+        }
+    }
+}
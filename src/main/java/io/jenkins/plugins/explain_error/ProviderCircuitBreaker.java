@@ -0,0 +1,299 @@
+package io.jenkins.plugins.explain_error;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Circuit breaker of each AI provider endpoint, by {@link BaseAIService#getEndpointName() endpoint name}.
+ * When too many of the recent calls of an endpoint failed or were slow, the circuit opens and
+ * calls fail at once with a {@link CircuitOpenException} instead of waiting for timeouts. Once
+ * the open period is over, a few probe calls are let through: if they succeed the circuit closes,
+ * otherwise it opens again.
+ */
+@Extension
+public class ProviderCircuitBreaker {
+
+    private static final Logger LOGGER = Logger.getLogger(ProviderCircuitBreaker.class.getName());
+
+    /** Number of recent calls the failure and slow call rates are computed over. */
+    static final int WINDOW = 20;
+    /** Calls needed in the window before the circuit can open. */
+    static final int MIN_CALLS = 10;
+    /** Successful probe calls needed to close a half-open circuit. */
+    static final int PROBES = 3;
+
+    /**
+     * State of the circuit of an endpoint.
+     */
+    public enum State {
+        /** Calls are sent. */
+        CLOSED,
+        /** Calls fail at once. */
+        OPEN,
+        /** A few probe calls are sent to find out whether the endpoint recovered. */
+        HALF_OPEN;
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    private final IntSupplier failureRate;
+    private final IntSupplier slowCallSeconds;
+    private final IntSupplier openSeconds;
+    private final LongSupplier clock;
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public ProviderCircuitBreaker() {
+        this(() -> GlobalConfigurationImpl.get().getCircuitBreakerFailureRate(),
+                () -> GlobalConfigurationImpl.get().getCircuitBreakerSlowCallSeconds(),
+                () -> GlobalConfigurationImpl.get().getCircuitBreakerOpenSeconds(),
+                System::currentTimeMillis);
+    }
+
+    /**
+     * @param failureRate the percentage of failed or slow calls that opens the circuit, 0 to disable it
+     * @param slowCallSeconds the duration from which a call counts as slow, 0 to only count failures
+     * @param openSeconds how long the circuit stays open before probe calls are sent
+     * @param clock the current time in milliseconds
+     */
+    ProviderCircuitBreaker(IntSupplier failureRate, IntSupplier slowCallSeconds, IntSupplier openSeconds,
+                           LongSupplier clock) {
+        this.failureRate = failureRate;
+        this.slowCallSeconds = slowCallSeconds;
+        this.openSeconds = openSeconds;
+        this.clock = clock;
+    }
+
+    /**
+     * Get the singleton instance of ProviderCircuitBreaker.
+     * @return the ProviderCircuitBreaker instance
+     */
+    public static ProviderCircuitBreaker get() {
+        return ExtensionList.lookupSingleton(ProviderCircuitBreaker.class);
+    }
+
+    /**
+     * Get permission to call an endpoint. Every permitted call must be {@link #record recorded}.
+     * @param endpoint the name of the endpoint
+     * @throws CircuitOpenException if the circuit is open, or half-open with all probes sent
+     */
+    public void acquire(String endpoint) throws CircuitOpenException {
+        if (failureRate.getAsInt() <= 0) {
+            return;
+        }
+        Circuit circuit = circuits.computeIfAbsent(endpoint, name -> new Circuit());
+        long wait = circuit.acquire(clock.getAsLong());
+        if (wait >= 0) {
+            rejected.incrementAndGet();
+            throw new CircuitOpenException("The AI provider endpoint " + endpoint + " is failing, so requests to it "
+                    + "are paused" + (wait > 0 ? " for another " + seconds(wait) + "s" : " while it is being tested")
+                    + " instead of waiting for timeouts. Please try again later.");
+        }
+    }
+
+    /**
+     * Record the outcome of a permitted call.
+     * Rate limited calls and answers that could not be parsed say nothing about the health of the
+     * endpoint, so they count neither as failed nor as successful.
+     * @param endpoint the name of the endpoint
+     * @param outcome the outcome, as classified by {@link ExplanationMetrics#outcome}
+     * @param nanos the time the endpoint took to start answering the last attempt of the call,
+     *        excluding rate limiter waits and retry backoff; {@code 0} if it did not answer
+     */
+    public void record(String endpoint, String outcome, long nanos) {
+        if ("circuit_open".equals(outcome)) {
+            return;
+        }
+        Circuit circuit = circuits.get(endpoint);
+        if (circuit == null) {
+            // The breaker was disabled when the call was sent
+            return;
+        }
+        int slowSeconds = slowCallSeconds.getAsInt();
+        boolean slow = slowSeconds > 0 && nanos >= TimeUnit.SECONDS.toNanos(slowSeconds);
+        long openMillis = TimeUnit.SECONDS.toMillis(openSeconds.getAsInt());
+        if (circuit.record(outcome, slow, failureRate.getAsInt(), clock.getAsLong(), openMillis)) {
+            opened.incrementAndGet();
+            LOGGER.warning("AI provider endpoint " + endpoint + " is failing, pausing requests to it for "
+                    + openSeconds.getAsInt() + "s");
+        }
+    }
+
+    /**
+     * Get the state of the circuit of an endpoint.
+     * @param endpoint the name of the endpoint
+     */
+    public State getState(String endpoint) {
+        Circuit circuit = circuits.get(endpoint);
+        return circuit != null && failureRate.getAsInt() > 0 ? circuit.getState(clock.getAsLong()) : State.CLOSED;
+    }
+
+    /**
+     * Get the state of the circuit of each endpoint that was called, for metrics.
+     * @return the states by endpoint name, sorted by name
+     */
+    public Map<String, State> getStates() {
+        Map<String, State> states = new TreeMap<>();
+        circuits.keySet().forEach(endpoint -> states.put(endpoint, getState(endpoint)));
+        return states;
+    }
+
+    /**
+     * Describe the circuit of each endpoint, for the configuration page.
+     */
+    public String getSummary() {
+        if (failureRate.getAsInt() <= 0) {
+            return "Circuit breaker disabled";
+        }
+        if (circuits.isEmpty()) {
+            return "No requests since the last restart";
+        }
+        long now = clock.getAsLong();
+        StringJoiner summary = new StringJoiner("; ");
+        new TreeMap<>(circuits).forEach((endpoint, circuit) -> summary.add(endpoint + ": " + circuit.describe(now)));
+        return summary.toString();
+    }
+
+    /**
+     * Get the number of times a circuit opened.
+     */
+    public long getOpened() {
+        return opened.get();
+    }
+
+    /**
+     * Get the number of calls failed at once because their circuit was open.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    private static long seconds(long millis) {
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(millis + 999));
+    }
+
+    /**
+     * The state and recent calls of one endpoint.
+     */
+    private static final class Circuit {
+        private final boolean[] failed = new boolean[WINDOW];
+        private final boolean[] slow = new boolean[WINDOW];
+        private int count;
+        private int next;
+        private State state = State.CLOSED;
+        private long openUntil;
+        private int probesInFlight;
+        private int probeSuccesses;
+
+        /**
+         * @return {@code -1} if the call may be sent, otherwise how long the circuit stays open, in milliseconds
+         */
+        synchronized long acquire(long now) {
+            if (state == State.OPEN) {
+                if (now < openUntil) {
+                    return openUntil - now;
+                }
+                state = State.HALF_OPEN;
+                probesInFlight = 0;
+                probeSuccesses = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesInFlight + probeSuccesses >= PROBES) {
+                    return 0;
+                }
+                probesInFlight++;
+            }
+            return -1;
+        }
+
+        /**
+         * @return whether the call opened the circuit
+         */
+        synchronized boolean record(String outcome, boolean slowCall, int threshold, long now, long openMillis) {
+            boolean ignored = "cancelled".equals(outcome) || "rate_limited".equals(outcome)
+                    || "parse_error".equals(outcome);
+            boolean failure = !ignored && !"success".equals(outcome);
+            switch (state) {
+                case HALF_OPEN:
+                    probesInFlight = Math.max(0, probesInFlight - 1);
+                    if (ignored) {
+                        return false;
+                    }
+                    if (failure || slowCall) {
+                        open(now, openMillis);
+                        return true;
+                    }
+                    if (++probeSuccesses >= PROBES) {
+                        state = State.CLOSED;
+                        count = 0;
+                        next = 0;
+                    }
+                    return false;
+                case CLOSED:
+                    if (ignored) {
+                        return false;
+                    }
+                    failed[next] = failure;
+                    slow[next] = slowCall;
+                    next = (next + 1) % WINDOW;
+                    count = Math.min(count + 1, WINDOW);
+                    if (count >= MIN_CALLS && threshold > 0
+                            && (rate(failed) >= threshold || rate(slow) >= threshold)) {
+                        open(now, openMillis);
+                        return true;
+                    }
+                    return false;
+                default:
+                    // Sent before the circuit opened
+                    return false;
+            }
+        }
+
+        private void open(long now, long openMillis) {
+            state = State.OPEN;
+            openUntil = now + openMillis;
+        }
+
+        private int rate(boolean[] calls) {
+            int matching = 0;
+            for (int i = 0; i < count; i++) {
+                if (calls[i]) {
+                    matching++;
+                }
+            }
+            return matching * 100 / count;
+        }
+
+        synchronized State getState(long now) {
+            // An open circuit is half-open once the next call would be sent as a probe
+            return state == State.OPEN && now >= openUntil ? State.HALF_OPEN : state;
+        }
+
+        synchronized String describe(long now) {
+            State current = getState(now);
+            if (current == State.OPEN) {
+                return "open for another " + seconds(openUntil - now) + "s";
+            }
+            if (current == State.HALF_OPEN) {
+                int succeeded = state == State.HALF_OPEN ? probeSuccesses : 0;
+                return "half-open, " + succeeded + " of " + PROBES + " probes succeeded";
+            }
+            return count == 0 ? "closed" : "closed, " + rate(failed) + "% failed and " + rate(slow)
+                    + "% slow of the last " + count + " requests";
+        }
+    }
+}
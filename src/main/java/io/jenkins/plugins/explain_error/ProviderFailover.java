@@ -0,0 +1,238 @@
+package io.jenkins.plugins.explain_error;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends a request to an ordered list of AI provider endpoints: healthy endpoints first, in the
+ * configured order, moving on to the next endpoint when one fails, times out or answers with an
+ * error payload. With hedging, a second endpoint is asked as well once the first takes longer
+ * than its usual 95th percentile latency; the first answer wins and the other request is cancelled.
+ */
+final class ProviderFailover {
+
+    private static final Logger LOGGER = Logger.getLogger(ProviderFailover.class.getName());
+
+    /** Smallest delay before a hedged request, so only the slow tail is hedged. */
+    static final long MIN_HEDGE_DELAY_MILLIS = 1000;
+    /** Delay before a hedged request while too few latencies of the first endpoint are known. */
+    static final long DEFAULT_HEDGE_DELAY_MILLIS = 10_000;
+
+    private final List<BaseAIService> services;
+    private final ProviderHealth health;
+    private final boolean hedge;
+
+    /**
+     * @param services the endpoints, in the configured order
+     * @param health the health of the endpoints
+     * @param hedge whether a slow first request is hedged with a request to the next endpoint
+     */
+    ProviderFailover(List<BaseAIService> services, ProviderHealth health, boolean hedge) {
+        this.services = services;
+        this.health = health;
+        this.hedge = hedge;
+    }
+
+    /**
+     * Get the endpoints in the order they are tried: healthy ones first, each group in the configured order.
+     */
+    List<BaseAIService> ordered() {
+        List<BaseAIService> healthy = new ArrayList<>();
+        List<BaseAIService> unhealthy = new ArrayList<>();
+        for (BaseAIService service : services) {
+            (health.isHealthy(service.getEndpointName()) ? healthy : unhealthy).add(service);
+        }
+        healthy.addAll(unhealthy);
+        return healthy;
+    }
+
+    /**
+     * Send a request, failing over and hedging across the endpoints.
+     * @param request sends the request to one endpoint
+     * @return a future completed with the first successful answer, or failed with the failure of
+     *         the last endpoint if none succeeded; cancelling it cancels the requests in progress
+     */
+    CompletableFuture<String> call(Function<BaseAIService, CompletableFuture<String>> request) {
+        return call(request, service -> { });
+    }
+
+    /**
+     * Send a request, failing over and hedging across the endpoints.
+     * @param request sends the request to one endpoint
+     * @param answered receives the endpoint whose answer completes the returned future, before it completes
+     */
+    CompletableFuture<String> call(Function<BaseAIService, CompletableFuture<String>> request,
+                                   Consumer<BaseAIService> answered) {
+        return call(request, () -> false, hedge, answered);
+    }
+
+    /**
+     * Send a request without hedging that stops failing over once it has delivered output,
+     * e.g. streamed text that cannot be taken back.
+     * @param request sends the request to one endpoint
+     * @param delivered whether the request delivered output
+     */
+    CompletableFuture<String> callOnce(Function<BaseAIService, CompletableFuture<String>> request,
+                                       BooleanSupplier delivered) {
+        return callOnce(request, delivered, service -> { });
+    }
+
+    /**
+     * Send a request without hedging that stops failing over once it has delivered output.
+     * @param request sends the request to one endpoint
+     * @param delivered whether the request delivered output
+     * @param answered receives the endpoint whose answer completes the returned future, before it completes
+     */
+    CompletableFuture<String> callOnce(Function<BaseAIService, CompletableFuture<String>> request,
+                                       BooleanSupplier delivered, Consumer<BaseAIService> answered) {
+        return call(request, delivered, false, answered);
+    }
+
+    private CompletableFuture<String> call(Function<BaseAIService, CompletableFuture<String>> request,
+                                           BooleanSupplier delivered, boolean hedged,
+                                           Consumer<BaseAIService> answered) {
+        Attempt attempt = new Attempt(request, delivered, hedged, ordered(), answered);
+        attempt.launch(attempt.remaining.poll(), true);
+        return attempt.result;
+    }
+
+    private long hedgeDelay(BaseAIService service) {
+        long p95 = health.getP95Millis(service.getEndpointName());
+        return p95 < 0 ? DEFAULT_HEDGE_DELAY_MILLIS : Math.max(MIN_HEDGE_DELAY_MILLIS, p95);
+    }
+
+    /**
+     * One request across the endpoints.
+     */
+    private final class Attempt {
+        private final Function<BaseAIService, CompletableFuture<String>> request;
+        private final BooleanSupplier delivered;
+        private final boolean hedged;
+        private final Deque<BaseAIService> remaining;
+        private final Consumer<BaseAIService> answered;
+        private final List<CompletableFuture<String>> running = new ArrayList<>();
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private CompletableFuture<String> first;
+        private Throwable lastFailure;
+
+        Attempt(Function<BaseAIService, CompletableFuture<String>> request, BooleanSupplier delivered,
+                boolean hedged, List<BaseAIService> ordered, Consumer<BaseAIService> answered) {
+            this.request = request;
+            this.delivered = delivered;
+            this.hedged = hedged;
+            this.remaining = new ArrayDeque<>(ordered);
+            this.answered = answered;
+            result.whenComplete((text, failure) -> {
+                if (result.isCancelled()) {
+                    cancelRunning();
+                }
+            });
+        }
+
+        void launch(BaseAIService service, boolean isFirst) {
+            CompletableFuture<String> call;
+            try {
+                call = request.apply(service);
+            } catch (RuntimeException e) {
+                call = CompletableFuture.failedFuture(e);
+            }
+            boolean hedgeLater;
+            synchronized (this) {
+                if (result.isDone()) {
+                    call.cancel(true);
+                    return;
+                }
+                running.add(call);
+                if (isFirst) {
+                    first = call;
+                }
+                hedgeLater = isFirst && hedged && !remaining.isEmpty();
+            }
+            CompletableFuture<String> launched = call;
+            call.whenComplete((text, failure) -> completed(service, launched, text, failure));
+            if (hedgeLater) {
+                CompletableFuture.delayedExecutor(hedgeDelay(service), TimeUnit.MILLISECONDS)
+                        .execute(() -> hedge(service, launched));
+            }
+        }
+
+        private void hedge(BaseAIService slow, CompletableFuture<String> call) {
+            BaseAIService next;
+            synchronized (this) {
+                if (call.isDone() || result.isDone()) {
+                    return;
+                }
+                next = remaining.poll();
+            }
+            if (next != null) {
+                LOGGER.fine("AI provider endpoint " + slow.getEndpointName() + " is slow, also asking "
+                        + next.getEndpointName());
+                health.recordHedge();
+                launch(next, false);
+            }
+        }
+
+        private void completed(BaseAIService service, CompletableFuture<String> call, String text,
+                               Throwable failure) {
+            String outcome = ExplanationMetrics.outcome(failure);
+            BaseAIService next = null;
+            List<CompletableFuture<String>> losers = List.of();
+            synchronized (this) {
+                // Requests cancelled because another one answered are no longer running
+                if (!running.remove(call) || result.isDone()) {
+                    return;
+                }
+                if (!"success".equals(outcome)) {
+                    lastFailure = failure;
+                    if (!running.isEmpty()) {
+                        // The hedged request is still running, it may yet succeed
+                        return;
+                    }
+                    if (!delivered.getAsBoolean()) {
+                        next = remaining.poll();
+                    }
+                    if (next != null) {
+                        // Open circuits fail every call at once, so only log them while debugging
+                        LOGGER.log("circuit_open".equals(outcome) ? Level.FINE : Level.WARNING,
+                                "AI provider endpoint " + service.getEndpointName() + " failed (" + outcome
+                                        + "), failing over to " + next.getEndpointName());
+                    }
+                } else {
+                    if (call != first && first != null && running.contains(first)) {
+                        health.recordHedgeWin();
+                    }
+                    losers = new ArrayList<>(running);
+                    running.clear();
+                }
+            }
+            if ("success".equals(outcome)) {
+                losers.forEach(loser -> loser.cancel(true));
+                answered.accept(service);
+                result.complete(text);
+            } else if (next != null) {
+                health.recordFailover();
+                launch(next, false);
+            } else {
+                result.completeExceptionally(lastFailure);
+            }
+        }
+
+        private void cancelRunning() {
+            List<CompletableFuture<String>> calls;
+            synchronized (this) {
+                calls = new ArrayList<>(running);
+                running.clear();
+            }
+            calls.forEach(call -> call.cancel(true));
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package io.jenkins.plugins.explain_error;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Health of the AI provider endpoints, by {@link BaseAIService#getEndpointName() endpoint name}.
+ * Keeps the latencies of the recent successful requests of each endpoint, for the delay of
+ * hedged requests, and takes an endpoint out of rotation for a while after consecutive failures,
+ * so the {@link ProviderFailover} tries healthy endpoints first.
+ */
+@Extension
+public class ProviderHealth {
+
+    private static final Logger LOGGER = Logger.getLogger(ProviderHealth.class.getName());
+
+    /** Number of recent latencies kept per endpoint. */
+    static final int WINDOW = 100;
+    /** Latencies needed before a percentile is reported. */
+    static final int MIN_SAMPLES = 20;
+    /** Consecutive failures after which an endpoint is unhealthy. */
+    static final int FAILURE_THRESHOLD = 3;
+    /** How long an endpoint stays unhealthy before it is tried first again. */
+    static final long COOLDOWN_MILLIS = 30_000;
+
+    private final LongSupplier clock;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private final AtomicLong failovers = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    public ProviderHealth() {
+        this(System::currentTimeMillis);
+    }
+
+    ProviderHealth(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Get the singleton instance of ProviderHealth.
+     * @return the ProviderHealth instance
+     */
+    public static ProviderHealth get() {
+        return ExtensionList.lookupSingleton(ProviderHealth.class);
+    }
+
+    /**
+     * Record the outcome of a request.
+     * @param endpoint the name of the endpoint
+     * @param outcome the outcome, as classified by {@link ExplanationMetrics#outcome}
+     * @param nanos the duration of the request
+     */
+    public void record(String endpoint, String outcome, long nanos) {
+        if ("cancelled".equals(outcome) || "circuit_open".equals(outcome)) {
+            // Losing hedged requests are cancelled and open circuits send nothing; neither says
+            // anything new about the endpoint
+            return;
+        }
+        Endpoint state = endpoints.computeIfAbsent(endpoint, name -> new Endpoint());
+        if ("success".equals(outcome)) {
+            state.success(TimeUnit.NANOSECONDS.toMillis(nanos));
+        } else if (state.failure(clock.getAsLong())) {
+            LOGGER.warning("AI provider endpoint " + endpoint + " failed " + FAILURE_THRESHOLD
+                    + " times in a row, trying other endpoints first for " + COOLDOWN_MILLIS / 1000 + "s");
+        }
+    }
+
+    /**
+     * Check whether an endpoint should be tried first.
+     * @param endpoint the name of the endpoint
+     * @return {@code false} while the endpoint is cooling down after consecutive failures
+     */
+    public boolean isHealthy(String endpoint) {
+        Endpoint state = endpoints.get(endpoint);
+        return state == null || state.isHealthy(clock.getAsLong());
+    }
+
+    /**
+     * Get the 95th percentile of the recent latencies of an endpoint.
+     * @param endpoint the name of the endpoint
+     * @return the latency in milliseconds, or {@code -1} if too few requests succeeded yet
+     */
+    public long getP95Millis(String endpoint) {
+        Endpoint state = endpoints.get(endpoint);
+        return state != null ? state.percentile(0.95) : -1;
+    }
+
+    /**
+     * Get whether each endpoint that was called is healthy, for metrics.
+     * @return the health by endpoint name, sorted by name
+     */
+    public Map<String, Boolean> getEndpoints() {
+        long now = clock.getAsLong();
+        Map<String, Boolean> health = new TreeMap<>();
+        endpoints.forEach((name, state) -> health.put(name, state.isHealthy(now)));
+        return health;
+    }
+
+    void recordFailover() {
+        failovers.incrementAndGet();
+    }
+
+    void recordHedge() {
+        hedged.incrementAndGet();
+    }
+
+    void recordHedgeWin() {
+        hedgeWins.incrementAndGet();
+    }
+
+    /**
+     * Get the number of requests sent to another endpoint after one failed.
+     */
+    public long getFailovers() {
+        return failovers.get();
+    }
+
+    /**
+     * Get the number of hedged requests sent because the first endpoint was slow.
+     */
+    public long getHedged() {
+        return hedged.get();
+    }
+
+    /**
+     * Get the number of hedged requests that answered before the request they hedged.
+     */
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    /**
+     * Recent latencies and failures of one endpoint.
+     */
+    private static final class Endpoint {
+        private final long[] latencies = new long[WINDOW];
+        private int count;
+        private int next;
+        private int consecutiveFailures;
+        private long unhealthyUntil;
+
+        synchronized void success(long millis) {
+            latencies[next] = millis;
+            next = (next + 1) % WINDOW;
+            count = Math.min(count + 1, WINDOW);
+            consecutiveFailures = 0;
+            unhealthyUntil = 0;
+        }
+
+        /**
+         * @return whether the failure made the endpoint unhealthy
+         */
+        synchronized boolean failure(long now) {
+            consecutiveFailures++;
+            if (consecutiveFailures < FAILURE_THRESHOLD) {
+                return false;
+            }
+            boolean wasHealthy = now >= unhealthyUntil;
+            // Failing again after the cooldown starts another one
+            unhealthyUntil = now + COOLDOWN_MILLIS;
+            return wasHealthy;
+        }
+
+        synchronized boolean isHealthy(long now) {
+            return now >= unhealthyUntil;
+        }
+
+        synchronized long percentile(double quantile) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(quantile * count) - 1];
+        }
+    }
+}
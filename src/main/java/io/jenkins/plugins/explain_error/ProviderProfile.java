@@ -0,0 +1,216 @@
+package io.jenkins.plugins.explain_error;
+
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import hudson.util.Secret;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang3.StringUtils;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+/**
+ * An AI provider endpoint used in addition to the one of the global configuration, e.g. a
+ * fallback the {@link ProviderFailover} turns to when the primary endpoint fails.
+ */
+public class ProviderProfile extends AbstractDescribableImpl<ProviderProfile> {
+
+    /** Name of the endpoint of the global configuration. */
+    static final String PRIMARY = "primary";
+
+    private final String name;
+    private final AIProvider provider;
+    private final String apiUrl;
+    private final String model;
+    private final Secret apiKey;
+
+    /**
+     * @param name the name identifying the endpoint in logs and metrics
+     * @param provider the provider, {@link AIProvider#OPENAI} if {@code null}
+     * @param apiUrl the API URL, blank for the provider's default
+     * @param model the model, blank for the provider's default
+     * @param apiKey the API key, blank to use the key of the global configuration if the endpoint
+     *        calls the same provider on the same host
+     */
+    @DataBoundConstructor
+    public ProviderProfile(String name, AIProvider provider, String apiUrl, String model, Secret apiKey) {
+        this.provider = provider != null ? provider : AIProvider.OPENAI;
+        this.apiUrl = StringUtils.trimToNull(apiUrl);
+        this.model = StringUtils.trimToNull(model);
+        this.apiKey = apiKey;
+        this.name = StringUtils.isNotBlank(name)
+                ? name.trim()
+                : this.provider.name().toLowerCase(Locale.ROOT) + "-" + getModel();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public AIProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * Get the API URL.
+     * @return the configured URL, or the provider's default
+     */
+    public String getApiUrl() {
+        return apiUrl != null ? apiUrl : provider.getDefaultApiUrl();
+    }
+
+    /**
+     * Get the model.
+     * @return the configured model, or the provider's default
+     */
+    public String getModel() {
+        return model != null ? model : provider.getDefaultModel();
+    }
+
+    /**
+     * Get the raw configured API URL without defaults, for the configuration form.
+     */
+    public String getRawApiUrl() {
+        return apiUrl;
+    }
+
+    /**
+     * Get the raw configured model without defaults, for the configuration form.
+     */
+    public String getRawModel() {
+        return model;
+    }
+
+    /**
+     * Get the API key.
+     * @return the configured key, or {@code null} if the key of the global configuration is used
+     */
+    public Secret getApiKey() {
+        return apiKey;
+    }
+
+    /**
+     * Get the API key to send.
+     * @param config the global configuration
+     * @return the configured key, or the one of the global configuration if none is configured and
+     *         the endpoint {@link #sharesApiKeyWith shares it}, otherwise {@code null}
+     */
+    Secret resolveApiKey(GlobalConfigurationImpl config) {
+        if (apiKey != null && StringUtils.isNotBlank(apiKey.getPlainText())) {
+            return apiKey;
+        }
+        return sharesApiKeyWith(config) ? config.getApiKey() : null;
+    }
+
+    /**
+     * Check whether the endpoint may use the API key of the global configuration: only when it calls
+     * the same provider on the same host, so the key is never sent to another service.
+     */
+    boolean sharesApiKeyWith(GlobalConfigurationImpl config) {
+        return sameService(provider, getApiUrl(), config.getProvider(), config.getApiUrl());
+    }
+
+    private static boolean sameService(AIProvider provider, String apiUrl, AIProvider primary, String primaryUrl) {
+        if (provider != primary) {
+            return false;
+        }
+        String host = host(apiUrl);
+        String primaryHost = host(StringUtils.isNotBlank(primaryUrl) ? primaryUrl : primary.getDefaultApiUrl());
+        return host != null && host.equalsIgnoreCase(primaryHost);
+    }
+
+    private static String host(String url) {
+        try {
+            return URI.create(url.trim().replace("{model}", "model")).getHost();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Check fallback endpoints before they are saved.
+     * @param profiles the fallback endpoints
+     * @param config the global configuration they are saved in
+     * @return the problem, or {@code null} if the endpoints are valid
+     */
+    static String validate(List<ProviderProfile> profiles, GlobalConfigurationImpl config) {
+        Set<String> names = new HashSet<>();
+        names.add(PRIMARY);
+        for (ProviderProfile profile : profiles) {
+            if (!names.add(profile.getName())) {
+                return "Fallback provider names must be unique, " + profile.getName() + " is used twice";
+            }
+            if (profile.resolveApiKey(config) == null) {
+                return "Fallback provider " + profile.getName() + " needs its own API key, the one configured above "
+                        + "is only used for endpoints of the same provider and host";
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + provider.getDisplayName() + ", " + getModel() + ")";
+    }
+
+    @Extension
+    @Symbol("providerProfile")
+    public static class DescriptorImpl extends Descriptor<ProviderProfile> {
+
+        @Override
+        public String getDisplayName() {
+            return "AI Provider Endpoint";
+        }
+
+        @RequirePOST
+        public ListBoxModel doFillProviderItems() {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            ListBoxModel items = new ListBoxModel();
+            for (AIProvider p : AIProvider.values()) {
+                items.add(p.getDisplayName(), p.name());
+            }
+            return items;
+        }
+
+        @RequirePOST
+        public FormValidation doCheckName(@QueryParameter String value) {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            if (PRIMARY.equals(StringUtils.trim(value))) {
+                return FormValidation.error("\"" + PRIMARY + "\" is the name of the endpoint configured above");
+            }
+            return FormValidation.ok();
+        }
+
+        @RequirePOST
+        public FormValidation doCheckApiKey(@QueryParameter String value, @QueryParameter String provider,
+                                            @QueryParameter String apiUrl) {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            if (StringUtils.isNotBlank(Secret.fromString(value).getPlainText())) {
+                return FormValidation.ok();
+            }
+            AIProvider endpointProvider = AIProvider.OPENAI;
+            try {
+                if (StringUtils.isNotBlank(provider)) {
+                    endpointProvider = AIProvider.valueOf(provider);
+                }
+            } catch (IllegalArgumentException e) {
+                return FormValidation.ok();
+            }
+            ProviderProfile profile = new ProviderProfile(null, endpointProvider, apiUrl, null, null);
+            if (!profile.sharesApiKeyWith(GlobalConfigurationImpl.get())) {
+                return FormValidation.error("An API key is required, the one configured above is only used for "
+                        + "endpoints of the same provider and host");
+            }
+            return FormValidation.ok();
+        }
+    }
+}
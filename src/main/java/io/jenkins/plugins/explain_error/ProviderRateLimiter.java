@@ -0,0 +1,318 @@
+package io.jenkins.plugins.explain_error;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import java.net.http.HttpHeaders;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Client-side rate limiter for AI provider calls.
+ * Each provider has a requests-per-minute and a tokens-per-minute token bucket. Limits come from
+ * the global configuration or, when not configured, are learned from the provider's
+ * {@code x-ratelimit-*} response headers. {@code Retry-After} and exhausted remaining counts
+ * pause all calls to the provider until the indicated reset, so bursts are smoothed instead of
+ * being answered with 429 responses.
+ */
+@Extension
+public class ProviderRateLimiter {
+
+    private static final Logger LOGGER = Logger.getLogger(ProviderRateLimiter.class.getName());
+
+    static final long BASE_BACKOFF_MILLIS = 1000;
+    static final long MAX_BACKOFF_MILLIS = 30_000;
+    /** Calls are not retried when the provider asks to wait longer than this. */
+    static final long MAX_RETRY_AFTER_MILLIS = 60_000;
+
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    private final IntSupplier requestsPerMinute;
+    private final IntSupplier tokensPerMinute;
+    private final LongSupplier clock;
+
+    private final Map<AIProvider, Limits> limits = new EnumMap<>(AIProvider.class);
+
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong throttledMillis = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+
+    public ProviderRateLimiter() {
+        this(() -> GlobalConfigurationImpl.get().getRateLimitRequestsPerMinute(),
+                () -> GlobalConfigurationImpl.get().getRateLimitTokensPerMinute(),
+                System::currentTimeMillis);
+    }
+
+    ProviderRateLimiter(IntSupplier requestsPerMinute, IntSupplier tokensPerMinute, LongSupplier clock) {
+        this.requestsPerMinute = requestsPerMinute;
+        this.tokensPerMinute = tokensPerMinute;
+        this.clock = clock;
+    }
+
+    /**
+     * Get the singleton instance of ProviderRateLimiter.
+     * @return the ProviderRateLimiter instance
+     */
+    public static ProviderRateLimiter get() {
+        return ExtensionList.lookupSingleton(ProviderRateLimiter.class);
+    }
+
+    /**
+     * Reserve capacity for one call.
+     * @param provider the provider that will be called
+     * @param tokens the estimated number of tokens the call consumes
+     * @return how long to wait before sending the call, in milliseconds
+     */
+    public long reserve(AIProvider provider, long tokens) {
+        long now = clock.getAsLong();
+        long wait;
+        synchronized (this) {
+            Limits provided = limitsFor(provider);
+            wait = Math.max(provided.requests.reserve(1, requestsPerMinute.getAsInt(), now),
+                    provided.tokens.reserve(tokens, tokensPerMinute.getAsInt(), now));
+        }
+        if (wait > 0) {
+            throttled.incrementAndGet();
+            throttledMillis.addAndGet(wait);
+            LOGGER.fine("Delaying " + provider + " call by " + wait + "ms to stay within rate limits");
+        }
+        return wait;
+    }
+
+    /**
+     * Reserve capacity for one call and wait for it without blocking a thread.
+     * @return a future completed when the call may be sent
+     */
+    public CompletableFuture<Void> acquire(AIProvider provider, long tokens) {
+        long wait = reserve(provider, tokens);
+        if (wait <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(wait, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Adapt the limits of a provider from the headers of its response.
+     * @param provider the provider that answered
+     * @param statusCode the response status
+     * @param headers the response headers
+     */
+    public void update(AIProvider provider, int statusCode, HttpHeaders headers) {
+        long now = clock.getAsLong();
+        OptionalLong retryAfter = retryAfterMillis(headers, now);
+        synchronized (this) {
+            Limits provided = limitsFor(provider);
+            provided.requests.update(
+                    headers.firstValueAsLong("x-ratelimit-limit-requests"),
+                    headers.firstValueAsLong("x-ratelimit-remaining-requests"),
+                    durationMillis(headers.firstValue("x-ratelimit-reset-requests").orElse(null)), now);
+            provided.tokens.update(
+                    headers.firstValueAsLong("x-ratelimit-limit-tokens"),
+                    headers.firstValueAsLong("x-ratelimit-remaining-tokens"),
+                    durationMillis(headers.firstValue("x-ratelimit-reset-tokens").orElse(null)), now);
+            if (statusCode == 429) {
+                // Without a hint, pause for the first backoff step so queued calls do not pile on
+                long pause = retryAfter.orElse(BASE_BACKOFF_MILLIS);
+                provided.requests.pauseUntil(now + pause);
+            } else if (retryAfter.isPresent()) {
+                provided.requests.pauseUntil(now + retryAfter.getAsLong());
+            }
+        }
+        if (statusCode == 429) {
+            rateLimited.incrementAndGet();
+            LOGGER.info(provider + " rate limit exceeded" + (retryAfter.isPresent()
+                    ? ", retrying after " + retryAfter.getAsLong() + "ms" : ""));
+        }
+    }
+
+    /**
+     * Compute how long to wait before retrying a failed call.
+     * @param statusCode the response status
+     * @param headers the response headers
+     * @param attempt the number of retries already made, starting at 0
+     * @param maxRetries the maximum number of retries
+     * @return the delay in milliseconds, or -1 if the call should not be retried
+     */
+    public long retryDelay(int statusCode, HttpHeaders headers, int attempt, int maxRetries) {
+        if (!isRetryable(statusCode) || attempt >= maxRetries) {
+            return -1;
+        }
+        OptionalLong retryAfter = retryAfterMillis(headers, clock.getAsLong());
+        if (retryAfter.isPresent() && retryAfter.getAsLong() > MAX_RETRY_AFTER_MILLIS) {
+            // Waiting that long would hold the caller for too long; report the failure instead
+            return -1;
+        }
+        retries.incrementAndGet();
+        return Math.max(retryAfter.orElse(0), backoffMillis(attempt));
+    }
+
+    /**
+     * Exponential backoff with jitter: a random delay between half and all of
+     * {@code BASE_BACKOFF_MILLIS * 2^attempt}, capped at {@link #MAX_BACKOFF_MILLIS}.
+     */
+    static long backoffMillis(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt, 20));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    static boolean isRetryable(int statusCode) {
+        return statusCode == 429 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+    }
+
+    /**
+     * Parse {@code retry-after-ms} or {@code Retry-After}, given either in seconds or as an HTTP date.
+     */
+    static OptionalLong retryAfterMillis(HttpHeaders headers, long now) {
+        OptionalLong millis = headers.firstValueAsLong("retry-after-ms");
+        if (millis.isPresent()) {
+            return millis;
+        }
+        String value = headers.firstValue("retry-after").orElse(null);
+        if (value == null || value.isBlank()) {
+            return OptionalLong.empty();
+        }
+        try {
+            return OptionalLong.of(Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()))));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return OptionalLong.of(Math.max(0, date.toInstant().toEpochMilli() - now));
+            } catch (DateTimeParseException ignore) {
+                return OptionalLong.empty();
+            }
+        }
+    }
+
+    /**
+     * Parse reset durations such as {@code 20ms}, {@code 1s} or {@code 6m0.5s}.
+     * @return the duration in milliseconds, or -1 if the value is missing or malformed
+     */
+    static long durationMillis(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        Matcher matcher = DURATION_PART.matcher(value.trim());
+        double millis = 0;
+        int end = 0;
+        while (matcher.find()) {
+            if (matcher.start() != end) {
+                return -1;
+            }
+            double amount = Double.parseDouble(matcher.group(1));
+            switch (matcher.group(2)) {
+                case "h":
+                    millis += amount * 3_600_000;
+                    break;
+                case "m":
+                    millis += amount * 60_000;
+                    break;
+                case "s":
+                    millis += amount * 1000;
+                    break;
+                default:
+                    millis += amount;
+            }
+            end = matcher.end();
+        }
+        return end == value.trim().length() && end > 0 ? (long) Math.ceil(millis) : -1;
+    }
+
+    /**
+     * Get the number of calls that were delayed to stay within the limits.
+     */
+    public long getThrottled() {
+        return throttled.get();
+    }
+
+    public long getThrottledMillis() {
+        return throttledMillis.get();
+    }
+
+    /**
+     * Get the number of 429 responses received.
+     */
+    public long getRateLimited() {
+        return rateLimited.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    private Limits limitsFor(AIProvider provider) {
+        return limits.computeIfAbsent(provider, p -> new Limits());
+    }
+
+    private static final class Limits {
+        private final Bucket requests = new Bucket();
+        private final Bucket tokens = new Bucket();
+    }
+
+    /**
+     * Token bucket refilled continuously at its per-minute capacity. Reservations may drive the
+     * bucket negative; the deficit is the time later callers wait, which keeps them in order.
+     */
+    static final class Bucket {
+        private long learnedCapacity;
+        private double available = Double.NaN;
+        private long updated;
+        private long pausedUntil;
+
+        /**
+         * @param configuredCapacity the configured per-minute capacity, 0 to use the learned one
+         * @return the wait in milliseconds
+         */
+        long reserve(long amount, long configuredCapacity, long now) {
+            long capacity = configuredCapacity > 0 ? configuredCapacity : learnedCapacity;
+            long paused = Math.max(0, pausedUntil - now);
+            if (capacity <= 0) {
+                return paused;
+            }
+            refill(capacity, now);
+            // A call larger than the whole bucket must still go through eventually
+            available -= Math.min(amount, capacity);
+            long wait = available >= 0 ? 0 : (long) Math.ceil(-available * 60_000 / capacity);
+            return Math.max(wait, paused);
+        }
+
+        void update(OptionalLong limit, OptionalLong remaining, long resetMillis, long now) {
+            if (limit.isPresent() && limit.getAsLong() > 0) {
+                learnedCapacity = limit.getAsLong();
+            }
+            if (remaining.isPresent()) {
+                if (!Double.isNaN(available)) {
+                    available = Math.min(available, remaining.getAsLong());
+                }
+                if (remaining.getAsLong() <= 0 && resetMillis > 0) {
+                    pauseUntil(now + resetMillis);
+                }
+            }
+        }
+
+        void pauseUntil(long time) {
+            pausedUntil = Math.max(pausedUntil, time);
+        }
+
+        private void refill(long capacity, long now) {
+            if (Double.isNaN(available)) {
+                available = capacity;
+            } else {
+                available = Math.min(capacity, available + (now - updated) * (double) capacity / 60_000);
+            }
+            updated = now;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package io.jenkins.plugins.explain_error;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Body of a provider response, kept as the buffers received from the HTTP client so it can be
+ * parsed as a stream without first being copied into a byte array and then a string.
+ * Once the body grows beyond the size limit, the rest of the response is not read and the body is
+ * marked as truncated.
+ */
+public final class ResponseBody {
+
+    /** Maximum number of bytes of a body quoted in messages and logs. */
+    static final int PREVIEW_LENGTH = 4096;
+
+    private final List<ByteBuffer> buffers;
+    private final long size;
+    private final boolean truncated;
+
+    private ResponseBody(List<ByteBuffer> buffers, long size, boolean truncated) {
+        this.buffers = buffers;
+        this.size = size;
+        this.truncated = truncated;
+    }
+
+    /**
+     * Create a body from text, e.g. to parse a response that was not received over HTTP.
+     */
+    static ResponseBody of(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return new ResponseBody(List.of(ByteBuffer.wrap(bytes)), bytes.length, false);
+    }
+
+    /**
+     * Get a body handler collecting up to {@code maxBytes} of the response body.
+     */
+    static HttpResponse.BodyHandler<ResponseBody> handler(long maxBytes) {
+        return info -> new Subscriber(maxBytes);
+    }
+
+    /**
+     * Get the number of bytes kept.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Whether the response was larger than the size limit; only its beginning was kept.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Create a JSON parser reading the body.
+     */
+    public JsonParser createParser(JsonFactory factory) throws IOException {
+        return factory.createParser(new BuffersInputStream(buffers));
+    }
+
+    /**
+     * Get the beginning of the body as text, for messages and logs.
+     */
+    public String preview() {
+        int length = (int) Math.min(size, PREVIEW_LENGTH);
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        for (ByteBuffer buffer : buffers) {
+            if (offset == length) {
+                break;
+            }
+            int n = Math.min(buffer.remaining(), length - offset);
+            buffer.duplicate().get(bytes, offset, n);
+            offset += n;
+        }
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        return size > length ? text + "..." : text;
+    }
+
+    private static final class Subscriber implements HttpResponse.BodySubscriber<ResponseBody> {
+        private final long maxBytes;
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+        private final CompletableFuture<ResponseBody> body = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+        private long size;
+        private boolean truncated;
+
+        private Subscriber(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public CompletionStage<ResponseBody> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (truncated) {
+                return;
+            }
+            for (ByteBuffer item : items) {
+                long room = maxBytes - size;
+                if (item.remaining() > room) {
+                    // The answer is rejected anyway, so stop downloading the rest
+                    truncated = true;
+                    if (room > 0) {
+                        ByteBuffer head = item.duplicate();
+                        head.limit(head.position() + (int) room);
+                        buffers.add(head);
+                        size += room;
+                    }
+                    subscription.cancel();
+                    body.complete(new ResponseBody(buffers, size, true));
+                    return;
+                }
+                buffers.add(item);
+                size += item.remaining();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            body.complete(new ResponseBody(buffers, size, false));
+        }
+    }
+
+    /**
+     * Reads a list of buffers in order without copying them.
+     */
+    private static final class BuffersInputStream extends InputStream {
+        private final List<ByteBuffer> buffers;
+        private int index;
+        private ByteBuffer current;
+
+        private BuffersInputStream(List<ByteBuffer> buffers) {
+            this.buffers = buffers;
+        }
+
+        private ByteBuffer current() {
+            while ((current == null || !current.hasRemaining()) && index < buffers.size()) {
+                current = buffers.get(index++).duplicate();
+            }
+            return current != null && current.hasRemaining() ? current : null;
+        }
+
+        @Override
+        public int read() {
+            ByteBuffer buffer = current();
+            return buffer != null ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            ByteBuffer buffer = current();
+            if (buffer == null) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package io.jenkins.plugins.explain_error;
+
+/**
+ * Signals that a provider response could not be read as an explanation. The message is shown to
+ * the user as is.
+ */
+public class ResponseParseException extends AIServiceException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ResponseParseException(String message) {
+        super(message);
+    }
+
+    public ResponseParseException(String message, Throwable cause) {
+        super(message);
+        initCause(cause);
+    }
+}
@@ -0,0 +1,133 @@
+package io.jenkins.plugins.explain_error;
+
+import java.io.IOException;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Line subscriber for Server-Sent Events responses of streaming AI provider endpoints.
+ * Each {@code data:} line is handed to the provider specific chunk parser and the
+ * extracted text is forwarded to the listener as soon as it arrives.
+ */
+class StreamingResponseSubscriber implements Flow.Subscriber<String> {
+
+    private static final Logger LOGGER = Logger.getLogger(StreamingResponseSubscriber.class.getName());
+
+    /** Maximum number of characters of non-event lines kept for error reporting. */
+    private static final int MAX_RAW_LENGTH = 4096;
+
+    /**
+     * Extracts the text delta from the JSON payload of one event.
+     */
+    interface ChunkParser {
+        String parse(String data) throws IOException;
+    }
+
+    private final ChunkParser parser;
+    private final Consumer<String> onText;
+    private final long maxBytes;
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder raw = new StringBuilder();
+    private long bytes;
+    private boolean truncated;
+
+    StreamingResponseSubscriber(ChunkParser parser, Consumer<String> onText) {
+        this(parser, onText, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxBytes the number of UTF-8 bytes of the response read; later lines are ignored
+     */
+    StreamingResponseSubscriber(ChunkParser parser, Consumer<String> onText, long maxBytes) {
+        this.parser = parser;
+        this.onText = onText;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(String line) {
+        if (truncated) {
+            return;
+        }
+        bytes += utf8Length(line) + 1;
+        if (bytes > maxBytes) {
+            // Keep reading to the end of the stream, but stop parsing and collecting text
+            truncated = true;
+            return;
+        }
+        if (!line.startsWith("data:")) {
+            if (raw.length() < MAX_RAW_LENGTH && !line.isBlank()) {
+                raw.append(line, 0, Math.min(line.length(), MAX_RAW_LENGTH - raw.length())).append('\n');
+            }
+            return;
+        }
+        String data = line.substring("data:".length()).trim();
+        if (data.isEmpty() || "[DONE]".equals(data)) {
+            return;
+        }
+        String delta;
+        try {
+            delta = parser.parse(data);
+        } catch (IOException e) {
+            LOGGER.fine("Skipping unparseable stream event: " + e.getMessage());
+            return;
+        }
+        if (delta == null || delta.isEmpty()) {
+            return;
+        }
+        text.append(delta);
+        try {
+            onText.accept(delta);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Streaming listener failed", e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        LOGGER.fine("Streaming response failed: " + throwable.getMessage());
+    }
+
+    @Override
+    public void onComplete() {
+        // The accumulated text is read by the body handler's finisher
+    }
+
+    private static long utf8Length(String line) {
+        long length = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            // A surrogate pair is four bytes, two for each half
+            length += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+        }
+        return length;
+    }
+
+    /**
+     * Get the text received so far.
+     */
+    String getText() {
+        return text.toString();
+    }
+
+    /**
+     * Whether the response was longer than the limit; only text from its beginning was received.
+     */
+    boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Get the beginning of the lines that were not stream events, such as an error body.
+     */
+    String getRaw() {
+        return raw.toString();
+    }
+}
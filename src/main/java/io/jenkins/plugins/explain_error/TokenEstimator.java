@@ -0,0 +1,100 @@
+package io.jenkins.plugins.explain_error;
+
+import java.util.Locale;
+
+/**
+ * Estimates how many tokens a provider's tokenizer turns text into, without calling the provider
+ * and without allocating.
+ * Byte pair encodings split English words and identifiers into pieces of a few letters, numbers
+ * into groups of up to three digits, and mostly give punctuation, line breaks and other
+ * characters a token each. The estimate counts those runs in one pass over the text, with the
+ * letters per token of the model's tokenizer, and errs on the high side so a budget based on it
+ * is not exceeded.
+ */
+public final class TokenEstimator {
+
+    private static final TokenEstimator CL100K = new TokenEstimator(4.0);
+    private static final TokenEstimator O200K = new TokenEstimator(4.4);
+    private static final TokenEstimator GEMINI = new TokenEstimator(4.0);
+
+    private final double lettersPerToken;
+
+    TokenEstimator(double lettersPerToken) {
+        this.lettersPerToken = lettersPerToken;
+    }
+
+    /**
+     * Get the estimator for a provider's model.
+     * @param provider the AI provider
+     * @param model the model name, may be {@code null}
+     */
+    public static TokenEstimator forModel(AIProvider provider, String model) {
+        if (provider == AIProvider.GEMINI) {
+            return GEMINI;
+        }
+        String name = model != null ? model.toLowerCase(Locale.ROOT) : "";
+        // Models since gpt-4o use the larger o200k vocabulary
+        if (name.startsWith("gpt-4o") || name.startsWith("gpt-4.1") || name.startsWith("gpt-5")
+                || name.startsWith("chatgpt-4o") || (name.length() > 1 && name.charAt(0) == 'o'
+                && Character.isDigit(name.charAt(1)))) {
+            return O200K;
+        }
+        return CL100K;
+    }
+
+    /**
+     * Estimate the number of tokens of text.
+     * @param text the text, may be {@code null}
+     * @return the estimated number of tokens
+     */
+    public int estimate(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        double tokens = 0;
+        int letters = 0;
+        int digits = 0;
+        int spaces = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if (c == ' ' || c == '\t') {
+                spaces++;
+            } else if (spaces > 0) {
+                if (spaces > 1) {
+                    // A single space is part of the next word; indentation is a token of its own
+                    tokens++;
+                }
+                spaces = 0;
+            }
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                letters++;
+                continue;
+            }
+            if (letters > 0) {
+                tokens += Math.ceil(letters / lettersPerToken);
+                letters = 0;
+            }
+            if (c >= '0' && c <= '9') {
+                digits++;
+                continue;
+            }
+            if (digits > 0) {
+                tokens += (digits + 2) / 3;
+                digits = 0;
+            }
+            if (spaces > 0 || Character.isLowSurrogate(c)) {
+                // Spaces are counted when the run ends, a low surrogate with its high surrogate
+                continue;
+            }
+            tokens++;
+        }
+        if (letters > 0) {
+            tokens += Math.ceil(letters / lettersPerToken);
+        }
+        tokens += (digits + 2) / 3;
+        if (spaces > 1) {
+            tokens++;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, tokens);
+    }
+}
@@ -156,7 +156,17 @@ function hideConfirmationDialog() {
   dialog.classList.add('jenkins-hidden');
 }
 
+function isStreamingEnabled() {
+  const container = document.getElementById('explain-error-container');
+  return container && container.dataset.streaming === 'true';
+}
+
 function sendExplainRequest(forceNew = false) {
+  if (isStreamingEnabled()) {
+    sendStreamingExplainRequest(forceNew);
+    return;
+  }
+
   const basePath = window.location.pathname.replace(/\/console$/, '');
   const url = basePath + '/console-explain-error/explainConsoleError';
 
@@ -168,12 +178,14 @@ function sendExplainRequest(forceNew = false) {
   const body = forceNew ? "forceNew=true" : "";
 
   showSpinner();
+  const statusPoller = startStatusPolling(basePath);
 
   fetch(url, {
     method: "POST",
     headers: headers,
     body: body
   })
+  .finally(() => clearInterval(statusPoller))
   .then(response => {
     if (!response.ok) {
       notificationBar.show('Explain failed', notificationBar.ERROR);
@@ -193,6 +205,118 @@ function sendExplainRequest(forceNew = false) {
   });
 }
 
+function sendStreamingExplainRequest(forceNew = false) {
+  const basePath = window.location.pathname.replace(/\/console$/, '');
+  const url = basePath + '/console-explain-error/explainConsoleErrorStream';
+
+  const headers = crumb.wrap({
+    "Content-Type": "application/x-www-form-urlencoded",
+  });
+
+  const body = forceNew ? "forceNew=true" : "";
+
+  clearExplanationContent();
+  showSpinner();
+
+  fetch(url, {
+    method: "POST",
+    headers: headers,
+    body: body
+  })
+  .then(response => {
+    if (!response.ok || !response.body) {
+      notificationBar.show('Explain failed', notificationBar.ERROR);
+      throw new Error('HTTP ' + response.status);
+    }
+    const reader = response.body.getReader();
+    const decoder = new TextDecoder();
+    let buffer = '';
+
+    function read() {
+      return reader.read().then(({ done, value }) => {
+        if (done) {
+          return;
+        }
+        buffer += decoder.decode(value, { stream: true });
+        let boundary;
+        while ((boundary = buffer.indexOf('\n\n')) !== -1) {
+          handleStreamEvent(buffer.slice(0, boundary));
+          buffer = buffer.slice(boundary + 2);
+        }
+        return read();
+      });
+    }
+    return read();
+  })
+  .catch(error => {
+    showErrorExplanation(`Error: ${error.message}`);
+  });
+}
+
+function handleStreamEvent(frame) {
+  let event = 'message';
+  let data = '';
+  frame.split('\n').forEach(line => {
+    if (line.startsWith('event:')) {
+      event = line.slice(6).trim();
+    } else if (line.startsWith('data:')) {
+      data += line.slice(5).trim();
+    }
+  });
+
+  let text;
+  try {
+    text = JSON.parse(data);
+  } catch (e) {
+    text = data;
+  }
+
+  if (event === 'status') {
+    showStatus(text);
+  } else if (event === 'chunk') {
+    appendErrorExplanation(text);
+  } else if (event === 'done') {
+    // The final event carries the complete text, replacing what was streamed
+    showErrorExplanation(text);
+  }
+}
+
+// Poll the queue position while a non-streaming request waits for a provider slot
+function startStatusPolling(basePath) {
+  const url = basePath + '/console-explain-error/explanationStatus';
+  return setInterval(() => {
+    fetch(url, {
+      method: "POST",
+      headers: crumb.wrap({ "Content-Type": "application/x-www-form-urlencoded" }),
+      body: ""
+    })
+    .then(response => response.json())
+    .then(data => {
+      showStatus(data.queued ? `Queued, position ${data.position}` : '');
+    })
+    .catch(error => console.warn('Error checking explanation status:', error));
+  }, 2000);
+}
+
+function showStatus(text) {
+  const status = document.getElementById('explain-error-status');
+  if (!status) {
+    return;
+  }
+  status.textContent = text;
+  status.classList.toggle('jenkins-hidden', !text);
+}
+
+function appendErrorExplanation(text) {
+  const container = document.getElementById('explain-error-container');
+  const spinner = document.getElementById('explain-error-spinner');
+  const content = document.getElementById('explain-error-content');
+
+  container.classList.remove('jenkins-hidden');
+  spinner.classList.add('jenkins-hidden');
+  content.textContent += text;
+}
+
 function showErrorExplanation(message) {
   const container = document.getElementById('explain-error-container');
   const spinner = document.getElementById('explain-error-spinner');
@@ -206,6 +330,7 @@ function showErrorExplanation(message) {
 function showSpinner() {
   const container = document.getElementById('explain-error-container');
   const spinner = document.getElementById('explain-error-spinner');
+  showStatus('');
   container.classList.remove('jenkins-hidden');
   spinner.classList.remove('jenkins-hidden');
 }
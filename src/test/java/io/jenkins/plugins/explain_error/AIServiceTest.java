@@ -2,8 +2,20 @@ package io.jenkins.plugins.explain_error;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.sun.net.httpserver.HttpServer;
 import hudson.util.Secret;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.jvnet.hudson.test.JenkinsRule;
@@ -244,4 +256,319 @@ class AIServiceTest {
         assertNotNull(openaiResult);
         assertNotNull(geminiResult);
     }
+
+    @Test
+    void testExplainErrorAsyncWithBlankInput() throws Exception {
+        CompletableFuture<String> result = aiService.explainErrorAsync("   ");
+
+        assertTrue(result.isDone());
+        assertEquals("No error logs provided for explanation.", result.get());
+    }
+
+    @Test
+    void testExplainErrorAsyncReportsFailureAsMessage() throws Exception {
+        config.setApiUrl("http://127.0.0.1:1/v1/chat/completions");
+
+        String result = aiService.explainErrorAsync("ERROR: Failed to compile").get(30, TimeUnit.SECONDS);
+
+        assertTrue(result.contains("Failed to communicate with AI service"));
+    }
+
+    @Test
+    void testExplainErrorAsyncRunsConcurrently() throws Exception {
+        CountDownLatch answer = new CountDownLatch(1);
+        // Every answer is held back until all the requests reached the server
+        try (MockLlmServer server = new MockLlmServer().latency(() -> {
+            try {
+                answer.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 0;
+        })) {
+            config.setApiUrl(server.getOpenAIUrl());
+            config.setModel("gpt-test");
+            config.setMaxConcurrentExplanations(10);
+            AIService service = new AIService(config, false);
+
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(service.explainErrorAsync("ERROR: failure " + i));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (server.getRequests() < 10 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(10, server.getRequests());
+            assertTrue(futures.stream().noneMatch(CompletableFuture::isDone));
+
+            answer.countDown();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+            for (CompletableFuture<String> future : futures) {
+                assertTrue(future.get().startsWith("The build failed because"), future.get());
+            }
+        } finally {
+            answer.countDown();
+            config.setMaxConcurrentExplanations(4);
+        }
+    }
+
+    @Test
+    void testGeminiStreamingUrl() {
+        config.setProvider(AIProvider.GEMINI);
+        config.setModel("gemini-1.5-flash");
+        config.setApiUrl(AIProvider.GEMINI.getDefaultApiUrl());
+
+        GeminiService gemini = new GeminiService(config);
+
+        assertEquals("https://generativelanguage.googleapis.com/v1beta/models/gemini-1.5-flash:streamGenerateContent?alt=sse",
+                gemini.getStreamingApiUrl());
+    }
+
+    @Test
+    void testStreamChunkParsing() throws IOException {
+        OpenAIService openai = new OpenAIService(config);
+        assertEquals("Hel", openai.parseStreamChunk("{\"choices\":[{\"delta\":{\"content\":\"Hel\"}}]}"));
+        assertNull(openai.parseStreamChunk("{\"choices\":[{\"delta\":{\"role\":\"assistant\"}}]}"));
+
+        GeminiService gemini = new GeminiService(config);
+        assertEquals("lo", gemini.parseStreamChunk(
+                "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"lo\"}]}}]}"));
+    }
+
+    @Test
+    void testExplainErrorStreamingWithBlankInput() throws Exception {
+        List<String> chunks = new ArrayList<>();
+
+        String result = aiService.explainErrorStreaming("", chunks::add).get();
+
+        assertEquals("No error logs provided for explanation.", result);
+        assertTrue(chunks.isEmpty());
+    }
+
+    @Test
+    void testRateLimitedRequestIsRetried() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] body;
+            if (requests.incrementAndGet() == 1) {
+                body = "{\"error\":{\"message\":\"Rate limit reached\"}}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("retry-after-ms", "10");
+                exchange.sendResponseHeaders(429, body.length);
+            } else {
+                body = "{\"choices\":[{\"message\":{\"content\":\"Retried explanation\"}}]}"
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+            }
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            config.setApiUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions");
+            config.setModel("gpt-test");
+            config.setCacheMaxEntries(0);
+
+            String result = aiService.explainErrorAsync("ERROR: rate limited build").get(30, TimeUnit.SECONDS);
+
+            assertEquals("Retried explanation", result);
+            assertEquals(2, requests.get());
+            assertTrue(ProviderRateLimiter.get().getRateLimited() >= 1);
+        } finally {
+            config.setCacheMaxEntries(500);
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testResponseParsing() throws IOException {
+        OpenAIService openai = new OpenAIService(config);
+        assertEquals("Explanation", openai.parseResponse("{\"id\":\"chatcmpl-1\",\"usage\":{\"total_tokens\":12},"
+                + "\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\" Explanation \"}}]}"));
+        assertEquals("AI API Error: Invalid API key", assertThrows(ApiErrorException.class, () -> openai.parseResponse(
+                "{\"error\":{\"message\":\"Invalid API key\",\"type\":\"invalid_request_error\"}}")).getMessage());
+        assertEquals("Unable to parse AI response. Response: {\"choices\":[]}",
+                assertThrows(ResponseParseException.class, () -> openai.parseResponse("{\"choices\":[]}"))
+                        .getMessage());
+        assertTrue(assertThrows(ResponseParseException.class, () -> openai.parseResponse("{\"choices\":[{"))
+                .getMessage().startsWith("Failed to parse AI response: "));
+
+        GeminiService gemini = new GeminiService(config);
+        assertEquals("Explanation", gemini.parseResponse(
+                "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"Explanation\"}],\"role\":\"model\"}}]}"));
+        assertEquals("AI API Error: API key not valid", assertThrows(ApiErrorException.class,
+                () -> gemini.parseResponse("{\"error\":{\"code\":400,\"message\":\"API key not valid\","
+                        + "\"status\":\"INVALID_ARGUMENT\"}}")).getMessage());
+        assertEquals("AI API Error: UNAVAILABLE", assertThrows(ApiErrorException.class,
+                () -> gemini.parseResponse("{\"error\":{\"status\":\"UNAVAILABLE\"}}")).getMessage());
+    }
+
+    @Test
+    void testOversizedResponseIsRejected() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = ("{\"choices\":[{\"message\":{\"content\":\""
+                    + "x".repeat(BaseAIService.MAX_RESPONSE_BYTES) + "\"}}]}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            config.setApiUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions");
+            config.setModel("gpt-test");
+
+            String result = new AIService(config, false).explainErrorAsync("ERROR: large response")
+                    .get(30, TimeUnit.SECONDS);
+
+            assertEquals("Failed to communicate with AI service: AI response exceeds the maximum size of "
+                    + BaseAIService.MAX_RESPONSE_BYTES + " bytes", result);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testFailsOverToFallbackProvider() throws Exception {
+        try (MockLlmServer primary = new MockLlmServer().failures(0, 1);
+             MockLlmServer fallback = new MockLlmServer()) {
+            config.setApiUrl(primary.getOpenAIUrl());
+            config.setModel("gpt-test");
+            config.setMaxRetries(0);
+            config.setFallbackProviders(List.of(new ProviderProfile("gemini", AIProvider.GEMINI,
+                    fallback.getGeminiUrl(), "gemini-test", Secret.fromString("gemini-key"))));
+
+            AIService.Answer answer = new AIService(config, false).answerAsync("ERROR: primary is down", null, null)
+                    .get(30, TimeUnit.SECONDS);
+            String result = answer.text;
+            List<String> chunks = new ArrayList<>();
+            String streamed = new AIService(config, false)
+                    .explainErrorStreaming("ERROR: primary is still down", chunks::add).get(30, TimeUnit.SECONDS);
+
+            assertTrue(result.startsWith("The build failed because"), result);
+            assertEquals(AIProvider.GEMINI, answer.provider);
+            assertEquals("gemini-test", answer.model);
+            assertTrue(streamed.startsWith("The build failed because"), streamed);
+            assertEquals(streamed, String.join("", chunks).trim());
+            assertEquals(2, primary.getRequests());
+            assertEquals(2, fallback.getRequests());
+            assertEquals(2, ProviderHealth.get().getFailovers());
+        } finally {
+            config.setMaxRetries(3);
+            config.setFallbackProviders(null);
+        }
+    }
+
+    @Test
+    void testRoutesByErrorCategory() throws Exception {
+        try (MockLlmServer primary = new MockLlmServer();
+             MockLlmServer small = new MockLlmServer()) {
+            config.setApiUrl(primary.getOpenAIUrl());
+            config.setModel("gpt-test");
+            config.setFallbackProviders(List.of(new ProviderProfile("small", AIProvider.OPENAI,
+                    small.getOpenAIUrl(), "gpt-test-mini", null)));
+            ModelRoute route = new ModelRoute("environment", "small");
+            route.setErrorCategories("command-not-found");
+            config.setModelRoutes(List.of(route));
+
+            AIService service = new AIService(config, false);
+            service.explainErrorAsync("/bin/sh: mvnw: command not found").get(30, TimeUnit.SECONDS);
+            service.explainErrorAsync("[ERROR] COMPILATION ERROR").get(30, TimeUnit.SECONDS);
+
+            assertEquals(1, small.getRequests());
+            assertEquals(1, primary.getRequests());
+            String metrics = ExplanationMetrics.get().scrape();
+            assertTrue(metrics.contains(
+                    "explain_error_route_requests_total{route=\"environment\",outcome=\"success\"} 1\n"), metrics);
+            assertTrue(metrics.contains(
+                    "explain_error_route_requests_total{route=\"default\",outcome=\"success\"} 1\n"), metrics);
+        } finally {
+            config.setFallbackProviders(null);
+            config.setModelRoutes(null);
+        }
+    }
+
+    @Test
+    void testCachesRoutedExplanationByRoutedEndpoint() throws Exception {
+        try (MockLlmServer primary = new MockLlmServer();
+             MockLlmServer small = new MockLlmServer()) {
+            config.setApiUrl(primary.getOpenAIUrl());
+            config.setModel("gpt-test");
+            config.setFallbackProviders(List.of(new ProviderProfile("small", AIProvider.OPENAI,
+                    small.getOpenAIUrl(), "gpt-test-mini", null)));
+            ModelRoute route = new ModelRoute("environment", "small");
+            route.setErrorCategories("command-not-found");
+            config.setModelRoutes(List.of(route));
+            String errorLogs = "/bin/sh: gradlew: command not found";
+
+            AIService.Answer answer = new AIService(config).answerAsync(errorLogs, null, null)
+                    .get(30, TimeUnit.SECONDS);
+            AIService.Answer cached = new AIService(config).answerAsync(errorLogs, null, null)
+                    .get(30, TimeUnit.SECONDS);
+
+            assertEquals("gpt-test-mini", answer.model);
+            assertEquals(answer.text, cached.text);
+            assertEquals("gpt-test-mini", cached.model);
+            assertEquals(1, small.getRequests());
+            assertEquals(0, primary.getRequests());
+            ExplanationCache cache = ExplanationCache.get();
+            assertNotNull(cache.get(ExplanationCache.keyFor(AIProvider.OPENAI, "gpt-test-mini", errorLogs)));
+            assertNull(cache.get(ExplanationCache.keyFor(AIProvider.OPENAI, "gpt-test", errorLogs)));
+        } finally {
+            config.setFallbackProviders(null);
+            config.setModelRoutes(null);
+        }
+    }
+
+    @Test
+    void testRateLimiterWaitIsNotASlowCall() throws Exception {
+        try (MockLlmServer server = new MockLlmServer()) {
+            config.setApiUrl(server.getOpenAIUrl());
+            config.setModel("gpt-test");
+            config.setCircuitBreakerSlowCallSeconds(1);
+            // The provider asked to wait, so the next call is held back by the rate limiter
+            ProviderRateLimiter.get().update(AIProvider.OPENAI, 200,
+                    HttpHeaders.of(Map.of("retry-after", List.of("2")), (name, value) -> true));
+
+            long start = System.nanoTime();
+            String result = new AIService(config, false).explainErrorAsync("ERROR: throttled")
+                    .get(30, TimeUnit.SECONDS);
+
+            assertTrue(System.nanoTime() - start > TimeUnit.SECONDS.toNanos(1));
+            assertTrue(result.startsWith("The build failed because"), result);
+            assertEquals("primary: closed, 0% failed and 0% slow of the last 1 requests",
+                    ProviderCircuitBreaker.get().getSummary());
+        } finally {
+            config.setCircuitBreakerSlowCallSeconds(30);
+        }
+    }
+
+    @Test
+    void testOpenCircuitFailsFast() throws Exception {
+        try (MockLlmServer server = new MockLlmServer().failures(0, 1)) {
+            config.setApiUrl(server.getOpenAIUrl());
+            config.setModel("gpt-test");
+            config.setMaxRetries(0);
+            AIService service = new AIService(config, false);
+
+            for (int i = 0; i < ProviderCircuitBreaker.MIN_CALLS; i++) {
+                assertTrue(service.explainErrorAsync("ERROR: outage " + i).get(30, TimeUnit.SECONDS)
+                        .startsWith("Failed to get explanation from AI service. Status: 503"));
+            }
+            String result = service.explainErrorAsync("ERROR: outage").get(30, TimeUnit.SECONDS);
+
+            assertTrue(result.startsWith("The AI provider endpoint primary is failing"), result);
+            assertEquals(ProviderCircuitBreaker.MIN_CALLS, server.getRequests());
+            assertEquals(ProviderCircuitBreaker.State.OPEN, ProviderCircuitBreaker.get().getState("primary"));
+            assertTrue(ExplanationMetrics.get().scrape()
+                    .contains("explain_error_circuit_state{endpoint=\"primary\",state=\"open\"} 1"));
+        } finally {
+            config.setMaxRetries(3);
+        }
+    }
 }
@@ -0,0 +1,64 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class AhoCorasickTest {
+
+    private static List<Integer> findAll(AhoCorasick automaton, String text) {
+        List<Integer> found = new ArrayList<>();
+        automaton.scan(text, id -> {
+            found.add(id);
+            return false;
+        });
+        return found;
+    }
+
+    @Test
+    void testFindsOverlappingLiterals() {
+        AhoCorasick automaton = new AhoCorasick(List.of("he", "she", "his", "hers"));
+
+        assertEquals(List.of(1, 0, 3), findAll(automaton, "ushers"));
+    }
+
+    @Test
+    void testIgnoresAsciiCase() {
+        AhoCorasick automaton = new AhoCorasick(List.of("npm err!", "BUILD FAILURE"));
+
+        assertEquals(List.of(0, 1), findAll(automaton, "NPM ERR! code 1 ... build failure"));
+    }
+
+    @Test
+    void testNonAsciiCharactersRestartMatching() {
+        AhoCorasick automaton = new AhoCorasick(List.of("error"));
+
+        assertEquals(List.of(), findAll(automaton, "errör"));
+        assertEquals(List.of(0), findAll(automaton, "érror error"));
+    }
+
+    @Test
+    void testScanStopsWhenRequested() {
+        AhoCorasick automaton = new AhoCorasick(List.of("a"));
+        int[] calls = new int[1];
+
+        assertTrue(automaton.scan("aaaa", id -> ++calls[0] == 2));
+        assertEquals(2, calls[0]);
+        assertFalse(automaton.scan("bbbb", id -> true));
+    }
+
+    @Test
+    void testSuffixOfLongerLiteralIsReported() {
+        AhoCorasick automaton = new AhoCorasick(List.of("exception", "ion"));
+
+        assertEquals(List.of(0, 1), findAll(automaton, "NullPointerException"));
+    }
+
+    @Test
+    void testRejectsInvalidLiterals() {
+        assertThrows(IllegalArgumentException.class, () -> new AhoCorasick(List.of("")));
+        assertThrows(IllegalArgumentException.class, () -> new AhoCorasick(List.of("fehlgeschlägen")));
+    }
+}
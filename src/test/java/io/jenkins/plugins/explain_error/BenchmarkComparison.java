@@ -0,0 +1,137 @@
+package io.jenkins.plugins.explain_error;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares JMH results in the JSON result format with a baseline, e.g. the results of the
+ * target branch, and reports the change of the score and of the bytes allocated per operation.
+ */
+final class BenchmarkComparison {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Score of one benchmark with one set of parameters.
+     */
+    static final class Score {
+        final double score;
+        final String unit;
+        /** Whether a higher score is better, as for throughput. */
+        final boolean higherIsBetter;
+        /** Bytes allocated per operation, {@code NaN} if the GC profiler was not used. */
+        final double allocated;
+
+        Score(double score, String unit, boolean higherIsBetter, double allocated) {
+            this.score = score;
+            this.unit = unit;
+            this.higherIsBetter = higherIsBetter;
+            this.allocated = allocated;
+        }
+    }
+
+    private final List<String> report = new ArrayList<>();
+    private final List<String> regressions = new ArrayList<>();
+
+    /**
+     * @param baseline the baseline scores, by benchmark and parameters
+     * @param current the current scores, by benchmark and parameters
+     * @param threshold the change, in percent, beyond which a worse score or more allocation is a regression
+     */
+    BenchmarkComparison(Map<String, Score> baseline, Map<String, Score> current, double threshold) {
+        current.forEach((name, score) -> {
+            Score before = baseline.get(name);
+            StringBuilder line = new StringBuilder(String.format("%s: %,.1f %s", name, score.score, score.unit));
+            if (before == null) {
+                report.add(line.append(" (new)").toString());
+                return;
+            }
+            double change = change(before.score, score.score);
+            line.append(String.format(" (%+.1f%%)", change));
+            boolean regression = score.higherIsBetter ? change < -threshold : change > threshold;
+            if (!Double.isNaN(score.allocated)) {
+                line.append(String.format(", %,.0f B/op", score.allocated));
+                if (!Double.isNaN(before.allocated)) {
+                    double allocationChange = change(before.allocated, score.allocated);
+                    line.append(String.format(" (%+.1f%%)", allocationChange));
+                    // A few bytes more on a tiny allocation is noise, not a regression
+                    regression |= allocationChange > threshold && score.allocated - before.allocated > 64;
+                }
+            }
+            if (regression) {
+                line.append(" REGRESSION");
+                regressions.add(name);
+            }
+            report.add(line.toString());
+        });
+    }
+
+    private static double change(double before, double after) {
+        return before == 0 ? 0 : (after - before) / before * 100;
+    }
+
+    /**
+     * Read scores from a JMH JSON result file.
+     */
+    static Map<String, Score> read(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Read scores from JMH JSON results.
+     * @return the scores by benchmark, without its package, and parameters, in a stable order
+     */
+    static Map<String, Score> read(InputStream in) throws IOException {
+        Map<String, Score> scores = new TreeMap<>();
+        for (JsonNode result : MAPPER.readTree(in)) {
+            String benchmark = result.path("benchmark").asText();
+            String name = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+            Map<String, String> params = new LinkedHashMap<>();
+            for (Iterator<Map.Entry<String, JsonNode>> it = result.path("params").fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> param = it.next();
+                params.put(param.getKey(), param.getValue().asText());
+            }
+            if (!params.isEmpty()) {
+                name += " " + params;
+            }
+            JsonNode primary = result.path("primaryMetric");
+            double allocated = Double.NaN;
+            for (Iterator<Map.Entry<String, JsonNode>> it = result.path("secondaryMetrics").fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> metric = it.next();
+                // Named "·gc.alloc.rate.norm" by older JMH versions
+                if (metric.getKey().endsWith("gc.alloc.rate.norm")) {
+                    allocated = metric.getValue().path("score").asDouble();
+                }
+            }
+            scores.put(name, new Score(primary.path("score").asDouble(), primary.path("scoreUnit").asText(),
+                    "thrpt".equals(result.path("mode").asText()), allocated));
+        }
+        return scores;
+    }
+
+    /**
+     * Get one line per current benchmark with its score and the change from the baseline.
+     */
+    String getReport() {
+        return String.join("\n", report);
+    }
+
+    /**
+     * Get the benchmarks that regressed beyond the threshold.
+     */
+    List<String> getRegressions() {
+        return regressions;
+    }
+}
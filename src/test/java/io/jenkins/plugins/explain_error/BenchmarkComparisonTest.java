@@ -0,0 +1,84 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class BenchmarkComparisonTest {
+
+    private static Map<String, BenchmarkComparison.Score> read(String json) throws IOException {
+        return BenchmarkComparison.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String result(String benchmark, String params, String mode, double score, double allocated) {
+        return "{\"benchmark\":\"io.jenkins.plugins.explain_error." + benchmark + "\",\"mode\":\"" + mode + "\","
+                + "\"params\":{" + params + "},"
+                + "\"primaryMetric\":{\"score\":" + score + ",\"scoreError\":1.5,\"scoreUnit\":\"ops/s\"},"
+                + "\"secondaryMetrics\":{\"gc.alloc.rate\":{\"score\":900.0,\"scoreUnit\":\"MB/sec\"},"
+                + "\"gc.alloc.rate.norm\":{\"score\":" + allocated + ",\"scoreUnit\":\"B/op\"}}}";
+    }
+
+    @Test
+    void testRead() throws IOException {
+        Map<String, BenchmarkComparison.Score> scores = read("["
+                + result("LogExtractionBenchmark.tail", "\"kind\":\"MAVEN\",\"size\":\"1KB\"", "thrpt", 1200, 4096)
+                + ",{\"benchmark\":\"io.jenkins.plugins.explain_error.ProviderMessagesBenchmark.buildPrompt\","
+                + "\"mode\":\"avgt\",\"primaryMetric\":{\"score\":2.5,\"scoreUnit\":\"us/op\"}}]");
+
+        assertEquals(List.of("LogExtractionBenchmark.tail {kind=MAVEN, size=1KB}",
+                "ProviderMessagesBenchmark.buildPrompt"), List.copyOf(scores.keySet()));
+        BenchmarkComparison.Score tail = scores.get("LogExtractionBenchmark.tail {kind=MAVEN, size=1KB}");
+        assertEquals(1200.0, tail.score);
+        assertEquals("ops/s", tail.unit);
+        assertTrue(tail.higherIsBetter);
+        assertEquals(4096.0, tail.allocated);
+        BenchmarkComparison.Score prompt = scores.get("ProviderMessagesBenchmark.buildPrompt");
+        assertFalse(prompt.higherIsBetter);
+        assertTrue(Double.isNaN(prompt.allocated));
+    }
+
+    @Test
+    void testCompare() throws IOException {
+        Map<String, BenchmarkComparison.Score> baseline = read("["
+                + result("ProviderMessagesBenchmark.openAIParseResponse", "", "thrpt", 1000, 10_000) + ","
+                + result("ProviderMessagesBenchmark.geminiParseResponse", "", "thrpt", 1000, 10_000) + ","
+                + result("ProviderMessagesBenchmark.consoleJsonResponse", "", "thrpt", 1000, 10_000) + "]");
+        Map<String, BenchmarkComparison.Score> current = read("["
+                + result("ProviderMessagesBenchmark.openAIParseResponse", "", "thrpt", 1050, 10_000) + ","
+                + result("ProviderMessagesBenchmark.geminiParseResponse", "", "thrpt", 800, 10_000) + ","
+                + result("ProviderMessagesBenchmark.consoleJsonResponse", "", "thrpt", 1000, 20_000) + ","
+                + result("ProviderMessagesBenchmark.buildPrompt", "", "thrpt", 500, 100) + "]");
+
+        BenchmarkComparison comparison = new BenchmarkComparison(baseline, current, 10);
+
+        assertEquals(List.of("ProviderMessagesBenchmark.consoleJsonResponse",
+                "ProviderMessagesBenchmark.geminiParseResponse"), comparison.getRegressions());
+        assertEquals("ProviderMessagesBenchmark.buildPrompt: 500.0 ops/s (new)\n"
+                + "ProviderMessagesBenchmark.consoleJsonResponse: 1,000.0 ops/s (+0.0%), 20,000 B/op (+100.0%)"
+                + " REGRESSION\n"
+                + "ProviderMessagesBenchmark.geminiParseResponse: 800.0 ops/s (-20.0%), 10,000 B/op (+0.0%)"
+                + " REGRESSION\n"
+                + "ProviderMessagesBenchmark.openAIParseResponse: 1,050.0 ops/s (+5.0%), 10,000 B/op (+0.0%)",
+                comparison.getReport());
+    }
+
+    @Test
+    void testLowerIsBetterForAverageTime() throws IOException {
+        Map<String, BenchmarkComparison.Score> baseline = read("["
+                + result("LogExtractionBenchmark.tail", "", "avgt", 100, 64) + "]");
+        Map<String, BenchmarkComparison.Score> faster = read("["
+                + result("LogExtractionBenchmark.tail", "", "avgt", 50, 96) + "]");
+        Map<String, BenchmarkComparison.Score> slower = read("["
+                + result("LogExtractionBenchmark.tail", "", "avgt", 150, 64) + "]");
+
+        // 32 more bytes per operation is 50% more, but too little to count
+        assertTrue(new BenchmarkComparison(baseline, faster, 10).getRegressions().isEmpty());
+        assertEquals(List.of("LogExtractionBenchmark.tail"),
+                new BenchmarkComparison(baseline, slower, 10).getRegressions());
+    }
+}
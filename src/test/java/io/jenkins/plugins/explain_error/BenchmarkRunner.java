@@ -0,0 +1,94 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the JMH benchmarks. Skipped unless {@code -Dbenchmark=true} is set:
+ * {@code mvn test -Dtest=BenchmarkRunner -Dbenchmark=true}
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BenchmarkRunner {
+
+    /** Where the results of the suite are written, to be kept as the baseline of a later run. */
+    private static final Path RESULTS = Paths.get("target", "jmh-result.json");
+
+    @Test
+    void runErrorSignaturesBenchmark() throws Exception {
+        Options options = new OptionsBuilder()
+                .include(ErrorSignaturesBenchmark.class.getName() + ".*")
+                .warmupIterations(2)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+        for (RunResult result : new Runner(options).run()) {
+            double scansPerSecond = result.getPrimaryResult().getScore();
+            System.out.printf("%s: %.1f MB/s%n", result.getParams().getBenchmark(),
+                    scansPerSecond * ErrorSignaturesBenchmark.LOG_BYTES / (1024 * 1024));
+        }
+    }
+
+    /**
+     * Runs the log extraction and provider message benchmarks with the GC profiler, so every
+     * result includes the bytes allocated per operation, and writes the results to
+     * {@code target/jmh-result.json}.
+     * <ul>
+     *   <li>{@code -Dbenchmark.include=<regex>} runs only matching benchmarks</li>
+     *   <li>{@code -Dbenchmark.sizes=1KB,1MB,1GB} sets the log sizes of {@link LogExtractionBenchmark}</li>
+     *   <li>{@code -Dbenchmark.baseline=<file>} compares with the results of an earlier run</li>
+     *   <li>{@code -Dbenchmark.maxRegression=<percent>} fails if a benchmark got worse by more than that</li>
+     * </ul>
+     */
+    @Test
+    void runSuite() throws Exception {
+        Files.createDirectories(RESULTS.getParent());
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(System.getProperty("benchmark.include",
+                        "(" + LogExtractionBenchmark.class.getName() + "|"
+                                + ProviderMessagesBenchmark.class.getName() + ")\\..*"))
+                .warmupIterations(2)
+                .warmupTime(TimeValue.seconds(2))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(2))
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(RESULTS.toString());
+        String sizes = System.getProperty("benchmark.sizes");
+        if (sizes != null) {
+            options.param("size", sizes.split(","));
+            // A 1 GB log is streamed from disk, but the extracted lines and the tail still need some heap
+            options.jvmArgsAppend("-Xmx2g");
+        }
+        new Runner(options.build()).run();
+
+        String baseline = System.getProperty("benchmark.baseline");
+        if (baseline == null) {
+            System.out.println("Results written to " + RESULTS.toAbsolutePath()
+                    + "; keep them and pass -Dbenchmark.baseline=<file> to a later run to compare");
+            return;
+        }
+        double maxRegression = Double.parseDouble(System.getProperty("benchmark.maxRegression", "10"));
+        Map<String, BenchmarkComparison.Score> current = BenchmarkComparison.read(RESULTS);
+        BenchmarkComparison comparison = new BenchmarkComparison(
+                BenchmarkComparison.read(Paths.get(baseline)), current, maxRegression);
+        System.out.println("Compared with " + baseline + ":\n" + comparison.getReport());
+        if (System.getProperty("benchmark.maxRegression") != null) {
+            assertTrue(comparison.getRegressions().isEmpty(), "Regressions: " + comparison.getRegressions());
+        }
+    }
+}
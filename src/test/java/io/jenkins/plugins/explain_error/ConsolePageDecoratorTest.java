@@ -191,4 +191,13 @@ class ConsolePageDecoratorTest {
         
         assertTrue(decorator.isExplainErrorEnabled());
     }
+
+    @Test
+    void testIsStreamingEnabledFollowsConfiguration() {
+        config.setEnableStreaming(true);
+        assertTrue(decorator.isStreamingEnabled());
+
+        config.setEnableStreaming(false);
+        assertFalse(decorator.isStreamingEnabled());
+    }
 }
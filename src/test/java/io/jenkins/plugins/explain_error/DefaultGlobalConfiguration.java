@@ -0,0 +1,13 @@
+package io.jenkins.plugins.explain_error;
+
+/**
+ * Global configuration with the default settings that is never loaded from disk, for tests and
+ * benchmarks running without Jenkins.
+ */
+class DefaultGlobalConfiguration extends GlobalConfigurationImpl {
+
+    @Override
+    public synchronized void load() {
+        // Keep the defaults, there is no Jenkins home to load from
+    }
+}
@@ -4,6 +4,10 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import hudson.model.FreeStyleBuild;
 import hudson.model.FreeStyleProject;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.jvnet.hudson.test.JenkinsRule;
@@ -170,4 +174,119 @@ class ErrorExplanationActionTest {
         ErrorExplanationAction validWithWhitespaceAction = new ErrorExplanationAction("  Valid explanation  ", "Error logs");
         assertTrue(validWithWhitespaceAction.hasValidExplanation());
     }
+
+    @Test
+    void testTextIsStoredOutsideBuildXml(JenkinsRule jenkins) throws Exception {
+        FreeStyleProject project = jenkins.createFreeStyleProject("side-file");
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+
+        build.addAction(new ErrorExplanationAction(testExplanation, testErrorLogs, AIProvider.OPENAI, 1234));
+        build.save();
+
+        Path buildXml = build.getRootDir().toPath().resolve("build.xml");
+        String xml = Files.readString(buildXml, StandardCharsets.UTF_8);
+        assertFalse(xml.contains(testExplanation));
+        assertFalse(xml.contains("Compilation error"));
+        assertTrue(Files.exists(build.getRootDir().toPath().resolve(ErrorExplanationAction.FILE_NAME)));
+
+        build.reload();
+        ErrorExplanationAction loaded = build.getAction(ErrorExplanationAction.class);
+        assertEquals(testExplanation.length(), loaded.getExplanationLength());
+        assertEquals("OPENAI", loaded.getProvider());
+        assertEquals(1234, loaded.getEstimatedTokens());
+        assertTrue(loaded.hasValidExplanation());
+        assertEquals(testExplanation, loaded.getExplanation());
+        assertEquals(testErrorLogs, loaded.getOriginalErrorLogs());
+    }
+
+    @Test
+    void testNullTextSurvivesReload(JenkinsRule jenkins) throws Exception {
+        FreeStyleProject project = jenkins.createFreeStyleProject("null-text");
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+
+        build.addAction(new ErrorExplanationAction(testExplanation, null));
+        build.save();
+        build.reload();
+
+        ErrorExplanationAction loaded = build.getAction(ErrorExplanationAction.class);
+        assertEquals(testExplanation, loaded.getExplanation());
+        assertNull(loaded.getOriginalErrorLogs());
+        assertNull(loaded.getProvider());
+    }
+
+    @Test
+    void testLegacyActionIsMigrated(JenkinsRule jenkins) throws Exception {
+        FreeStyleProject project = jenkins.createFreeStyleProject("legacy");
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+        build.addAction(new ErrorExplanationAction("placeholder", "placeholder"));
+        build.save();
+
+        // Rewrite the action the way older versions stored it, with the text inline
+        Path dir = build.getRootDir().toPath();
+        Files.delete(dir.resolve(ErrorExplanationAction.FILE_NAME));
+        Path buildXml = dir.resolve("build.xml");
+        writeLegacyAction(buildXml);
+
+        build.reload();
+        ErrorExplanationAction loaded = build.getAction(ErrorExplanationAction.class);
+        assertTrue(Files.exists(dir.resolve(ErrorExplanationAction.FILE_NAME)));
+        assertEquals(1700000000000L, loaded.getTimestamp());
+        assertTrue(loaded.hasValidExplanation());
+        assertEquals("Legacy explanation", loaded.getExplanation());
+        assertEquals("ERROR: legacy", loaded.getOriginalErrorLogs());
+
+        build.save();
+        assertFalse(Files.readString(buildXml, StandardCharsets.UTF_8).contains("Legacy explanation"));
+    }
+
+    @Test
+    void testMigrationIsSavedOnce(JenkinsRule jenkins) throws Exception {
+        FreeStyleProject project = jenkins.createFreeStyleProject("legacy-saved");
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+        build.addAction(new ErrorExplanationAction("placeholder", "placeholder"));
+        build.save();
+        Path dir = build.getRootDir().toPath();
+        Path sideFile = dir.resolve(ErrorExplanationAction.FILE_NAME);
+        Files.delete(sideFile);
+        Path buildXml = dir.resolve("build.xml");
+        writeLegacyAction(buildXml);
+
+        // The build is saved after loading, without anything else saving it
+        build.reload();
+        awaitTextDropped(buildXml);
+        build.reload();
+        assertEquals("Legacy explanation", build.getAction(ErrorExplanationAction.class).getExplanation());
+
+        // A side file already holding the text, e.g. if the build was not saved after migrating, is kept
+        FileTime written = FileTime.fromMillis(1700000000000L);
+        Files.setLastModifiedTime(sideFile, written);
+        writeLegacyAction(buildXml);
+        build.reload();
+        awaitTextDropped(buildXml);
+        assertEquals(written, Files.getLastModifiedTime(sideFile));
+        assertEquals("ERROR: legacy", build.getAction(ErrorExplanationAction.class).getOriginalErrorLogs());
+    }
+
+    /**
+     * Rewrite the action the way older versions stored it, with the text inline.
+     */
+    private static void writeLegacyAction(Path buildXml) throws Exception {
+        String xml = Files.readString(buildXml, StandardCharsets.UTF_8).replaceAll(
+                "(?s)<io\\.jenkins\\.plugins\\.explain__error\\.ErrorExplanationAction>.*?"
+                        + "</io\\.jenkins\\.plugins\\.explain__error\\.ErrorExplanationAction>",
+                "<io.jenkins.plugins.explain__error.ErrorExplanationAction>"
+                        + "<explanation>Legacy explanation</explanation>"
+                        + "<originalErrorLogs>ERROR: legacy</originalErrorLogs>"
+                        + "<timestamp>1700000000000</timestamp>"
+                        + "</io.jenkins.plugins.explain__error.ErrorExplanationAction>");
+        Files.writeString(buildXml, xml, StandardCharsets.UTF_8);
+    }
+
+    private static void awaitTextDropped(Path buildXml) throws Exception {
+        for (int i = 0; i < 100 && Files.readString(buildXml, StandardCharsets.UTF_8).contains("Legacy explanation");
+             i++) {
+            Thread.sleep(100);
+        }
+        assertFalse(Files.readString(buildXml, StandardCharsets.UTF_8).contains("Legacy explanation"));
+    }
 }
@@ -0,0 +1,103 @@
+package io.jenkins.plugins.explain_error;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Throughput of error signature matching on a large generated log.
+ * One operation scans the whole log, so operations per second times {@link #LOG_BYTES} is the
+ * throughput in bytes per second; {@link BenchmarkRunner} reports it in MB/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ErrorSignaturesBenchmark {
+
+    static final int LOG_BYTES = 16 * 1024 * 1024;
+
+    private static final String[] REGULAR_LINES = {
+        "[INFO] Downloading from central: https://repo.maven.apache.org/maven2/org/example/lib/1.%d/lib-1.%d.pom",
+        "[INFO] Compiling %d source files with javac [debug release 17] to target/classes",
+        "[INFO] Tests run: %d, Failures: 0, Errors: 0, Skipped: 0, Time elapsed: 0.%d s",
+        "+ npm install --no-audit --prefer-offline # step %d of %d",
+        "Step %d/%d : RUN apt-get update && apt-get install -y curl",
+        "[Pipeline] sh (hide) %d %d",
+        "    at org.example.Worker.run(Worker.java:%d) retries=%d",
+    };
+
+    private static final String[] ERROR_LINES = {
+        "[ERROR] /src/main/java/org/example/Foo.java:[42,13] cannot find symbol",
+        "java.lang.OutOfMemoryError: Java heap space",
+        "npm ERR! code ELIFECYCLE",
+        "Tests run: 12, Failures: 3, Errors: 0, Skipped: 0",
+        "script returned exit code 137",
+    };
+
+    private List<String> lines;
+    private String log;
+    private Pattern alternation;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        lines = new ArrayList<>();
+        StringBuilder text = new StringBuilder(LOG_BYTES + 256);
+        while (text.length() < LOG_BYTES) {
+            // About one line in a thousand is an error, as in a typical failed build
+            String line = random.nextInt(1000) == 0
+                    ? ERROR_LINES[random.nextInt(ERROR_LINES.length)]
+                    : String.format(REGULAR_LINES[random.nextInt(REGULAR_LINES.length)],
+                            random.nextInt(1000), random.nextInt(1000));
+            lines.add(line);
+            text.append(line).append('\n');
+        }
+        log = text.substring(0, LOG_BYTES);
+        // The approach without signatures: every literal in one case-insensitive alternation
+        alternation = Pattern.compile(ErrorSignatures.builtIn().getSignatures().stream()
+                .flatMap(signature -> signature.getLiterals().stream())
+                .map(Pattern::quote)
+                .collect(Collectors.joining("|")), Pattern.CASE_INSENSITIVE);
+    }
+
+    @Benchmark
+    public int signatures() {
+        ErrorSignatures signatures = ErrorSignatures.builtIn();
+        int matches = 0;
+        for (String line : lines) {
+            if (signatures.matches(line)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int regexAlternation() {
+        int matches = 0;
+        for (String line : lines) {
+            if (alternation.matcher(line).find()) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public String extractWithSignatures() throws IOException {
+        return new LogPatternExtractor(null, ErrorSignatures.builtIn(), 2, Integer.MAX_VALUE, Integer.MAX_VALUE)
+                .extract(new StringReader(log));
+    }
+}
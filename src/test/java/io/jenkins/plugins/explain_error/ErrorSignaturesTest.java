@@ -0,0 +1,70 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+class ErrorSignaturesTest {
+
+    private static String match(String line) {
+        ErrorSignatures.Signature signature = ErrorSignatures.builtIn().match(line);
+        return signature != null ? signature.getName() : null;
+    }
+
+    @Test
+    void testBuiltInSignatures() {
+        assertEquals("maven-error", match("[ERROR] Failed to execute goal org.apache.maven.plugins:maven-compiler-plugin"));
+        assertEquals("compiler-error", match("src/Main.java:12: error: cannot find symbol"));
+        assertEquals("compiler-error", match("main.c:3:10: error: expected ';' before '}' token"));
+        assertEquals("compiler-error-code", match("src/index.ts(4,7): error TS2322: Type 'string' is not assignable"));
+        assertEquals("out-of-memory", match("java.lang.OutOfMemoryError: Java heap space"));
+        assertEquals("exception", match("\tat com.example.Foo.bar(Foo.java:10) java.lang.IllegalStateException: boom"));
+        assertEquals("test-failure-count", match("Tests run: 12, Failures: 2, Errors: 0, Skipped: 0"));
+        assertEquals("npm-error", match("npm ERR! code ELIFECYCLE"));
+        assertEquals("exit-code", match("script returned exit code 2"));
+        assertEquals("git-error", match("fatal: repository 'https://example.com/repo.git/' not found"));
+        assertEquals("python-traceback", match("Traceback (most recent call last):"));
+        assertEquals("disk-full", match("write /var/lib/docker/tmp: no space left on device"));
+    }
+
+    @Test
+    void testRegularLinesDoNotMatch() {
+        assertNull(match("[INFO] Building explain-error 1.0-SNAPSHOT"));
+        assertNull(match("Tests run: 12, Failures: 0, Errors: 0, Skipped: 0"));
+        assertNull(match("script returned exit code 0"));
+        assertNull(match("Downloading https://repo.maven.apache.org/maven2/error-prone/1.0/error-prone.pom"));
+        assertNull(match(""));
+    }
+
+    @Test
+    void testLiteralWithoutConfirmingPatternIsNotEnough() {
+        // "error" alone is a literal of several signatures, but none of their patterns match
+        assertFalse(ErrorSignatures.builtIn().matches("checking error-prone configuration"));
+    }
+
+    @Test
+    void testCustomSignatures() {
+        ErrorSignatures signatures = new ErrorSignatures(List.of(
+                new ErrorSignatures.Signature("flaky", "(?i)retry \\d+ of \\d+", "retry"),
+                new ErrorSignatures.Signature("quota", null, "quota exceeded")));
+
+        assertTrue(signatures.matches("Retry 2 of 3"));
+        assertFalse(signatures.matches("retrying later"));
+        assertEquals("quota", signatures.match("API QUOTA EXCEEDED").getName());
+    }
+
+    @Test
+    void testSignatureNeedsLiterals() {
+        assertThrows(IllegalArgumentException.class, () -> new ErrorSignatures.Signature("empty", "x"));
+    }
+
+    @Test
+    void testCompiledPatternsAreReused() {
+        Pattern first = ErrorSignatures.compile("ERROR|FAILED", Pattern.CASE_INSENSITIVE);
+
+        assertSame(first, ErrorSignatures.compile("ERROR|FAILED", Pattern.CASE_INSENSITIVE));
+        assertNotSame(first, ErrorSignatures.compile("ERROR|FAILED", 0));
+    }
+}
@@ -0,0 +1,49 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import jenkins.model.Jenkins;
+import org.htmlunit.FailingHttpStatusCodeException;
+import org.htmlunit.Page;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class ExplainErrorRootActionTest {
+
+    @Test
+    void testBasicFunctionality(JenkinsRule jenkins) {
+        ExplainErrorRootAction action = jenkins.jenkins.getExtensionList(ExplainErrorRootAction.class).get(0);
+        assertNull(action.getIconFileName());
+        assertEquals("explain-error", action.getUrlName());
+    }
+
+    @Test
+    void testMetricsEndpoint(JenkinsRule jenkins) throws Exception {
+        ExplanationMetrics.get().recordConsoleRequest("explain", "existing");
+
+        Page page = jenkins.createWebClient().goTo("explain-error/metrics", "text/plain");
+        String text = page.getWebResponse().getContentAsString();
+        assertTrue(text.contains(
+                "explain_error_console_requests_total{endpoint=\"explain\",result=\"existing\"} 1\n"));
+        assertTrue(text.contains("# TYPE explain_error_cache_entries gauge\n"));
+        assertTrue(text.contains("# TYPE explain_error_queue_rejected_total counter\n"));
+    }
+
+    @Test
+    void testMetricsRequireAdminister(JenkinsRule jenkins) throws Exception {
+        jenkins.jenkins.setSecurityRealm(jenkins.createDummySecurityRealm());
+        jenkins.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy()
+                .grant(Jenkins.READ).everywhere().to("reader")
+                .grant(Jenkins.ADMINISTER).everywhere().to("admin"));
+
+        JenkinsRule.WebClient reader = jenkins.createWebClient().login("reader");
+        FailingHttpStatusCodeException e = assertThrows(FailingHttpStatusCodeException.class,
+                () -> reader.goTo("explain-error/metrics", "text/plain"));
+        assertEquals(403, e.getStatusCode());
+
+        jenkins.createWebClient().login("admin").goTo("explain-error/metrics", "text/plain");
+    }
+}
@@ -33,4 +33,23 @@ class ExplainErrorStepConfigTest {
         // but we can verify the step executed without errors
         jenkins.assertLogContains("This is a test build", build);
     }
+
+    @Test
+    void testExplainErrorStepWithContextAndTimeout(JenkinsRule jenkins) throws Exception {
+        WorkflowJob job = jenkins.createProject(WorkflowJob.class, "test-explain-error-context");
+
+        String pipelineScript = "node {\n" +
+                "    echo 'This is a test build'\n" +
+                "    echo 'ERROR: Something went wrong'\n" +
+                "    explainError logPattern: 'ERROR', maxLines: 50, contextLines: 2, errorSignatures: true, " +
+                "timeout: 60\n" +
+                "}";
+
+        job.setDefinition(new CpsFlowDefinition(pipelineScript, true));
+
+        WorkflowRun build = jenkins.buildAndAssertSuccess(job);
+
+        // Without an API key the step reports that, after accepting the parameters
+        jenkins.assertLogContains("ERROR: API key is not configured", build);
+    }
 }
@@ -1,5 +1,11 @@
 package io.jenkins.plugins.explain_error;
 
+import com.sun.net.httpserver.HttpServer;
+import hudson.model.Result;
+import hudson.util.Secret;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
@@ -41,4 +47,71 @@ class ExplainErrorStepTest {
         assert config.getModel() == null; // No auto-population
         assert config.isEnableExplanation() == true;
     }
+
+    @Test
+    void testTimeoutLetsPipelineContinue(JenkinsRule jenkins) throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        HttpServer server = hangingServer(release);
+        try {
+            configure(server);
+            WorkflowJob job = jenkins.createProject(WorkflowJob.class, "test-explain-error-timeout");
+            job.setDefinition(new CpsFlowDefinition("node {\n"
+                    + "    echo 'ERROR: something broke'\n"
+                    + "    explainError timeout: 1\n"
+                    + "    echo 'after explainError'\n"
+                    + "}", true));
+
+            WorkflowRun run = jenkins.buildAndAssertSuccess(job);
+
+            jenkins.assertLogContains("Failed to explain error: no answer within 1 seconds", run);
+            jenkins.assertLogContains("after explainError", run);
+        } finally {
+            release.countDown();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testAbortStopsWaitingStep(JenkinsRule jenkins) throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        HttpServer server = hangingServer(release);
+        try {
+            configure(server);
+            WorkflowJob job = jenkins.createProject(WorkflowJob.class, "test-explain-error-abort");
+            job.setDefinition(new CpsFlowDefinition("node {\n"
+                    + "    echo 'ERROR: something broke'\n"
+                    + "    timeout(time: 2, unit: 'SECONDS') {\n"
+                    + "        explainError()\n"
+                    + "    }\n"
+                    + "}", true));
+
+            jenkins.assertBuildStatus(Result.ABORTED, job.scheduleBuild2(0));
+        } finally {
+            release.countDown();
+            server.stop(0);
+        }
+    }
+
+    private static HttpServer hangingServer(CountDownLatch release) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+
+    private static void configure(HttpServer server) {
+        GlobalConfigurationImpl config = GlobalConfigurationImpl.get();
+        config.setProvider(AIProvider.OPENAI);
+        config.setApiKey(Secret.fromString("test-api-key"));
+        config.setApiUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions");
+        config.setMaxRetries(0);
+    }
 }
@@ -0,0 +1,161 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ExplanationBulkheadTest {
+
+    private AtomicLong now;
+    private AtomicBoolean fair;
+    private ExplanationBulkhead bulkhead;
+    private List<String> started;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(1000);
+        fair = new AtomicBoolean(true);
+        bulkhead = new ExplanationBulkhead(() -> 1, () -> 3, fair::get, now::get);
+        started = new ArrayList<>();
+    }
+
+    private CompletableFuture<String> submit(String job, String id, CompletableFuture<String> call) {
+        return bulkhead.submit(job, id, () -> {
+            started.add(id);
+            return call;
+        });
+    }
+
+    @Test
+    void testCallsBeyondLimitWaitForFreeSlot() throws Exception {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        CompletableFuture<String> firstResult = submit("job", "job#1", first);
+        CompletableFuture<String> secondResult = submit("job", "job#2", second);
+
+        assertEquals(List.of("job#1"), started);
+        assertEquals(1, bulkhead.getRunning());
+        assertEquals(1, bulkhead.getQueued());
+        assertEquals(1, bulkhead.getQueuePosition("job#2"));
+
+        now.addAndGet(500);
+        first.complete("one");
+        assertEquals("one", firstResult.get());
+        assertEquals(List.of("job#1", "job#2"), started);
+        assertEquals(0, bulkhead.getQueuePosition("job#2"));
+        assertEquals(500, bulkhead.getMaxWaitMillis());
+
+        second.complete("two");
+        assertEquals("two", secondResult.get());
+        assertEquals(0, bulkhead.getRunning());
+        assertEquals("0 running and 0 waiting; 1 of 2 requests waited, 500 ms on average and 500 ms at most",
+                bulkhead.getSummary());
+        ExplanationMetrics.Exposition out = new ExplanationMetrics.Exposition();
+        bulkhead.getWaits().write(out, "explain_error_queue_wait_seconds", new ExplanationMetrics.Labels());
+        assertTrue(out.toString().contains("explain_error_queue_wait_seconds_bucket{le=\"0.25\"} 1\n"
+                + "explain_error_queue_wait_seconds_bucket{le=\"0.5\"} 2\n"), out.toString());
+        assertTrue(out.toString().contains("explain_error_queue_wait_seconds_count 2\n"), out.toString());
+    }
+
+    @Test
+    void testSummaryWithoutRequests() {
+        assertEquals("No requests since the last restart", bulkhead.getSummary());
+    }
+
+    @Test
+    void testFullQueueRejects() {
+        submit("job", "job#1", new CompletableFuture<>());
+        for (int i = 2; i <= 4; i++) {
+            submit("job", "job#" + i, new CompletableFuture<>());
+        }
+        CompletableFuture<String> rejected = submit("job", "job#5", new CompletableFuture<>());
+
+        ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertEquals(1, bulkhead.getRejected());
+        assertEquals(4, bulkhead.getAccepted());
+    }
+
+    @Test
+    void testWaitingCallsAreDispatchedRoundRobinAcrossJobs() {
+        CompletableFuture<String> running = new CompletableFuture<>();
+        submit("busy", "busy#1", running);
+        submit("busy", "busy#2", CompletableFuture.completedFuture("b2"));
+        submit("busy", "busy#3", CompletableFuture.completedFuture("b3"));
+        submit("other", "other#1", CompletableFuture.completedFuture("o1"));
+
+        assertEquals(1, bulkhead.getQueuePosition("busy#2"));
+        assertEquals(2, bulkhead.getQueuePosition("other#1"));
+        assertEquals(3, bulkhead.getQueuePosition("busy#3"));
+
+        running.complete("b1");
+        assertEquals(List.of("busy#1", "busy#2", "other#1", "busy#3"), started);
+    }
+
+    @Test
+    void testWithoutFairnessCallsAreServedInArrivalOrder() {
+        fair.set(false);
+        CompletableFuture<String> running = new CompletableFuture<>();
+        submit("busy", "busy#1", running);
+        submit("busy", "busy#2", CompletableFuture.completedFuture("b2"));
+        submit("busy", "busy#3", CompletableFuture.completedFuture("b3"));
+        submit("other", "other#1", CompletableFuture.completedFuture("o1"));
+
+        assertEquals(3, bulkhead.getQueuePosition("other#1"));
+        running.complete("b1");
+        assertEquals(List.of("busy#1", "busy#2", "busy#3", "other#1"), started);
+    }
+
+    @Test
+    void testCancelledWaitingCallIsRemoved() {
+        CompletableFuture<String> running = new CompletableFuture<>();
+        submit("job", "job#1", running);
+        CompletableFuture<String> waiting = submit("job", "job#2", new CompletableFuture<>());
+
+        waiting.cancel(true);
+        assertEquals(0, bulkhead.getQueued());
+
+        running.complete("one");
+        assertEquals(List.of("job#1"), started);
+        assertEquals(0, bulkhead.getRunning());
+    }
+
+    @Test
+    void testFailedCallReleasesSlot() {
+        CompletableFuture<String> running = new CompletableFuture<>();
+        CompletableFuture<String> result = submit("job", "job#1", running);
+        submit("job", "job#2", CompletableFuture.completedFuture("two"));
+
+        running.completeExceptionally(new AIServiceException("boom", 500));
+
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(List.of("job#1", "job#2"), started);
+        assertEquals(0, bulkhead.getRunning());
+    }
+
+    @Test
+    void testQueuedCallsCompletingAtOnceAreDrainedWithoutRecursion() {
+        bulkhead = new ExplanationBulkhead(() -> 1, () -> 100_000, fair::get, now::get);
+        CompletableFuture<String> running = new CompletableFuture<>();
+        submit("job", "job#0", running);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 1; i <= 50_000; i++) {
+            results.add(submit("job", "job#" + i, CompletableFuture.completedFuture("done")));
+        }
+
+        running.complete("done");
+
+        assertTrue(results.stream().allMatch(result -> "done".equals(result.getNow(null))));
+        assertEquals(50_001, started.size());
+        assertEquals(0, bulkhead.getRunning());
+        assertEquals(0, bulkhead.getQueued());
+    }
+}
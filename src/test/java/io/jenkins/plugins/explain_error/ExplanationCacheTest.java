@@ -0,0 +1,92 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExplanationCacheTest {
+
+    private AtomicLong now;
+    private ExplanationCache cache;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(1000);
+        cache = new ExplanationCache(() -> 3, () -> 60_000, now::get);
+    }
+
+    @Test
+    void testHitAndMissCounters() {
+        assertNull(cache.get("key"));
+        cache.put("key", "explanation");
+
+        assertEquals("explanation", cache.get("key"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate(), 0.0001);
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntryIsEvicted() {
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.put("c", "C");
+        // Touch "a" so "b" becomes the least recently used entry
+        cache.get("a");
+        cache.put("d", "D");
+
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get("b"));
+        assertEquals("A", cache.get("a"));
+        assertEquals("D", cache.get("d"));
+    }
+
+    @Test
+    void testEntriesExpire() {
+        cache.put("key", "explanation");
+        now.addAndGet(60_001);
+
+        assertNull(cache.get("key"));
+        assertEquals(1, cache.getExpirations());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testZeroSizeDisablesCaching() {
+        ExplanationCache disabled = new ExplanationCache(() -> 0, () -> 60_000, now::get);
+        disabled.put("key", "explanation");
+
+        assertNull(disabled.get("key"));
+        assertEquals(0, disabled.size());
+    }
+
+    @Test
+    void testPersistentStoreAnswersMemoryMisses(@TempDir Path directory) {
+        ExplanationCache first = new ExplanationCache(() -> 3, () -> 60_000, now::get,
+                new PersistentExplanationStore(directory, () -> 1024 * 1024, () -> 60_000, now::get));
+        first.put("key", "explanation");
+
+        // A new cache over the same directory behaves like the cache after a restart
+        ExplanationCache restarted = new ExplanationCache(() -> 3, () -> 60_000, now::get,
+                new PersistentExplanationStore(directory, () -> 1024 * 1024, () -> 60_000, now::get));
+        assertEquals("explanation", restarted.get("key"));
+        assertEquals("explanation", restarted.get("key"));
+        assertEquals(1, restarted.getDiskHits());
+        assertEquals(2, restarted.getHits());
+        assertEquals(1, restarted.size());
+    }
+
+    @Test
+    void testKeyDependsOnProviderModelAndFingerprint() {
+        String key = ExplanationCache.keyFor(AIProvider.OPENAI, "gpt-4", "Build #1 failed");
+
+        assertEquals(key, ExplanationCache.keyFor(AIProvider.OPENAI, "gpt-4", "Build #2 failed"));
+        assertNotEquals(key, ExplanationCache.keyFor(AIProvider.OPENAI, "gpt-3.5-turbo", "Build #1 failed"));
+        assertNotEquals(key, ExplanationCache.keyFor(AIProvider.GEMINI, "gpt-4", "Build #1 failed"));
+    }
+}
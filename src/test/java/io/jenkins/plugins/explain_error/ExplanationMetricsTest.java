@@ -0,0 +1,106 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class ExplanationMetricsTest {
+
+    private final ExplanationMetrics metrics = new ExplanationMetrics(out ->
+            out.gauge("explain_error_test_gauge", "A component gauge.", 3));
+
+    @Test
+    void testStageHistogram() {
+        metrics.recordStage(ExplanationMetrics.Stage.PARSE, TimeUnit.MILLISECONDS.toNanos(3));
+        metrics.recordStage(ExplanationMetrics.Stage.PARSE, TimeUnit.MILLISECONDS.toNanos(200));
+        metrics.recordStage(ExplanationMetrics.Stage.PARSE, TimeUnit.MINUTES.toNanos(5));
+
+        String text = metrics.scrape();
+        assertTrue(text.contains("# TYPE explain_error_stage_duration_seconds histogram\n"));
+        assertTrue(text.contains("explain_error_stage_duration_seconds_bucket{stage=\"parse\",le=\"0.005\"} 1\n"));
+        assertTrue(text.contains("explain_error_stage_duration_seconds_bucket{stage=\"parse\",le=\"0.1\"} 1\n"));
+        assertTrue(text.contains("explain_error_stage_duration_seconds_bucket{stage=\"parse\",le=\"0.25\"} 2\n"));
+        assertTrue(text.contains("explain_error_stage_duration_seconds_bucket{stage=\"parse\",le=\"120.0\"} 2\n"));
+        assertTrue(text.contains("explain_error_stage_duration_seconds_bucket{stage=\"parse\",le=\"+Inf\"} 3\n"));
+        assertTrue(text.contains("explain_error_stage_duration_seconds_sum{stage=\"parse\"} 300.203\n"));
+        assertTrue(text.contains("explain_error_stage_duration_seconds_count{stage=\"parse\"} 3\n"));
+        assertTrue(text.contains("explain_error_stage_duration_seconds_count{stage=\"extract\"} 0\n"));
+    }
+
+    @Test
+    void testRequests() {
+        metrics.recordRequest(AIProvider.OPENAI, "gpt-4", "success", TimeUnit.SECONDS.toNanos(2), 1200, 300);
+        metrics.recordRequest(AIProvider.OPENAI, "gpt-4", "success", TimeUnit.SECONDS.toNanos(1), 800, 200);
+        metrics.recordRequest(AIProvider.OPENAI, "gpt-4", "rate_limited", TimeUnit.SECONDS.toNanos(1), 500, 0);
+        metrics.recordRequest(AIProvider.GEMINI, null, "error", TimeUnit.SECONDS.toNanos(1), 100, 0);
+
+        String text = metrics.scrape();
+        assertTrue(text.contains(
+                "explain_error_requests_total{provider=\"OPENAI\",model=\"gpt-4\",outcome=\"success\"} 2\n"));
+        assertTrue(text.contains(
+                "explain_error_requests_total{provider=\"OPENAI\",model=\"gpt-4\",outcome=\"rate_limited\"} 1\n"));
+        assertTrue(text.contains("explain_error_requests_total{provider=\"GEMINI\",model=\"\",outcome=\"error\"} 1\n"));
+        assertTrue(text.contains(
+                "explain_error_request_duration_seconds_count{provider=\"OPENAI\",model=\"gpt-4\"} 3\n"));
+        assertTrue(text.contains("explain_error_input_tokens_total{provider=\"OPENAI\",model=\"gpt-4\"} 2500\n"));
+        assertTrue(text.contains("explain_error_output_tokens_total{provider=\"OPENAI\",model=\"gpt-4\"} 500\n"));
+        assertFalse(text.contains("explain_error_output_tokens_total{provider=\"GEMINI\""));
+    }
+
+    @Test
+    void testRoutes() {
+        assertEquals("No routed explanations since the last restart", metrics.getRouteSummary());
+        metrics.recordRoute("small-errors", "success", TimeUnit.SECONDS.toNanos(1), 400, 100);
+        metrics.recordRoute("small-errors", "success", TimeUnit.SECONDS.toNanos(2), 600, 200);
+        metrics.recordRoute(ModelRoute.DEFAULT, "error", TimeUnit.SECONDS.toNanos(30), 5000, 0);
+
+        String text = metrics.scrape();
+        assertTrue(text.contains(
+                "explain_error_route_requests_total{route=\"small-errors\",outcome=\"success\"} 2\n"));
+        assertTrue(text.contains("explain_error_route_requests_total{route=\"default\",outcome=\"error\"} 1\n"));
+        assertTrue(text.contains("explain_error_route_duration_seconds_sum{route=\"small-errors\"} 3\n"));
+        assertTrue(text.contains("explain_error_route_input_tokens_total{route=\"small-errors\"} 1000\n"));
+        assertTrue(text.contains("explain_error_route_output_tokens_total{route=\"small-errors\"} 300\n"));
+        assertEquals(String.format("%s: %,d explanations, %.1fs on average, %,d input and %,d output tokens; "
+                        + "%s: %,d explanations, %.1fs on average, %,d input and %,d output tokens",
+                        "default", 1, 30.0, 5000, 0, "small-errors", 2, 1.5, 1000, 300),
+                metrics.getRouteSummary());
+    }
+
+    @Test
+    void testConsoleRequestsAndComponents() {
+        metrics.recordConsoleRequest("stream", "explained");
+        metrics.recordConsoleRequest("stream", "explained");
+        metrics.recordConsoleRequest("explain", "existing");
+
+        String text = metrics.scrape();
+        assertTrue(text.contains(
+                "explain_error_console_requests_total{endpoint=\"explain\",result=\"existing\"} 1\n"));
+        assertTrue(text.contains(
+                "explain_error_console_requests_total{endpoint=\"stream\",result=\"explained\"} 2\n"));
+        assertTrue(text.contains("# TYPE explain_error_test_gauge gauge\nexplain_error_test_gauge 3\n"));
+    }
+
+    @Test
+    void testLabelValuesAreEscaped() {
+        metrics.recordRequest(AIProvider.GEMINI, "my\"model\\v2\n", "success", 1, 1, 1);
+        assertTrue(metrics.scrape().contains("explain_error_requests_total{provider=\"GEMINI\","
+                + "model=\"my\\\"model\\\\v2\\n\",outcome=\"success\"} 1\n"));
+    }
+
+    @Test
+    void testOutcome() {
+        assertEquals("success", ExplanationMetrics.outcome(null));
+        assertEquals("api_error", ExplanationMetrics.outcome(new ApiErrorException("model not found")));
+        assertEquals("parse_error", ExplanationMetrics.outcome(
+                new CompletionException(new ResponseParseException("Unable to parse AI response"))));
+        assertEquals("rate_limited", ExplanationMetrics.outcome(
+                new CompletionException(new AIServiceException("Too many requests", 429))));
+        assertEquals("http_error", ExplanationMetrics.outcome(new AIServiceException("unavailable", 503)));
+        assertEquals("cancelled", ExplanationMetrics.outcome(new CancellationException()));
+        assertEquals("error", ExplanationMetrics.outcome(new CompletionException(new RuntimeException("boom"))));
+    }
+}
@@ -0,0 +1,145 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import hudson.util.Secret;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.FailureBuilder;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+class FailedBuildExplainerTest {
+
+    @Test
+    void testOnlyFailuresAreSelectedByDefault() {
+        assertTrue(FailedBuildExplainer.shouldExplain("app", Result.FAILURE, null, false));
+        assertFalse(FailedBuildExplainer.shouldExplain("app", Result.UNSTABLE, null, false));
+        assertFalse(FailedBuildExplainer.shouldExplain("app", Result.SUCCESS, null, false));
+        assertFalse(FailedBuildExplainer.shouldExplain("app", Result.ABORTED, null, false));
+        assertFalse(FailedBuildExplainer.shouldExplain("app", null, null, false));
+    }
+
+    @Test
+    void testUnstableBuildsCanBeSelected() {
+        assertTrue(FailedBuildExplainer.shouldExplain("app", Result.UNSTABLE, "", true));
+        assertTrue(FailedBuildExplainer.shouldExplain("app", Result.FAILURE, "", true));
+        assertFalse(FailedBuildExplainer.shouldExplain("app", Result.SUCCESS, "", true));
+    }
+
+    @Test
+    void testJobPatternMatchesFullName() {
+        assertTrue(FailedBuildExplainer.shouldExplain("team-a/app/main", Result.FAILURE, "team-a/.*", false));
+        assertFalse(FailedBuildExplainer.shouldExplain("team-b/app/main", Result.FAILURE, "team-a/.*", false));
+        // The whole name has to match, not just a part of it
+        assertFalse(FailedBuildExplainer.shouldExplain("other/team-a/app", Result.FAILURE, "team-a/.*", false));
+        assertFalse(FailedBuildExplainer.shouldExplain("app", Result.FAILURE, "(", false));
+    }
+
+    @Test
+    void testQueueIsBounded() throws Exception {
+        FailedBuildExplainer explainer = new FailedBuildExplainer(() -> 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(2);
+        Runnable work = () -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finished.countDown();
+        };
+
+        assertTrue(explainer.submit("job#1", work));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertTrue(explainer.submit("job#2", work));
+        // One worker busy and one build waiting: the queue is full
+        assertFalse(explainer.submit("job#3", work));
+        assertEquals(1, explainer.getSkipped());
+        assertEquals(2, explainer.getPending());
+        assertTrue(explainer.isPending("job#2"));
+
+        release.countDown();
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 100 && explainer.getPending() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, explainer.getPending());
+        assertTrue(explainer.submit("job#3", () -> { }));
+    }
+
+    @Test
+    void testBuildIsQueuedOnce() throws Exception {
+        FailedBuildExplainer explainer = new FailedBuildExplainer(() -> 10, 1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        assertTrue(explainer.submit("job#1", () -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertFalse(explainer.submit("job#1", () -> { }));
+        assertEquals(1, explainer.getSubmitted());
+        assertEquals(0, explainer.getSkipped());
+        release.countDown();
+    }
+
+    @Test
+    @WithJenkins
+    void testFailedFreestyleBuildIsExplainedWhenFinalized(JenkinsRule jenkins) throws Exception {
+        try (MockLlmServer server = new MockLlmServer()) {
+            GlobalConfigurationImpl config = GlobalConfigurationImpl.get();
+            config.setApiKey(Secret.fromString("test-api-key"));
+            config.setApiUrl(server.getOpenAIUrl());
+            config.setAutoExplainFailures(true);
+
+            FreeStyleProject failing = jenkins.createFreeStyleProject("failing");
+            failing.getBuildersList().add(new FailureBuilder());
+            FreeStyleBuild failed = jenkins.buildAndAssertStatus(Result.FAILURE, failing);
+            FreeStyleBuild passed = jenkins.buildAndAssertSuccess(jenkins.createFreeStyleProject("passing"));
+
+            FailedBuildExplainer explainer = FailedBuildExplainer.get();
+            for (int i = 0; i < 300 && failed.getAction(ErrorExplanationAction.class) == null; i++) {
+                Thread.sleep(100);
+            }
+            assertNotNull(failed.getAction(ErrorExplanationAction.class));
+            assertNull(passed.getAction(ErrorExplanationAction.class));
+            assertEquals(1, explainer.getSubmitted());
+            assertEquals(1, server.getRequests());
+        }
+    }
+
+    @Test
+    @WithJenkins
+    void testBackgroundExplanationSurvivesReload(JenkinsRule jenkins) throws Exception {
+        try (MockLlmServer server = new MockLlmServer()) {
+            GlobalConfigurationImpl config = GlobalConfigurationImpl.get();
+            config.setApiKey(Secret.fromString("test-api-key"));
+            config.setApiUrl(server.getOpenAIUrl());
+            config.setAutoExplainFailures(true);
+
+            FreeStyleProject failing = jenkins.createFreeStyleProject("failing");
+            failing.getBuildersList().add(new FailureBuilder());
+            FreeStyleBuild failed = jenkins.buildAndAssertStatus(Result.FAILURE, failing);
+
+            FailedBuildExplainer explainer = FailedBuildExplainer.get();
+            for (int i = 0; i < 300 && explainer.getCompleted() == 0; i++) {
+                Thread.sleep(100);
+            }
+            assertEquals(1, explainer.getCompleted());
+
+            failed.reload();
+            ErrorExplanationAction action = failed.getAction(ErrorExplanationAction.class);
+            assertNotNull(action);
+            assertNotNull(action.getExplanation());
+        }
+    }
+}
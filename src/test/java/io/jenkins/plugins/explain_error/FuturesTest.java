@@ -0,0 +1,51 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+class FuturesTest {
+
+    @Test
+    void testCancellingDependentCancelsSource() {
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<Integer> dependent = Futures.cancelling(source.thenApply(String::length), source);
+
+        dependent.cancel(true);
+
+        assertTrue(source.isCancelled());
+    }
+
+    @Test
+    void testCancellationPropagatesThroughSeveralStages() {
+        CompletableFuture<String> exchange = new CompletableFuture<>();
+        CompletableFuture<String> parsed = Futures.cancelling(exchange.thenApply(String::trim), exchange);
+        CompletableFuture<String> handled = Futures.cancelling(parsed.exceptionally(Throwable::getMessage), parsed);
+
+        handled.cancel(true);
+
+        assertTrue(exchange.isCancelled());
+    }
+
+    @Test
+    void testCompletionIsUnaffected() throws Exception {
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<Integer> dependent = Futures.cancelling(source.thenApply(String::length), source);
+
+        source.complete("four");
+
+        assertEquals(4, (int) dependent.get());
+        assertFalse(source.isCancelled());
+    }
+
+    @Test
+    void testFailedDependentDoesNotCancelSource() {
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> dependent = Futures.cancelling(source.thenApply(s -> s), source);
+
+        dependent.completeExceptionally(new IllegalStateException("boom"));
+
+        assertFalse(source.isDone());
+    }
+}
@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import hudson.util.FormValidation;
 import hudson.util.Secret;
+import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.jvnet.hudson.test.JenkinsRule;
@@ -111,6 +112,38 @@ class GlobalConfigurationImplTest {
         assertNotNull(result.getMessage());
     }
 
+    @Test
+    void testDoTestConfigurationIgnoresOpenCircuit() throws Exception {
+        try (MockLlmServer server = new MockLlmServer()) {
+            ProviderCircuitBreaker breaker = ProviderCircuitBreaker.get();
+            for (int i = 0; i < ProviderCircuitBreaker.MIN_CALLS; i++) {
+                breaker.acquire(ProviderProfile.PRIMARY);
+                breaker.record(ProviderProfile.PRIMARY, "error", 0);
+            }
+            assertEquals(ProviderCircuitBreaker.State.OPEN, breaker.getState(ProviderProfile.PRIMARY));
+
+            FormValidation result = config.doTestConfiguration("test-api-key", "OPENAI", server.getOpenAIUrl(),
+                    "gpt-test");
+
+            assertEquals(FormValidation.Kind.OK, result.kind, result.getMessage());
+            assertEquals(1, server.getRequests());
+        }
+    }
+
+    @Test
+    void testDoTestConfigurationLeavesProviderHealthAndQueue() throws Exception {
+        try (MockLlmServer server = new MockLlmServer().failures(0, 1)) {
+            for (int i = 0; i < ProviderHealth.FAILURE_THRESHOLD; i++) {
+                FormValidation result = config.doTestConfiguration("test-api-key", "OPENAI",
+                        server.getOpenAIUrl(), "gpt-test");
+                assertEquals(FormValidation.Kind.ERROR, result.kind, result.getMessage());
+            }
+
+            assertTrue(ProviderHealth.get().isHealthy(ProviderProfile.PRIMARY));
+            assertEquals(0, ExplanationBulkhead.get().getAccepted());
+        }
+    }
+
     @Test
     void testSetApiKeyWithNullValue() {
         config.setApiKey(null);
@@ -227,4 +260,226 @@ class GlobalConfigurationImplTest {
         assertEquals("test-model-1", config2.getModel());
         assertEquals("https://test2.example.com", config1.getApiUrl());
     }
+
+    @Test
+    void testCacheSettings() {
+        assertEquals(500, config.getCacheMaxEntries());
+        assertEquals(1440, config.getCacheTtlMinutes());
+
+        config.setCacheMaxEntries(-5);
+        config.setCacheTtlMinutes(-1);
+
+        assertEquals(0, config.getCacheMaxEntries());
+        assertEquals(0, config.getCacheTtlMinutes());
+
+        config.setCacheMaxEntries(500);
+        config.setCacheTtlMinutes(1440);
+    }
+
+    @Test
+    void testConcurrencySettings() {
+        assertEquals(4, config.getMaxConcurrentExplanations());
+        assertEquals(100, config.getMaxQueuedExplanations());
+        assertTrue(config.isFairQueueing());
+
+        config.setMaxConcurrentExplanations(0);
+        config.setMaxQueuedExplanations(-1);
+
+        assertEquals(1, config.getMaxConcurrentExplanations());
+        assertEquals(0, config.getMaxQueuedExplanations());
+
+        config.setMaxConcurrentExplanations(4);
+        config.setMaxQueuedExplanations(100);
+    }
+
+    @Test
+    void testRateLimitSettings() {
+        assertEquals(0, config.getRateLimitRequestsPerMinute());
+        assertEquals(0, config.getRateLimitTokensPerMinute());
+        assertEquals(3, config.getMaxRetries());
+
+        config.setRateLimitRequestsPerMinute(-10);
+        config.setMaxRetries(-1);
+
+        assertEquals(0, config.getRateLimitRequestsPerMinute());
+        assertEquals(0, config.getMaxRetries());
+
+        config.setMaxRetries(3);
+    }
+
+    @Test
+    void testAutoExplainSettings() {
+        assertFalse(config.isAutoExplainFailures());
+        assertFalse(config.isAutoExplainUnstable());
+        assertEquals(50, config.getAutoExplainQueueSize());
+
+        config.setAutoExplainQueueSize(-5);
+        assertEquals(0, config.getAutoExplainQueueSize());
+        config.setAutoExplainQueueSize(50);
+
+        assertEquals(FormValidation.Kind.OK, config.doCheckAutoExplainJobPattern("team-a/.*").kind);
+        assertEquals(FormValidation.Kind.OK, config.doCheckAutoExplainJobPattern("").kind);
+        assertEquals(FormValidation.Kind.ERROR, config.doCheckAutoExplainJobPattern("team-a/(").kind);
+    }
+
+    @Test
+    void testCompactErrorLogsSetting() {
+        assertTrue(config.isCompactErrorLogs());
+
+        config.setCompactErrorLogs(false);
+        assertFalse(config.isCompactErrorLogs());
+    }
+
+    @Test
+    void testMaxPromptTokensSetting() {
+        assertEquals(8000, config.getMaxPromptTokens());
+
+        config.setMaxPromptTokens(-1);
+        assertEquals(0, config.getMaxPromptTokens());
+    }
+
+    @Test
+    void testMapReduceSettings() {
+        assertEquals(0, config.getMapReduceMaxChunks());
+        assertEquals(4000, config.getMapReduceChunkTokens());
+
+        config.setMapReduceMaxChunks(-2);
+        assertEquals(0, config.getMapReduceMaxChunks());
+        config.setMapReduceChunkTokens(10);
+        assertEquals(100, config.getMapReduceChunkTokens());
+    }
+
+    @Test
+    void testKnownErrorsSetting() {
+        assertEquals(4, config.getKnownErrors().size());
+        assertEquals("Agent disconnected", config.getKnownErrors().get(0).getName());
+
+        config.setKnownErrors(List.of(new KnownError("Flaky proxy", "proxy error", "Retry the build.")));
+        assertEquals(1, config.getKnownErrors().size());
+        assertEquals("Known issue: Flaky proxy\n\nRetry the build.",
+                KnowledgeBase.get().explain("Received HTTP code 502 from proxy error"));
+
+        config.setKnownErrors(null);
+        assertTrue(config.getKnownErrors().isEmpty());
+        assertNull(KnowledgeBase.get().explain("Received HTTP code 502 from proxy error"));
+    }
+
+    @Test
+    void testCheckKnownErrorFields() {
+        KnownError.DescriptorImpl descriptor = new KnownError.DescriptorImpl();
+        assertEquals(FormValidation.Kind.OK, descriptor.doCheckKeywords("no space left").kind);
+        assertEquals(FormValidation.Kind.ERROR, descriptor.doCheckKeywords(" ").kind);
+        assertEquals(FormValidation.Kind.ERROR, descriptor.doCheckKeywords("kein Speicherplatz übrig").kind);
+        assertEquals(FormValidation.Kind.OK, descriptor.doCheckPattern("").kind);
+        assertEquals(FormValidation.Kind.ERROR, descriptor.doCheckPattern("[unclosed").kind);
+    }
+
+    @Test
+    void testFallbackProvidersSetting() {
+        assertTrue(config.getFallbackProviders().isEmpty());
+        assertFalse(config.isHedgeRequests());
+
+        config.setFallbackProviders(List.of(new ProviderProfile(" ", AIProvider.GEMINI, "", null, null)));
+        config.setHedgeRequests(true);
+        ProviderProfile fallback = config.getFallbackProviders().get(0);
+        assertEquals("gemini-gemini-1.5-flash", fallback.getName());
+        assertEquals(AIProvider.GEMINI.getDefaultApiUrl(), fallback.getApiUrl());
+        assertNull(fallback.getRawApiUrl());
+        config.setApiKey(Secret.fromString("global-key"));
+        // The global key is never sent to another provider
+        assertNull(fallback.resolveApiKey(config));
+        assertTrue(config.isHedgeRequests());
+
+        config.setFallbackProviders(null);
+        config.setHedgeRequests(false);
+        assertTrue(config.getFallbackProviders().isEmpty());
+    }
+
+    @Test
+    void testCheckProviderProfileName() {
+        ProviderProfile.DescriptorImpl descriptor = new ProviderProfile.DescriptorImpl();
+        assertEquals(FormValidation.Kind.OK, descriptor.doCheckName("openai-eu").kind);
+        assertEquals(FormValidation.Kind.ERROR, descriptor.doCheckName("primary").kind);
+        assertEquals(2, descriptor.doFillProviderItems().size());
+    }
+
+    @Test
+    void testFallbackProviderApiKey() {
+        config.setProvider(AIProvider.OPENAI);
+        config.setApiUrl("https://api.openai.com/v1/chat/completions");
+        config.setApiKey(Secret.fromString("global-key"));
+
+        ProviderProfile sameHost = new ProviderProfile("small", AIProvider.OPENAI, null, "gpt-4o-mini", null);
+        assertEquals("global-key", sameHost.resolveApiKey(config).getPlainText());
+        ProviderProfile otherHost = new ProviderProfile("proxy", AIProvider.OPENAI,
+                "https://llm.example.com/v1/chat/completions", null, Secret.fromString(""));
+        assertNull(otherHost.resolveApiKey(config));
+        ProviderProfile ownKey = new ProviderProfile("gemini", AIProvider.GEMINI, null, null,
+                Secret.fromString("gemini-key"));
+        assertEquals("gemini-key", ownKey.resolveApiKey(config).getPlainText());
+
+        assertNull(ProviderProfile.validate(List.of(sameHost, ownKey), config));
+        assertNotNull(ProviderProfile.validate(List.of(sameHost, otherHost), config));
+        // Default names of endpoints of the same model in different regions collide
+        assertNotNull(ProviderProfile.validate(List.of(
+                new ProviderProfile(null, AIProvider.OPENAI, "https://eu.example.com/v1/chat/completions",
+                        "gpt-4o-mini", Secret.fromString("eu-key")),
+                new ProviderProfile(null, AIProvider.OPENAI, "https://us.example.com/v1/chat/completions",
+                        "gpt-4o-mini", Secret.fromString("us-key"))), config));
+
+        ProviderProfile.DescriptorImpl descriptor = new ProviderProfile.DescriptorImpl();
+        assertEquals(FormValidation.Kind.OK, descriptor.doCheckApiKey("", "OPENAI", "").kind);
+        assertEquals(FormValidation.Kind.ERROR, descriptor.doCheckApiKey("", "GEMINI", "").kind);
+        assertEquals(FormValidation.Kind.ERROR,
+                descriptor.doCheckApiKey("", "OPENAI", "https://llm.example.com/v1/chat/completions").kind);
+        assertEquals(FormValidation.Kind.OK, descriptor.doCheckApiKey("key", "GEMINI", "").kind);
+    }
+
+    @Test
+    void testModelRoutesSetting() {
+        assertTrue(config.getModelRoutes().isEmpty());
+        assertEquals("No routed explanations since the last restart", config.getModelRoutesSummary());
+
+        ModelRoute route = new ModelRoute("small-errors", "small");
+        route.setMaxInputTokens(1500);
+        route.setErrorCategories("command-not-found");
+        config.setModelRoutes(List.of(route));
+        assertEquals(1, config.getModelRoutes().size());
+        assertEquals("small", config.getModelRoutes().get(0).getEndpoint());
+        assertEquals(1500, config.getModelRoutes().get(0).getMaxInputTokens());
+
+        config.setModelRoutes(null);
+        assertTrue(config.getModelRoutes().isEmpty());
+    }
+
+    @Test
+    void testCheckModelRouteFields() {
+        ModelRoute.DescriptorImpl descriptor = new ModelRoute.DescriptorImpl();
+        assertEquals(FormValidation.Kind.OK, descriptor.doCheckJobPattern("").kind);
+        assertEquals(FormValidation.Kind.OK, descriptor.doCheckJobPattern("team-a/.*").kind);
+        assertEquals(FormValidation.Kind.ERROR, descriptor.doCheckJobPattern("team-a/(").kind);
+        assertEquals(FormValidation.Kind.OK, descriptor.doCheckErrorCategories("command-not-found, timeout").kind);
+        assertEquals(FormValidation.Kind.WARNING, descriptor.doCheckErrorCategories("command-not-fund").kind);
+    }
+
+    @Test
+    void testCircuitBreakerSettings() {
+        assertEquals(50, config.getCircuitBreakerFailureRate());
+        assertEquals(30, config.getCircuitBreakerSlowCallSeconds());
+        assertEquals(30, config.getCircuitBreakerOpenSeconds());
+        assertEquals("No requests since the last restart", config.getCircuitBreakerSummary());
+
+        config.setCircuitBreakerFailureRate(150);
+        assertEquals(100, config.getCircuitBreakerFailureRate());
+        config.setCircuitBreakerSlowCallSeconds(-1);
+        assertEquals(0, config.getCircuitBreakerSlowCallSeconds());
+        config.setCircuitBreakerOpenSeconds(0);
+        assertEquals(1, config.getCircuitBreakerOpenSeconds());
+
+        config.setCircuitBreakerFailureRate(0);
+        assertEquals("Circuit breaker disabled", config.getCircuitBreakerSummary());
+        config.setCircuitBreakerFailureRate(50);
+        config.setCircuitBreakerSlowCallSeconds(30);
+        config.setCircuitBreakerOpenSeconds(30);
+    }
 }
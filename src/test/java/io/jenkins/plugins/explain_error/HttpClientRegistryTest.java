@@ -0,0 +1,88 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import hudson.util.Secret;
+import java.net.URI;
+import java.net.http.HttpClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class HttpClientRegistryTest {
+
+    private HttpClientRegistry registry;
+
+    @BeforeEach
+    void setUp(JenkinsRule jenkins) {
+        registry = HttpClientRegistry.get();
+        registry.invalidateAll();
+    }
+
+    @Test
+    void testSameEndpointReusesClient() {
+        HttpClient first = registry.clientFor(AIProvider.OPENAI, URI.create("https://api.openai.com/v1/chat/completions"));
+        HttpClient second = registry.clientFor(AIProvider.OPENAI, URI.create("https://api.openai.com/v1/models"));
+
+        assertSame(first, second);
+        assertEquals(1, registry.getActiveClients());
+    }
+
+    @Test
+    void testDifferentEndpointsGetDifferentClients() {
+        HttpClient openai = registry.clientFor(AIProvider.OPENAI, URI.create("https://api.openai.com/v1/chat/completions"));
+        HttpClient gemini = registry.clientFor(AIProvider.GEMINI,
+                URI.create("https://generativelanguage.googleapis.com/v1beta/models/gemini-1.5-flash:generateContent"));
+
+        assertNotSame(openai, gemini);
+        assertEquals(2, registry.getActiveClients());
+        assertEquals(2, registry.getStats().size());
+    }
+
+    @Test
+    void testClientPrefersHttp2() {
+        HttpClient client = registry.clientFor(AIProvider.OPENAI, URI.create("https://api.openai.com/v1/chat/completions"));
+
+        assertEquals(HttpClient.Version.HTTP_2, client.version());
+        assertTrue(client.connectTimeout().isPresent());
+    }
+
+    @Test
+    void testInvalidateAllRebuildsClients() {
+        URI endpoint = URI.create("https://api.openai.com/v1/chat/completions");
+        HttpClient before = registry.clientFor(AIProvider.OPENAI, endpoint);
+
+        registry.invalidateAll();
+
+        assertEquals(0, registry.getActiveClients());
+        HttpClient after = registry.clientFor(AIProvider.OPENAI, endpoint);
+        assertNotSame(before, after);
+    }
+
+    @Test
+    void testFailedRequestsAreCounted() {
+        GlobalConfigurationImpl config = GlobalConfigurationImpl.get();
+        config.setProvider(AIProvider.OPENAI);
+        config.setApiKey(Secret.fromString("test-api-key"));
+        config.setApiUrl("http://127.0.0.1:1/v1/chat/completions");
+        AIService aiService = new AIService(config);
+
+        assertDoesNotThrow(() -> aiService.explainError("Some error"));
+
+        HttpClientRegistry.EndpointStats stats = registry.getStats().values().iterator().next();
+        assertEquals(AIProvider.OPENAI, stats.getProvider());
+        assertEquals("http://127.0.0.1:1", stats.getOrigin());
+        assertEquals(1, stats.getRequestsTotal());
+        assertEquals(1, stats.getFailures());
+        assertEquals(0, stats.getInFlight());
+
+        String metrics = ExplanationMetrics.get().scrape();
+        assertTrue(metrics.contains(
+                "explain_error_http_requests_total{provider=\"OPENAI\",url=\"http://127.0.0.1:1\"} 1\n"), metrics);
+        assertTrue(metrics.contains(
+                "explain_error_http_failures_total{provider=\"OPENAI\",url=\"http://127.0.0.1:1\"} 1\n"), metrics);
+        assertTrue(metrics.contains("explain_error_http_clients_active 1\n"), metrics);
+    }
+}
@@ -0,0 +1,97 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+
+class InFlightExplanationsTest {
+
+    private final InFlightExplanations inFlight = new InFlightExplanations();
+
+    @Test
+    void testConcurrentCallersShareOneRequest() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<String> provider = new CompletableFuture<>();
+
+        CompletableFuture<String> first = inFlight.join("run:job#1", sink -> {
+            calls.incrementAndGet();
+            return provider;
+        }, null);
+        CompletableFuture<String> second = inFlight.join("run:job#1", sink -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("unexpected");
+        }, null);
+
+        assertTrue(inFlight.isPending("run:job#1"));
+        provider.complete("explanation");
+
+        assertEquals("explanation", first.get());
+        assertEquals("explanation", second.get());
+        assertEquals(1, calls.get());
+        assertEquals(1, inFlight.getStarted());
+        assertEquals(1, inFlight.getCoalesced());
+        assertFalse(inFlight.isPending("run:job#1"));
+    }
+
+    @Test
+    void testCompletedRequestIsNotReused() throws Exception {
+        inFlight.join("key", sink -> CompletableFuture.completedFuture("first"), null).get();
+
+        assertEquals("second", inFlight.join("key", sink -> CompletableFuture.completedFuture("second"), null).get());
+        assertEquals(2, inFlight.getStarted());
+    }
+
+    @Test
+    void testLateJoinerReceivesStreamedTextSoFar() throws Exception {
+        AtomicReference<Consumer<String>> sink = new AtomicReference<>();
+        CompletableFuture<String> provider = new CompletableFuture<>();
+        List<String> firstChunks = new ArrayList<>();
+        List<String> lateChunks = new ArrayList<>();
+
+        inFlight.join("key", s -> {
+            sink.set(s);
+            return provider;
+        }, firstChunks::add);
+        sink.get().accept("Hello ");
+        CompletableFuture<String> late = inFlight.join("key", s -> provider, lateChunks::add);
+        sink.get().accept("world");
+        provider.complete("Hello world");
+
+        assertEquals(List.of("Hello ", "world"), firstChunks);
+        assertEquals(List.of("Hello ", "world"), lateChunks);
+        assertEquals("Hello world", late.get());
+    }
+
+    @Test
+    void testRequestIsCancelledOnlyWhenEveryCallerLeft() {
+        CompletableFuture<String> provider = new CompletableFuture<>();
+        CompletableFuture<String> first = inFlight.join("key", sink -> provider, null);
+        CompletableFuture<String> second = inFlight.join("key", sink -> provider, null);
+
+        first.cancel(true);
+        assertFalse(provider.isCancelled());
+
+        second.cancel(true);
+        assertTrue(provider.isCancelled());
+        assertFalse(inFlight.isPending("key"));
+    }
+
+    @Test
+    void testFailureIsSharedWithAllCallers() {
+        CompletableFuture<String> provider = new CompletableFuture<>();
+        CompletableFuture<String> first = inFlight.join("key", sink -> provider, null);
+        CompletableFuture<String> second = inFlight.join("key", sink -> provider, null);
+
+        provider.completeExceptionally(new AIServiceException("boom", 500));
+
+        assertTrue(first.isCompletedExceptionally());
+        assertTrue(second.isCompletedExceptionally());
+        assertFalse(inFlight.isPending("key"));
+    }
+}
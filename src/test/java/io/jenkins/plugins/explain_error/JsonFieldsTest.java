@@ -0,0 +1,59 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class JsonFieldsTest {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private static Map<String, String> read(String json, String... pointers) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(json)) {
+            return JsonFields.read(parser, pointers);
+        }
+    }
+
+    @Test
+    void testReadsNestedFields() throws IOException {
+        Map<String, String> fields = read("{\"id\":\"1\",\"choices\":[{\"message\":{\"content\":\"first\"}},"
+                + "{\"message\":{\"content\":\"second\"}}],\"usage\":{\"total_tokens\":42}}",
+                "/choices/1/message/content", "/usage/total_tokens");
+        assertEquals(Map.of("/choices/1/message/content", "second", "/usage/total_tokens", "42"), fields);
+    }
+
+    @Test
+    void testMissingNullAndContainerFieldsAreLeftOut() throws IOException {
+        Map<String, String> fields = read("{\"a\":null,\"b\":{\"c\":1},\"d\":[]}", "/a", "/b", "/d/0", "/e");
+        assertTrue(fields.isEmpty());
+    }
+
+    @Test
+    void testSkipsUnrelatedSubtrees() throws IOException {
+        Map<String, String> fields = read("{\"logprobs\":{\"content\":[{\"token\":\"x\",\"bytes\":[1,2,3]}]},"
+                + "\"error\":{\"message\":\"boom\"}}", "/error/message");
+        assertEquals("boom", fields.get("/error/message"));
+    }
+
+    @Test
+    void testStopsOnceAllFieldsAreFound() throws IOException {
+        // The invalid tail is never read
+        Map<String, String> fields = read("{\"text\":\"done\", this is not JSON", "/text");
+        assertEquals("done", fields.get("/text"));
+    }
+
+    @Test
+    void testInvalidJsonFails() {
+        assertThrows(IOException.class, () -> read("{\"choices\":[{", "/choices/0/text"));
+        assertThrows(IOException.class, () -> read("{\"choices\": nope}", "/choices/0/text"));
+    }
+
+    @Test
+    void testEmptyDocument() throws IOException {
+        assertTrue(read("", "/text").isEmpty());
+    }
+}
@@ -0,0 +1,131 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class KnowledgeBaseTest {
+
+    private static String match(String errorText) {
+        KnownError entry = new KnowledgeBase(KnownError::defaults).match(errorText);
+        return entry != null ? entry.getName() : null;
+    }
+
+    @Test
+    void testDefaultEntries() {
+        assertEquals("Agent disconnected", match("hudson.remoting.ChannelClosedException: "
+                + "Channel \"hudson.remoting.Channel@1\": Remote call on linux-agent-3 failed. "
+                + "The channel is closing down or has closed down"));
+        assertEquals("Agent disconnected", match("Cannot contact linux-agent-3: java.io.IOException: "
+                + "Remote call on linux-agent-3 failed"));
+        assertEquals("Disk full", match("write /var/lib/docker/tmp/GetImageBlob123: no space left on device"));
+        assertEquals("Artifact repository unavailable", match("[ERROR] Failed to execute goal on project app: "
+                + "Could not transfer artifact com.example:lib:pom:1.0 from/to nexus "
+                + "(https://nexus.example.com/repository/maven-public/): "
+                + "status code: 503, reason phrase: Service Unavailable (503)"));
+        assertEquals("Expired or invalid credentials", match("remote: HTTP Basic: Access denied\n"
+                + "fatal: Authentication failed for 'https://git.example.com/team/app.git/'"));
+        assertEquals("Expired or invalid credentials", match("Error response from daemon: "
+                + "Get https://registry.example.com/v2/: received unexpected HTTP status: 401 Unauthorized"));
+    }
+
+    @Test
+    void testUnknownErrorsDoNotMatch() {
+        assertNull(match("src/Main.java:12: error: cannot find symbol"));
+        assertNull(match("Tests run: 401, Failures: 2, Errors: 0, Skipped: 0"));
+        assertNull(match("Fetched 503 objects"));
+        assertNull(match("Remote call on linux-agent-3 succeeded"));
+        assertNull(match(""));
+        assertNull(match(null));
+    }
+
+    @Test
+    void testLineClosestToFailureDecides() {
+        KnowledgeBase knowledgeBase = new KnowledgeBase(KnownError::defaults);
+        KnownError entry = knowledgeBase.match("[INFO] Compiling 12 source files\n"
+                + "java.io.IOException: No space left on device\n"
+                + "Remote call on linux-agent-3 failed\n");
+        assertEquals("Agent disconnected", entry.getName());
+    }
+
+    @Test
+    void testUnrelatedMatchBeforeFailureIsIgnored() {
+        StringBuilder log = new StringBuilder("[INFO] Running LoginTest\n"
+                + "[ERROR] login failed: status code: 401, reason phrase: Unauthorized (401)\n"
+                + "[INFO] Retrying login with the fallback account\n");
+        for (int i = 0; i < KnowledgeBase.FAILURE_WINDOW; i++) {
+            log.append("[INFO] Compiling module ").append(i).append('\n');
+        }
+        log.append("src/Main.java:12: error: cannot find symbol\n[INFO] BUILD FAILURE\n");
+
+        assertNull(match(log.toString()));
+    }
+
+    @Test
+    void testAssertionsAreNotFailures() {
+        assertNull(match("LoginTest > rejectsExpiredToken FAILED: expected status code: 401 but was 200\n"
+                + "[ERROR] Tests run: 12, Failures: 1"));
+        assertNull(match("AssertionError: should fail with No space left on device"));
+        assertNull(match("GET /api/user returned 401\nERROR: script returned exit code 1"));
+    }
+
+    @Test
+    void testExplanationNamesTheEntry() {
+        KnowledgeBase knowledgeBase = new KnowledgeBase(() -> List.of(
+                new KnownError("Flaky proxy", "proxy error", "Retry the build.")));
+        assertEquals("Known issue: Flaky proxy\n\nRetry the build.",
+                knowledgeBase.explain("curl: (56) Received HTTP code 502 from PROXY ERROR"));
+        assertNull(knowledgeBase.explain("curl: (6) Could not resolve host: example.com"));
+    }
+
+    @Test
+    void testPatternConfirmsKeyword() {
+        KnownError entry = new KnownError("Gateway timeout", "gateway\n  timeout  \n", "\\b504\\b", "Retry.");
+        assertEquals(List.of("gateway", "timeout"), entry.getKeywordList());
+        KnowledgeBase knowledgeBase = new KnowledgeBase(() -> List.of(entry));
+        assertNotNull(knowledgeBase.match("504 Gateway Timeout"));
+        assertNull(knowledgeBase.match("Gateway timeout after 30s"));
+    }
+
+    @Test
+    void testInvalidEntriesAreSkipped() {
+        KnowledgeBase knowledgeBase = new KnowledgeBase(() -> List.of(
+                new KnownError("Broken pattern", "error", "[unclosed", "Never shown."),
+                new KnownError("Not ASCII", "fehler ümlaut", "Never shown."),
+                new KnownError("No keywords", " \n ", "Never shown."),
+                new KnownError("Valid", "error", "Shown.")));
+        assertEquals("Valid", knowledgeBase.match("error: boom").getName());
+    }
+
+    @Test
+    void testRecompilesWhenEntriesChange() {
+        AtomicReference<List<KnownError>> entries = new AtomicReference<>(new ArrayList<>());
+        KnowledgeBase knowledgeBase = new KnowledgeBase(entries::get);
+        assertNull(knowledgeBase.match("Segmentation fault"));
+
+        entries.set(List.of(new KnownError("Crash", "segmentation fault", "Check native libraries.")));
+        assertEquals("Crash", knowledgeBase.match("Segmentation fault").getName());
+    }
+
+    @Test
+    void testHitRate() {
+        KnowledgeBase knowledgeBase = new KnowledgeBase(KnownError::defaults);
+        assertEquals(0.0, knowledgeBase.getHitRate());
+
+        knowledgeBase.match("no space left on device");
+        knowledgeBase.match("No space left on device");
+        knowledgeBase.match("error: cannot find symbol");
+        knowledgeBase.match("fatal: Authentication failed for 'https://git.example.com/app.git/'");
+
+        assertEquals(4, knowledgeBase.getLookups());
+        assertEquals(3, knowledgeBase.getHits());
+        assertEquals(0.75, knowledgeBase.getHitRate(), 0.0001);
+        assertEquals(Long.valueOf(2), knowledgeBase.getHitsByName().get("Disk full"));
+        assertEquals(Long.valueOf(1), knowledgeBase.getHitsByName().get("Expired or invalid credentials"));
+        assertEquals("3 of 4 explanations answered from known errors (75%) since the last restart",
+                knowledgeBase.getSummary());
+    }
+}
@@ -0,0 +1,109 @@
+package io.jenkins.plugins.explain_error;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the latency of requests made by a load test, and samples the thread count and heap
+ * usage of the JVM while it runs, to report throughput, percentiles and resource peaks.
+ */
+class LoadRecorder implements AutoCloseable {
+
+    private static final long SAMPLE_MILLIS = 50;
+
+    private final String name;
+    private final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong failures = new AtomicLong();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "LoadRecorder");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final int startThreads;
+    private final AtomicLong peakThreads = new AtomicLong();
+    private final AtomicLong peakHeapBytes = new AtomicLong();
+    private final long start;
+    private volatile long end;
+
+    LoadRecorder(String name) {
+        this.name = name;
+        startThreads = threads.getThreadCount();
+        sampler.scheduleAtFixedRate(this::sample, 0, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+        start = System.nanoTime();
+    }
+
+    private void sample() {
+        peakThreads.accumulateAndGet(threads.getThreadCount(), Math::max);
+        peakHeapBytes.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+    }
+
+    /**
+     * Record a finished request.
+     * @param nanos how long it took
+     * @param succeeded whether it returned an explanation
+     */
+    void record(long nanos, boolean succeeded) {
+        latencies.add(nanos);
+        if (!succeeded) {
+            failures.incrementAndGet();
+        }
+    }
+
+    int getCount() {
+        return latencies.size();
+    }
+
+    long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Get a latency percentile of the requests recorded so far.
+     * @param percentile the percentile, e.g. {@code 99}
+     * @return the latency in milliseconds, {@code 0} if nothing was recorded
+     */
+    double percentileMillis(double percentile) {
+        List<Long> sorted;
+        synchronized (latencies) {
+            sorted = new ArrayList<>(latencies);
+        }
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index))) / 1_000_000.0;
+    }
+
+    /**
+     * Stop sampling and describe the run.
+     */
+    String report() {
+        close();
+        double seconds = (end - start) / 1_000_000_000.0;
+        return String.format("%s: %,d requests in %.1fs (%.1f/s), p50 %.0f ms, p99 %.0f ms, max %.0f ms, "
+                        + "%,d failed, threads %d at start and %d at peak, peak heap %,d MB",
+                name, getCount(), seconds, getCount() / seconds, percentileMillis(50), percentileMillis(99),
+                percentileMillis(100), getFailures(), startThreads, peakThreads.get(),
+                peakHeapBytes.get() / (1024 * 1024));
+    }
+
+    @Override
+    public synchronized void close() {
+        if (end == 0) {
+            end = System.nanoTime();
+            sampler.shutdownNow();
+            sample();
+        }
+    }
+}
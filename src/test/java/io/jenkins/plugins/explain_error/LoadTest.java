@@ -0,0 +1,193 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.util.Secret;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.htmlunit.HttpMethod;
+import org.htmlunit.WebRequest;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+/**
+ * Explains errors from many concurrent simulated builds against a {@link MockLlmServer}, and
+ * prints throughput, latency percentiles, thread counts and heap usage. Runs offline, and is
+ * skipped unless {@code -Dloadtest=true} is set:
+ * {@code mvn test -Dtest=LoadTest -Dloadtest=true -Dloadtest.requests=1000 -Dloadtest.concurrency=100}
+ */
+@WithJenkins
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class LoadTest {
+
+    private static final int REQUESTS = Integer.getInteger("loadtest.requests", 500);
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 50);
+    private static final int BUILDS = Integer.getInteger("loadtest.builds", 50);
+    private static final long MEDIAN_LATENCY_MILLIS = Long.getLong("loadtest.latency", 200);
+
+    private MockLlmServer server;
+    private ExecutorService clients;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new MockLlmServer()
+                .latency(MockLlmServer.logNormal(MEDIAN_LATENCY_MILLIS, 0.5, 42))
+                .failures(0.02, 0.01);
+        clients = Executors.newFixedThreadPool(CONCURRENCY);
+
+        GlobalConfigurationImpl config = GlobalConfigurationImpl.get();
+        config.setApiKey(Secret.fromString("test-api-key"));
+        config.setModel("load-test");
+        // Every request must reach the provider
+        config.setCacheMaxEntries(0);
+        config.setMaxConcurrentExplanations(Math.max(4, CONCURRENCY / 2));
+        config.setMaxQueuedExplanations(Math.max(REQUESTS, BUILDS));
+    }
+
+    @AfterEach
+    void tearDown() {
+        clients.shutdownNow();
+        server.close();
+    }
+
+    private void useOpenAI() {
+        GlobalConfigurationImpl config = GlobalConfigurationImpl.get();
+        config.setProvider(AIProvider.OPENAI);
+        config.setApiUrl(server.getOpenAIUrl());
+    }
+
+    private void useGemini() {
+        GlobalConfigurationImpl config = GlobalConfigurationImpl.get();
+        config.setProvider(AIProvider.GEMINI);
+        config.setApiUrl(server.getGeminiUrl());
+    }
+
+    /**
+     * Error text unique to a simulated build, so requests are neither cached nor coalesced.
+     */
+    private static String errorText(int build) {
+        return "[INFO] Running org.example.FixtureTest\n"
+                + "[ERROR] Tests run: 4, Failures: 1, Errors: 0, Skipped: 0\n"
+                + "[ERROR] testLoadsFixture(org.example.FixtureTest)  Time elapsed: 0.1 s  <<< FAILURE!\n"
+                + "java.io.FileNotFoundException: fixtures/build-" + build + ".json\n"
+                + "[ERROR] Failed to execute goal maven-surefire-plugin:test on project app-" + build;
+    }
+
+    private static boolean isExplanation(String text) {
+        return text != null && text.startsWith("The build failed because");
+    }
+
+    /**
+     * Run requests on the client pool and record how long each took.
+     */
+    private LoadRecorder run(String name, int requests, IntCall call) throws Exception {
+        LoadRecorder recorder = new LoadRecorder(name);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            int request = i;
+            futures.add(clients.submit((Callable<Void>) () -> {
+                long start = System.nanoTime();
+                boolean succeeded = false;
+                try {
+                    succeeded = isExplanation(call.apply(request));
+                } finally {
+                    recorder.record(System.nanoTime() - start, succeeded);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.MINUTES);
+        }
+        System.out.println(recorder.report());
+        System.out.printf("  mock server: %,d requests, %,d streamed, %,d rate limited, %,d server errors%n",
+                server.getRequests(), server.getStreamed(), server.getRateLimited(), server.getServerErrors());
+        return recorder;
+    }
+
+    @Test
+    void testErrorExplainer(JenkinsRule jenkins) throws Exception {
+        useOpenAI();
+        LoadRecorder recorder = run("ErrorExplainer, OpenAI", REQUESTS, request ->
+                new ErrorExplainer().explainErrorTextAsync(errorText(request), null, true).get().getText());
+
+        assertEquals(REQUESTS, recorder.getCount());
+        // Only injected server errors may fail; rate limited requests are retried
+        assertTrue(recorder.getFailures() <= server.getServerErrors(), recorder.report());
+    }
+
+    @Test
+    void testErrorExplainerStreaming(JenkinsRule jenkins) throws Exception {
+        useGemini();
+        LoadRecorder recorder = run("ErrorExplainer streaming, Gemini", REQUESTS, request ->
+                new ErrorExplainer().explainErrorTextStreaming(errorText(request), null, true, text -> {}).get()
+                        .getText());
+
+        assertEquals(REQUESTS, recorder.getCount());
+        assertTrue(recorder.getFailures() <= server.getServerErrors(), recorder.report());
+        assertTrue(server.getStreamed() > 0);
+    }
+
+    @Test
+    void testPipelineStep(JenkinsRule jenkins) throws Exception {
+        useOpenAI();
+        List<WorkflowJob> jobs = new ArrayList<>();
+        for (int i = 0; i < BUILDS; i++) {
+            WorkflowJob job = jenkins.createProject(WorkflowJob.class, "load-" + i);
+            job.setDefinition(new CpsFlowDefinition("echo '''" + errorText(i) + "'''\nexplainError()", true));
+            jobs.add(job);
+        }
+
+        LoadRecorder recorder = run("explainError step, OpenAI", BUILDS, request -> {
+            WorkflowRun build = jenkins.buildAndAssertSuccess(jobs.get(request));
+            ErrorExplanationAction action = build.getAction(ErrorExplanationAction.class);
+            return action != null ? action.getExplanation() : null;
+        });
+
+        assertEquals(BUILDS, recorder.getCount());
+        assertTrue(recorder.getFailures() <= server.getServerErrors(), recorder.report());
+    }
+
+    @Test
+    void testConsoleEndpoint(JenkinsRule jenkins) throws Exception {
+        useOpenAI();
+        List<FreeStyleBuild> builds = new ArrayList<>();
+        for (int i = 0; i < BUILDS; i++) {
+            FreeStyleProject project = jenkins.createFreeStyleProject("console-" + i);
+            builds.add(jenkins.buildAndAssertSuccess(project));
+        }
+        ThreadLocal<JenkinsRule.WebClient> webClients = ThreadLocal.withInitial(jenkins::createWebClient);
+
+        LoadRecorder recorder = run("Console endpoint, OpenAI", BUILDS, request -> {
+            JenkinsRule.WebClient webClient = webClients.get();
+            WebRequest post = new WebRequest(new URL(jenkins.getURL(), builds.get(request).getUrl()
+                    + "console-explain-error/explainConsoleError?forceNew=true"), HttpMethod.POST);
+            String response = webClient.getPage(webClient.addCrumb(post)).getWebResponse().getContentAsString();
+            // The explanation is returned as a JSON string
+            return response.startsWith("\"") ? response.substring(1) : response;
+        });
+
+        assertEquals(BUILDS, recorder.getCount());
+        assertTrue(recorder.getFailures() <= server.getServerErrors(), recorder.report());
+    }
+
+    @FunctionalInterface
+    private interface IntCall {
+        String apply(int request) throws Exception;
+    }
+}
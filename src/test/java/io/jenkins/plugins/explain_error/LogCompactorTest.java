@@ -0,0 +1,139 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class LogCompactorTest {
+
+    private static String compact(String text) {
+        return new LogCompactor(3).compact(text).getText();
+    }
+
+    @Test
+    void testStackTraceIsFoldedToTopFrames() {
+        String log = "java.lang.IllegalStateException: boom\n"
+                + "\tat com.example.A.a(A.java:1)\n"
+                + "\tat com.example.B.b(B.java:2)\n"
+                + "\tat com.example.C.c(C.java:3)\n"
+                + "\tat com.example.D.d(D.java:4)\n"
+                + "\tat com.example.E.e(E.java:5)\n"
+                + "Caused by: java.io.IOException: disk\n"
+                + "\tat com.example.F.f(F.java:6)\n"
+                + "\tat com.example.G.g(G.java:7)\n"
+                + "\tat com.example.H.h(H.java:8)\n"
+                + "\tat com.example.I.i(I.java:9)\n"
+                + "\t... 5 more\n";
+
+        assertEquals("java.lang.IllegalStateException: boom\n"
+                + "\tat com.example.A.a(A.java:1)\n"
+                + "\tat com.example.B.b(B.java:2)\n"
+                + "\tat com.example.C.c(C.java:3)\n"
+                + "\t... 2 more\n"
+                + "Caused by: java.io.IOException: disk\n"
+                + "\tat com.example.F.f(F.java:6)\n"
+                + "\tat com.example.G.g(G.java:7)\n"
+                + "\tat com.example.H.h(H.java:8)\n"
+                + "\t... 6 more\n", compact(log));
+    }
+
+    @Test
+    void testShortStackTraceIsKept() {
+        String log = "java.lang.NullPointerException\n\tat com.example.A.a(A.java:1)\n\t... 12 more";
+
+        assertEquals(log, compact(log));
+    }
+
+    @Test
+    void testNearIdenticalLinesAreCollapsed() {
+        StringBuilder log = new StringBuilder();
+        for (int i = 1; i <= 5; i++) {
+            log.append("[2024-01-01 10:00:").append(i).append("1] Waiting for agent, attempt ").append(i).append('\n');
+        }
+        log.append("ERROR: agent went offline\n");
+
+        assertEquals("[2024-01-01 10:00:11] Waiting for agent, attempt 1\n"
+                + "(3 similar lines)\n"
+                + "[2024-01-01 10:00:51] Waiting for agent, attempt 5\n"
+                + "ERROR: agent went offline\n", compact(log.toString()));
+    }
+
+    @Test
+    void testIdenticalLinesAreCounted() {
+        assertEquals("Waiting for lock (×3)\nERROR: timeout\n",
+                compact("Waiting for lock\nWaiting for lock\nWaiting for lock\nERROR: timeout\n"));
+    }
+
+    @Test
+    void testDifferingNumbersAreNotHidden() {
+        String log = "Tests run: 3, Failures: 0\nTests run: 5, Failures: 2\n";
+
+        assertEquals(log, compact(log));
+
+        StringBuilder statuses = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            statuses.append("HTTP status ").append(i < 4 ? 200 : 503).append('\n');
+        }
+        String compacted = compact(statuses.toString());
+        assertTrue(compacted.startsWith("HTTP status 200\n"), compacted);
+        assertTrue(compacted.endsWith("HTTP status 503\n"), compacted);
+    }
+
+    @Test
+    void testRepeatedGroupsAreCollapsed() {
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < 4; i++) {
+            log.append("Downloading https://repo.example.com/lib.jar\n");
+            log.append("WARN: connection reset, retrying in ").append(i * 5).append("s\n");
+        }
+        log.append("ERROR: could not download lib.jar\n");
+
+        assertEquals("Downloading https://repo.example.com/lib.jar\n"
+                + "WARN: connection reset, retrying in 0s\n"
+                + "(2 similar groups of 2 lines)\n"
+                + "Downloading https://repo.example.com/lib.jar\n"
+                + "WARN: connection reset, retrying in 15s\n"
+                + "ERROR: could not download lib.jar\n", compact(log.toString()));
+    }
+
+    @Test
+    void testIdenticalGroupsAreCounted() {
+        String group = "Downloading https://repo.example.com/lib.jar\nWARN: connection reset\n";
+
+        assertEquals(group + "(previous 2 lines ×3)\nERROR: failed\n",
+                compact(group + group + group + "ERROR: failed\n"));
+    }
+
+    @Test
+    void testDistinctLinesAreKept() {
+        String log = "[ERROR] Failed to execute goal\n[ERROR] Compilation failure\n[INFO] BUILD FAILURE";
+
+        assertEquals(log, compact(log));
+    }
+
+    @Test
+    void testAnsiEscapesAreRemoved() {
+        assertEquals("ERROR: red text", compact("\u001B[1;31mERROR:\u001B[0m red text"));
+    }
+
+    @Test
+    void testRatio() {
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            log.append("Retrying request ").append(i).append('\n');
+        }
+
+        LogCompactor.Result result = new LogCompactor().compact(log.toString());
+
+        assertEquals("Retrying request 0\n(98 similar lines)\nRetrying request 99\n", result.getText());
+        assertEquals(log.length(), result.getOriginalLength());
+        assertTrue(result.getRatio() > 20);
+    }
+
+    @Test
+    void testEmptyText() {
+        assertEquals("", compact(null));
+        assertEquals("", compact(""));
+        assertEquals(1.0, new LogCompactor().compact("").getRatio());
+    }
+}
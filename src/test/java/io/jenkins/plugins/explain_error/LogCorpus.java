@@ -0,0 +1,217 @@
+package io.jenkins.plugins.explain_error;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Realistic build logs and provider responses for benchmarks, generated from a fixed seed so
+ * every run measures the same input. Logs of any size are written as a stream, so a 1 GB log
+ * never has to fit in memory.
+ */
+final class LogCorpus {
+
+    /**
+     * Kinds of build logs, each with the lines of a healthy build, errors that turn up along
+     * the way, and the failure the build ends with.
+     */
+    enum Kind {
+        MAVEN(new String[] {
+            "[INFO] Downloading from central: https://repo.maven.apache.org/maven2/org/example/lib/1.%d/lib-1.%d.pom",
+            "[INFO] Downloaded from central: https://repo.maven.apache.org/maven2/org/example/lib/1.%d/lib-1.%d.jar",
+            "[INFO] Compiling %d source files with javac [debug release 17] to target/classes",
+            "[INFO] Running org.example.service.Service%dTest",
+            "[INFO] Tests run: %d, Failures: 0, Errors: 0, Skipped: 0, Time elapsed: 0.%d s",
+            "[WARNING] Parameter 'skip' is unknown for plugin 'maven-jar-plugin:3.%d.%d:jar (default-jar)'",
+        }, new String[] {
+            "[ERROR] Tests run: 12, Failures: 1, Errors: 0, Skipped: 0, Time elapsed: 1.2 s <<< FAILURE!",
+            "[ERROR] /workspace/src/main/java/org/example/Foo.java:[42,13] cannot find symbol",
+        }, "[INFO] BUILD FAILURE\n"
+            + "[ERROR] Failed to execute goal org.apache.maven.plugins:maven-surefire-plugin:3.2.5:test "
+            + "(default-test) on project app: There are test failures.\n"
+            + "[ERROR] -> [Help 1]\n"
+            + "org.apache.maven.lifecycle.LifecycleExecutionException: Failed to execute goal\n"
+            + "    at org.apache.maven.lifecycle.internal.MojoExecutor.doExecute2(MojoExecutor.java:333)\n"
+            + "    at org.apache.maven.lifecycle.internal.MojoExecutor.doExecute(MojoExecutor.java:316)\n"),
+        GRADLE(new String[] {
+            "> Task :service-%d:compileJava UP-TO-DATE (%d ms)",
+            "> Task :service-%d:processResources NO-SOURCE %d",
+            "> Task :service-%d:test",
+            "org.example.Service%dTest > handlesRequest() PASSED (%d ms)",
+            "Download https://plugins.gradle.org/m2/org/example/plugin/%d.%d/plugin.pom",
+        }, new String[] {
+            "org.example.ServiceTest > rejectsInvalidInput() FAILED",
+            "    java.lang.AssertionError: expected:<200> but was:<500>",
+        }, "FAILURE: Build failed with an exception.\n\n"
+            + "* What went wrong:\n"
+            + "Execution failed for task ':service:test'.\n"
+            + "> There were failing tests. See the report at: "
+            + "file:///workspace/service/build/reports/tests/test/index.html\n\n"
+            + "* Try:\n"
+            + "> Run with --stacktrace option to get the stack trace.\n\n"
+            + "BUILD FAILED in 2m 13s\n"),
+        NPM(new String[] {
+            "npm http fetch GET 200 https://registry.npmjs.org/package-%d %dms (cache hit)",
+            "added %d packages, and audited %d packages in 12s",
+            "  PASS  src/components/Component%d.test.tsx (%d ms)",
+            "webpack 5.90.%d compiled with %d warnings",
+            "npm WARN deprecated inflight@1.0.%d: This module is not supported, and leaks memory (%d)",
+        }, new String[] {
+            "  FAIL  src/components/Checkout.test.tsx",
+            "    TypeError: Cannot read properties of undefined (reading 'total')",
+        }, "npm ERR! code ELIFECYCLE\n"
+            + "npm ERR! errno 1\n"
+            + "npm ERR! app@1.0.0 test: `jest --ci`\n"
+            + "npm ERR! Exit status 1\n"
+            + "npm ERR! Failed at the app@1.0.0 test script.\n"
+            + "script returned exit code 1\n"),
+        DOCKER(new String[] {
+            "#%d [build %d/12] RUN apt-get update && apt-get install -y --no-install-recommends curl",
+            "#%d sha256:%d3f4e5a6b7c8d9e0f1a2b3c4d5e6f7a8b9c0d1e2f3a4b5c6d7e8f9a0b1c2d3e4f5 done",
+            "#%d DONE %d.4s",
+            "#%d [internal] load metadata for docker.io/library/eclipse-temurin:%d-jre",
+            "Get:%d http://deb.debian.org/debian bookworm/main amd64 libcurl4 amd64 7.88.%d [390 kB]",
+        }, new String[] {
+            "#9 0.512 E: Unable to locate package libssl1.1",
+            "#9 ERROR: process \"/bin/sh -c apt-get install -y libssl1.1\" did not complete successfully",
+        }, "------\n"
+            + " > [build 9/12] RUN apt-get install -y libssl1.1:\n"
+            + "0.512 E: Unable to locate package libssl1.1\n"
+            + "------\n"
+            + "ERROR: failed to solve: process \"/bin/sh -c apt-get install -y libssl1.1\" did not complete "
+            + "successfully: exit code: 100\n"
+            + "script returned exit code 1\n");
+
+        private final String[] lines;
+        private final String[] errors;
+        private final String failure;
+
+        Kind(String[] lines, String[] errors, String failure) {
+            this.lines = lines;
+            this.errors = errors;
+            this.failure = failure;
+        }
+    }
+
+    private LogCorpus() {
+    }
+
+    /**
+     * Parse a size such as {@code 1KB}, {@code 64MB} or {@code 1GB}.
+     */
+    static long parseSize(String size) {
+        String text = size.trim().toUpperCase(Locale.ROOT);
+        long unit = 1;
+        if (text.endsWith("KB")) {
+            unit = 1024;
+        } else if (text.endsWith("MB")) {
+            unit = 1024 * 1024;
+        } else if (text.endsWith("GB")) {
+            unit = 1024 * 1024 * 1024;
+        }
+        return Long.parseLong(unit == 1 ? text : text.substring(0, text.length() - 2)) * unit;
+    }
+
+    /**
+     * Write a log of about {@code bytes} bytes: regular lines with an error about every thousand
+     * lines, ending with the failure of the build.
+     */
+    static void write(Kind kind, long bytes, Writer out) throws IOException {
+        Random random = new Random(42);
+        long written = 0;
+        long body = Math.max(0, bytes - kind.failure.length());
+        while (written < body) {
+            String line = random.nextInt(1000) == 0
+                    ? kind.errors[random.nextInt(kind.errors.length)]
+                    : String.format(kind.lines[random.nextInt(kind.lines.length)],
+                            random.nextInt(1000), random.nextInt(1000));
+            if (written + line.length() + 1 > body) {
+                line = line.substring(0, (int) Math.max(0, body - written - 1));
+            }
+            out.write(line);
+            out.write('\n');
+            written += line.length() + 1;
+        }
+        out.write(kind.failure);
+    }
+
+    /**
+     * Get a log in memory, for sizes that fit comfortably.
+     */
+    static String generate(Kind kind, int bytes) {
+        StringWriter out = new StringWriter(bytes + 64);
+        try {
+            write(kind, bytes, out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Write a log to a file, like the log of a build.
+     */
+    static Path writeFile(Kind kind, long bytes) throws IOException {
+        Path file = Files.createTempFile("corpus-" + kind.name().toLowerCase(Locale.ROOT) + "-", ".log");
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            write(kind, bytes, out);
+        }
+        return file;
+    }
+
+    /**
+     * Open a log file written by {@link #writeFile}.
+     */
+    static Reader open(Path file) throws IOException {
+        return Files.newBufferedReader(file, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get an explanation of about {@code chars} characters, as a provider would write it.
+     */
+    static String explanation(int chars) {
+        String paragraph = "The build failed because the test FixtureTest could not find fixtures/build.json. "
+                + "The file was removed in the last commit, but the test still loads it.\n"
+                + "1. Restore fixtures/build.json, or update FixtureTest to create the data it needs.\n"
+                + "2. Run mvn test -Dtest=FixtureTest locally to confirm the fix.\n\n";
+        StringBuilder text = new StringBuilder(chars + paragraph.length());
+        while (text.length() < chars) {
+            text.append(paragraph);
+        }
+        text.setLength(chars);
+        return text.toString();
+    }
+
+    /**
+     * Get an OpenAI chat completion response with an explanation, including the metadata the
+     * real API returns around it.
+     */
+    static String openAIResponse(String explanation) {
+        return "{\"id\":\"chatcmpl-9AbCdEfGhIjKlMnOp\",\"object\":\"chat.completion\",\"created\":1718000000,"
+                + "\"model\":\"gpt-4o-2024-05-13\",\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\","
+                + "\"content\":" + ConsoleExplainErrorAction.toJson(explanation) + ",\"refusal\":null},"
+                + "\"logprobs\":null,\"finish_reason\":\"stop\"}],\"usage\":{\"prompt_tokens\":1843,"
+                + "\"completion_tokens\":312,\"total_tokens\":2155},\"system_fingerprint\":\"fp_3aa7262c27\"}";
+    }
+
+    /**
+     * Get a Gemini generateContent response with an explanation, including the safety ratings
+     * and usage metadata the real API returns after it.
+     */
+    static String geminiResponse(String explanation) {
+        return "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":" + ConsoleExplainErrorAction.toJson(explanation)
+                + "}],\"role\":\"model\"},\"finishReason\":\"STOP\",\"index\":0,\"safetyRatings\":["
+                + "{\"category\":\"HARM_CATEGORY_SEXUALLY_EXPLICIT\",\"probability\":\"NEGLIGIBLE\"},"
+                + "{\"category\":\"HARM_CATEGORY_HATE_SPEECH\",\"probability\":\"NEGLIGIBLE\"},"
+                + "{\"category\":\"HARM_CATEGORY_HARASSMENT\",\"probability\":\"NEGLIGIBLE\"},"
+                + "{\"category\":\"HARM_CATEGORY_DANGEROUS_CONTENT\",\"probability\":\"NEGLIGIBLE\"}]}],"
+                + "\"usageMetadata\":{\"promptTokenCount\":1843,\"candidatesTokenCount\":312,"
+                + "\"totalTokenCount\":2155},\"modelVersion\":\"gemini-1.5-flash-002\"}";
+    }
+}
@@ -0,0 +1,72 @@
+package io.jenkins.plugins.explain_error;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Throughput of reading the error lines from a build log, the first stage of every explanation:
+ * with the built-in error signatures, with a log pattern, and the tail read when neither is used,
+ * as {@code ErrorExplainer.extractErrorLogs} does.
+ * Logs from the {@link LogCorpus} are read from a file like the log of a build; larger sizes such
+ * as {@code 1GB} can be set with {@code -Dbenchmark.sizes}, see {@link BenchmarkRunner}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LogExtractionBenchmark {
+
+    /** A {@link LogCorpus.Kind}. */
+    @Param({"MAVEN", "GRADLE", "NPM", "DOCKER"})
+    public String kind;
+
+    @Param({"1KB", "1MB", "64MB"})
+    public String size;
+
+    private Path log;
+    private Pattern pattern;
+
+    @Setup
+    public void setup() throws IOException {
+        log = LogCorpus.writeFile(LogCorpus.Kind.valueOf(kind), LogCorpus.parseSize(size));
+        pattern = ErrorSignatures.compile("error|fail|exception", Pattern.CASE_INSENSITIVE);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(log);
+    }
+
+    @Benchmark
+    public String extractWithSignatures() throws IOException {
+        try (Reader reader = LogCorpus.open(log)) {
+            return new LogPatternExtractor(null, ErrorSignatures.builtIn(), 5, 100).extract(reader);
+        }
+    }
+
+    @Benchmark
+    public String extractWithPattern() throws IOException {
+        try (Reader reader = LogCorpus.open(log)) {
+            return new LogPatternExtractor(pattern, 5, 100).extract(reader);
+        }
+    }
+
+    @Benchmark
+    public List<String> tail() throws IOException {
+        return LogTailReader.tail(log, StandardCharsets.UTF_8, 100);
+    }
+}
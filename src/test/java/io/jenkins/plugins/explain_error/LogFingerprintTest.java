@@ -0,0 +1,50 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class LogFingerprintTest {
+
+    @Test
+    void testTimestampsAreIgnored() {
+        assertEquals(
+                LogFingerprint.of("2024-01-02T10:11:12.345Z ERROR: artifact not found"),
+                LogFingerprint.of("2025-06-30 23:59:01 ERROR: artifact not found"));
+    }
+
+    @Test
+    void testWorkspacePathsAreIgnored() {
+        assertEquals(
+                LogFingerprint.of("ERROR: cannot read /var/jenkins_home/workspace/app_main/pom.xml"),
+                LogFingerprint.of("ERROR: cannot read /var/jenkins_home/workspace/app_feature-42/pom.xml"));
+    }
+
+    @Test
+    void testBuildNumbersAndHexIdsAreIgnored() {
+        assertEquals(
+                LogFingerprint.of("Build #12 failed at commit 3f2a9c1d7e"),
+                LogFingerprint.of("Build #9876 failed at commit a1b2c3d4e5"));
+    }
+
+    @Test
+    void testDifferentErrorsHaveDifferentFingerprints() {
+        assertNotEquals(
+                LogFingerprint.of("ERROR: artifact not found"),
+                LogFingerprint.of("ERROR: compilation failed"));
+    }
+
+    @Test
+    void testNormalize() {
+        String normalized = LogFingerprint.normalize(
+                "10:11:12 [ERROR]   Tests   failed in 12.5 s, see uuid 123e4567-e89b-12d3-a456-426614174000");
+
+        assertEquals("<time> [ERROR] Tests failed in <duration>, see uuid <uuid>", normalized);
+    }
+
+    @Test
+    void testNullInput() {
+        assertEquals("", LogFingerprint.normalize(null));
+        assertEquals(LogFingerprint.of(""), LogFingerprint.of(null));
+    }
+}
@@ -0,0 +1,134 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+class LogPatternExtractorTest {
+
+    private static final Pattern ERROR = Pattern.compile("error", Pattern.CASE_INSENSITIVE);
+
+    private static String log(int lines, int... errorLines) {
+        StringBuilder log = new StringBuilder();
+        for (int i = 1; i <= lines; i++) {
+            boolean error = false;
+            for (int e : errorLines) {
+                error |= e == i;
+            }
+            log.append(error ? "ERROR at " + i : "line " + i).append('\n');
+        }
+        return log.toString();
+    }
+
+    @Test
+    void testOnlyMatchingLinesWithoutContext() throws IOException {
+        String result = new LogPatternExtractor(ERROR, 0, 100).extract(new StringReader(log(10, 3, 7)));
+
+        assertEquals("ERROR at 3\nERROR at 7\n", result);
+    }
+
+    @Test
+    void testContextAroundSeparateMatches() throws IOException {
+        String result = new LogPatternExtractor(ERROR, 1, 100).extract(new StringReader(log(12, 3, 9)));
+
+        assertEquals("line 2\nERROR at 3\nline 4\n...\nline 8\nERROR at 9\nline 10\n", result);
+    }
+
+    @Test
+    void testOverlappingWindowsAreMerged() throws IOException {
+        String result = new LogPatternExtractor(ERROR, 2, 100).extract(new StringReader(log(12, 4, 7)));
+
+        assertEquals("line 2\nline 3\nERROR at 4\nline 5\nline 6\nERROR at 7\nline 8\nline 9\n", result);
+    }
+
+    @Test
+    void testAdjacentWindowsHaveNoGap() throws IOException {
+        String result = new LogPatternExtractor(ERROR, 1, 100).extract(new StringReader(log(10, 3, 6)));
+
+        assertEquals("line 2\nERROR at 3\nline 4\nline 5\nERROR at 6\nline 7\n", result);
+    }
+
+    @Test
+    void testEarliestMatchesAreKeptWhenOutputIsFull() throws IOException {
+        String result = new LogPatternExtractor(ERROR, 0, 2).extract(new StringReader(log(100, 5, 50, 95)));
+
+        assertEquals("ERROR at 5\nERROR at 50\n", result);
+    }
+
+    @Test
+    void testOutputSizeIsCapped() throws IOException {
+        String result = new LogPatternExtractor(ERROR, null, 0, 0, 30).extract(new StringReader(log(100, 1, 2, 3, 4, 5)));
+
+        assertEquals("ERROR at 1\nERROR at 2\n", result);
+    }
+
+    @Test
+    void testLongLinesAreCut() throws IOException {
+        String line = "ERROR " + "x".repeat(LogPatternExtractor.MAX_LINE_CHARS * 2);
+
+        String result = new LogPatternExtractor(ERROR, 0, 10).extract(new StringReader(line));
+
+        assertEquals(LogPatternExtractor.MAX_LINE_CHARS + 2, result.length());
+    }
+
+    @Test
+    void testFindsErrorNearEndOfLargeLog() throws IOException {
+        // A generated log of ~50 MB, produced lazily so it is never held in memory
+        long totalLines = 2_000_000L;
+        Reader huge = new Reader() {
+            private long line;
+            private String current = "";
+            private int offset;
+
+            @Override
+            public int read(char[] buffer, int off, int len) {
+                if (offset == current.length()) {
+                    if (line == totalLines) {
+                        return -1;
+                    }
+                    line++;
+                    current = (line == totalLines - 10 ? "ERROR: the real failure" : "compiling module " + line) + "\n";
+                    offset = 0;
+                }
+                int count = Math.min(len, current.length() - offset);
+                current.getChars(offset, offset + count, buffer, off);
+                offset += count;
+                return count;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        String result = new LogPatternExtractor(ERROR, 1, 10).extract(huge);
+
+        assertEquals("compiling module 1999989\nERROR: the real failure\ncompiling module 1999991\n", result);
+    }
+
+    @Test
+    void testErrorSignaturesWithoutPattern() throws IOException {
+        String log = "[INFO] Compiling 3 source files\n"
+                + "src/Main.java:12: error: cannot find symbol\n"
+                + "[INFO] done\n"
+                + "npm ERR! code ELIFECYCLE\n";
+
+        String result = new LogPatternExtractor(null, ErrorSignatures.builtIn(), 0, 10).extract(new StringReader(log));
+
+        assertEquals("src/Main.java:12: error: cannot find symbol\nnpm ERR! code ELIFECYCLE\n", result);
+    }
+
+    @Test
+    void testErrorSignaturesCombinedWithPattern() throws IOException {
+        String log = "custom marker\nline\njava.lang.OutOfMemoryError: Java heap space\n";
+
+        String result = new LogPatternExtractor(Pattern.compile("marker"), ErrorSignatures.builtIn(), 0, 10)
+                .extract(new StringReader(log));
+
+        assertEquals("custom marker\njava.lang.OutOfMemoryError: Java heap space\n", result);
+    }
+}
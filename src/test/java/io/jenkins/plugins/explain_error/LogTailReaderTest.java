@@ -0,0 +1,129 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+class LogTailReaderTest {
+
+    @TempDir
+    Path directory;
+
+    private Path write(String content) throws IOException {
+        Path file = directory.resolve("log");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    @Test
+    void testReturnsLastLines() throws IOException {
+        Path file = write("one\ntwo\nthree\nfour\n");
+
+        assertEquals(List.of("three", "four"), LogTailReader.tail(file, StandardCharsets.UTF_8, 2));
+    }
+
+    @Test
+    void testReturnsWholeLogWhenShorterThanLimit() throws IOException {
+        Path file = write("one\r\ntwo\r\nthree");
+
+        assertEquals(List.of("one", "two", "three"), LogTailReader.tail(file, StandardCharsets.UTF_8, 10));
+    }
+
+    @Test
+    void testLinesAcrossBlockBoundaries() throws IOException {
+        Path file = directory.resolve("log");
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < 200_000; i++) {
+                writer.write("line " + i + " éè\n");
+            }
+        }
+        assertTrue(Files.size(file) > 10L * LogTailReader.BLOCK_SIZE);
+
+        List<String> lines = LogTailReader.tail(file, StandardCharsets.UTF_8, 5000);
+
+        assertEquals(5000, lines.size());
+        assertEquals("line 195000 éè", lines.get(0));
+        assertEquals("line 199999 éè", lines.get(4999));
+    }
+
+    @Test
+    void testEmptyLinesAreKept() throws IOException {
+        Path file = write("a\n\n\nb\n");
+
+        assertEquals(List.of("", "", "b"), LogTailReader.tail(file, StandardCharsets.UTF_8, 3));
+    }
+
+    @Test
+    void testTailDoesNotStartMidLine() throws IOException {
+        Path file = directory.resolve("log");
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < 700_000; i++) {
+                writer.write("line " + i + " éè\n");
+            }
+        }
+        assertTrue(Files.size(file) > LogTailReader.MAX_TAIL_BYTES);
+
+        List<String> lines = LogTailReader.tail(file, StandardCharsets.UTF_8, Integer.MAX_VALUE);
+
+        assertTrue(lines.size() < 700_000);
+        assertTrue(lines.get(0).matches("line \\d+ éè"), lines.get(0));
+        assertEquals("line 699999 éè", lines.get(lines.size() - 1));
+    }
+
+    @Test
+    void testCompressedLog() throws IOException {
+        Path file = directory.resolve("log.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            for (int i = 0; i < 10_000; i++) {
+                out.write(("line " + i + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            assertEquals(List.of("line 9998", "line 9999"), LogTailReader.tail(in, StandardCharsets.UTF_8, 2));
+        }
+    }
+
+    @Test
+    void testLongLineIsCutWhenStreamed() throws IOException {
+        String log = "first\r\n" + "x".repeat(LogTailReader.MAX_LINE_CHARS * 4) + "\nlast";
+        try (InputStream in = new ByteArrayInputStream(log.getBytes(StandardCharsets.UTF_8))) {
+            List<String> lines = LogTailReader.tail(in, StandardCharsets.UTF_8, 3);
+            assertEquals(3, lines.size());
+            assertEquals("first", lines.get(0));
+            assertEquals("x".repeat(LogTailReader.MAX_LINE_CHARS), lines.get(1));
+            assertEquals("last", lines.get(2));
+        }
+    }
+
+    @Test
+    @WithJenkins
+    void testPipelineLogIsReadFromFile(JenkinsRule jenkins) throws Exception {
+        WorkflowJob job = jenkins.createProject(WorkflowJob.class, "tail-pipeline");
+        job.setDefinition(new CpsFlowDefinition("for (int i = 0; i < 5; i++) { echo \"line ${i}\" }", true));
+        WorkflowRun run = jenkins.buildAndAssertSuccess(job);
+
+        assertTrue(new File(run.getRootDir(), "log").isFile());
+        List<String> lines = LogTailReader.tail(run, 3);
+        assertTrue(lines.contains("line 4"), lines.toString());
+        assertEquals("Finished: SUCCESS", lines.get(lines.size() - 1));
+    }
+}
@@ -0,0 +1,70 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class LogTruncatorTest {
+
+    private final TokenEstimator estimator = TokenEstimator.forModel(AIProvider.OPENAI, "gpt-4");
+
+    private static String log(int lines, int errorAt) {
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            if (i == errorAt) {
+                log.append("[ERROR] Failed to execute goal: compilation failure\n");
+            } else {
+                log.append("[INFO] Processing module number ").append(i).append('\n');
+            }
+        }
+        return log.toString();
+    }
+
+    @Test
+    void testTextWithinBudgetIsUnchanged() {
+        String text = log(10, 5);
+
+        assertSame(text, new LogTruncator(estimator, 1000).truncate(text));
+        assertSame(text, new LogTruncator(estimator, 0).truncate(text));
+        assertNull(new LogTruncator(estimator, 10).truncate(null));
+    }
+
+    @Test
+    void testKeepsHeadErrorAndTailWithinBudget() {
+        String text = log(5000, 2000);
+
+        String truncated = new LogTruncator(estimator, 1000).truncate(text);
+
+        assertTrue(estimator.estimate(truncated) <= 1000, "estimate " + estimator.estimate(truncated));
+        assertTrue(truncated.startsWith("[INFO] Processing module number 0\n"));
+        assertTrue(truncated.contains("[INFO] Processing module number 1999\n"
+                + "[ERROR] Failed to execute goal: compilation failure\n"
+                + "[INFO] Processing module number 2001\n"));
+        assertTrue(truncated.endsWith("[INFO] Processing module number 4999\n"));
+        assertTrue(truncated.contains(" lines omitted] ...\n"));
+    }
+
+    @Test
+    void testWithoutErrorKeepsMostlyTheTail() {
+        String text = log(5000, -1);
+
+        String truncated = new LogTruncator(estimator, 1000).truncate(text);
+
+        assertTrue(estimator.estimate(truncated) <= 1000);
+        assertTrue(truncated.startsWith("[INFO] Processing module number 0\n"));
+        assertTrue(truncated.endsWith("[INFO] Processing module number 4999\n"));
+        int tail = truncated.length() - truncated.lastIndexOf("omitted] ...");
+        assertTrue(tail > truncated.length() / 2);
+    }
+
+    @Test
+    void testSingleHugeLineKeepsItsEnd() {
+        String text = "x".repeat(100_000) + " the end";
+
+        String truncated = new LogTruncator(estimator, 100).truncate(text);
+
+        assertTrue(truncated.startsWith("..."));
+        assertTrue(truncated.endsWith(" the end"));
+        assertTrue(estimator.estimate(truncated) <= 100);
+    }
+}
@@ -0,0 +1,146 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class MapReduceExplainerTest {
+
+    private final TokenEstimator estimator = TokenEstimator.forModel(AIProvider.OPENAI, "gpt-4");
+    private final List<String> prompts = new ArrayList<>();
+    private final List<CompletableFuture<String>> calls = new ArrayList<>();
+    private final AtomicLong clock = new AtomicLong();
+
+    private MapReduceExplainer explainer(int chunkTokens, int maxChunks) {
+        return explainer(chunkTokens, maxChunks, 0);
+    }
+
+    private MapReduceExplainer explainer(int chunkTokens, int maxChunks, int maxPromptTokens) {
+        return new MapReduceExplainer(prompt -> {
+            prompts.add(prompt);
+            CompletableFuture<String> call = new CompletableFuture<>();
+            calls.add(call);
+            return call;
+        }, failure -> "Failed: " + failure.getMessage(), estimator, chunkTokens, maxChunks, maxPromptTokens,
+                clock::get);
+    }
+
+    private static String log(int lines) {
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            log.append("[ERROR] Test ").append(i).append(" failed: expected true but was false\n");
+        }
+        return log.toString();
+    }
+
+    @Test
+    void testSplitsAtLineBoundaries() {
+        List<String> parts = explainer(200, 10).split(log(100));
+
+        assertTrue(parts.size() > 1);
+        assertEquals(log(100), String.join("", parts));
+        for (String part : parts) {
+            assertTrue(part.endsWith("failed: expected true but was false\n"));
+        }
+    }
+
+    @Test
+    void testChunksGrowToStayWithinFanOut() {
+        List<String> parts = explainer(10, 3).split(log(100));
+
+        assertEquals(3, parts.size());
+        assertEquals(log(100), String.join("", parts));
+    }
+
+    @Test
+    void testPromptsFitBudget() {
+        MapReduceExplainer explainer = explainer(200, 4, 300);
+        CompletableFuture<String> result = explainer.explain(log(200));
+
+        assertEquals(4, calls.size());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(estimator.estimate(prompts.get(i)) <= 300, prompts.get(i));
+            assertTrue(prompts.get(i).contains("lines omitted"));
+            calls.get(i).complete(log(50));
+        }
+
+        String reduce = prompts.get(4);
+        assertTrue(estimator.estimate(reduce) <= 300, reduce);
+        assertTrue(reduce.contains("NOTES ON PART 4:\n"));
+        calls.get(4).complete("merged");
+        assertEquals("merged", result.join());
+    }
+
+    @Test
+    void testMapsInParallelThenReduces() {
+        MapReduceExplainer explainer = explainer(200, 4);
+        CompletableFuture<String> result = explainer.explain(log(100));
+
+        int parts = explainer.getChunks();
+        assertEquals(4, parts);
+        // All parts are requested before any answer arrives
+        assertEquals(parts, calls.size());
+        for (int i = 0; i < parts; i++) {
+            assertTrue(prompts.get(i).contains("PART " + (i + 1) + " OF " + parts));
+            clock.addAndGet(100);
+            calls.get(i).complete("notes " + (i + 1));
+        }
+        assertFalse(result.isDone());
+
+        assertEquals(parts + 1, calls.size());
+        String reduce = prompts.get(parts);
+        assertTrue(reduce.contains("NOTES ON PART 1:\nnotes 1"));
+        assertTrue(reduce.contains("NOTES ON PART 4:\nnotes 4"));
+        clock.addAndGet(50);
+        calls.get(parts).complete("merged explanation");
+
+        assertEquals("merged explanation", result.join());
+        assertEquals(400, explainer.getMapMillis());
+        assertEquals(400, explainer.getSlowestChunkMillis());
+        assertEquals(50, explainer.getReduceMillis());
+        assertTrue(explainer.getInputTokens() > estimator.estimate(log(100)));
+        assertTrue(explainer.describe().startsWith("Explained error logs in 4 parts: "));
+    }
+
+    @Test
+    void testFailedPartsAreMarkedUnavailable() {
+        MapReduceExplainer explainer = explainer(200, 2);
+        CompletableFuture<String> result = explainer.explain(log(100));
+
+        calls.get(0).completeExceptionally(new AIServiceException("unavailable", 503));
+        calls.get(1).complete("notes 2");
+
+        assertTrue(prompts.get(2).contains("NOTES ON PART 1:\n(not available)"));
+        assertEquals(1, explainer.getFailedChunks());
+        calls.get(2).complete("merged");
+        assertEquals("merged", result.join());
+    }
+
+    @Test
+    void testAllPartsFailing() {
+        MapReduceExplainer explainer = explainer(200, 2);
+        CompletableFuture<String> result = explainer.explain(log(100));
+
+        calls.get(0).completeExceptionally(new AIServiceException("unavailable", 503));
+        calls.get(1).completeExceptionally(new AIServiceException("unavailable", 503));
+
+        assertEquals("Failed: unavailable", result.join());
+        assertEquals(2, calls.size());
+    }
+
+    @Test
+    void testCancelCancelsPendingCalls() {
+        CompletableFuture<String> result = explainer(200, 3).explain(log(100));
+
+        calls.get(0).complete("notes 1");
+        result.cancel(true);
+
+        assertTrue(calls.get(1).isCancelled());
+        assertTrue(calls.get(2).isCancelled());
+        assertEquals(3, calls.size());
+    }
+}
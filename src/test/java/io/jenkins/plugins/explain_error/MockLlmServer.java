@@ -0,0 +1,218 @@
+package io.jenkins.plugins.explain_error;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Local HTTP server emulating the OpenAI chat completions and Gemini generateContent endpoints,
+ * including their streaming variants, so explanations can be load tested offline.
+ * Response latency follows a configurable distribution, and a share of the requests can be
+ * answered with {@code 429} or {@code 503} instead of an explanation.
+ */
+class MockLlmServer implements AutoCloseable {
+
+    static final String OPENAI_PATH = "/v1/chat/completions";
+    static final String GEMINI_PATH = "/v1beta/models/";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "MockLlmServer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile LongSupplier latencyMillis = () -> 0;
+    private volatile double rateLimitedShare;
+    private volatile double serverErrorShare;
+    private volatile int streamChunks = 8;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong streamed = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong serverErrors = new AtomicLong();
+
+    MockLlmServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(OPENAI_PATH, exchange -> handle(exchange, false));
+        server.createContext(GEMINI_PATH, exchange -> handle(exchange, true));
+        // Each exchange gets its own thread, so slow answers do not queue behind each other
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Always answer after the same time.
+     */
+    static LongSupplier fixed(long millis) {
+        return () -> millis;
+    }
+
+    /**
+     * Answer after a time drawn uniformly between two bounds.
+     */
+    static LongSupplier uniform(long minMillis, long maxMillis) {
+        return () -> ThreadLocalRandom.current().nextLong(minMillis, maxMillis + 1);
+    }
+
+    /**
+     * Answer after a log-normally distributed time, the usual shape of model latency: most
+     * answers close to the median, and a long tail of slow ones.
+     * @param medianMillis the median latency
+     * @param sigma the standard deviation of the logarithm, e.g. {@code 0.5}
+     */
+    static LongSupplier logNormal(long medianMillis, double sigma, long seed) {
+        Random random = new Random(seed);
+        return () -> {
+            synchronized (random) {
+                return Math.round(medianMillis * Math.exp(sigma * random.nextGaussian()));
+            }
+        };
+    }
+
+    MockLlmServer latency(LongSupplier latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    /**
+     * Answer a share of the requests with an error instead of an explanation.
+     * @param rateLimitedShare share of requests answered with {@code 429} and a short {@code retry-after-ms}
+     * @param serverErrorShare share of requests answered with {@code 503}
+     */
+    MockLlmServer failures(double rateLimitedShare, double serverErrorShare) {
+        this.rateLimitedShare = rateLimitedShare;
+        this.serverErrorShare = serverErrorShare;
+        return this;
+    }
+
+    /**
+     * Split streamed answers into this many events, spread over the latency.
+     */
+    MockLlmServer streamChunks(int streamChunks) {
+        this.streamChunks = Math.max(1, streamChunks);
+        return this;
+    }
+
+    String getOpenAIUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + OPENAI_PATH;
+    }
+
+    String getGeminiUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + GEMINI_PATH + "gemini-test:generateContent";
+    }
+
+    long getRequests() {
+        return requests.get();
+    }
+
+    long getStreamed() {
+        return streamed.get();
+    }
+
+    long getRateLimited() {
+        return rateLimited.get();
+    }
+
+    long getServerErrors() {
+        return serverErrors.get();
+    }
+
+    private void handle(HttpExchange exchange, boolean gemini) throws IOException {
+        try {
+            byte[] request = exchange.getRequestBody().readAllBytes();
+            long id = requests.incrementAndGet();
+            boolean stream = gemini
+                    ? exchange.getRequestURI().getPath().contains(":streamGenerateContent")
+                    : MAPPER.readTree(request).path("stream").asBoolean();
+            long latency = Math.max(0, latencyMillis.getAsLong());
+
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < rateLimitedShare) {
+                rateLimited.incrementAndGet();
+                exchange.getResponseHeaders().add("retry-after-ms", "20");
+                send(exchange, 429, error(gemini, 429, "Rate limit reached", "RESOURCE_EXHAUSTED"));
+                return;
+            }
+            if (roll < rateLimitedShare + serverErrorShare) {
+                serverErrors.incrementAndGet();
+                sleep(latency);
+                send(exchange, 503, error(gemini, 503, "The model is overloaded", "UNAVAILABLE"));
+                return;
+            }
+
+            String answer = "The build failed because a test fixture was missing (request "
+                    + id + "). Restore the fixture and run the build again.";
+            if (!stream) {
+                sleep(latency);
+                send(exchange, 200, answer(gemini, answer, false));
+                return;
+            }
+            streamed.incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            int chunkLength = (answer.length() + streamChunks - 1) / streamChunks;
+            for (int start = 0; start < answer.length(); start += chunkLength) {
+                sleep(latency / streamChunks);
+                String chunk = answer.substring(start, Math.min(answer.length(), start + chunkLength));
+                out.write(("data: " + answer(gemini, chunk, true) + "\n\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+            if (!gemini) {
+                out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String answer(boolean gemini, String text, boolean delta) throws IOException {
+        Object body = gemini
+                ? Map.of("candidates", new Object[] {Map.of("content", Map.of("role", "model",
+                        "parts", new Object[] {Map.of("text", text)}))})
+                : Map.of("choices", new Object[] {Map.of("index", 0,
+                        delta ? "delta" : "message", Map.of("role", "assistant", "content", text))});
+        return MAPPER.writeValueAsString(body);
+    }
+
+    private static String error(boolean gemini, int code, String message, String status) throws IOException {
+        return MAPPER.writeValueAsString(Map.of("error", gemini
+                ? Map.of("code", code, "message", message, "status", status)
+                : Map.of("message", message, "type", "server_error")));
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,122 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MockLlmServerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private MockLlmServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new MockLlmServer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    private HttpResponse<String> post(String url, String body) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(url))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static List<JsonNode> events(String body) throws Exception {
+        List<JsonNode> events = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            if (line.startsWith("data: ") && !line.equals("data: [DONE]")) {
+                events.add(MAPPER.readTree(line.substring("data: ".length())));
+            }
+        }
+        return events;
+    }
+
+    @Test
+    void testOpenAI() throws Exception {
+        HttpResponse<String> response = post(server.getOpenAIUrl(), "{\"model\":\"gpt-test\",\"messages\":[]}");
+
+        assertEquals(200, response.statusCode());
+        assertTrue(MAPPER.readTree(response.body()).at("/choices/0/message/content").asText()
+                .startsWith("The build failed because"));
+    }
+
+    @Test
+    void testOpenAIStreaming() throws Exception {
+        server.streamChunks(4);
+        HttpResponse<String> response = post(server.getOpenAIUrl(), "{\"stream\":true,\"messages\":[]}");
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().endsWith("data: [DONE]\n\n"));
+        List<JsonNode> events = events(response.body());
+        assertEquals(4, events.size());
+        String text = events.stream().map(event -> event.at("/choices/0/delta/content").asText())
+                .collect(Collectors.joining());
+        assertTrue(text.startsWith("The build failed because"));
+        assertEquals(1, server.getStreamed());
+    }
+
+    @Test
+    void testGemini() throws Exception {
+        HttpResponse<String> response = post(server.getGeminiUrl(), "{\"contents\":[]}");
+        assertEquals(200, response.statusCode());
+        assertTrue(MAPPER.readTree(response.body()).at("/candidates/0/content/parts/0/text").asText()
+                .startsWith("The build failed because"));
+
+        String streamingUrl = server.getGeminiUrl().replace(":generateContent", ":streamGenerateContent") + "?alt=sse";
+        List<JsonNode> events = events(post(streamingUrl, "{\"contents\":[]}").body());
+        assertFalse(events.isEmpty());
+        assertTrue(events.get(0).at("/candidates/0/content/parts/0/text").isTextual());
+        assertEquals(2, server.getRequests());
+    }
+
+    @Test
+    void testInjectedFailures() throws Exception {
+        server.failures(1, 0);
+        HttpResponse<String> response = post(server.getOpenAIUrl(), "{}");
+        assertEquals(429, response.statusCode());
+        assertTrue(response.headers().firstValue("retry-after-ms").isPresent());
+        assertEquals("Rate limit reached", MAPPER.readTree(response.body()).at("/error/message").asText());
+
+        server.failures(0, 1);
+        response = post(server.getGeminiUrl(), "{}");
+        assertEquals(503, response.statusCode());
+        assertEquals("UNAVAILABLE", MAPPER.readTree(response.body()).at("/error/status").asText());
+
+        assertEquals(1, server.getRateLimited());
+        assertEquals(1, server.getServerErrors());
+    }
+
+    @Test
+    void testLatencyDistributions() {
+        assertEquals(25, MockLlmServer.fixed(25).getAsLong());
+        LongSupplier uniform = MockLlmServer.uniform(10, 20);
+        LongSupplier logNormal = MockLlmServer.logNormal(100, 0.5, 42);
+        long below = 0;
+        for (int i = 0; i < 1000; i++) {
+            long millis = uniform.getAsLong();
+            assertTrue(millis >= 10 && millis <= 20);
+            if (logNormal.getAsLong() < 100) {
+                below++;
+            }
+        }
+        // Half of the samples are below the median
+        assertTrue(below > 400 && below < 600, "below median: " + below);
+    }
+}
@@ -0,0 +1,80 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class ModelRouteTest {
+
+    @Test
+    void testDefaults() {
+        ModelRoute route = new ModelRoute("  ", null);
+        assertEquals(ProviderProfile.PRIMARY, route.getEndpoint());
+        assertEquals(ProviderProfile.PRIMARY, route.getName());
+        assertEquals("small", new ModelRoute(null, " small ").getName());
+        assertTrue(route.matches(100_000, null, Set.of()));
+    }
+
+    @Test
+    void testMaxInputTokens() {
+        ModelRoute route = new ModelRoute("small-errors", "small");
+        route.setMaxInputTokens(1000);
+        assertTrue(route.matches(1000, null, Set.of()));
+        assertFalse(route.matches(1001, null, Set.of()));
+
+        route.setMaxInputTokens(-5);
+        assertEquals(0, route.getMaxInputTokens());
+        assertTrue(route.matches(1001, null, Set.of()));
+    }
+
+    @Test
+    void testJobPattern() {
+        ModelRoute route = new ModelRoute("team-a", "small");
+        route.setJobPattern(" team-a/.* ");
+        assertEquals("team-a/.*", route.getJobPattern());
+        assertTrue(route.matches(10, "team-a/build", Set.of()));
+        assertFalse(route.matches(10, "team-b/build", Set.of()));
+        assertFalse(route.matches(10, null, Set.of()));
+
+        route.setJobPattern("team-a/(");
+        assertFalse(route.matches(10, "team-a/build", Set.of()));
+    }
+
+    @Test
+    void testErrorCategories() {
+        ModelRoute route = new ModelRoute("environment", "small");
+        route.setErrorCategories("command-not-found,  network-error\ndisk-full");
+        assertEquals(List.of("command-not-found", "network-error", "disk-full"), route.getErrorCategoryList());
+        assertTrue(route.matches(10, null, Set.of("compiler-error", "network-error")));
+        assertFalse(route.matches(10, null, Set.of("compiler-error")));
+
+        route.setErrorCategories(" ");
+        assertNull(route.getErrorCategories());
+        assertTrue(route.getErrorCategoryList().isEmpty());
+    }
+
+    @Test
+    void testCategories() {
+        Set<String> categories = ModelRoute.categories(
+                "+ mvnw clean verify\n/bin/sh: mvnw: command not found\nERROR: script returned exit code 127");
+        assertTrue(categories.contains("command-not-found"));
+        assertFalse(categories.contains("compiler-error"));
+        assertTrue(ModelRoute.categories("").isEmpty());
+    }
+
+    @Test
+    void testSelectFirstMatchingRoute() {
+        ModelRoute environment = new ModelRoute("environment", "small");
+        environment.setErrorCategories("command-not-found");
+        ModelRoute small = new ModelRoute("small-errors", "small");
+        small.setMaxInputTokens(500);
+        List<ModelRoute> routes = List.of(environment, small);
+
+        assertSame(environment, ModelRoute.select(routes, 5000, "job", "sh: make: command not found"));
+        assertSame(small, ModelRoute.select(routes, 200, "job", "BUILD FAILURE"));
+        assertNull(ModelRoute.select(routes, 5000, "job", "BUILD FAILURE"));
+        assertNull(ModelRoute.select(List.of(), 10, null, ""));
+    }
+}
@@ -0,0 +1,139 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PersistentExplanationStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private AtomicLong now;
+    private AtomicLong maxBytes;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(1000);
+        maxBytes = new AtomicLong(1024 * 1024);
+    }
+
+    private PersistentExplanationStore newStore() {
+        return new PersistentExplanationStore(directory, maxBytes::get, () -> 60_000, now::get);
+    }
+
+    @Test
+    void testEntriesSurviveReopening() {
+        PersistentExplanationStore store = newStore();
+        store.put("a", "Explanation A");
+        store.put("b", "Explanation B with unicode ✓");
+        store.put("a", "Explanation A, updated");
+
+        PersistentExplanationStore reopened = newStore();
+        assertEquals(2, reopened.size());
+        assertEquals("Explanation A, updated", reopened.get("a").explanation);
+        assertEquals("Explanation B with unicode ✓", reopened.get("b").explanation);
+        assertEquals(1000, reopened.get("b").created);
+        assertNull(reopened.get("c"));
+    }
+
+    @Test
+    void testNothingIsReadUntilFirstAccess() throws IOException {
+        newStore().put("a", "A");
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        PersistentExplanationStore reopened = newStore();
+        // Removing the data before the first lookup shows the index is built lazily
+        Files.delete(segment);
+
+        assertNull(reopened.get("a"));
+    }
+
+    @Test
+    void testExpiredEntriesAreIgnored() {
+        PersistentExplanationStore store = newStore();
+        store.put("a", "A");
+        now.addAndGet(60_001);
+
+        assertNull(newStore().get("a"));
+    }
+
+    @Test
+    void testTruncatedTailIsDiscarded() throws IOException {
+        newStore().put("a", "A");
+        newStore().put("b", "B");
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        // Simulate a crash in the middle of writing a record
+        Files.write(segment, new byte[] {0, 0, 1, 0, 42}, StandardOpenOption.APPEND);
+
+        PersistentExplanationStore reopened = newStore();
+        assertEquals("A", reopened.get("a").explanation);
+        assertEquals("B", reopened.get("b").explanation);
+        reopened.put("c", "C");
+        assertEquals("C", newStore().get("c").explanation);
+    }
+
+    @Test
+    void testCompactionKeepsNewestEntriesWithinLimit() {
+        maxBytes.set(2000);
+        PersistentExplanationStore store = newStore();
+        String explanation = "x".repeat(200);
+        for (int i = 0; i < 20; i++) {
+            now.incrementAndGet();
+            store.put("key-" + i, explanation + i);
+        }
+
+        assertTrue(store.getCompactions() > 0);
+        assertTrue(store.getTotalBytes() <= 2000);
+        assertEquals(explanation + 19, store.get("key-19").explanation);
+        assertNull(store.get("key-0"));
+
+        PersistentExplanationStore reopened = newStore();
+        assertEquals(store.size(), reopened.size());
+        assertEquals(explanation + 19, reopened.get("key-19").explanation);
+    }
+
+    @Test
+    void testFailedCompactionKeepsOldSegments() throws IOException {
+        PersistentExplanationStore store = newStore();
+        store.put("a", "Explanation A");
+        now.incrementAndGet();
+        store.put("b", "Explanation B");
+        // Corrupt the older record, so it fails to copy after the newer one was written
+        Path segment = directory.resolve("segment-00000001.dat");
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[20] ^= 1;
+        Files.write(segment, bytes);
+
+        assertThrows(IOException.class, store::compact);
+
+        assertEquals(0, store.getCompactions());
+        assertEquals("Explanation B", store.get("b").explanation);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void testZeroSizeDisablesStore() {
+        maxBytes.set(0);
+        PersistentExplanationStore store = newStore();
+        store.put("a", "A");
+
+        assertNull(store.get("a"));
+        assertFalse(Files.exists(directory.resolve("segment-00000001.dat")));
+    }
+}
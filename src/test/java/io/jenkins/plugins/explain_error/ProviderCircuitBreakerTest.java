@@ -0,0 +1,139 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class ProviderCircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final AtomicInteger failureRate = new AtomicInteger(50);
+    private final ProviderCircuitBreaker breaker =
+            new ProviderCircuitBreaker(failureRate::get, () -> 10, () -> 30, now::get);
+
+    private void call(String outcome, long millis) throws CircuitOpenException {
+        breaker.acquire("primary");
+        breaker.record("primary", outcome, TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private void open() throws CircuitOpenException {
+        for (int i = 0; i < ProviderCircuitBreaker.MIN_CALLS; i++) {
+            call("http_error", 5);
+        }
+    }
+
+    @Test
+    void testOpensAtFailureRate() throws CircuitOpenException {
+        for (int i = 0; i < 5; i++) {
+            call("success", 5);
+            call("error", 5);
+        }
+        assertEquals(ProviderCircuitBreaker.State.OPEN, breaker.getState("primary"));
+        assertEquals(1, breaker.getOpened());
+
+        CircuitOpenException e = assertThrows(CircuitOpenException.class, () -> breaker.acquire("primary"));
+        assertEquals("The AI provider endpoint primary is failing, so requests to it are paused for another 30s "
+                + "instead of waiting for timeouts. Please try again later.", e.getMessage());
+        assertEquals(1, breaker.getRejected());
+        // Other endpoints are not affected
+        breaker.acquire("fallback");
+    }
+
+    @Test
+    void testStaysClosedBelowMinimumCalls() throws CircuitOpenException {
+        for (int i = 0; i < ProviderCircuitBreaker.MIN_CALLS - 1; i++) {
+            call("error", 5);
+        }
+        assertEquals(ProviderCircuitBreaker.State.CLOSED, breaker.getState("primary"));
+    }
+
+    @Test
+    void testStaysClosedBelowThreshold() throws CircuitOpenException {
+        for (int i = 0; i < ProviderCircuitBreaker.WINDOW; i++) {
+            call(i % 3 == 0 ? "http_error" : "success", 5);
+        }
+        assertEquals(ProviderCircuitBreaker.State.CLOSED, breaker.getState("primary"));
+        assertEquals("primary: closed, 35% failed and 0% slow of the last 20 requests", breaker.getSummary());
+    }
+
+    @Test
+    void testRateLimitedAndUnparsableAnswersAreNotFailures() throws CircuitOpenException {
+        for (int i = 0; i < ProviderCircuitBreaker.WINDOW; i++) {
+            call(i % 2 == 0 ? "rate_limited" : "parse_error", 5);
+        }
+        call("success", 5);
+        assertEquals(ProviderCircuitBreaker.State.CLOSED, breaker.getState("primary"));
+        assertEquals("primary: closed, 0% failed and 0% slow of the last 1 requests", breaker.getSummary());
+    }
+
+    @Test
+    void testOpensAtSlowCallRate() throws CircuitOpenException {
+        for (int i = 0; i < ProviderCircuitBreaker.MIN_CALLS; i++) {
+            call("success", 10_000);
+        }
+        assertEquals(ProviderCircuitBreaker.State.OPEN, breaker.getState("primary"));
+    }
+
+    @Test
+    void testHalfOpenProbesClose() throws CircuitOpenException {
+        open();
+        now.addAndGet(30_000);
+        assertEquals(ProviderCircuitBreaker.State.HALF_OPEN, breaker.getState("primary"));
+        assertEquals("primary: half-open, 0 of 3 probes succeeded", breaker.getSummary());
+
+        // Only the probes are sent
+        for (int i = 0; i < ProviderCircuitBreaker.PROBES; i++) {
+            breaker.acquire("primary");
+        }
+        CircuitOpenException e = assertThrows(CircuitOpenException.class, () -> breaker.acquire("primary"));
+        assertTrue(e.getMessage().contains("paused while it is being tested"), e.getMessage());
+
+        for (int i = 0; i < ProviderCircuitBreaker.PROBES; i++) {
+            breaker.record("primary", "success", 0);
+        }
+        assertEquals(ProviderCircuitBreaker.State.CLOSED, breaker.getState("primary"));
+        assertEquals("primary: closed", breaker.getSummary());
+        // The failures before the circuit opened are forgotten
+        for (int i = 0; i < ProviderCircuitBreaker.MIN_CALLS - 1; i++) {
+            call("error", 5);
+        }
+        assertEquals(ProviderCircuitBreaker.State.CLOSED, breaker.getState("primary"));
+    }
+
+    @Test
+    void testFailedProbeOpensAgain() throws CircuitOpenException {
+        open();
+        now.addAndGet(30_000);
+        call("success", 5);
+        call("http_error", 5);
+        assertEquals(ProviderCircuitBreaker.State.OPEN, breaker.getState("primary"));
+        assertEquals(2, breaker.getOpened());
+        assertEquals("primary: open for another 30s", breaker.getSummary());
+    }
+
+    @Test
+    void testCancelledProbeFreesItsSlot() throws CircuitOpenException {
+        open();
+        now.addAndGet(30_000);
+        for (int i = 0; i < ProviderCircuitBreaker.PROBES; i++) {
+            breaker.acquire("primary");
+        }
+        breaker.record("primary", "cancelled", 0);
+        breaker.acquire("primary");
+        assertEquals(ProviderCircuitBreaker.State.HALF_OPEN, breaker.getState("primary"));
+    }
+
+    @Test
+    void testDisabled() throws CircuitOpenException {
+        open();
+        failureRate.set(0);
+        breaker.acquire("primary");
+        assertEquals(ProviderCircuitBreaker.State.CLOSED, breaker.getState("primary"));
+        assertEquals("Circuit breaker disabled", breaker.getSummary());
+        assertEquals(Map.of("primary", ProviderCircuitBreaker.State.CLOSED), breaker.getStates());
+    }
+}
@@ -0,0 +1,141 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+class ProviderFailoverTest {
+
+    private final GlobalConfigurationImpl config = new DefaultGlobalConfiguration();
+    private final ProviderHealth health = new ProviderHealth();
+    private final List<String> called = new ArrayList<>();
+    private final Map<String, CompletableFuture<String>> calls = new ConcurrentHashMap<>();
+
+    private BaseAIService service(String name) {
+        return new OpenAIService(config, new ProviderProfile(name, AIProvider.OPENAI, null, null, null));
+    }
+
+    private ProviderFailover failover(boolean hedge, String... names) {
+        List<BaseAIService> services = new ArrayList<>();
+        for (String name : names) {
+            services.add(service(name));
+        }
+        return new ProviderFailover(services, health, hedge);
+    }
+
+    /**
+     * Answers each endpoint with the future registered for it, or with an explanation naming it.
+     */
+    private Function<BaseAIService, CompletableFuture<String>> request() {
+        return service -> {
+            String name = service.getEndpointName();
+            synchronized (called) {
+                called.add(name);
+            }
+            return calls.getOrDefault(name, CompletableFuture.completedFuture("Explained by " + name));
+        };
+    }
+
+    @Test
+    void testFirstEndpointAnswers() throws Exception {
+        assertEquals("Explained by primary", failover(false, "primary", "fallback").call(request()).get());
+        assertEquals(List.of("primary"), called);
+        assertEquals(0, health.getFailovers());
+    }
+
+    @Test
+    void testFailsOverToNextEndpoint() throws Exception {
+        calls.put("primary", CompletableFuture.failedFuture(new AIServiceException("down", 503)));
+        calls.put("second", CompletableFuture.failedFuture(new ApiErrorException("Invalid API key")));
+
+        List<String> answered = new ArrayList<>();
+        assertEquals("Explained by third", failover(false, "primary", "second", "third")
+                .call(request(), service -> answered.add(service.getEndpointName())).get());
+        assertEquals(List.of("primary", "second", "third"), called);
+        assertEquals(List.of("third"), answered);
+        assertEquals(2, health.getFailovers());
+    }
+
+    @Test
+    void testLastOutcomeWhenAllEndpointsFail() throws Exception {
+        calls.put("primary", CompletableFuture.failedFuture(new ApiErrorException("Invalid API key")));
+        calls.put("fallback", CompletableFuture.failedFuture(new AIServiceException("down", 503)));
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> failover(false, "primary", "fallback").call(request()).get());
+        assertEquals(503, ((AIServiceException) e.getCause()).getStatusCode());
+
+        calls.put("fallback", CompletableFuture.failedFuture(
+                new ResponseParseException("Unable to parse AI response. Response: {}")));
+        e = assertThrows(ExecutionException.class, () -> failover(false, "primary", "fallback").call(request()).get());
+        assertEquals("Unable to parse AI response. Response: {}", e.getCause().getMessage());
+    }
+
+    @Test
+    void testUnhealthyEndpointTriedLast() throws Exception {
+        for (int i = 0; i < ProviderHealth.FAILURE_THRESHOLD; i++) {
+            health.record("primary", "error", 0);
+        }
+        assertEquals("Explained by fallback", failover(false, "primary", "fallback").call(request()).get());
+        assertEquals(List.of("fallback"), called);
+    }
+
+    @Test
+    void testHedgeTakesFirstAnswerAndCancelsSlowRequest() throws Exception {
+        for (int i = 0; i < ProviderHealth.MIN_SAMPLES; i++) {
+            health.record("primary", "success", TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        calls.put("primary", slow);
+
+        long start = System.nanoTime();
+        String result = failover(true, "primary", "fallback").call(request()).get(30, TimeUnit.SECONDS);
+
+        assertEquals("Explained by fallback", result);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= ProviderFailover.MIN_HEDGE_DELAY_MILLIS);
+        assertTrue(slow.isCancelled());
+        assertEquals(1, health.getHedged());
+        assertEquals(1, health.getHedgeWins());
+        assertEquals(0, health.getFailovers());
+    }
+
+    @Test
+    void testNoHedgeWhenFirstRequestAnswersInTime() throws Exception {
+        assertEquals("Explained by primary", failover(true, "primary", "fallback").call(request()).get());
+        Thread.sleep(ProviderFailover.MIN_HEDGE_DELAY_MILLIS + 200);
+        assertEquals(List.of("primary"), called);
+        assertEquals(0, health.getHedged());
+    }
+
+    @Test
+    void testNoFailoverAfterOutputWasDelivered() {
+        calls.put("primary", CompletableFuture.failedFuture(new AIServiceException("down", 503)));
+        AtomicBoolean delivered = new AtomicBoolean(true);
+
+        CompletableFuture<String> result = failover(false, "primary", "fallback").callOnce(request(), delivered::get);
+
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(List.of("primary"), called);
+    }
+
+    @Test
+    void testCancelCancelsRunningRequest() {
+        CompletableFuture<String> running = new CompletableFuture<>();
+        calls.put("primary", running);
+
+        CompletableFuture<String> result = failover(false, "primary", "fallback").call(request());
+        result.cancel(true);
+
+        assertTrue(running.isCancelled());
+        assertEquals(List.of("primary"), called);
+    }
+}
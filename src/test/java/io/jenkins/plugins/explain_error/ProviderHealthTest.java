@@ -0,0 +1,67 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class ProviderHealthTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final ProviderHealth health = new ProviderHealth(now::get);
+
+    @Test
+    void testUnhealthyAfterConsecutiveFailures() {
+        assertTrue(health.isHealthy("primary"));
+        health.record("primary", "http_error", 0);
+        health.record("primary", "error", 0);
+        assertTrue(health.isHealthy("primary"));
+        health.record("primary", "api_error", 0);
+        assertFalse(health.isHealthy("primary"));
+        assertEquals(Map.of("primary", false), health.getEndpoints());
+
+        now.addAndGet(ProviderHealth.COOLDOWN_MILLIS);
+        assertTrue(health.isHealthy("primary"));
+        // Still failing after the cooldown
+        health.record("primary", "error", 0);
+        assertFalse(health.isHealthy("primary"));
+    }
+
+    @Test
+    void testSuccessResetsFailures() {
+        health.record("primary", "error", 0);
+        health.record("primary", "error", 0);
+        health.record("primary", "success", TimeUnit.MILLISECONDS.toNanos(100));
+        health.record("primary", "error", 0);
+        health.record("primary", "error", 0);
+        assertTrue(health.isHealthy("primary"));
+    }
+
+    @Test
+    void testCancelledRequestsAreIgnored() {
+        for (int i = 0; i < ProviderHealth.FAILURE_THRESHOLD; i++) {
+            health.record("primary", "cancelled", 0);
+        }
+        assertTrue(health.isHealthy("primary"));
+        assertTrue(health.getEndpoints().isEmpty());
+    }
+
+    @Test
+    void testP95() {
+        for (int i = 1; i < ProviderHealth.MIN_SAMPLES; i++) {
+            health.record("primary", "success", TimeUnit.MILLISECONDS.toNanos(i * 10));
+        }
+        assertEquals(-1, health.getP95Millis("primary"));
+        health.record("primary", "success", TimeUnit.MILLISECONDS.toNanos(200));
+        assertEquals(190, health.getP95Millis("primary"));
+
+        // Only the most recent latencies count
+        for (int i = 0; i < ProviderHealth.WINDOW; i++) {
+            health.record("primary", "success", TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        assertEquals(50, health.getP95Millis("primary"));
+        assertEquals(-1, health.getP95Millis("fallback"));
+    }
+}
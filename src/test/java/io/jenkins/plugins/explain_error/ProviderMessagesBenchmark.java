@@ -0,0 +1,80 @@
+package io.jenkins.plugins.explain_error;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Throughput of the work done around each provider call: fitting the error logs to the budget
+ * and building the prompt, encoding the request body, parsing the response, and encoding the
+ * explanation for the console page.
+ * The services use a configuration with the defaults, so no Jenkins instance is needed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ProviderMessagesBenchmark {
+
+    /** Size of the error logs; extracted logs are at most 64 KB. */
+    @Param({"4KB", "64KB"})
+    public String size;
+
+    private OpenAIService openAI;
+    private GeminiService gemini;
+    private String errorLogs;
+    private String prompt;
+    private String explanation;
+    private ResponseBody openAIResponse;
+    private ResponseBody geminiResponse;
+
+    @Setup
+    public void setup() {
+        GlobalConfigurationImpl config = new DefaultGlobalConfiguration();
+        config.setModel("gpt-4o");
+        openAI = new OpenAIService(config);
+        gemini = new GeminiService(config);
+
+        errorLogs = LogCorpus.generate(LogCorpus.Kind.MAVEN, (int) LogCorpus.parseSize(size));
+        prompt = openAI.buildPrompt(openAI.fitToBudget(errorLogs));
+        explanation = LogCorpus.explanation(2000);
+        openAIResponse = ResponseBody.of(LogCorpus.openAIResponse(explanation));
+        geminiResponse = ResponseBody.of(LogCorpus.geminiResponse(explanation));
+    }
+
+    @Benchmark
+    public String buildPrompt() {
+        return openAI.buildPrompt(openAI.fitToBudget(errorLogs));
+    }
+
+    @Benchmark
+    public String openAIRequestBody() throws IOException {
+        return openAI.buildRequestBody(prompt);
+    }
+
+    @Benchmark
+    public String geminiRequestBody() throws IOException {
+        return gemini.buildRequestBody(prompt);
+    }
+
+    @Benchmark
+    public String openAIParseResponse() throws IOException {
+        return openAI.parseResponse(openAIResponse);
+    }
+
+    @Benchmark
+    public String geminiParseResponse() throws IOException {
+        return gemini.parseResponse(geminiResponse);
+    }
+
+    @Benchmark
+    public String consoleJsonResponse() {
+        return ConsoleExplainErrorAction.toJson(explanation);
+    }
+}
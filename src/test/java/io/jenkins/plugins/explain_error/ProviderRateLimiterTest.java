@@ -0,0 +1,129 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.http.HttpHeaders;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ProviderRateLimiterTest {
+
+    private AtomicLong now;
+    private AtomicInteger requestsPerMinute;
+    private ProviderRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(1_000_000);
+        requestsPerMinute = new AtomicInteger(0);
+        limiter = new ProviderRateLimiter(requestsPerMinute::get, () -> 0, now::get);
+    }
+
+    private static HttpHeaders headers(String... namesAndValues) {
+        Map<String, List<String>> map = new HashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            map.put(namesAndValues[i], List.of(namesAndValues[i + 1]));
+        }
+        return HttpHeaders.of(map, (name, value) -> true);
+    }
+
+    @Test
+    void testUnlimitedByDefault() {
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, limiter.reserve(AIProvider.OPENAI, 5000));
+        }
+        assertEquals(0, limiter.getThrottled());
+    }
+
+    @Test
+    void testConfiguredLimitSmoothsBursts() {
+        requestsPerMinute.set(60);
+        for (int i = 0; i < 60; i++) {
+            assertEquals(0, limiter.reserve(AIProvider.OPENAI, 0));
+        }
+        // The bucket refills at one request per second
+        assertEquals(1000, limiter.reserve(AIProvider.OPENAI, 0));
+        assertEquals(2000, limiter.reserve(AIProvider.OPENAI, 0));
+        assertEquals(0, limiter.reserve(AIProvider.GEMINI, 0));
+
+        now.addAndGet(3000);
+        assertEquals(0, limiter.reserve(AIProvider.OPENAI, 0));
+        assertEquals(2, limiter.getThrottled());
+    }
+
+    @Test
+    void testLimitIsLearnedFromHeaders() {
+        limiter.update(AIProvider.OPENAI, 200, headers(
+                "x-ratelimit-limit-requests", "60",
+                "x-ratelimit-remaining-requests", "59"));
+        for (int i = 0; i < 60; i++) {
+            limiter.reserve(AIProvider.OPENAI, 0);
+        }
+        assertTrue(limiter.reserve(AIProvider.OPENAI, 0) > 0);
+    }
+
+    @Test
+    void testExhaustedRemainingPausesUntilReset() {
+        limiter.update(AIProvider.OPENAI, 200, headers(
+                "x-ratelimit-remaining-tokens", "0",
+                "x-ratelimit-reset-tokens", "1.5s"));
+
+        assertEquals(1500, limiter.reserve(AIProvider.OPENAI, 100));
+    }
+
+    @Test
+    void testTooManyRequestsPausesForRetryAfter() {
+        limiter.update(AIProvider.OPENAI, 429, headers("Retry-After", "7"));
+
+        assertEquals(7000, limiter.reserve(AIProvider.OPENAI, 0));
+        assertEquals(1, limiter.getRateLimited());
+    }
+
+    @Test
+    void testRetryDelay() {
+        assertEquals(-1, limiter.retryDelay(400, headers(), 0, 3));
+        assertEquals(-1, limiter.retryDelay(429, headers(), 3, 3));
+        assertEquals(-1, limiter.retryDelay(429, headers("retry-after", "120"), 0, 3));
+        assertEquals(5000, limiter.retryDelay(503, headers("retry-after", "5"), 0, 3));
+
+        long delay = limiter.retryDelay(429, headers(), 2, 3);
+        assertTrue(delay >= 2000 && delay <= 4000, "Unexpected delay " + delay);
+    }
+
+    @Test
+    void testBackoffIsCapped() {
+        for (int attempt = 0; attempt < 40; attempt++) {
+            long backoff = ProviderRateLimiter.backoffMillis(attempt);
+            assertTrue(backoff <= ProviderRateLimiter.MAX_BACKOFF_MILLIS);
+            assertTrue(backoff >= Math.min(ProviderRateLimiter.MAX_BACKOFF_MILLIS, 1000L << Math.min(attempt, 20)) / 2);
+        }
+    }
+
+    @Test
+    void testRetryAfterParsing() {
+        assertEquals(250, ProviderRateLimiter.retryAfterMillis(headers("retry-after-ms", "250"), 0).getAsLong());
+        assertEquals(3000, ProviderRateLimiter.retryAfterMillis(headers("retry-after", "3"), 0).getAsLong());
+        long date = ZonedDateTime.parse("Wed, 21 Oct 2026 07:28:00 GMT",
+                DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        assertEquals(10_000, ProviderRateLimiter.retryAfterMillis(
+                headers("retry-after", "Wed, 21 Oct 2026 07:28:00 GMT"), date - 10_000).getAsLong());
+        assertFalse(ProviderRateLimiter.retryAfterMillis(headers(), 0).isPresent());
+    }
+
+    @Test
+    void testDurationParsing() {
+        assertEquals(20, ProviderRateLimiter.durationMillis("20ms"));
+        assertEquals(1000, ProviderRateLimiter.durationMillis("1s"));
+        assertEquals(360_500, ProviderRateLimiter.durationMillis("6m0.5s"));
+        assertEquals(3_723_000, ProviderRateLimiter.durationMillis("1h2m3s"));
+        assertEquals(-1, ProviderRateLimiter.durationMillis("soon"));
+        assertEquals(-1, ProviderRateLimiter.durationMillis(null));
+    }
+}
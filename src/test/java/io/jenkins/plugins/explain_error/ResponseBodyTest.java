@@ -0,0 +1,64 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Flow;
+import org.junit.jupiter.api.Test;
+
+class ResponseBodyTest {
+
+    private boolean cancelled;
+
+    private ResponseBody receive(long maxBytes, String... chunks) throws Exception {
+        HttpResponse.BodySubscriber<ResponseBody> subscriber = ResponseBody.handler(maxBytes).apply(null);
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+            }
+        });
+        for (String chunk : chunks) {
+            subscriber.onNext(List.of(ByteBuffer.wrap(chunk.getBytes(StandardCharsets.UTF_8))));
+        }
+        subscriber.onComplete();
+        return subscriber.getBody().toCompletableFuture().get();
+    }
+
+    @Test
+    void testParsesAcrossBuffers() throws Exception {
+        ResponseBody body = receive(1024, "{\"choices\":[{\"mess", "age\":{\"content\":\"Grüße", "\"}}]}");
+        assertFalse(body.isTruncated());
+        assertFalse(cancelled);
+        try (JsonParser parser = body.createParser(new JsonFactory())) {
+            assertEquals("Grüße", JsonFields.read(parser, "/choices/0/message/content")
+                    .get("/choices/0/message/content"));
+        }
+    }
+
+    @Test
+    void testBodyOverTheLimitIsTruncated() throws Exception {
+        ResponseBody body = receive(10, "0123456", "789abcdef", "ghij");
+        assertTrue(body.isTruncated());
+        assertTrue(cancelled);
+        assertEquals(10, body.size());
+        assertEquals("0123456789", body.preview());
+    }
+
+    @Test
+    void testPreviewIsLimited() throws IOException {
+        ResponseBody body = ResponseBody.of("x".repeat(ResponseBody.PREVIEW_LENGTH + 10));
+        assertEquals("x".repeat(ResponseBody.PREVIEW_LENGTH) + "...", body.preview());
+        assertEquals("{}", ResponseBody.of("{}").preview());
+    }
+}
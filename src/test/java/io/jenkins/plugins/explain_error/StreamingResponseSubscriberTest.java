@@ -0,0 +1,77 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class StreamingResponseSubscriberTest {
+
+    @Test
+    void testForwardsDataEvents() {
+        List<String> received = new ArrayList<>();
+        StreamingResponseSubscriber subscriber = new StreamingResponseSubscriber(data -> data.toUpperCase(), received::add);
+
+        subscriber.onNext("data: first");
+        subscriber.onNext("");
+        subscriber.onNext("data: second");
+        subscriber.onComplete();
+
+        assertEquals(List.of("FIRST", "SECOND"), received);
+        assertEquals("FIRSTSECOND", subscriber.getText());
+    }
+
+    @Test
+    void testIgnoresDoneMarkerAndEmptyDeltas() {
+        List<String> received = new ArrayList<>();
+        StreamingResponseSubscriber subscriber = new StreamingResponseSubscriber(data -> data.equals("skip") ? null : data, received::add);
+
+        subscriber.onNext("data: text");
+        subscriber.onNext("data: skip");
+        subscriber.onNext("data: [DONE]");
+
+        assertEquals(List.of("text"), received);
+    }
+
+    @Test
+    void testKeepsNonEventLinesForErrorReporting() {
+        StreamingResponseSubscriber subscriber = new StreamingResponseSubscriber(data -> data, text -> {});
+
+        subscriber.onNext("{\"error\": {\"message\": \"Invalid API key\"}}");
+
+        assertEquals("", subscriber.getText());
+        assertTrue(subscriber.getRaw().contains("Invalid API key"));
+    }
+
+    @Test
+    void testSkipsUnparseableEvents() {
+        List<String> received = new ArrayList<>();
+        StreamingResponseSubscriber subscriber = new StreamingResponseSubscriber(data -> {
+            if (data.startsWith("{")) {
+                throw new java.io.IOException("bad json");
+            }
+            return data;
+        }, received::add);
+
+        subscriber.onNext("data: {broken");
+        subscriber.onNext("data: ok");
+
+        assertEquals(List.of("ok"), received);
+    }
+
+    @Test
+    void testLimitCountsUtf8Bytes() {
+        List<String> received = new ArrayList<>();
+        // "data: " is six bytes, each "ü" two and the line break one
+        StreamingResponseSubscriber subscriber = new StreamingResponseSubscriber(data -> data, received::add, 23);
+
+        subscriber.onNext("data: üüüüüüüü");
+        assertFalse(subscriber.isTruncated());
+        subscriber.onNext("data: ü");
+        subscriber.onNext("data: x");
+
+        assertTrue(subscriber.isTruncated());
+        assertEquals(List.of("üüüüüüüü"), received);
+    }
+}
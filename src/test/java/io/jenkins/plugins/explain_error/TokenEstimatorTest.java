@@ -0,0 +1,55 @@
+package io.jenkins.plugins.explain_error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class TokenEstimatorTest {
+
+    private final TokenEstimator estimator = TokenEstimator.forModel(AIProvider.OPENAI, "gpt-3.5-turbo");
+
+    @Test
+    void testEmptyText() {
+        assertEquals(0, estimator.estimate(null));
+        assertEquals(0, estimator.estimate(""));
+    }
+
+    @Test
+    void testWordsNumbersAndPunctuation() {
+        // "ERROR" 2, ":" 1, "build" 2, "failed" 2, "after" 2, "12345" 2, "ms" 1
+        assertEquals(12, estimator.estimate("ERROR: build failed after 12345 ms"));
+        // "at" 1, "." 1, "Foo" 1, "(" 1, "Foo" 1, "." 1, "java" 1, ":" 1, "10" 1, ")" 1, indentation 1
+        assertEquals(11, estimator.estimate("    at .Foo(Foo.java:10)"));
+    }
+
+    @Test
+    void testEstimateIsCloseToCharactersPerToken() {
+        String line = "[ERROR] Failed to execute goal org.apache.maven.plugins:maven-compiler-plugin:3.11.0:compile "
+                + "(default-compile) on project core: Compilation failure\n";
+        String log = line.repeat(100);
+
+        int tokens = estimator.estimate(log);
+
+        // Tokenizers average three to four characters per token on build logs
+        assertTrue(tokens > log.length() / 5, "estimate " + tokens);
+        assertTrue(tokens < log.length() / 2, "estimate " + tokens);
+    }
+
+    @Test
+    void testSurrogatePairsCountOnce() {
+        assertEquals(1, estimator.estimate("😀"));
+        assertEquals(2, estimator.estimate("中文"));
+    }
+
+    @Test
+    void testModels() {
+        String text = "Unresolved compilation problems encountered";
+        int cl100k = TokenEstimator.forModel(AIProvider.OPENAI, "gpt-4").estimate(text);
+        int o200k = TokenEstimator.forModel(AIProvider.OPENAI, "gpt-4o-mini").estimate(text);
+
+        assertTrue(o200k <= cl100k);
+        assertSame(TokenEstimator.forModel(AIProvider.OPENAI, "o3-mini"),
+                TokenEstimator.forModel(AIProvider.OPENAI, "gpt-4o"));
+        assertNotNull(TokenEstimator.forModel(AIProvider.GEMINI, null));
+    }
+}